@@ -5,7 +5,7 @@ Ollama AI Recommendation Service - Enhanced Streaming & Verbose Mode
 支持本地 Ollama 和云端 Ollama API (使用官方 Ollama Python Client)
 """
 
-from flask import Flask, request, jsonify
+from flask import Flask, request, jsonify, Response, stream_with_context
 from flask_cors import CORS
 import json
 import time
@@ -376,6 +376,70 @@ def get_default_system_prompt():
 - 涉及具體操作時，提供清楚的步驟說明"""
 
 
+def build_chat_messages(user_message, history, context_json):
+    """
+    構建送給 Ollama 的訊息列表（/chat 與 /chat/stream 共用）
+    """
+    # 構建訊息列表
+    messages = []
+
+    # 1. 決定 system prompt（根據是否有 context）
+    if context_json:
+        # 有 context：使用 RAG system prompt
+        try:
+            from rag_prompt_builder import build_rag_system_prompt, validate_context
+
+            # 解析 context
+            context_data = json.loads(context_json)
+
+            # 驗證 context
+            is_valid, error_msg = validate_context(context_data)
+            if not is_valid:
+                print_log("⚠️", f"Context validation failed: {error_msg}", "yellow")
+                # 驗證失敗，使用預設 prompt
+                system_prompt = get_default_system_prompt()
+            else:
+                # 構建 RAG system prompt
+                system_prompt = build_rag_system_prompt(context_data)
+                has_data = context_data.get('hasData', False)
+                print_log("✅", f"Using RAG system prompt (hasData={has_data})", "green")
+
+        except Exception as e:
+            print_log("❌", f"Error building RAG prompt: {e}", "red")
+            import traceback
+            traceback.print_exc()
+            # 發生錯誤，使用預設 prompt
+            system_prompt = get_default_system_prompt()
+    else:
+        # 沒有 context：使用預設 system prompt
+        system_prompt = get_default_system_prompt()
+        print_log("ℹ️", "Using default system prompt (no context provided)", "blue")
+
+    # 2. 添加 system prompt
+    messages.append({
+        "role": "system",
+        "content": system_prompt
+    })
+
+    # 3. 添加歷史記錄（限制在最近 5 輪對話）
+    if history:
+        recent_history = history[-10:]  # 5 輪 = 10 條訊息（user + assistant）
+        for msg in recent_history:
+            if msg.get('role') in ['user', 'assistant']:
+                messages.append({
+                    "role": msg['role'],
+                    "content": msg['content']
+                })
+
+    # 4. 添加當前使用者訊息
+    messages.append({
+        "role": "user",
+        "content": user_message
+    })
+
+    return messages
+
+
 @app.route('/chat', methods=['POST'])
 def chat():
     """
@@ -403,62 +467,7 @@ def chat():
         print_log("👤", f"使用者訊息: {user_message[:50]}...", "blue")
         print_log("📝", f"對話歷史: {len(history)} 輪", "blue")
 
-        # 構建訊息列表
-        messages = []
-
-        # 1. 決定 system prompt（根據是否有 context）
-        if context_json:
-            # 有 context：使用 RAG system prompt
-            try:
-                from rag_prompt_builder import build_rag_system_prompt, validate_context
-
-                # 解析 context
-                context_data = json.loads(context_json)
-
-                # 驗證 context
-                is_valid, error_msg = validate_context(context_data)
-                if not is_valid:
-                    print_log("⚠️", f"Context validation failed: {error_msg}", "yellow")
-                    # 驗證失敗，使用預設 prompt
-                    system_prompt = get_default_system_prompt()
-                else:
-                    # 構建 RAG system prompt
-                    system_prompt = build_rag_system_prompt(context_data)
-                    has_data = context_data.get('hasData', False)
-                    print_log("✅", f"Using RAG system prompt (hasData={has_data})", "green")
-
-            except Exception as e:
-                print_log("❌", f"Error building RAG prompt: {e}", "red")
-                import traceback
-                traceback.print_exc()
-                # 發生錯誤，使用預設 prompt
-                system_prompt = get_default_system_prompt()
-        else:
-            # 沒有 context：使用預設 system prompt
-            system_prompt = get_default_system_prompt()
-            print_log("ℹ️", "Using default system prompt (no context provided)", "blue")
-
-        # 2. 添加 system prompt
-        messages.append({
-            "role": "system",
-            "content": system_prompt
-        })
-
-        # 3. 添加歷史記錄（限制在最近 5 輪對話）
-        if history:
-            recent_history = history[-10:]  # 5 輪 = 10 條訊息（user + assistant）
-            for msg in recent_history:
-                if msg.get('role') in ['user', 'assistant']:
-                    messages.append({
-                        "role": msg['role'],
-                        "content": msg['content']
-                    })
-
-        # 4. 添加當前使用者訊息
-        messages.append({
-            "role": "user",
-            "content": user_message
-        })
+        messages = build_chat_messages(user_message, history, context_json)
 
         # 5. 呼叫 Ollama API
         print_log("📤", f"Sending to Ollama: {len(messages)} messages", "yellow")
@@ -500,6 +509,63 @@ def chat():
         }), 500
 
 
+@app.route('/chat/stream', methods=['POST'])
+def chat_stream():
+    """
+    串流聊天端點（支援 RAG）
+
+    Request Body: 同 /chat
+    Response: application/x-ndjson，每行一個 JSON 物件
+        {"token": "..."}     生成的片段
+        {"done": true}       生成完成
+        {"error": "..."}     生成中途失敗
+    用戶端斷線時停止向 Ollama 取用（generator 被關閉）
+    """
+    data = request.json or {}
+    user_message = data.get('message', '')
+    history = data.get('history', [])
+    context_json = data.get('context', None)
+
+    if not user_message:
+        return jsonify({'success': False, 'message': '訊息不能為空'}), 400
+
+    print_log("📨", f"收到串流聊天請求: {user_message[:50]}...", "cyan")
+    messages = build_chat_messages(user_message, history, context_json)
+
+    def generate():
+        started = time.time()
+        first_token_at = None
+        chunk_count = 0
+        try:
+            for part in ollama.client.chat(
+                model=MODEL,
+                messages=messages,
+                stream=True,
+                options={'temperature': 0.7}
+            ):
+                if 'message' not in part or 'content' not in part['message']:
+                    continue
+                content = part['message']['content']
+                if not content:
+                    continue
+                if first_token_at is None:
+                    first_token_at = time.time()
+                chunk_count += 1
+                yield json.dumps({'token': content}, ensure_ascii=False) + "\n"
+            yield json.dumps({'done': True}) + "\n"
+            ttft = (first_token_at - started) if first_token_at else 0
+            print_log("✅", f"串流完成: {chunk_count} 個片段, 首字 {ttft:.2f}s, 總計 {time.time() - started:.2f}s", "green")
+        except GeneratorExit:
+            print_log("🔌", f"用戶端已中斷串流 ({chunk_count} 個片段後)", "yellow")
+            raise
+        except Exception as e:
+            print_log("❌", f"Stream error: {str(e)}", "red")
+            yield json.dumps({'error': str(e)}, ensure_ascii=False) + "\n"
+
+    return Response(stream_with_context(generate()), mimetype='application/x-ndjson',
+                    headers={'Cache-Control': 'no-cache', 'X-Accel-Buffering': 'no'})
+
+
 if __name__ == '__main__':
     print()
     print("=" * 70)
@@ -528,6 +594,7 @@ if __name__ == '__main__':
     print("     - POST /generate-personal-recommendations")
     print("     - POST /generate-related-recommendations")
     print("     - POST /chat (AI Chatbot)")
+    print("     - POST /chat/stream (AI Chatbot, NDJSON token stream)")
     print()
     print("=" * 70)
     print()
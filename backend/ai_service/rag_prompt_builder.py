@@ -107,13 +107,15 @@ def format_target_book(book: Dict[str, Any]) -> str:
     )
 
 
-def format_available_books(books: List[Dict[str, Any]], limit: int = 50) -> str:
+def format_available_books(books: List[Dict[str, Any]], limit: int = 50,
+                           total: Optional[int] = None) -> str:
     """
     格式化可借閱書籍列表
     
     Args:
-        books: 書籍列表
+        books: 書籍列表（已依問題相關程度排序）
         limit: 最多顯示幾本書
+        total: 可借閱書籍總數（後端因長度上限只傳部分書籍時提供）
         
     Returns:
         格式化的書籍列表字串
@@ -123,8 +125,9 @@ def format_available_books(books: List[Dict[str, Any]], limit: int = 50) -> str:
     
     result = []
     display_books = books[:limit]
+    total = max(total or 0, len(books))
     
-    result.append(f"可借閱書籍（共 {len(books)} 本，顯示前 {len(display_books)} 本）：")
+    result.append(f"可借閱書籍（共 {total} 本，顯示最相關的 {len(display_books)} 本）：")
     
     for idx, book in enumerate(display_books, 1):
         book_id = book.get("id", "N/A")
@@ -144,8 +147,8 @@ def format_available_books(books: List[Dict[str, Any]], limit: int = 50) -> str:
         
         result.append(book_info)
     
-    if len(books) > limit:
-        result.append(f"... 還有 {len(books) - limit} 本書籍未顯示，請告知是否需要更多清單")
+    if total > len(display_books):
+        result.append(f"... 還有 {total - len(display_books)} 本書籍未顯示，請告知是否需要更多清單")
     
     return "\n".join(result)
 
@@ -274,7 +277,8 @@ def build_rag_system_prompt(context: Dict[str, Any]) -> str:
     # 5. 可借閱書籍
     available_books = context.get("availableBooks")
     if available_books:
-        sections.append(format_available_books(available_books))
+        sections.append(format_available_books(
+            available_books, total=context.get("availableBooksTotal")))
         sections.append("")
 
     # 6. 圖書館規則
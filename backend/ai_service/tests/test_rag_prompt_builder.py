@@ -160,6 +160,12 @@ def test_format_available_books():
     print("✅ Test 5 passed: 正常格式化書籍列表")
     print(result)
 
+    # 後端只傳部分書籍時，以總數顯示
+    result = format_available_books(books, total=500)
+    assert "共 500 本" in result
+    assert "還有 498 本" in result
+    print("✅ Test 5b passed: 顯示完整書籍總數")
+
 
 def test_format_library_rules():
     """測試 format_library_rules()"""
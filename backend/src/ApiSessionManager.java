@@ -1,6 +1,8 @@
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * API Session Manager - Stage 4
@@ -15,6 +17,33 @@ public class ApiSessionManager {
     // Session timeout: 30 minutes (in milliseconds)
     private static final long SESSION_TIMEOUT = 30 * 60 * 1000;
 
+    private static final List<SessionListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Notified when a session ends, by logout or expiry
+     * (e.g. to close the WebSocket channels opened with it)
+     */
+    public interface SessionListener {
+        void onSessionEnded(String sessionId, SessionData session);
+
+        /**
+         * Notify every listener; a failing listener never fails the logout
+         */
+        static void fireAll(Iterable<SessionListener> listeners, String sessionId, SessionData session) {
+            for (SessionListener listener : listeners) {
+                try {
+                    listener.onSessionEnded(sessionId, session);
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️  Session listener failed (" + session.username + "): " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public static void addSessionListener(SessionListener listener) {
+        listeners.add(listener);
+    }
+
     /**
      * SessionData - Stores user session information
      */
@@ -71,8 +100,10 @@ public class ApiSessionManager {
 
         // Check if expired
         if (session.isExpired()) {
-            sessions.remove(sessionId);
-            System.out.println("⏰ Session expired for " + session.username);
+            if (sessions.remove(sessionId, session)) {
+                System.out.println("⏰ Session expired for " + session.username);
+                SessionListener.fireAll(listeners, sessionId, session);
+            }
             return null;
         }
 
@@ -92,6 +123,7 @@ public class ApiSessionManager {
         SessionData session = sessions.remove(sessionId);
         if (session != null) {
             System.out.println("✅ Deleted session for " + session.username);
+            SessionListener.fireAll(listeners, sessionId, session);
             return true;
         }
         return false;
@@ -102,10 +134,27 @@ public class ApiSessionManager {
      */
     public static int getActiveSessionCount() {
         // Clean up expired sessions first
-        sessions.entrySet().removeIf(entry -> entry.getValue().isExpired());
+        cleanupExpiredSessions();
         return sessions.size();
     }
 
+    /**
+     * Remove expired sessions (scheduled job; otherwise they only go when next validated)
+     * @return Number of sessions removed
+     */
+    public static int cleanupExpiredSessions() {
+        int removed = 0;
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet()) {
+            SessionData session = entry.getValue();
+            // remove(key, value): a concurrent validateSession may already have expired it
+            if (session.isExpired() && sessions.remove(entry.getKey(), session)) {
+                removed++;
+                SessionListener.fireAll(listeners, entry.getKey(), session);
+            }
+        }
+        return removed;
+    }
+
     /**
      * Clear all sessions (for testing)
      */
@@ -0,0 +1,368 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Book Catalog Cache
+ * Read-through, in-memory copy of the books table (with statistics)
+ *
+ * - Rows live in a map sorted by id; a write replaces one row in O(log n),
+ *   without copying or re-sorting the catalog
+ * - Readers never lock; a read running during a write sees each row either
+ *   before or after it, and the counts/version come from one stamp
+ * - BookInfo is mutable, so stored rows are private copies and every read hands out copies
+ *
+ * BookDatabaseRepository applies its own writes directly; borrow/rating/review
+ * writes arrive through BookChangeListener and reload that one row, outside the lock.
+ */
+public class BookCatalogCache implements BookChangeListener {
+
+    // Optimistic row reloads before falling back to loading under the lock
+    private static final int REFRESH_ATTEMPTS = 3;
+
+    private final Supplier<List<BookInfo>> catalogLoader;
+    private final Function<String, BookInfo> rowLoader;
+
+    // null = not loaded yet (or invalidated)
+    private volatile Catalog catalog;
+    private final Object writeLock = new Object();
+
+    // Metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong rowRefreshes = new AtomicLong();
+    private final AtomicLong refreshRetries = new AtomicLong();
+
+    // Bumped for every write, so derived views can tell when to rebuild
+    private final AtomicLong versions = new AtomicLong();
+
+    /**
+     * @param catalogLoader Loads every book with statistics (null on failure)
+     * @param rowLoader Loads one book with statistics (null if missing or on failure)
+     */
+    public BookCatalogCache(Supplier<List<BookInfo>> catalogLoader, Function<String, BookInfo> rowLoader) {
+        this.catalogLoader = catalogLoader;
+        this.rowLoader = rowLoader;
+    }
+
+    // ===== Reads =====
+
+    /**
+     * All books ordered by id (copies)
+     */
+    public List<BookInfo> getAllBooks() {
+        Catalog current = current();
+        if (current == null) {
+            return new ArrayList<>();
+        }
+        List<BookInfo> books = new ArrayList<>(current.stamp.size);
+        for (BookInfo book : current.rows.values()) {
+            books.add(copy(book));
+        }
+        return books;
+    }
+
+    /**
+     * Book by id (copy), or null
+     */
+    public BookInfo findById(String id) {
+        Catalog current = current();
+        if (current == null || id == null) {
+            return null;
+        }
+        BookInfo book = current.rows.get(id);
+        return book != null ? copy(book) : null;
+    }
+
+    /**
+     * Books matching a predicate (copies), without copying the rest of the catalog
+     */
+    public List<BookInfo> filter(Predicate<BookInfo> predicate) {
+        Catalog current = current();
+        List<BookInfo> books = new ArrayList<>();
+        if (current == null) {
+            return books;
+        }
+        for (BookInfo book : current.rows.values()) {
+            if (predicate.test(book)) {
+                books.add(copy(book));
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Whether the catalog is (or can now be) served from memory
+     */
+    public boolean isReady() {
+        return current() != null;
+    }
+
+    /**
+     * Total and available counts, or null if the catalog could not be loaded
+     */
+    public int[] getCounts() {
+        Catalog current = current();
+        if (current == null) {
+            return null;
+        }
+        Stamp stamp = current.stamp;
+        return new int[] { stamp.size, stamp.available };
+    }
+
+    /**
+     * Version of the catalog (changes on every write), or -1 if the catalog can't be loaded
+     * Read it before the rows: a write replaces its row first and bumps the version after
+     */
+    public long getVersion() {
+        Catalog current = current();
+        return current != null ? current.stamp.version : -1;
+    }
+
+    /**
+     * Current catalog, loading it on first access
+     */
+    private Catalog current() {
+        Catalog current = catalog;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+        misses.incrementAndGet();
+        synchronized (writeLock) {
+            if (catalog == null) {
+                List<BookInfo> loaded = catalogLoader.get();
+                if (loaded == null) {
+                    // Don't cache failures; next read retries
+                    return null;
+                }
+                loads.incrementAndGet();
+                catalog = new Catalog(loaded, versions.incrementAndGet());
+            }
+            return catalog;
+        }
+    }
+
+    // ===== Writes (called after the database write succeeded) =====
+
+    /**
+     * Insert or replace a book
+     */
+    public void put(BookInfo book) {
+        synchronized (writeLock) {
+            if (catalog == null) {
+                return;  // Not loaded yet; the first read picks it up
+            }
+            catalog.replace(book.getId(), copy(book), versions.incrementAndGet());
+        }
+    }
+
+    /**
+     * Remove a book
+     */
+    public void remove(String id) {
+        synchronized (writeLock) {
+            if (catalog == null || !catalog.rows.containsKey(id)) {
+                return;
+            }
+            catalog.replace(id, null, versions.incrementAndGet());
+        }
+    }
+
+    /**
+     * Flip availability, keeping statistics
+     */
+    public void setAvailability(String id, boolean available) {
+        synchronized (writeLock) {
+            BookInfo existing = catalog != null ? catalog.rows.get(id) : null;
+            if (existing == null) {
+                return;
+            }
+            BookInfo updated = copy(existing);
+            if (available) {
+                updated.markAsReturned();
+            } else {
+                updated.markAsBorrowed();
+            }
+            catalog.replace(id, updated, versions.incrementAndGet());
+        }
+    }
+
+    /**
+     * Replace descriptive fields, keeping availability and statistics
+     */
+    public void updateInfo(String id, String title, String author, String publisher, String description) {
+        synchronized (writeLock) {
+            BookInfo existing = catalog != null ? catalog.rows.get(id) : null;
+            if (existing == null) {
+                return;
+            }
+            BookInfo updated = new BookInfo(id, title, author, publisher, description,
+                existing.borrowCount, existing.averageRating, existing.reviewCount);
+            if (!existing.isAvailable()) {
+                updated.markAsBorrowed();
+            }
+            catalog.replace(id, updated, versions.incrementAndGet());
+        }
+    }
+
+    /**
+     * Reload one row from the database (statistics changed elsewhere)
+     * The row is loaded outside the lock and applied only if nobody replaced it meanwhile;
+     * otherwise it is loaded again, so a slow load never overwrites a newer row.
+     */
+    public void refresh(String id) {
+        if (catalog == null) {
+            return;
+        }
+        rowRefreshes.incrementAndGet();
+        for (int attempt = 1; attempt < REFRESH_ATTEMPTS; attempt++) {
+            Catalog current = catalog;
+            if (current == null) {
+                return;
+            }
+            BookInfo before = current.rows.get(id);
+            BookInfo reloaded = rowLoader.apply(id);
+            synchronized (writeLock) {
+                if (catalog == current && current.rows.get(id) == before) {
+                    applyRefresh(id, reloaded);
+                    return;
+                }
+            }
+            refreshRetries.incrementAndGet();
+        }
+        // Busy row: load under the lock so this attempt can't lose
+        synchronized (writeLock) {
+            if (catalog != null) {
+                applyRefresh(id, rowLoader.apply(id));
+            }
+        }
+    }
+
+    // Caller holds writeLock
+    private void applyRefresh(String id, BookInfo reloaded) {
+        if (reloaded != null) {
+            catalog.replace(id, copy(reloaded), versions.incrementAndGet());
+        } else {
+            // Row gone or load failed: drop everything rather than serve a stale row
+            catalog = null;
+        }
+    }
+
+    /**
+     * Drop the catalog; the next read reloads it
+     */
+    public void invalidate() {
+        synchronized (writeLock) {
+            catalog = null;
+        }
+    }
+
+    @Override
+    public void onBookChanged(ChangeType type, String bookId, String userId) {
+        switch (type) {
+            case BORROWED:
+            case RETURNED:
+            case RATED:
+            case REVIEWED:
+                refresh(bookId);
+                break;
+            default:
+                // Catalog writes are applied by BookDatabaseRepository itself
+                break;
+        }
+    }
+
+    // ===== Metrics =====
+
+    public CacheStats getStats() {
+        Catalog current = catalog;
+        CacheStats stats = new CacheStats();
+        stats.loaded = current != null;
+        stats.size = current != null ? current.stamp.size : 0;
+        stats.hits = hits.get();
+        stats.misses = misses.get();
+        stats.loads = loads.get();
+        stats.rowRefreshes = rowRefreshes.get();
+        stats.refreshRetries = refreshRetries.get();
+        long total = stats.hits + stats.misses;
+        stats.hitRate = total > 0 ? (double) stats.hits / total : 0.0;
+        return stats;
+    }
+
+    public static class CacheStats {
+        public boolean loaded;
+        public int size;
+        public long hits;
+        public long misses;
+        public long loads;
+        public long rowRefreshes;
+        public long refreshRetries;
+        public double hitRate;
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Rows ordered by id, plus counts and version published together
+     * Rows are never mutated once stored; a write puts a new row object in place
+     */
+    private static class Catalog {
+        final ConcurrentSkipListMap<String, BookInfo> rows = new ConcurrentSkipListMap<>();
+        volatile Stamp stamp;
+
+        Catalog(Collection<BookInfo> loaded, long version) {
+            int available = 0;
+            for (BookInfo book : loaded) {
+                rows.put(book.getId(), book);
+            }
+            for (BookInfo book : rows.values()) {
+                if (book.isAvailable()) {
+                    available++;
+                }
+            }
+            this.stamp = new Stamp(rows.size(), available, version);
+        }
+
+        /**
+         * Replace (or with null, remove) one row, then publish the new stamp
+         * Caller holds the cache's writeLock
+         */
+        void replace(String id, BookInfo row, long version) {
+            BookInfo old = row != null ? rows.put(id, row) : rows.remove(id);
+            int size = stamp.size + (old == null ? 1 : 0) - (row == null ? 1 : 0);
+            int available = stamp.available
+                + (row != null && row.isAvailable() ? 1 : 0)
+                - (old != null && old.isAvailable() ? 1 : 0);
+            stamp = new Stamp(size, available, version);
+        }
+    }
+
+    /**
+     * Total and available counts with the version they belong to
+     */
+    private static class Stamp {
+        final int size;
+        final int available;
+        final long version;
+
+        Stamp(int size, int available, long version) {
+            this.size = size;
+            this.available = available;
+            this.version = version;
+        }
+    }
+
+    private static BookInfo copy(BookInfo book) {
+        BookInfo copy = new BookInfo(book.getId(), book.getTitle(), book.getAuthor(), book.getPublisher(),
+            book.getDescription(), book.borrowCount, book.averageRating, book.reviewCount);
+        if (!book.isAvailable()) {
+            copy.markAsBorrowed();
+        }
+        return copy;
+    }
+}
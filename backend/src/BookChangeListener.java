@@ -0,0 +1,41 @@
+/**
+ * Book Change Listener
+ * Notified after a repository write that affects a book's catalog row or statistics
+ *
+ * Fired by BookDatabaseRepository (catalog rows) and by the borrow history,
+ * rating and review repositories (per-book statistics), after the write succeeded.
+ */
+public interface BookChangeListener {
+
+    enum ChangeType {
+        ADDED,          // New book inserted
+        UPDATED,        // Title/author/publisher/description changed
+        AVAILABILITY,   // is_available flipped
+        REMOVED,        // Book deleted
+        BORROWED,       // Borrow record created
+        RETURNED,       // Borrow record closed
+        OVERDUE,        // Active loan passed its due date
+        RATED,          // Rating saved or deleted
+        REVIEWED        // Review added or deleted
+    }
+
+    /**
+     * @param type What changed
+     * @param bookId Book affected
+     * @param userId User who caused the change (null for catalog edits)
+     */
+    void onBookChanged(ChangeType type, String bookId, String userId);
+
+    /**
+     * Notify every listener; a failing listener never fails the write that triggered it
+     */
+    static void fireAll(Iterable<BookChangeListener> listeners, ChangeType type, String bookId, String userId) {
+        for (BookChangeListener listener : listeners) {
+            try {
+                listener.onBookChanged(type, bookId, userId);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Book change listener failed (" + type + " " + bookId + "): " + e.getMessage());
+            }
+        }
+    }
+}
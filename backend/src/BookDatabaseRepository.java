@@ -1,6 +1,12 @@
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Book Database Repository
@@ -11,8 +17,10 @@ import java.util.List;
  */
 public class BookDatabaseRepository {
 
-    private final String dbFile;
-    private final String dbUrl;
+    private final DatabaseConnectionPool pool;
+    private final BookCatalogCache catalogCache;
+    private final BookSearchIndex searchIndex;
+    private final List<BookChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
     static {
         try {
@@ -35,15 +43,18 @@ public class BookDatabaseRepository {
      * Constructor with custom database path (for testing)
      */
     public BookDatabaseRepository(String dbPath) {
-        this.dbFile = dbPath;
-        this.dbUrl = "jdbc:sqlite:" + dbPath;
+        this.pool = DatabaseConnectionPool.forPath(dbPath);
+        this.catalogCache = new BookCatalogCache(this::loadAllBooks, this::loadBookWithStats);
+        this.searchIndex = new BookSearchIndex(
+            () -> catalogCache.isReady() ? catalogCache.getAllBooks() : null, catalogCache::findById);
+        changeListeners.add(searchIndex);
     }
 
     /**
      * Initialize database and create tables if not exist
      */
     public void initialize() {
-        try (Connection conn = getConnection()) {
+        try (Connection conn = pool.write()) {
             // Create books table
             String createTableSQL = """
                 CREATE TABLE IF NOT EXISTS books (
@@ -84,6 +95,8 @@ public class BookDatabaseRepository {
                 insertDefaultBooks();
             }
 
+            catalogCache.invalidate();
+            searchIndex.invalidate();
             System.out.println("✅ Database initialized successfully");
         } catch (SQLException e) {
             System.err.println("Error initializing database: " + e.getMessage());
@@ -94,15 +107,42 @@ public class BookDatabaseRepository {
     /**
      * Get database connection
      * Made public for Phase 6 - needed by BorrowHistoryRepository
+     * Returns the pooled writer connection; close() hands it back to the pool
      */
     public Connection getConnection() throws SQLException {
-        // Create data directory if not exists
-        java.io.File dbFileObj = new java.io.File(dbFile);
-        java.io.File parentDir = dbFileObj.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
-        }
-        return DriverManager.getConnection(dbUrl);
+        return pool.write();
+    }
+
+    /**
+     * Get the shared connection pool for this database file
+     */
+    public DatabaseConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Get the in-memory catalog cache (for metrics and change wiring)
+     */
+    public BookCatalogCache getCatalogCache() {
+        return catalogCache;
+    }
+
+    /**
+     * Full-text search index over the catalog (kept in sync with catalog writes)
+     */
+    public BookSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Register a listener for catalog writes (add/update/availability/delete)
+     */
+    public void addBookChangeListener(BookChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    private void fireBookChanged(BookChangeListener.ChangeType type, String bookId) {
+        BookChangeListener.fireAll(changeListeners, type, bookId, null);
     }
 
     /**
@@ -110,7 +150,7 @@ public class BookDatabaseRepository {
      */
     private boolean isEmpty() {
         String sql = "SELECT COUNT(*) FROM books";
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -129,7 +169,7 @@ public class BookDatabaseRepository {
     private void insertDefaultBooks() {
         String sql = "INSERT INTO books (id, title, author, publisher, description, is_available) VALUES (?, ?, ?, ?, ?, 1)";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // Default books - 20 books with descriptions
@@ -202,8 +242,17 @@ public class BookDatabaseRepository {
 
     /**
      * Get all books
+     * Served from the catalog cache; the database is only read on first access
      */
     public List<BookInfo> getAllBooks() {
+        return catalogCache.getAllBooks();
+    }
+
+    /**
+     * Load all books with statistics from the database
+     * @return Books, or null if the query failed
+     */
+    private List<BookInfo> loadAllBooks() {
         List<BookInfo> books = new ArrayList<>();
         // Enhanced query with statistics (Phase 12 Enhancement)
         String sql = """
@@ -224,7 +273,7 @@ public class BookDatabaseRepository {
             GROUP BY b.id, b.title, b.author, b.publisher, b.description, b.is_available
             """;
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -250,19 +299,75 @@ public class BookDatabaseRepository {
             }
         } catch (SQLException e) {
             System.err.println("Error getting all books: " + e.getMessage());
-            e.printStackTrace();
+            return null;
         }
 
         return books;
     }
 
+    /**
+     * Load one book with statistics from the database
+     * @return Book, or null if not found or the query failed
+     */
+    private BookInfo loadBookWithStats(String id) {
+        String sql = """
+            SELECT
+                b.id,
+                b.title,
+                b.author,
+                b.publisher,
+                b.description,
+                b.is_available,
+                (SELECT COUNT(*) FROM borrow_history WHERE book_id = b.id) as borrow_count,
+                (SELECT COALESCE(AVG(rating), 0) FROM book_ratings WHERE book_id = b.id) as average_rating,
+                (SELECT COUNT(*) FROM book_reviews WHERE book_id = b.id) as review_count
+            FROM books b
+            WHERE b.id = ?
+            """;
+
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, id);
+            ResultSet rs = pstmt.executeQuery();
+
+            if (rs.next()) {
+                BookInfo book = new BookInfo(
+                    rs.getString("id"),
+                    rs.getString("title"),
+                    rs.getString("author"),
+                    rs.getString("publisher"),
+                    rs.getString("description"),
+                    rs.getInt("borrow_count"),
+                    rs.getDouble("average_rating"),
+                    rs.getInt("review_count")
+                );
+
+                if (rs.getInt("is_available") == 0) {
+                    book.markAsBorrowed();
+                }
+
+                return book;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error loading book with stats: " + e.getMessage());
+        }
+
+        return null;
+    }
+
     /**
      * Find book by ID
+     * Served from the catalog cache when it is available
      */
     public BookInfo findById(String id) {
+        if (catalogCache.isReady()) {
+            return catalogCache.findById(id);
+        }
+
         String sql = "SELECT id, title, author, publisher, description, is_available FROM books WHERE id = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, id);
@@ -290,13 +395,77 @@ public class BookDatabaseRepository {
         return null;
     }
 
+    /**
+     * Find many books by ID in one pass
+     * Served from the catalog cache when available, otherwise one IN (...) query per 500 ids
+     * @return Map of id to book, in request order; unknown ids are absent
+     */
+    public Map<String, BookInfo> findByIds(Collection<String> ids) {
+        Map<String, BookInfo> found = new LinkedHashMap<>();
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinctIds.isEmpty()) {
+            return found;
+        }
+
+        if (catalogCache.isReady()) {
+            for (String id : distinctIds) {
+                BookInfo book = catalogCache.findById(id);
+                if (book != null) {
+                    found.put(id, book);
+                }
+            }
+            return found;
+        }
+
+        Map<String, BookInfo> loaded = new LinkedHashMap<>();
+        for (int start = 0; start < distinctIds.size(); start += 500) {
+            List<String> chunk = distinctIds.subList(start, Math.min(start + 500, distinctIds.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            String sql = "SELECT id, title, author, publisher, description, is_available FROM books WHERE id IN (" + placeholders + ")";
+
+            try (Connection conn = pool.read();
+                 PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                for (int i = 0; i < chunk.size(); i++) {
+                    pstmt.setString(i + 1, chunk.get(i));
+                }
+                ResultSet rs = pstmt.executeQuery();
+
+                while (rs.next()) {
+                    BookInfo book = new BookInfo(
+                        rs.getString("id"),
+                        rs.getString("title"),
+                        rs.getString("author"),
+                        rs.getString("publisher"),
+                        rs.getString("description")
+                    );
+
+                    if (rs.getInt("is_available") == 0) {
+                        book.markAsBorrowed();
+                    }
+
+                    loaded.put(book.getId(), book);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error finding books by IDs: " + e.getMessage());
+            }
+        }
+
+        for (String id : distinctIds) {
+            if (loaded.containsKey(id)) {
+                found.put(id, loaded.get(id));
+            }
+        }
+        return found;
+    }
+
     /**
      * Find book by title
      */
     public BookInfo findByTitle(String title) {
         String sql = "SELECT id, title, author, publisher, description, is_available FROM books WHERE title = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, title);
@@ -335,7 +504,7 @@ public class BookDatabaseRepository {
 
         String sql = "INSERT INTO books (id, title, author, publisher, description, is_available) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, book.getId());
@@ -346,11 +515,14 @@ public class BookDatabaseRepository {
             pstmt.setInt(6, book.isAvailable() ? 1 : 0);
 
             pstmt.executeUpdate();
-            return true;
+            catalogCache.put(book);
         } catch (SQLException e) {
             System.err.println("Error adding book: " + e.getMessage());
             return false;
         }
+
+        fireBookChanged(BookChangeListener.ChangeType.ADDED, book.getId());
+        return true;
     }
 
     /**
@@ -359,35 +531,85 @@ public class BookDatabaseRepository {
     public boolean removeBookById(String id) {
         String sql = "DELETE FROM books WHERE id = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, id);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            catalogCache.remove(id);
         } catch (SQLException e) {
             System.err.println("Error removing book: " + e.getMessage());
             return false;
         }
+
+        fireBookChanged(BookChangeListener.ChangeType.REMOVED, id);
+        return true;
     }
 
     /**
      * Update book availability
+     * @return false if the book doesn't exist or the update failed
      */
-    public void updateBook(BookInfo book) {
+    public boolean updateBook(BookInfo book) {
         String sql = "UPDATE books SET is_available = ? WHERE id = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, book.isAvailable() ? 1 : 0);
             pstmt.setString(2, book.getId());
-            pstmt.executeUpdate();
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            catalogCache.setAvailability(book.getId(), book.isAvailable());
         } catch (SQLException e) {
             System.err.println("Error updating book: " + e.getMessage());
+            return false;
+        }
+
+        fireBookChanged(BookChangeListener.ChangeType.AVAILABILITY, book.getId());
+        return true;
+    }
+
+    /**
+     * Set availability only if it currently has the expected value
+     * (borrow: available -> borrowed, return: borrowed -> available)
+     * Runs on the caller's transaction; after commit call {@link #cacheCommittedAvailability}
+     * (still holding the writer) and then {@link #availabilityCommitted}.
+     *
+     * @return false if the book doesn't exist or its availability was already changed
+     */
+    public boolean compareAndSetAvailable(Connection conn, String id, boolean expected, boolean available)
+            throws SQLException {
+        String sql = "UPDATE books SET is_available = ? WHERE id = ? AND is_available = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, available ? 1 : 0);
+            pstmt.setString(2, id);
+            pstmt.setInt(3, expected ? 1 : 0);
+            return pstmt.executeUpdate() > 0;
         }
     }
 
+    /**
+     * Apply a committed {@link #compareAndSetAvailable} to the catalog cache
+     * Call before releasing the writer the change committed on: concurrent borrows and
+     * returns of a book then reach the cache in commit order, not in whatever order
+     * their threads get there.
+     */
+    public void cacheCommittedAvailability(String id, boolean available) {
+        catalogCache.setAvailability(id, available);
+    }
+
+    /**
+     * Notify listeners of a committed availability change (after the writer is released)
+     */
+    public void availabilityCommitted(String id) {
+        fireBookChanged(BookChangeListener.ChangeType.AVAILABILITY, id);
+    }
+
     /**
      * Update book information (title, author, publisher, description)
      * Does NOT update availability status - use updateBook() for that
@@ -395,7 +617,7 @@ public class BookDatabaseRepository {
     public boolean updateBookInfo(String id, String title, String author, String publisher, String description) {
         String sql = "UPDATE books SET title = ?, author = ?, publisher = ?, description = ? WHERE id = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, title);
@@ -404,12 +626,17 @@ public class BookDatabaseRepository {
             pstmt.setString(4, description);
             pstmt.setString(5, id);
 
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            catalogCache.updateInfo(id, title, author, publisher, description);
         } catch (SQLException e) {
             System.err.println("Error updating book info: " + e.getMessage());
             return false;
         }
+
+        fireBookChanged(BookChangeListener.ChangeType.UPDATED, id);
+        return true;
     }
 
     /**
@@ -431,26 +658,35 @@ public class BookDatabaseRepository {
 
         String sql = "DELETE FROM books WHERE id = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, id);
-            int rowsAffected = pstmt.executeUpdate();
-            return rowsAffected > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            catalogCache.remove(id);
         } catch (SQLException e) {
             System.err.println("Error deleting book: " + e.getMessage());
             return false;
         }
+
+        fireBookChanged(BookChangeListener.ChangeType.REMOVED, id);
+        return true;
     }
 
     /**
      * Get all currently borrowed books
      */
     public List<BookInfo> getBorrowedBooks() {
+        if (catalogCache.isReady()) {
+            return catalogCache.filter(book -> !book.isAvailable());
+        }
+
         List<BookInfo> books = new ArrayList<>();
         String sql = "SELECT id, title, author, publisher, description, is_available FROM books WHERE is_available = 0";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -478,6 +714,12 @@ public class BookDatabaseRepository {
      * Get statistics
      */
     public String getStatistics() {
+        int[] counts = catalogCache.getCounts();
+        if (counts != null) {
+            return String.format("Total: %d books | Available: %d | Borrowed: %d",
+                               counts[0], counts[1], counts[0] - counts[1]);
+        }
+
         String sql = """
             SELECT
                 COUNT(*) as total,
@@ -486,7 +728,7 @@ public class BookDatabaseRepository {
             FROM books
             """;
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -545,7 +787,7 @@ public class BookDatabaseRepository {
 
         ArrayList<BookInfo> topBooks = new ArrayList<>();
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, limit);
@@ -604,15 +846,21 @@ public class BookDatabaseRepository {
     /**
      * Search books by title (fuzzy search)
      * Phase 3 - RAG data retrieval
+     * Served by the full-text index (all text fields, ranked); LIKE on title if the index is unavailable
      * @param keyword Title keyword to search for
      * @return List of books matching the keyword (max 20 results)
      */
     public List<BookInfo> searchByTitle(String keyword) {
+        BookSearchIndex.SearchResult result = searchIndex.search(keyword, 0, 20);
+        if (result != null) {
+            return new ArrayList<>(findByIds(result.bookIds).values());
+        }
+
         List<BookInfo> books = new ArrayList<>();
         String sql = "SELECT id, title, author, publisher, description, is_available " +
                     "FROM books WHERE title LIKE ? ORDER BY title LIMIT 20";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, "%" + keyword + "%");
@@ -647,6 +895,11 @@ public class BookDatabaseRepository {
      * @return LibraryStats object with total, available, and borrowed counts
      */
     public LibraryStats getStats() {
+        int[] counts = catalogCache.getCounts();
+        if (counts != null) {
+            return new LibraryStats(counts[0], counts[1], counts[0] - counts[1]);
+        }
+
         String sql = """
             SELECT
                 COUNT(*) as total,
@@ -655,7 +908,7 @@ public class BookDatabaseRepository {
             FROM books
             """;
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -0,0 +1,535 @@
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Book Leaderboard
+ * Live top-K rankings of books, updated on each borrow/rating/review write
+ *
+ * Rankings (Metric):
+ * - BORROWS : borrow count, then average rating
+ * - RATING  : Bayesian average (PRIOR_WEIGHT ratings at the global mean), then rating count
+ * - REVIEWS : review count, then borrow count
+ *
+ * All-time rankings live in sorted indexes (TreeSet + id -> key map), so a write
+ * costs O(log n) and a top-K read walks K entries. Windowed rankings (last N days,
+ * up to MAX_WINDOW_DAYS) come from per-book daily buckets through a bounded heap,
+ * memoized until the next write or the next day.
+ */
+public class BookLeaderboard implements BookChangeListener {
+
+    public enum Metric { BORROWS, RATING, REVIEWS }
+
+    public static final int MAX_WINDOW_DAYS = 30;
+    private static final int PRIOR_WEIGHT = 3;
+    // Re-rank the rating index once the global mean has moved this far from its prior
+    private static final double PRIOR_DRIFT = 0.05;
+
+    private final DatabaseConnectionPool pool;
+    private final BookDatabaseRepository bookRepository;
+
+    private final Map<String, BookStats> books = new HashMap<>();
+    private final RankIndex borrowIndex = new RankIndex();
+    private final RankIndex ratingIndex = new RankIndex();
+    private final RankIndex reviewIndex = new RankIndex();
+
+    private long ratingSum = 0;
+    private long ratingCount = 0;
+    private double ratingPrior = 0.0;
+
+    // Windowed results: "METRIC/days/limit" -> ranked ids, valid for one version and one day
+    private final Map<String, List<String>> windowCache = new HashMap<>();
+    private long version = 0;
+    private long windowCacheVersion = -1;
+    private long windowCacheDay = -1;
+
+    public BookLeaderboard(DatabaseConnectionPool pool, BookDatabaseRepository bookRepository) {
+        this.pool = pool;
+        this.bookRepository = bookRepository;
+    }
+
+    /**
+     * Seed every book's counters from the database (startup)
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<String, BookStats> loaded = new HashMap<>();
+        for (BookInfo book : bookRepository.getAllBooks()) {
+            loaded.put(book.getId(), new BookStats());
+        }
+
+        try (Connection conn = pool.read();
+             Statement stmt = conn.createStatement()) {
+
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT book_id, substr(borrow_date, 1, 10) AS day, COUNT(*) AS count " +
+                    "FROM borrow_history GROUP BY book_id, day")) {
+                while (rs.next()) {
+                    BookStats stats = loaded.get(rs.getString("book_id"));
+                    if (stats != null) {
+                        stats.addBorrows(epochDay(rs.getString("day")), rs.getInt("count"));
+                    }
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT book_id, substr(created_at, 1, 10) AS day, COUNT(*) AS count, SUM(rating) AS total " +
+                    "FROM book_ratings GROUP BY book_id, day")) {
+                while (rs.next()) {
+                    BookStats stats = loaded.get(rs.getString("book_id"));
+                    if (stats != null) {
+                        stats.addRatings(epochDay(rs.getString("day")), rs.getInt("count"), rs.getLong("total"));
+                    }
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT book_id, substr(created_at, 1, 10) AS day, COUNT(*) AS count " +
+                    "FROM book_reviews GROUP BY book_id, day")) {
+                while (rs.next()) {
+                    BookStats stats = loaded.get(rs.getString("book_id"));
+                    if (stats != null) {
+                        stats.addReviews(epochDay(rs.getString("day")), rs.getInt("count"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to rebuild book leaderboard: " + e.getMessage());
+            return;
+        }
+
+        books.clear();
+        books.putAll(loaded);
+        ratingSum = 0;
+        ratingCount = 0;
+        for (BookStats stats : books.values()) {
+            ratingSum += stats.ratingSum;
+            ratingCount += stats.ratingCount;
+        }
+        reindexAll();
+        version++;
+
+        System.out.println("✅ Book leaderboard rebuilt (" + books.size() + " books) in "
+            + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // ===== Reads =====
+
+    /**
+     * All-time top books
+     */
+    public List<String> topBookIds(Metric metric, int limit) {
+        return topBookIds(metric, limit, 0);
+    }
+
+    /**
+     * Top books, optionally over the last N days (0 = all time)
+     * RATING only ranks books with at least one rating in the range.
+     * @return Book ids, best first
+     */
+    public synchronized List<String> topBookIds(Metric metric, int limit, int days) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        if (days <= 0) {
+            return indexFor(metric).top(limit);
+        }
+
+        long today = LocalDate.now().toEpochDay();
+        if (windowCacheVersion != version || windowCacheDay != today) {
+            windowCache.clear();
+            windowCacheVersion = version;
+            windowCacheDay = today;
+        }
+        int window = Math.min(days, MAX_WINDOW_DAYS);
+        String key = metric + "/" + window + "/" + limit;
+        List<String> ranked = windowCache.get(key);
+        if (ranked == null) {
+            if (windowCache.size() >= 64) {
+                windowCache.clear();  // Many distinct limits; don't let the memo grow unbounded
+            }
+            ranked = rankWindow(metric, today - window + 1, limit);
+            windowCache.put(key, ranked);
+        }
+        return new ArrayList<>(ranked);
+    }
+
+    /**
+     * Bayesian average used for the RATING ranking (0 when unrated)
+     */
+    public synchronized double getBayesianRating(String bookId) {
+        BookStats stats = books.get(bookId);
+        return stats != null && stats.ratingCount > 0
+            ? bayesian(stats.ratingCount, stats.ratingSum, ratingPrior)
+            : 0.0;
+    }
+
+    // ===== Write paths =====
+
+    @Override
+    public synchronized void onBookChanged(ChangeType type, String bookId, String userId) {
+        switch (type) {
+            case ADDED:
+                if (!books.containsKey(bookId)) {
+                    books.put(bookId, new BookStats());
+                    reindex(bookId);
+                }
+                break;
+            case REMOVED:
+                BookStats removed = books.remove(bookId);
+                if (removed != null) {
+                    ratingSum -= removed.ratingSum;
+                    ratingCount -= removed.ratingCount;
+                    borrowIndex.remove(bookId);
+                    ratingIndex.remove(bookId);
+                    reviewIndex.remove(bookId);
+                }
+                break;
+            case BORROWED:
+                BookStats borrowed = books.get(bookId);
+                if (borrowed != null) {
+                    borrowed.addBorrows(LocalDate.now().toEpochDay(), 1);
+                    reindex(bookId);
+                }
+                break;
+            case RATED:
+                reloadRatings(bookId);
+                break;
+            case REVIEWED:
+                reloadReviews(bookId);
+                break;
+            default:
+                return;  // Availability and descriptive edits don't move rankings
+        }
+        version++;
+    }
+
+    /**
+     * Re-read one book's ratings by day (an upsert moves a rating to today)
+     */
+    private void reloadRatings(String bookId) {
+        BookStats stats = books.get(bookId);
+        if (stats == null) {
+            return;
+        }
+        String sql = "SELECT substr(created_at, 1, 10) AS day, COUNT(*) AS count, SUM(rating) AS total " +
+                     "FROM book_ratings WHERE book_id = ? GROUP BY day";
+
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+
+            ratingSum -= stats.ratingSum;
+            ratingCount -= stats.ratingCount;
+            stats.clearRatings();
+            while (rs.next()) {
+                stats.addRatings(epochDay(rs.getString("day")), rs.getInt("count"), rs.getLong("total"));
+            }
+            ratingSum += stats.ratingSum;
+            ratingCount += stats.ratingCount;
+        } catch (SQLException e) {
+            System.err.println("Failed to refresh leaderboard ratings: " + e.getMessage());
+            return;
+        }
+
+        if (Math.abs(currentMean() - ratingPrior) > PRIOR_DRIFT) {
+            reindexRatings();
+        } else {
+            reindex(bookId);
+        }
+    }
+
+    /**
+     * Re-read one book's reviews by day (add and delete both arrive as REVIEWED)
+     */
+    private void reloadReviews(String bookId) {
+        BookStats stats = books.get(bookId);
+        if (stats == null) {
+            return;
+        }
+        String sql = "SELECT substr(created_at, 1, 10) AS day, COUNT(*) AS count " +
+                     "FROM book_reviews WHERE book_id = ? GROUP BY day";
+
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+
+            stats.clearReviews();
+            while (rs.next()) {
+                stats.addReviews(epochDay(rs.getString("day")), rs.getInt("count"));
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to refresh leaderboard reviews: " + e.getMessage());
+            return;
+        }
+        reindex(bookId);
+    }
+
+    // ===== Ranking =====
+
+    private RankIndex indexFor(Metric metric) {
+        switch (metric) {
+            case RATING:
+                return ratingIndex;
+            case REVIEWS:
+                return reviewIndex;
+            default:
+                return borrowIndex;
+        }
+    }
+
+    private void reindex(String bookId) {
+        BookStats stats = books.get(bookId);
+        borrowIndex.put(bookId, stats.borrowCount, stats.averageRating());
+        reviewIndex.put(bookId, stats.reviewCount, stats.borrowCount);
+        if (stats.ratingCount > 0) {
+            ratingIndex.put(bookId, bayesian(stats.ratingCount, stats.ratingSum, ratingPrior), stats.ratingCount);
+        } else {
+            ratingIndex.remove(bookId);
+        }
+    }
+
+    private void reindexAll() {
+        borrowIndex.clear();
+        reviewIndex.clear();
+        ratingPrior = currentMean();
+        ratingIndex.clear();
+        for (String bookId : books.keySet()) {
+            reindex(bookId);
+        }
+    }
+
+    /**
+     * Every Bayesian score depends on the global mean; re-rank with the new prior
+     */
+    private void reindexRatings() {
+        ratingPrior = currentMean();
+        ratingIndex.clear();
+        for (Map.Entry<String, BookStats> entry : books.entrySet()) {
+            BookStats stats = entry.getValue();
+            if (stats.ratingCount > 0) {
+                ratingIndex.put(entry.getKey(), bayesian(stats.ratingCount, stats.ratingSum, ratingPrior), stats.ratingCount);
+            }
+        }
+    }
+
+    /**
+     * Windowed top-K: sum each book's buckets since fromDay, keep the best K in a min-heap
+     */
+    private List<String> rankWindow(Metric metric, long fromDay, int limit) {
+        double mean = 0.0;
+        if (metric == Metric.RATING) {
+            long sum = 0;
+            long count = 0;
+            for (BookStats stats : books.values()) {
+                sum += stats.ratingSumSince(fromDay);
+                count += stats.ratingCountSince(fromDay);
+            }
+            mean = count > 0 ? (double) sum / count : 0.0;
+        }
+
+        PriorityQueue<Ranked> heap = new PriorityQueue<>(RANKED_ORDER.reversed());
+        for (Map.Entry<String, BookStats> entry : books.entrySet()) {
+            BookStats stats = entry.getValue();
+            Ranked ranked;
+            switch (metric) {
+                case RATING:
+                    int count = stats.ratingCountSince(fromDay);
+                    if (count == 0) {
+                        continue;
+                    }
+                    ranked = new Ranked(entry.getKey(), bayesian(count, stats.ratingSumSince(fromDay), mean), count);
+                    break;
+                case REVIEWS:
+                    ranked = new Ranked(entry.getKey(), stats.reviewsSince(fromDay), stats.borrowsSince(fromDay));
+                    break;
+                default:
+                    ranked = new Ranked(entry.getKey(), stats.borrowsSince(fromDay), stats.averageRating());
+                    break;
+            }
+            heap.offer(ranked);
+            if (heap.size() > limit) {
+                heap.poll();  // Drop the current worst
+            }
+        }
+
+        LinkedList<String> ids = new LinkedList<>();
+        while (!heap.isEmpty()) {
+            ids.addFirst(heap.poll().bookId);
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private double currentMean() {
+        return ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+    }
+
+    private static double bayesian(long count, long sum, double prior) {
+        return (PRIOR_WEIGHT * prior + sum) / (PRIOR_WEIGHT + count);
+    }
+
+    private static long epochDay(String day) {
+        try {
+            return LocalDate.parse(day).toEpochDay();
+        } catch (RuntimeException e) {
+            return Long.MIN_VALUE;  // Unparseable date: counts toward all-time only
+        }
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Best first: primary desc, secondary desc, then id
+     */
+    private static final Comparator<Ranked> RANKED_ORDER = Comparator
+        .comparingDouble((Ranked r) -> r.primary).reversed()
+        .thenComparing(Comparator.comparingDouble((Ranked r) -> r.secondary).reversed())
+        .thenComparing(r -> r.bookId);
+
+    private static class Ranked {
+        final String bookId;
+        final double primary;
+        final double secondary;
+
+        Ranked(String bookId, double primary, double secondary) {
+            this.bookId = bookId;
+            this.primary = primary;
+            this.secondary = secondary;
+        }
+    }
+
+    /**
+     * Sorted index with O(log n) updates: the id map finds an entry's current key to remove it
+     */
+    private static class RankIndex {
+        private final TreeSet<Ranked> order = new TreeSet<>(RANKED_ORDER);
+        private final Map<String, Ranked> byId = new HashMap<>();
+
+        void put(String bookId, double primary, double secondary) {
+            remove(bookId);
+            Ranked ranked = new Ranked(bookId, primary, secondary);
+            order.add(ranked);
+            byId.put(bookId, ranked);
+        }
+
+        void remove(String bookId) {
+            Ranked existing = byId.remove(bookId);
+            if (existing != null) {
+                order.remove(existing);
+            }
+        }
+
+        void clear() {
+            order.clear();
+            byId.clear();
+        }
+
+        List<String> top(int limit) {
+            List<String> ids = new ArrayList<>(Math.min(limit, order.size()));
+            for (Ranked ranked : order) {
+                if (ids.size() >= limit) {
+                    break;
+                }
+                ids.add(ranked.bookId);
+            }
+            return ids;
+        }
+    }
+
+    /**
+     * One book's all-time totals plus daily buckets for windowed rankings
+     * (buckets older than MAX_WINDOW_DAYS are dropped as they are written)
+     */
+    private static class BookStats {
+        int borrowCount;
+        int ratingCount;
+        long ratingSum;
+        int reviewCount;
+
+        final TreeMap<Long, Integer> borrowsByDay = new TreeMap<>();
+        final TreeMap<Long, long[]> ratingsByDay = new TreeMap<>();  // {count, sum}
+        final TreeMap<Long, Integer> reviewsByDay = new TreeMap<>();
+
+        void addBorrows(long day, int count) {
+            borrowCount += count;
+            if (inWindow(day)) {
+                borrowsByDay.merge(day, count, Integer::sum);
+                prune(borrowsByDay);
+            }
+        }
+
+        void addRatings(long day, int count, long sum) {
+            ratingCount += count;
+            ratingSum += sum;
+            if (inWindow(day)) {
+                long[] bucket = ratingsByDay.computeIfAbsent(day, d -> new long[2]);
+                bucket[0] += count;
+                bucket[1] += sum;
+            }
+        }
+
+        void addReviews(long day, int count) {
+            reviewCount += count;
+            if (inWindow(day)) {
+                reviewsByDay.merge(day, count, Integer::sum);
+            }
+        }
+
+        void clearRatings() {
+            ratingCount = 0;
+            ratingSum = 0;
+            ratingsByDay.clear();
+        }
+
+        void clearReviews() {
+            reviewCount = 0;
+            reviewsByDay.clear();
+        }
+
+        double averageRating() {
+            return ratingCount > 0 ? (double) ratingSum / ratingCount : 0.0;
+        }
+
+        int borrowsSince(long fromDay) {
+            int total = 0;
+            for (int count : borrowsByDay.tailMap(fromDay, true).values()) {
+                total += count;
+            }
+            return total;
+        }
+
+        int ratingCountSince(long fromDay) {
+            int total = 0;
+            for (long[] bucket : ratingsByDay.tailMap(fromDay, true).values()) {
+                total += bucket[0];
+            }
+            return total;
+        }
+
+        long ratingSumSince(long fromDay) {
+            long total = 0;
+            for (long[] bucket : ratingsByDay.tailMap(fromDay, true).values()) {
+                total += bucket[1];
+            }
+            return total;
+        }
+
+        int reviewsSince(long fromDay) {
+            int total = 0;
+            for (int count : reviewsByDay.tailMap(fromDay, true).values()) {
+                total += count;
+            }
+            return total;
+        }
+
+        private static boolean inWindow(long day) {
+            return day > LocalDate.now().toEpochDay() - MAX_WINDOW_DAYS;
+        }
+
+        private static void prune(TreeMap<Long, ?> buckets) {
+            buckets.headMap(LocalDate.now().toEpochDay() - MAX_WINDOW_DAYS, true).clear();
+        }
+    }
+}
@@ -2,6 +2,8 @@ import java.sql.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * BookRatingRepository - Database access layer for book ratings
@@ -9,14 +11,29 @@ import java.util.ArrayList;
  * Single responsibility: CRUD operations for book_ratings table
  */
 public class BookRatingRepository {
-    private Connection conn;
+    private final DatabaseConnectionPool pool;
+    private final List<BookChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
-    public BookRatingRepository(Connection connection) {
-        this.conn = connection;
+    public BookRatingRepository(DatabaseConnectionPool pool) {
+        this.pool = pool;
         initialize();
     }
 
+    /**
+     * Legacy constructor - wraps a single caller-owned connection
+     */
+    public BookRatingRepository(Connection connection) {
+        this(DatabaseConnectionPool.wrap(connection));
+    }
+
+    /**
+     * Register a listener for writes that change a book's statistics
+     */
+    public void addBookChangeListener(BookChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
     /**
      * Initialize book_ratings table
      * Idempotent: safe to run multiple times
@@ -35,7 +52,8 @@ public class BookRatingRepository {
             )
             """;
 
-        try (Statement stmt = conn.createStatement()) {
+        try (Connection conn = pool.write();
+             Statement stmt = conn.createStatement()) {
             stmt.execute(createTableSQL);
             System.out.println("✅ Book ratings table initialized successfully");
         } catch (SQLException e) {
@@ -60,18 +78,21 @@ public class BookRatingRepository {
             DO UPDATE SET rating = excluded.rating, created_at = excluded.created_at
             """;
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userId);
             pstmt.setString(2, bookId);
             pstmt.setInt(3, rating);
             pstmt.setString(4, LocalDateTime.now().format(DATETIME_FORMAT));
 
             pstmt.executeUpdate();
-            return true;
         } catch (SQLException e) {
             System.err.println("Failed to save rating: " + e.getMessage());
             return false;
         }
+
+        BookChangeListener.fireAll(changeListeners, BookChangeListener.ChangeType.RATED, bookId, userId);
+        return true;
     }
 
     /**
@@ -85,7 +106,8 @@ public class BookRatingRepository {
             WHERE user_id = ? AND book_id = ?
             """;
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userId);
             pstmt.setString(2, bookId);
             ResultSet rs = pstmt.executeQuery();
@@ -119,7 +141,8 @@ public class BookRatingRepository {
 
         ArrayList<BookRating> ratings = new ArrayList<>();
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bookId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -150,7 +173,8 @@ public class BookRatingRepository {
             WHERE book_id = ?
             """;
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bookId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -175,7 +199,8 @@ public class BookRatingRepository {
             WHERE book_id = ?
             """;
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bookId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -200,16 +225,21 @@ public class BookRatingRepository {
     public boolean deleteRating(String userId, String bookId) {
         String sql = "DELETE FROM book_ratings WHERE user_id = ? AND book_id = ?";
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userId);
             pstmt.setString(2, bookId);
 
-            int deleted = pstmt.executeUpdate();
-            return deleted > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
         } catch (SQLException e) {
             System.err.println("Failed to delete rating: " + e.getMessage());
             return false;
         }
+
+        BookChangeListener.fireAll(changeListeners, BookChangeListener.ChangeType.RATED, bookId, userId);
+        return true;
     }
 
     /**
@@ -228,7 +258,8 @@ public class BookRatingRepository {
 
         ArrayList<String> bookIds = new ArrayList<>();
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, limit);
             ResultSet rs = pstmt.executeQuery();
 
@@ -249,7 +280,8 @@ public class BookRatingRepository {
     public double getOverallAverageRating() {
         String sql = "SELECT AVG(rating) as avg_rating FROM book_ratings";
 
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = pool.read();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
@@ -274,7 +306,8 @@ public class BookRatingRepository {
             WHERE strftime('%Y-%m-%d', created_at) = strftime('%Y-%m-%d', date('now', '-1 day'))
             """;
 
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = pool.read();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
@@ -7,6 +7,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * BookReviewRepository - Database access layer for book reviews
@@ -18,17 +19,32 @@ import java.util.List;
  * - Predictable behavior (no magic, no surprises)
  */
 public class BookReviewRepository {
-    private Connection connection;
+    private final DatabaseConnectionPool pool;
+    private final List<BookChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     /**
-     * Constructor - uses shared database connection
+     * Constructor - uses shared connection pool
      */
-    public BookReviewRepository(Connection connection) {
-        this.connection = connection;
+    public BookReviewRepository(DatabaseConnectionPool pool) {
+        this.pool = pool;
         createTableIfNotExists();
     }
 
+    /**
+     * Legacy constructor - wraps a single caller-owned connection
+     */
+    public BookReviewRepository(Connection connection) {
+        this(DatabaseConnectionPool.wrap(connection));
+    }
+
+    /**
+     * Register a listener for review writes (review counts change)
+     */
+    public void addBookChangeListener(BookChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
     /**
      * Create book_reviews table if it doesn't exist
      */
@@ -46,7 +62,8 @@ public class BookReviewRepository {
                     "FOREIGN KEY (book_id) REFERENCES books(id)" +
                     ")";
 
-        try (Statement stmt = connection.createStatement()) {
+        try (Connection conn = pool.write();
+             Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
             System.out.println("✅ Book reviews table initialized successfully");
         } catch (SQLException e) {
@@ -59,11 +76,32 @@ public class BookReviewRepository {
      * @return the ID of the new review, or -1 if failed
      */
     public int addReview(String userId, String userName, String bookId, String bookTitle, String reviewText) {
+        int reviewId;
+        try (Connection conn = pool.write()) {
+            reviewId = insertReview(conn, userId, userName, bookId, bookTitle, reviewText);
+        } catch (SQLException e) {
+            System.err.println("❌ Error adding review: " + e.getMessage());
+            return -1;
+        }
+
+        if (reviewId != -1) {
+            reviewCommitted(bookId, userId);
+        }
+        return reviewId;
+    }
+
+    /**
+     * Insert a review on the caller's connection (e.g. inside {@link DatabaseConnectionPool#inTransaction});
+     * fires nothing, call {@link #reviewCommitted} once the transaction has committed
+     * @return the ID of the new review, or -1 if nothing was inserted
+     */
+    public int insertReview(Connection conn, String userId, String userName, String bookId, String bookTitle,
+                            String reviewText) throws SQLException {
         String now = LocalDateTime.now().format(DATE_FORMATTER);
         String sql = "INSERT INTO book_reviews (user_id, user_name, book_id, book_title, review_text, created_at, updated_at) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
             pstmt.setString(1, userId);
             pstmt.setString(2, userName);
             pstmt.setString(3, bookId);
@@ -72,22 +110,24 @@ public class BookReviewRepository {
             pstmt.setString(6, now);
             pstmt.setString(7, now);
 
-            int affectedRows = pstmt.executeUpdate();
-
-            if (affectedRows > 0) {
+            if (pstmt.executeUpdate() > 0) {
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         return generatedKeys.getInt(1);
                     }
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("❌ Error adding review: " + e.getMessage());
         }
-
         return -1;
     }
 
+    /**
+     * Notify listeners of a committed review change (REVIEWED)
+     */
+    public void reviewCommitted(String bookId, String userId) {
+        BookChangeListener.fireAll(changeListeners, BookChangeListener.ChangeType.REVIEWED, bookId, userId);
+    }
+
     /**
      * Get all reviews for a book
      */
@@ -95,7 +135,8 @@ public class BookReviewRepository {
         List<BookReview> reviews = new ArrayList<>();
         String sql = "SELECT * FROM book_reviews WHERE book_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bookId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -126,7 +167,8 @@ public class BookReviewRepository {
         List<BookReview> reviews = new ArrayList<>();
         String sql = "SELECT * FROM book_reviews WHERE user_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -156,7 +198,8 @@ public class BookReviewRepository {
     public BookReview getUserBookReview(String userId, String bookId) {
         String sql = "SELECT * FROM book_reviews WHERE user_id = ? AND book_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userId);
             pstmt.setString(2, bookId);
             ResultSet rs = pstmt.executeQuery();
@@ -187,7 +230,8 @@ public class BookReviewRepository {
         String now = LocalDateTime.now().format(DATE_FORMATTER);
         String sql = "UPDATE book_reviews SET review_text = ?, updated_at = ? WHERE id = ? AND user_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, newReviewText);
             pstmt.setString(2, now);
             pstmt.setInt(3, reviewId);
@@ -205,18 +249,38 @@ public class BookReviewRepository {
      * Delete a review (only by the owner)
      */
     public boolean deleteReview(int reviewId, String userId) {
+        String findSql = "SELECT book_id FROM book_reviews WHERE id = ? AND user_id = ?";
         String sql = "DELETE FROM book_reviews WHERE id = ? AND user_id = ?";
+        String bookId = null;
+
+        try (Connection conn = pool.write()) {
+            // Remember which book loses a review (for change listeners)
+            try (PreparedStatement findStmt = conn.prepareStatement(findSql)) {
+                findStmt.setInt(1, reviewId);
+                findStmt.setString(2, userId);
+                ResultSet rs = findStmt.executeQuery();
+                if (rs.next()) {
+                    bookId = rs.getString("book_id");
+                }
+            }
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-            pstmt.setInt(1, reviewId);
-            pstmt.setString(2, userId);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, reviewId);
+                pstmt.setString(2, userId);
 
-            int affectedRows = pstmt.executeUpdate();
-            return affectedRows > 0;
+                if (pstmt.executeUpdate() == 0) {
+                    return false;
+                }
+            }
         } catch (SQLException e) {
             System.err.println("❌ Error deleting review: " + e.getMessage());
             return false;
         }
+
+        if (bookId != null) {
+            BookChangeListener.fireAll(changeListeners, BookChangeListener.ChangeType.REVIEWED, bookId, userId);
+        }
+        return true;
     }
 
     /**
@@ -225,7 +289,8 @@ public class BookReviewRepository {
     public int getReviewCount(String bookId) {
         String sql = "SELECT COUNT(*) as count FROM book_reviews WHERE book_id = ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bookId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -246,7 +311,8 @@ public class BookReviewRepository {
         List<BookReview> reviews = new ArrayList<>();
         String sql = "SELECT * FROM book_reviews ORDER BY created_at DESC LIMIT ?";
 
-        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, limit);
             ResultSet rs = pstmt.executeQuery();
 
@@ -0,0 +1,604 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Book Search Index
+ * In-memory inverted index over title, author, publisher and description
+ *
+ * - Tokens: lowercase words for Latin text, overlapping bigrams for CJK runs
+ *   ("資料科學" -> 資料, 料科, 科學), so Chinese titles match without a dictionary
+ * - Ranking: BM25 over field-weighted term frequencies (title counts most)
+ * - Tolerance: every query token also matches terms it is a prefix of, and Latin
+ *   words of 4+ letters match terms one edit away (deletes index, as in SymSpell)
+ * - Books matching more query tokens always rank above books matching fewer
+ *
+ * Built lazily from the catalog on first search, then kept in sync through
+ * BookChangeListener (ADDED / UPDATED / REMOVED).
+ */
+public class BookSearchIndex implements BookChangeListener {
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Field weights: title, author, publisher, description
+    private static final double[] FIELD_WEIGHTS = { 3.0, 2.0, 1.0, 1.0 };
+
+    private static final double PREFIX_WEIGHT = 0.8;
+    private static final double FUZZY_WEIGHT = 0.5;
+    private static final int MAX_EXPANSIONS = 32;   // Terms a single query token may expand to
+    private static final int MAX_QUERY_TOKENS = 16;
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int MAX_POOLED_SCRATCH = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final Supplier<List<BookInfo>> catalogLoader;
+    private final Function<String, BookInfo> rowLoader;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private boolean loaded = false;
+
+    // Documents: docNo -> book id (null once removed); freed numbers are reused, so an
+    // UPDATED book keeps its number and the arrays stay as large as the catalog has been
+    private final List<String> docBookIds = new ArrayList<>();
+    private final List<String[]> docTerms = new ArrayList<>();
+    private double[] docLengths = new double[1024];
+    private final Map<String, Integer> docByBookId = new HashMap<>();
+    private final ArrayDeque<Integer> freeDocs = new ArrayDeque<>();
+    private double totalLength = 0;
+
+    // Score arrays sized to the doc count, reused across queries (searches run concurrently
+    // under the read lock); a pool rather than a ThreadLocal, since requests may each run
+    // on a fresh virtual thread
+    private final ConcurrentLinkedQueue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooledScratch = new AtomicInteger();
+
+    // Terms: sorted for prefix expansion; deletes variant -> terms for typo tolerance
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, List<String>> deletes = new HashMap<>();
+
+    /**
+     * @param catalogLoader Loads every book (null on failure)
+     * @param rowLoader Loads one book (null if missing)
+     */
+    public BookSearchIndex(Supplier<List<BookInfo>> catalogLoader, Function<String, BookInfo> rowLoader) {
+        this.catalogLoader = catalogLoader;
+        this.rowLoader = rowLoader;
+    }
+
+    // ===== Search =====
+
+    /**
+     * Ranked search
+     * @return Matching book ids for [offset, offset + limit) plus the total, or null if the catalog can't be loaded
+     */
+    public SearchResult search(String query, int offset, int limit) {
+        if (!ensureLoaded()) {
+            return null;
+        }
+        List<String> tokens = tokenize(query);
+        if (tokens.size() > MAX_QUERY_TOKENS) {
+            tokens = tokens.subList(0, MAX_QUERY_TOKENS);
+        }
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(tokens));
+
+        lock.readLock().lock();
+        try {
+            int docCount = docByBookId.size();
+            if (unique.isEmpty() || docCount == 0) {
+                return new SearchResult(new ArrayList<>(), 0);
+            }
+            double avgLength = totalLength / docCount;
+
+            Scratch scratch = takeScratch().ensure(docBookIds.size());
+            double[] scores = scratch.scores;
+            int[] matched = scratch.matched;   // Bit per query token
+            int[] touched = scratch.touched;
+            int touchedCount = 0;
+
+            for (int q = 0; q < unique.size(); q++) {
+                int bit = 1 << q;
+                for (Map.Entry<String, Double> expansion : expand(unique.get(q)).entrySet()) {
+                    Postings postings = terms.get(expansion.getKey());
+                    double idf = Math.log(1 + (docCount - postings.size + 0.5) / (postings.size + 0.5));
+                    double weight = expansion.getValue() * idf;
+
+                    for (int i = 0; i < postings.size; i++) {
+                        int doc = postings.docs[i];
+                        double tf = postings.freqs[i];
+                        double norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                        if (matched[doc] == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = scratch.touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = doc;
+                        }
+                        scores[doc] += weight * tf * (K1 + 1) / (tf + norm);
+                        matched[doc] |= bit;
+                    }
+                }
+            }
+
+            // Bounded min-heap of the best offset + limit docs (worst at the root)
+            int keep = (int) Math.min((long) offset + limit, touchedCount);
+            int[] heap = new int[keep];
+            int heapSize = 0;
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (heapSize < keep) {
+                    heap[heapSize] = doc;
+                    siftUp(heap, heapSize++, scores, matched);
+                } else if (keep > 0 && ranksBefore(doc, heap[0], scores, matched)) {
+                    heap[0] = doc;
+                    siftDown(heap, heapSize, scores, matched);
+                }
+            }
+            String[] ranked = new String[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                ranked[i] = docBookIds.get(heap[0]);
+                heap[0] = heap[--heapSize];
+                siftDown(heap, heapSize, scores, matched);
+            }
+
+            // Reset only what this query touched, so the scratch arrays stay reusable
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+                matched[touched[i]] = 0;
+            }
+            releaseScratch(scratch);
+
+            List<String> page = new ArrayList<>();
+            for (int i = offset; i < ranked.length; i++) {
+                page.add(ranked[i]);
+            }
+            return new SearchResult(page, touchedCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index terms a query token should match, with their weights
+     */
+    private Map<String, Double> expand(String token) {
+        Map<String, Double> expansions = new LinkedHashMap<>();
+        if (terms.containsKey(token)) {
+            expansions.put(token, 1.0);
+        }
+
+        // Prefix: "prog" -> "programming", "資" -> "資料"
+        for (String term : terms.subMap(token, false, token + Character.MAX_VALUE, false).keySet()) {
+            if (expansions.size() >= MAX_EXPANSIONS) {
+                break;
+            }
+            expansions.put(term, PREFIX_WEIGHT);
+        }
+
+        // One edit away, only when nothing matched exactly
+        if (!expansions.containsKey(token) && isFuzzyCandidate(token)) {
+            Set<String> candidates = new LinkedHashSet<>();
+            for (String variant : deleteVariants(token)) {
+                candidates.addAll(deletes.getOrDefault(variant, Collections.emptyList()));
+            }
+            for (String candidate : candidates) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                if (!expansions.containsKey(candidate) && withinOneEdit(token, candidate)) {
+                    expansions.put(candidate, FUZZY_WEIGHT);
+                }
+            }
+        }
+        return expansions;
+    }
+
+    /**
+     * Best first: more query tokens matched, then score, then book id
+     */
+    private boolean ranksBefore(int a, int b, double[] scores, int[] matched) {
+        int byTokens = Integer.compare(Integer.bitCount(matched[a]), Integer.bitCount(matched[b]));
+        if (byTokens != 0) {
+            return byTokens > 0;
+        }
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b];
+        }
+        return docBookIds.get(a).compareTo(docBookIds.get(b)) < 0;
+    }
+
+    private void siftUp(int[] heap, int i, double[] scores, int[] matched) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!ranksBefore(heap[parent], heap[i], scores, matched)) {
+                break;
+            }
+            swap(heap, parent, i);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size, double[] scores, int[] matched) {
+        int i = 0;
+        while (true) {
+            int worst = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && ranksBefore(heap[worst], heap[left], scores, matched)) {
+                worst = left;
+            }
+            if (right < size && ranksBefore(heap[worst], heap[right], scores, matched)) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(heap, i, worst);
+            i = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    // ===== Maintenance =====
+
+    /**
+     * Build the index from the catalog if it isn't built yet
+     */
+    private boolean ensureLoaded() {
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                return true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                List<BookInfo> books = catalogLoader.get();
+                if (books == null) {
+                    return false;  // Don't cache failures; next search retries
+                }
+                long start = System.currentTimeMillis();
+                for (BookInfo book : books) {
+                    index(book);
+                }
+                loaded = true;
+                System.out.println("✅ Search index built: " + docByBookId.size() + " books, "
+                    + terms.size() + " terms in " + (System.currentTimeMillis() - start) + " ms");
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop everything; the next search rebuilds from the catalog
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            docBookIds.clear();
+            docTerms.clear();
+            docByBookId.clear();
+            freeDocs.clear();
+            totalLength = 0;
+            terms.clear();
+            deletes.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void onBookChanged(ChangeType type, String bookId, String userId) {
+        if (type != ChangeType.ADDED && type != ChangeType.UPDATED && type != ChangeType.REMOVED) {
+            return;  // Availability and statistics aren't indexed
+        }
+        BookInfo book = type == ChangeType.REMOVED ? null : rowLoader.apply(bookId);
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;  // Built from the catalog on first search
+            }
+            remove(bookId);
+            if (book != null) {
+                index(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Doc numbers allocated, live or free; bounded by the largest the catalog has been
+     */
+    int getDocSlotCount() {
+        lock.readLock().lock();
+        try {
+            return docBookIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Callers hold the write lock
+    private void index(BookInfo book) {
+        remove(book.getId());
+
+        String[] fields = { book.getTitle(), book.getAuthor(), book.getPublisher(), book.getDescription() };
+        Map<String, Double> frequencies = new HashMap<>();
+        double length = 0;
+        for (int f = 0; f < fields.length; f++) {
+            for (String token : tokenize(fields[f])) {
+                frequencies.merge(token, FIELD_WEIGHTS[f], Double::sum);
+                length += FIELD_WEIGHTS[f];
+            }
+        }
+
+        // remove() just freed this book's number, if it had one: reuse it
+        int doc;
+        if (freeDocs.isEmpty()) {
+            doc = docBookIds.size();
+            docBookIds.add(book.getId());
+            docTerms.add(frequencies.keySet().toArray(new String[0]));
+            if (doc == docLengths.length) {
+                docLengths = Arrays.copyOf(docLengths, doc * 2);
+            }
+        } else {
+            doc = freeDocs.pop();
+            docBookIds.set(doc, book.getId());
+            docTerms.set(doc, frequencies.keySet().toArray(new String[0]));
+        }
+        docLengths[doc] = length;
+        docByBookId.put(book.getId(), doc);
+        totalLength += length;
+
+        for (Map.Entry<String, Double> entry : frequencies.entrySet()) {
+            Postings postings = terms.get(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                terms.put(entry.getKey(), postings);
+                addDeletes(entry.getKey());
+            }
+            postings.add(doc, entry.getValue());
+        }
+    }
+
+    private void remove(String bookId) {
+        Integer doc = docByBookId.remove(bookId);
+        if (doc == null) {
+            return;
+        }
+        for (String term : docTerms.get(doc)) {
+            Postings postings = terms.get(term);
+            postings.remove(doc);
+            if (postings.size == 0) {
+                terms.remove(term);
+                removeDeletes(term);
+            }
+        }
+        totalLength -= docLengths[doc];
+        docBookIds.set(doc, null);
+        docTerms.set(doc, null);
+        freeDocs.push(doc);
+    }
+
+    private void addDeletes(String term) {
+        if (isFuzzyCandidate(term)) {
+            for (String variant : deleteVariants(term)) {
+                deletes.computeIfAbsent(variant, v -> new ArrayList<>(2)).add(term);
+            }
+        }
+    }
+
+    private void removeDeletes(String term) {
+        if (isFuzzyCandidate(term)) {
+            for (String variant : deleteVariants(term)) {
+                List<String> list = deletes.get(variant);
+                if (list != null) {
+                    list.remove(term);
+                    if (list.isEmpty()) {
+                        deletes.remove(variant);
+                    }
+                }
+            }
+        }
+    }
+
+    // ===== Text =====
+
+    /**
+     * Lowercase Latin words and CJK bigrams (a lone CJK character stays a unigram)
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder word = new StringBuilder();
+        StringBuilder cjk = new StringBuilder();
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                cjk.appendCodePoint(cp);
+            } else if (Character.isLetterOrDigit(cp)) {
+                flushCjk(cjk, tokens);
+                word.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                flushWord(word, tokens);
+                flushCjk(cjk, tokens);
+            }
+        }
+        flushWord(word, tokens);
+        flushCjk(cjk, tokens);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+            word.setLength(0);
+        }
+    }
+
+    private static void flushCjk(StringBuilder run, List<String> tokens) {
+        if (run.length() == 0) {
+            return;
+        }
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            tokens.add(new String(cps, 0, 1));
+        } else {
+            for (int i = 0; i + 1 < cps.length; i++) {
+                tokens.add(new String(cps, i, 2));
+            }
+        }
+        run.setLength(0);
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private static boolean isFuzzyCandidate(String term) {
+        return term.length() >= MIN_FUZZY_LENGTH && term.length() <= 24 && term.chars().allMatch(c -> c < 0x80);
+    }
+
+    /**
+     * The term itself plus every single-character deletion
+     */
+    private static List<String> deleteVariants(String term) {
+        List<String> variants = new ArrayList<>(term.length() + 1);
+        variants.add(term);
+        for (int i = 0; i < term.length(); i++) {
+            variants.add(term.substring(0, i) + term.substring(i + 1));
+        }
+        return variants;
+    }
+
+    /**
+     * Levenshtein distance <= 1, counting an adjacent transposition as one edit
+     */
+    static boolean withinOneEdit(String a, String b) {
+        int la = a.length();
+        int lb = b.length();
+        if (Math.abs(la - lb) > 1) {
+            return false;
+        }
+        int i = 0;
+        while (i < la && i < lb && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        if (i == la || i == lb) {
+            return true;  // Equal, or one extra trailing character
+        }
+        if (la == lb) {
+            return a.substring(i + 1).equals(b.substring(i + 1))                  // Substitution
+                || (i + 1 < la && a.charAt(i) == b.charAt(i + 1) && a.charAt(i + 1) == b.charAt(i)
+                    && a.substring(i + 2).equals(b.substring(i + 2)));              // Transposition
+        }
+        return la > lb
+            ? a.substring(i + 1).equals(b.substring(i))                            // Deletion
+            : a.substring(i).equals(b.substring(i + 1));                           // Insertion
+    }
+
+    // ===== Internals =====
+
+    private Scratch takeScratch() {
+        Scratch scratch = scratchPool.poll();
+        if (scratch == null) {
+            return new Scratch();
+        }
+        pooledScratch.decrementAndGet();
+        return scratch;
+    }
+
+    /**
+     * Return clean scratch arrays to the pool (at most MAX_POOLED_SCRATCH are kept)
+     */
+    private void releaseScratch(Scratch scratch) {
+        if (pooledScratch.incrementAndGet() <= MAX_POOLED_SCRATCH) {
+            scratchPool.offer(scratch);
+        } else {
+            pooledScratch.decrementAndGet();
+        }
+    }
+
+    private static class Scratch {
+        double[] scores = new double[0];
+        int[] matched = new int[0];
+        int[] touched = new int[64];
+
+        Scratch ensure(int docs) {
+            if (scores.length < docs) {
+                scores = new double[docs + docs / 4];
+                matched = new int[scores.length];
+            }
+            return this;
+        }
+    }
+
+    public static class SearchResult {
+        public final List<String> bookIds;
+        public final int total;
+
+        SearchResult(List<String> bookIds, int total) {
+            this.bookIds = bookIds;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Doc numbers in ascending order (a reused number is inserted in place)
+     */
+    private static class Postings {
+        int[] docs = new int[4];
+        double[] freqs = new double[4];
+        int size = 0;
+
+        void add(int doc, double freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            int i = size;
+            if (size > 0 && docs[size - 1] > doc) {
+                i = -Arrays.binarySearch(docs, 0, size, doc) - 1;
+                System.arraycopy(docs, i, docs, i + 1, size - i);
+                System.arraycopy(freqs, i, freqs, i + 1, size - i);
+            }
+            docs[i] = doc;
+            freqs[i] = freq;
+            size++;
+        }
+
+        void remove(int doc) {
+            int i = Arrays.binarySearch(docs, 0, size, doc);
+            if (i >= 0) {
+                System.arraycopy(docs, i + 1, docs, i, size - i - 1);
+                System.arraycopy(freqs, i + 1, freqs, i, size - i - 1);
+                size--;
+            }
+        }
+    }
+}
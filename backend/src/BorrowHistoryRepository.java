@@ -2,6 +2,8 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * BorrowHistoryRepository - Database access layer for borrow history
@@ -9,14 +11,29 @@ import java.util.ArrayList;
  * Single responsibility: CRUD operations for borrow_history table
  */
 public class BorrowHistoryRepository {
-    private Connection conn;
+    private final DatabaseConnectionPool pool;
+    private final List<BookChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
-    public BorrowHistoryRepository(Connection connection) {
-        this.conn = connection;
+    public BorrowHistoryRepository(DatabaseConnectionPool pool) {
+        this.pool = pool;
         initialize();
     }
 
+    /**
+     * Legacy constructor - wraps a single caller-owned connection
+     */
+    public BorrowHistoryRepository(Connection connection) {
+        this(DatabaseConnectionPool.wrap(connection));
+    }
+
+    /**
+     * Register a listener for writes that change a book's statistics
+     */
+    public void addBookChangeListener(BookChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
     /**
      * Initialize borrow_history table
      * Idempotent: safe to run multiple times
@@ -37,8 +54,19 @@ public class BorrowHistoryRepository {
             )
             """;
 
-        try (Statement stmt = conn.createStatement()) {
+        // Paging filters (user, book) and overdue scans (status + due date)
+        String[] createIndexes = {
+            "CREATE INDEX IF NOT EXISTS idx_borrow_history_user ON borrow_history(user_id)",
+            "CREATE INDEX IF NOT EXISTS idx_borrow_history_book ON borrow_history(book_id)",
+            "CREATE INDEX IF NOT EXISTS idx_borrow_history_status_due ON borrow_history(status, due_date)"
+        };
+
+        try (Connection conn = pool.write();
+             Statement stmt = conn.createStatement()) {
             stmt.execute(createTableSQL);
+            for (String createIndex : createIndexes) {
+                stmt.execute(createIndex);
+            }
             System.out.println("✅ Borrow history table initialized successfully");
         } catch (SQLException e) {
             System.err.println("❌ Failed to initialize borrow_history table: " + e.getMessage());
@@ -50,74 +78,108 @@ public class BorrowHistoryRepository {
      * Called when user borrows a book
      */
     public boolean createBorrowRecord(String userId, String bookId, String bookTitle) {
-        String sql = "INSERT INTO borrow_history (user_id, book_id, book_title, borrow_date, due_date, status) VALUES (?, ?, ?, ?, ?, ?)";
-
         LocalDate today = LocalDate.now();
-        LocalDate dueDate = today.plusDays(14);  // 14-day loan period
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, userId);
-            pstmt.setString(2, bookId);
-            pstmt.setString(3, bookTitle);
-            pstmt.setString(4, today.format(DATE_FORMAT));
-            pstmt.setString(5, dueDate.format(DATE_FORMAT));
-            pstmt.setString(6, "borrowing");
+        LocalDate dueDate = today.plusDays(LibraryRulesRepository.LOAN_DAYS);
 
-            pstmt.executeUpdate();
-            return true;
+        try (Connection conn = pool.write()) {
+            insertBorrowRecord(conn, userId, bookId, bookTitle, today, dueDate);
         } catch (SQLException e) {
             System.err.println("Failed to create borrow record: " + e.getMessage());
             return false;
         }
+
+        loanCommitted(BookChangeListener.ChangeType.BORROWED, bookId, userId);
+        return true;
     }
 
     /**
      * Mark book as returned
-     * Updates the most recent borrowing record for this book and user
+     * Closes the most recent active loan of this book by this user, in one statement
      */
     public boolean markAsReturned(String userId, String bookId) {
-        // SQLite doesn't support ORDER BY and LIMIT in UPDATE
-        // So we first find the record ID, then update it
-        String findSql = """
-            SELECT id FROM borrow_history
-            WHERE user_id = ? AND book_id = ? AND status = 'borrowing'
-            ORDER BY id DESC
-            LIMIT 1
-            """;
-
-        String updateSql = """
+        String sql = """
             UPDATE borrow_history
             SET return_date = ?, status = 'returned'
-            WHERE id = ?
+            WHERE id = (
+                SELECT id FROM borrow_history
+                WHERE user_id = ? AND book_id = ? AND status IN ('borrowing', 'overdue')
+                ORDER BY id DESC
+                LIMIT 1
+            )
             """;
 
-        try {
-            // Find the most recent borrowing record
-            int recordId = -1;
-            try (PreparedStatement findStmt = conn.prepareStatement(findSql)) {
-                findStmt.setString(1, userId);
-                findStmt.setString(2, bookId);
-                ResultSet rs = findStmt.executeQuery();
-                if (rs.next()) {
-                    recordId = rs.getInt("id");
-                }
-            }
-
-            if (recordId == -1) {
-                return false;  // No active borrowing found
-            }
-
-            // Update the found record
-            try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                updateStmt.setString(1, LocalDate.now().format(DATE_FORMAT));
-                updateStmt.setInt(2, recordId);
-                int updated = updateStmt.executeUpdate();
-                return updated > 0;
-            }
+        boolean updated;
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, LocalDate.now().format(DATE_FORMAT));
+            pstmt.setString(2, userId);
+            pstmt.setString(3, bookId);
+            updated = pstmt.executeUpdate() > 0;
         } catch (SQLException e) {
             System.err.println("Failed to mark as returned: " + e.getMessage());
             return false;
         }
+
+        if (updated) {
+            loanCommitted(BookChangeListener.ChangeType.RETURNED, bookId, userId);
+        }
+        return updated;
+    }
+
+    // ===== Loan steps for CirculationService (caller's transaction) =====
+
+    /**
+     * Loans the user has not returned yet ('borrowing' or 'overdue')
+     */
+    public int countActiveLoans(Connection conn, String userId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM borrow_history WHERE user_id = ? AND status IN ('borrowing', 'overdue')";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    public void insertBorrowRecord(Connection conn, String userId, String bookId, String bookTitle,
+                                   LocalDate borrowDate, LocalDate dueDate) throws SQLException {
+        String sql = "INSERT INTO borrow_history (user_id, book_id, book_title, borrow_date, due_date, status) VALUES (?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, bookId);
+            pstmt.setString(3, bookTitle);
+            pstmt.setString(4, borrowDate.format(DATE_FORMAT));
+            pstmt.setString(5, dueDate.format(DATE_FORMAT));
+            pstmt.setString(6, "borrowing");
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Close a loan only if it is still active
+     * @return false if it was already returned
+     */
+    public boolean closeLoan(Connection conn, int loanId, LocalDate returnDate) throws SQLException {
+        String sql = """
+            UPDATE borrow_history
+            SET return_date = ?, status = 'returned'
+            WHERE id = ? AND status IN ('borrowing', 'overdue')
+            """;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, returnDate.format(DATE_FORMAT));
+            pstmt.setInt(2, loanId);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * Notify listeners of a committed borrow (BORROWED), return (RETURNED) or overdue flip (OVERDUE)
+     */
+    public void loanCommitted(BookChangeListener.ChangeType type, String bookId, String userId) {
+        BookChangeListener.fireAll(changeListeners, type, bookId, userId);
     }
 
     /**
@@ -134,7 +196,8 @@ public class BorrowHistoryRepository {
 
         ArrayList<BorrowHistory> history = new ArrayList<>();
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -158,19 +221,79 @@ public class BorrowHistoryRepository {
     }
 
     /**
-     * Get all currently borrowed books for a user
+     * Get a user's borrow history joined with the book rows
+     * One query instead of getUserHistory() plus findById() per record
+     * Ordered by borrow date descending (most recent first)
+     */
+    public ArrayList<HistoryWithBook> getUserHistoryWithBooks(String userId) {
+        String sql = """
+            SELECT bh.id, bh.user_id, bh.book_id, bh.book_title, bh.borrow_date, bh.due_date,
+                   bh.return_date, bh.status,
+                   b.id AS b_id, b.title, b.author, b.publisher, b.description, b.is_available
+            FROM borrow_history bh
+            LEFT JOIN books b ON b.id = bh.book_id
+            WHERE bh.user_id = ?
+            ORDER BY bh.borrow_date DESC
+            """;
+
+        ArrayList<HistoryWithBook> history = new ArrayList<>();
+
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, userId);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                BorrowHistory record = new BorrowHistory(
+                    rs.getInt("id"),
+                    rs.getString("user_id"),
+                    rs.getString("book_id"),
+                    rs.getString("book_title"),
+                    rs.getString("borrow_date"),
+                    rs.getString("due_date"),
+                    rs.getString("return_date"),
+                    rs.getString("status")
+                );
+
+                // Book may have been deleted since it was borrowed
+                BookInfo book = null;
+                if (rs.getString("b_id") != null) {
+                    book = new BookInfo(
+                        rs.getString("b_id"),
+                        rs.getString("title"),
+                        rs.getString("author"),
+                        rs.getString("publisher"),
+                        rs.getString("description")
+                    );
+                    if (rs.getInt("is_available") == 0) {
+                        book.markAsBorrowed();
+                    }
+                }
+
+                history.add(new HistoryWithBook(record, book));
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to get user history with books: " + e.getMessage());
+        }
+
+        return history;
+    }
+
+    /**
+     * Get all currently borrowed books for a user (including overdue ones)
      */
     public ArrayList<BorrowHistory> getCurrentBorrowings(String userId) {
         String sql = """
             SELECT id, user_id, book_id, book_title, borrow_date, due_date, return_date, status
             FROM borrow_history
-            WHERE user_id = ? AND status = 'borrowing'
+            WHERE user_id = ? AND status IN ('borrowing', 'overdue')
             ORDER BY borrow_date DESC
             """;
 
         ArrayList<BorrowHistory> current = new ArrayList<>();
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, userId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -194,14 +317,27 @@ public class BorrowHistoryRepository {
     }
 
     /**
-     * Find active borrowing record for a book (status = 'borrowing')
+     * Find active borrowing record for a book (status 'borrowing' or 'overdue')
      * Returns null if book is not currently borrowed
      */
     public BorrowHistory findActiveBorrowByBook(String bookId) {
+        try (Connection conn = pool.read()) {
+            return findActiveLoan(conn, bookId);
+        } catch (SQLException e) {
+            System.err.println("Failed to find active borrow record: " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Same as {@link #findActiveBorrowByBook} on the caller's connection (inside a transaction)
+     */
+    public BorrowHistory findActiveLoan(Connection conn, String bookId) throws SQLException {
         String sql = """
             SELECT id, user_id, book_id, book_title, borrow_date, due_date, return_date, status
             FROM borrow_history
-            WHERE book_id = ? AND status = 'borrowing'
+            WHERE book_id = ? AND status IN ('borrowing', 'overdue')
             ORDER BY id DESC
             LIMIT 1
             """;
@@ -221,8 +357,6 @@ public class BorrowHistoryRepository {
                     rs.getString("status")
                 );
             }
-        } catch (SQLException e) {
-            System.err.println("Failed to find active borrow record: " + e.getMessage());
         }
 
         return null;
@@ -242,7 +376,8 @@ public class BorrowHistoryRepository {
 
         ArrayList<BorrowHistory> history = new ArrayList<>();
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setString(1, bookId);
             ResultSet rs = pstmt.executeQuery();
 
@@ -280,7 +415,8 @@ public class BorrowHistoryRepository {
 
         ArrayList<BorrowHistory> history = new ArrayList<>();
 
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = pool.read();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             while (rs.next()) {
@@ -308,24 +444,134 @@ public class BorrowHistoryRepository {
         return history;
     }
 
+    /**
+     * Get one page of borrow history, newest first (keyset pagination on id)
+     * Used by admin views instead of getAllHistory() on large tables
+     */
+    public HistoryPage getHistoryPage(HistoryQuery query) {
+        StringBuilder sql = new StringBuilder("""
+            SELECT h.id, h.user_id, h.book_id, h.book_title, h.borrow_date, h.due_date, h.return_date, h.status,
+                   u.name as user_name
+            FROM borrow_history h
+            LEFT JOIN users u ON h.user_id = u.id
+            WHERE 1 = 1
+            """);
+        List<Object> params = new ArrayList<>();
+
+        if (query.beforeId != null) {
+            sql.append(" AND h.id < ?");
+            params.add(query.beforeId);
+        }
+        if ("overdue".equals(query.status)) {
+            // Loans past due before the hourly overdue-status job has flipped them count too
+            sql.append(" AND (h.status = 'overdue' OR (h.status = 'borrowing' AND h.due_date < ?))");
+            params.add(LocalDate.now().format(DATE_FORMAT));
+        } else if (query.status != null) {
+            sql.append(" AND h.status = ?");
+            params.add(query.status);
+        }
+        if (query.userId != null) {
+            sql.append(" AND h.user_id = ?");
+            params.add(query.userId);
+        }
+        if (query.bookId != null) {
+            sql.append(" AND h.book_id = ?");
+            params.add(query.bookId);
+        }
+        if (query.fromDate != null) {
+            sql.append(" AND h.borrow_date >= ?");
+            params.add(query.fromDate);
+        }
+        if (query.toDate != null) {
+            sql.append(" AND h.borrow_date <= ?");
+            params.add(query.toDate);
+        }
+        // One extra row tells us whether another page exists
+        sql.append(" ORDER BY h.id DESC LIMIT ?");
+        params.add(query.limit + 1);
+
+        List<BorrowHistory> records = new ArrayList<>();
+
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                BorrowHistory record = new BorrowHistory(
+                    rs.getInt("id"),
+                    rs.getString("user_id"),
+                    rs.getString("book_id"),
+                    rs.getString("book_title"),
+                    rs.getString("borrow_date"),
+                    rs.getString("due_date"),
+                    rs.getString("return_date"),
+                    rs.getString("status")
+                );
+                String userName = rs.getString("user_name");
+                if (userName != null) {
+                    record.setUserName(userName);
+                }
+                records.add(record);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to get history page: " + e.getMessage());
+        }
+
+        Integer nextCursor = null;
+        if (records.size() > query.limit) {
+            records.remove(records.size() - 1);
+            nextCursor = records.get(records.size() - 1).getId();
+        }
+        return new HistoryPage(records, nextCursor);
+    }
+
     /**
      * Update overdue status for all borrowing records
      * Should be called periodically (e.g., daily cron job)
+     * Fires OVERDUE for every loan it flips, after the update commits
      */
     public int updateOverdueStatus() {
-        String sql = """
+        String selectSql = """
+            SELECT book_id, user_id FROM borrow_history
+            WHERE status = 'borrowing' AND due_date < ?
+            """;
+        String updateSql = """
             UPDATE borrow_history
             SET status = 'overdue'
             WHERE status = 'borrowing' AND due_date < ?
             """;
+        String today = LocalDate.now().format(DATE_FORMAT);
+        List<String[]> flipped = new ArrayList<>();
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, LocalDate.now().format(DATE_FORMAT));
-            return pstmt.executeUpdate();
+        try {
+            // Same transaction on the single writer: the update flips exactly the rows selected
+            pool.inTransaction(conn -> {
+                try (PreparedStatement select = conn.prepareStatement(selectSql)) {
+                    select.setString(1, today);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            flipped.add(new String[] { rs.getString("book_id"), rs.getString("user_id") });
+                        }
+                    }
+                }
+                try (PreparedStatement update = conn.prepareStatement(updateSql)) {
+                    update.setString(1, today);
+                    update.executeUpdate();
+                }
+                return true;
+            });
         } catch (SQLException e) {
             System.err.println("Failed to update overdue status: " + e.getMessage());
             return 0;
         }
+
+        for (String[] loan : flipped) {
+            loanCommitted(BookChangeListener.ChangeType.OVERDUE, loan[0], loan[1]);
+        }
+        return flipped.size();
     }
 
     /**
@@ -336,12 +582,13 @@ public class BorrowHistoryRepository {
         String sql = """
             SELECT
                 COUNT(*) as total,
-                SUM(CASE WHEN status = 'borrowing' THEN 1 ELSE 0 END) as current,
+                SUM(CASE WHEN status IN ('borrowing', 'overdue') THEN 1 ELSE 0 END) as current,
                 SUM(CASE WHEN status = 'overdue' THEN 1 ELSE 0 END) as overdue
             FROM borrow_history
             """;
 
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = pool.read();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
@@ -367,7 +614,8 @@ public class BorrowHistoryRepository {
             WHERE strftime('%Y-%m-%d', borrow_date) = strftime('%Y-%m-%d', 'now')
             """;
 
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = pool.read();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
@@ -391,7 +639,8 @@ public class BorrowHistoryRepository {
             WHERE strftime('%Y-%m-%d', borrow_date) = strftime('%Y-%m-%d', date('now', '-1 day'))
             """;
 
-        try (Statement stmt = conn.createStatement();
+        try (Connection conn = pool.read();
+             Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
             if (rs.next()) {
@@ -436,7 +685,8 @@ public class BorrowHistoryRepository {
             GROUP BY strftime('%Y-%m-%d', borrow_date)
             """;
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
             pstmt.setInt(1, days - 1);
 
             ResultSet rs = pstmt.executeQuery();
@@ -460,6 +710,52 @@ public class BorrowHistoryRepository {
         return result;
     }
 
+    /**
+     * Borrow record with its book row (book is null if the book was deleted)
+     */
+    public static class HistoryWithBook {
+        public final BorrowHistory history;
+        public final BookInfo book;
+
+        public HistoryWithBook(BorrowHistory history, BookInfo book) {
+            this.history = history;
+            this.book = book;
+        }
+    }
+
+    /**
+     * Filters for getHistoryPage(); null fields are not filtered on
+     */
+    public static class HistoryQuery {
+        public Integer beforeId;      // Cursor: id of the last record on the previous page
+        public int limit = 50;
+        public String status;         // borrowing / returned / overdue
+        public String userId;
+        public String bookId;
+        public String fromDate;       // Inclusive, yyyy-MM-dd
+        public String toDate;         // Inclusive, yyyy-MM-dd
+
+        /**
+         * Whether any filter besides the cursor is set
+         */
+        public boolean isFiltered() {
+            return status != null || userId != null || bookId != null || fromDate != null || toDate != null;
+        }
+    }
+
+    /**
+     * One page of history; nextCursor is null on the last page
+     */
+    public static class HistoryPage {
+        public final List<BorrowHistory> records;
+        public final Integer nextCursor;
+
+        public HistoryPage(List<BorrowHistory> records, Integer nextCursor) {
+            this.records = records;
+            this.nextCursor = nextCursor;
+        }
+    }
+
     /**
      * Simple data class for daily borrow count
      */
@@ -0,0 +1,502 @@
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chat AI Client
+ * Shared, bounded, non-blocking client for the Python AI service /chat endpoint
+ *
+ * - One HttpClient (HTTP/1.1 keep-alive) instead of a new HttpURLConnection per message
+ * - At most CHAT_AI_MAX_IN_FLIGHT upstream calls; extra calls fail fast instead of queueing
+ * - Circuit breaker: after CHAT_AI_FAILURE_THRESHOLD consecutive failures the service is
+ *   skipped for CHAT_AI_OPEN_MS, then a single probe decides whether to close again
+ * - Per-stage latency (classify, retrieve, serialize, upstream) for /api/metrics
+ * - Streaming mode relays /chat/stream tokens as they arrive (time-to-first-token tracked)
+ */
+public class ChatAiClient {
+
+    private static final String AI_SERVICE_URL =
+        System.getenv().getOrDefault("AI_SERVICE_URL", "http://localhost:8888");
+    private static final int CONNECT_TIMEOUT_SECONDS = 5;
+    private static final int REQUEST_TIMEOUT_SECONDS = 30;
+    private static final int STREAM_TIMEOUT_SECONDS = 120;
+    private static final int THREAD_POOL_SIZE = 4;
+
+    public static final String STAGE_CLASSIFY = "classify";
+    public static final String STAGE_RETRIEVE = "retrieve";
+    public static final String STAGE_SERIALIZE = "serialize";
+    public static final String STAGE_UPSTREAM = "upstream";
+    public static final String STAGE_FIRST_TOKEN = "firstToken";
+    public static final String STAGE_STREAM = "stream";
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final Gson gson = new Gson();
+
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final CircuitBreaker breaker;
+
+    private final Map<String, StageTimer> stages = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public ChatAiClient() {
+        this(AI_SERVICE_URL,
+             intEnv("CHAT_AI_MAX_IN_FLIGHT", 8),
+             intEnv("CHAT_AI_FAILURE_THRESHOLD", 5),
+             intEnv("CHAT_AI_OPEN_MS", 30_000));
+    }
+
+    public ChatAiClient(String baseUrl, int maxInFlight, int failureThreshold, long openMs) {
+        this.baseUrl = baseUrl;
+        this.executor = Executors.newFixedThreadPool(THREAD_POOL_SIZE, runnable -> {
+            Thread thread = new Thread(runnable, "chat-ai-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)  // Keep-alive connections are reused across messages
+            .connectTimeout(Duration.ofSeconds(CONNECT_TIMEOUT_SECONDS))
+            .executor(executor)
+            .build();
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.breaker = new CircuitBreaker(failureThreshold, openMs);
+
+        for (String stage : Arrays.asList(STAGE_CLASSIFY, STAGE_RETRIEVE, STAGE_SERIALIZE, STAGE_UPSTREAM,
+                                           STAGE_FIRST_TOKEN, STAGE_STREAM)) {
+            stages.put(stage, new StageTimer());
+        }
+    }
+
+    /**
+     * Send a chat message (ASYNC)
+     * @param contextJson RAG context, or null to call without context
+     * @return AI reply; fails with UnavailableException when the breaker is open or too many
+     *         calls are in flight, HttpTimeoutException on timeout, or another exception on error
+     */
+    public CompletableFuture<String> chatAsync(String message, Object history, String contextJson) {
+        UnavailableException refused = admit();
+        if (refused != null) {
+            return CompletableFuture.failedFuture(refused);
+        }
+
+        HttpRequest request = buildRequest("/chat", message, history, contextJson,
+                                           Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS));
+
+        long start = System.nanoTime();
+        CompletableFuture<String> result;
+        try {
+            result = client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(
+                            new Exception("AI Service returned error: " + response.statusCode()));
+                    }
+                    JsonObject json = gson.fromJson(response.body(), JsonObject.class);
+                    if (json == null || !json.has("message") || json.get("message").isJsonNull()) {
+                        throw new CompletionException(new Exception("AI Service returned no message"));
+                    }
+                    return json.get("message").getAsString();
+                });
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        return result.whenComplete((reply, error) -> finish(STAGE_UPSTREAM, start, error));
+    }
+
+    /**
+     * Stream a chat reply token by token (ASYNC)
+     * The AI service answers /chat/stream with one JSON object per line: {"token"}, {"done"} or {"error"}.
+     * @param sink Receives each token as it arrives (called from the client's threads, one at a time);
+     *             throwing IOException (client gone) cancels the upstream request
+     * @return Full reply once the stream ends; fails like chatAsync, or with CancellationException
+     *         after the sink gave up
+     */
+    public CompletableFuture<String> streamAsync(String message, Object history, String contextJson, TokenSink sink) {
+        UnavailableException refused = admit();
+        if (refused != null) {
+            return CompletableFuture.failedFuture(refused);
+        }
+
+        // Timeout here covers the response headers; the whole stream is bounded below
+        HttpRequest request = buildRequest("/chat/stream", message, history, contextJson,
+                                           Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS));
+
+        long start = System.nanoTime();
+        TokenStream stream = new TokenStream(sink, start);
+        try {
+            client.sendAsync(request, responseInfo -> {
+                if (responseInfo.statusCode() != 200) {
+                    stream.fail(new Exception("AI Service returned error: " + responseInfo.statusCode()));
+                    return HttpResponse.BodySubscribers.<Void>replacing(null);
+                }
+                return HttpResponse.BodySubscribers.fromLineSubscriber(stream, s -> (Void) null,
+                    StandardCharsets.UTF_8, "\n");
+            }).whenComplete((response, error) -> {
+                if (error != null) {
+                    stream.fail(unwrap(error));
+                }
+            });
+        } catch (RuntimeException e) {
+            stream.fail(e);
+        }
+
+        CompletableFuture<String> done = new CompletableFuture<>();
+        stream.result.orTimeout(STREAM_TIMEOUT_SECONDS, TimeUnit.SECONDS).whenComplete((reply, error) -> {
+            Throwable cause = error != null ? unwrap(error) : null;
+            if (cause instanceof TimeoutException) {
+                cause = new HttpTimeoutException("AI stream timed out");
+            }
+            if (cause != null) {
+                stream.cancel();  // Stop reading from the AI service
+            }
+
+            if (cause instanceof CancellationException) {
+                // The client left; says nothing about the service
+                cancelled.incrementAndGet();
+                inFlight.release();
+                breaker.release();
+            } else {
+                finish(STAGE_STREAM, start, cause);
+            }
+
+            if (cause == null) {
+                done.complete(reply);
+            } else {
+                done.completeExceptionally(cause);
+            }
+        });
+        return done;
+    }
+
+    /**
+     * Receives streamed tokens
+     */
+    public interface TokenSink {
+        void onToken(String token) throws java.io.IOException;
+    }
+
+    /**
+     * Breaker and in-flight check
+     * @return null if the call may proceed (holding a permit), otherwise why not
+     */
+    private UnavailableException admit() {
+        requests.incrementAndGet();
+
+        if (!breaker.allowRequest()) {
+            rejected.incrementAndGet();
+            return new UnavailableException("AI service circuit open");
+        }
+        if (!inFlight.tryAcquire()) {
+            rejected.incrementAndGet();
+            breaker.release();  // Not a verdict on the service
+            return new UnavailableException("Too many AI requests in flight");
+        }
+        return null;
+    }
+
+    private HttpRequest buildRequest(String path, String message, Object history, String contextJson, Duration timeout) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("message", message);
+        body.put("history", history);
+        if (contextJson != null) {
+            body.put("context", contextJson);
+        }
+
+        return HttpRequest.newBuilder()
+            .uri(URI.create(baseUrl + path))
+            .header("Content-Type", "application/json")
+            .timeout(timeout)
+            .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+            .build();
+    }
+
+    /**
+     * Release the permit, record latency and tell the breaker how the call went
+     */
+    private void finish(String stage, long start, Throwable error) {
+        inFlight.release();
+        recordStage(stage, System.nanoTime() - start);
+        if (error == null) {
+            breaker.recordSuccess();
+            return;
+        }
+        failures.incrementAndGet();
+        if (unwrap(error) instanceof HttpTimeoutException) {
+            timeouts.incrementAndGet();
+        }
+        breaker.recordFailure();
+    }
+
+    /**
+     * Record the duration of one chat pipeline stage
+     */
+    public void recordStage(String stage, long nanos) {
+        stages.computeIfAbsent(stage, s -> new StageTimer()).record(nanos);
+    }
+
+    /**
+     * Root cause of a CompletableFuture failure
+     */
+    public static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        System.out.println("ChatAiClient executor shutdown");
+    }
+
+    // ===== Metrics =====
+
+    public ClientStats getStats() {
+        ClientStats stats = new ClientStats();
+        stats.circuit = breaker.getState();
+        stats.maxInFlight = maxInFlight;
+        stats.inFlight = maxInFlight - inFlight.availablePermits();
+        stats.requests = requests.get();
+        stats.rejected = rejected.get();
+        stats.failures = failures.get();
+        stats.timeouts = timeouts.get();
+        stats.cancelled = cancelled.get();
+        for (Map.Entry<String, StageTimer> entry : stages.entrySet()) {
+            stats.stages.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return stats;
+    }
+
+    public static class ClientStats {
+        public String circuit;
+        public int maxInFlight;
+        public int inFlight;
+        public long requests;
+        public long rejected;
+        public long failures;
+        public long timeouts;
+        public long cancelled;
+        public Map<String, StageStats> stages = new TreeMap<>();
+    }
+
+    public static class StageStats {
+        public long count;
+        public double avgMs;
+        public double maxMs;
+    }
+
+    /**
+     * Raised (inside the future) when the AI service is skipped rather than called
+     */
+    public static class UnavailableException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public UnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Line subscriber for the /chat/stream body; completes result itself so cancellation works
+     */
+    private class TokenStream implements Flow.Subscriber<String> {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        private final TokenSink sink;
+        private final long start;
+        private final StringBuilder text = new StringBuilder();
+        private volatile Flow.Subscription subscription;
+        private boolean firstToken = true;
+
+        TokenStream(TokenSink sink, long start) {
+            this.sink = sink;
+            this.start = start;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (result.isDone()) {
+                subscription.cancel();
+            } else {
+                subscription.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            if (result.isDone() || line.isBlank()) {
+                return;
+            }
+            JsonObject json;
+            try {
+                json = gson.fromJson(line, JsonObject.class);
+            } catch (RuntimeException e) {
+                return;  // Not a frame; skip it
+            }
+            if (json == null) {
+                return;
+            }
+            if (json.has("error")) {
+                fail(new Exception("AI Service stream error: " + json.get("error").getAsString()));
+                cancel();
+                return;
+            }
+            if (json.has("token")) {
+                String token = json.get("token").getAsString();
+                if (firstToken) {
+                    firstToken = false;
+                    recordStage(STAGE_FIRST_TOKEN, System.nanoTime() - start);
+                }
+                text.append(token);
+                try {
+                    sink.onToken(token);
+                } catch (java.io.IOException e) {
+                    result.completeExceptionally(new CancellationException("Client disconnected"));
+                    cancel();
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            fail(error);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(text.toString());
+        }
+
+        void fail(Throwable error) {
+            result.completeExceptionally(error);
+        }
+
+        void cancel() {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+
+    private static class StageTimer {
+        private long count;
+        private long totalNanos;
+        private long maxNanos;
+
+        synchronized void record(long nanos) {
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+        }
+
+        synchronized StageStats snapshot() {
+            StageStats stats = new StageStats();
+            stats.count = count;
+            stats.avgMs = count == 0 ? 0 : Math.round(totalNanos / (double) count / 10_000) / 100.0;
+            stats.maxMs = Math.round(maxNanos / 10_000.0) / 100.0;
+            return stats;
+        }
+    }
+
+    /**
+     * CLOSED -> (threshold consecutive failures) -> OPEN -> (openMs) -> HALF_OPEN
+     * HALF_OPEN lets one probe through: success closes, failure reopens
+     */
+    static class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openMs;
+
+        private String state = "CLOSED";
+        private int consecutiveFailures = 0;
+        private long openUntil = 0;
+        private boolean probeInFlight = false;
+
+        CircuitBreaker(int failureThreshold, long openMs) {
+            this.failureThreshold = failureThreshold;
+            this.openMs = openMs;
+        }
+
+        synchronized boolean allowRequest() {
+            if ("OPEN".equals(state)) {
+                if (System.currentTimeMillis() < openUntil) {
+                    return false;
+                }
+                state = "HALF_OPEN";
+            }
+            if ("HALF_OPEN".equals(state)) {
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+            }
+            return true;
+        }
+
+        /**
+         * Give back an allowed call that never reached the service
+         */
+        synchronized void release() {
+            probeInFlight = false;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            probeInFlight = false;
+            if (!"CLOSED".equals(state)) {
+                System.out.println("✅ AI service circuit closed");
+            }
+            state = "CLOSED";
+        }
+
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            probeInFlight = false;
+            if ("HALF_OPEN".equals(state) || consecutiveFailures >= failureThreshold) {
+                if (!"OPEN".equals(state)) {
+                    System.err.println("⚠️  AI service circuit opened after " + consecutiveFailures
+                        + " consecutive failures");
+                }
+                state = "OPEN";
+                openUntil = System.currentTimeMillis() + openMs;
+            }
+        }
+
+        synchronized String getState() {
+            if ("OPEN".equals(state) && System.currentTimeMillis() >= openUntil) {
+                return "HALF_OPEN";
+            }
+            return state;
+        }
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
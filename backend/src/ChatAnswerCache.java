@@ -0,0 +1,235 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chat Answer Cache
+ * Reuses AI answers for repeated questions instead of calling the model again
+ *
+ * Key = normalized question + question types + conversation history hash
+ *       + a version for each input the answer depends on:
+ * - LIBRARY_RULES / GENERAL_CHAT : rules version only
+ * - BOOK_SEARCH / BOOK_AVAILABILITY : catalog version (any book change bumps it)
+ * - BORROW_HISTORY : user id + that user's borrow version (bumped on their borrows/returns)
+ *
+ * A changed input changes the key, so stale answers are never served; they simply
+ * age out. Entries expire after CHAT_CACHE_TTL_SECONDS; the least recently used entry
+ * is evicted beyond CHAT_CACHE_MAX_ENTRIES.
+ */
+public class ChatAnswerCache implements BookChangeListener {
+
+    private static final int MAX_QUESTION_LENGTH = 200;  // Longer messages are rarely repeated verbatim
+
+    private final LibraryRulesRepository rulesRepo;
+    private final long ttlMs;
+    private final int maxEntries;
+
+    // Access-ordered for LRU eviction; guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final Map<String, AtomicLong> userVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public ChatAnswerCache(LibraryRulesRepository rulesRepo) {
+        this(rulesRepo, intEnv("CHAT_CACHE_TTL_SECONDS", 600) * 1000L, intEnv("CHAT_CACHE_MAX_ENTRIES", 1000));
+    }
+
+    public ChatAnswerCache(LibraryRulesRepository rulesRepo, long ttlMs, int maxEntries) {
+        this.rulesRepo = rulesRepo;
+        this.ttlMs = ttlMs;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Cache key for a question, or null if it shouldn't be cached
+     * @param historyJson Conversation so far (the same question mid-conversation can mean something else)
+     */
+    public String keyFor(String userId, String message, Set<QuestionClassifier.QuestionType> types, String historyJson) {
+        String question = normalize(message);
+        if (question.isEmpty() || question.length() > MAX_QUESTION_LENGTH || types == null || types.isEmpty()) {
+            bypassed.incrementAndGet();
+            return null;
+        }
+
+        List<String> sortedTypes = new ArrayList<>();
+        for (QuestionClassifier.QuestionType type : types) {
+            sortedTypes.add(type.name());
+        }
+        Collections.sort(sortedTypes);
+
+        StringBuilder key = new StringBuilder(question)
+            .append('|').append(String.join(",", sortedTypes))
+            .append("|h=").append(sha256(historyJson == null ? "" : historyJson))
+            .append("|r=").append(rulesRepo.getVersion());
+
+        if (types.contains(QuestionClassifier.QuestionType.BOOK_SEARCH)
+                || types.contains(QuestionClassifier.QuestionType.BOOK_AVAILABILITY)) {
+            key.append("|c=").append(catalogVersion.get());
+        }
+        if (types.contains(QuestionClassifier.QuestionType.BORROW_HISTORY)) {
+            if (userId == null) {
+                bypassed.incrementAndGet();
+                return null;
+            }
+            key.append("|u=").append(userId).append('@').append(userVersion(userId).get());
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return Cached answer, or null on a miss
+     */
+    public String get(String key) {
+        if (key == null) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.answer;
+        }
+    }
+
+    public void put(String key, String answer) {
+        if (key == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(answer, System.currentTimeMillis() + ttlMs));
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public void onBookChanged(ChangeType type, String bookId, String userId) {
+        if (type == ChangeType.OVERDUE) {
+            // Only the borrower's own answers mention the loan status
+            if (userId != null) {
+                userVersion(userId).incrementAndGet();
+            }
+            return;
+        }
+        // Titles, availability, ratings and reviews all feed book answers
+        catalogVersion.incrementAndGet();
+        if ((type == ChangeType.BORROWED || type == ChangeType.RETURNED) && userId != null) {
+            userVersion(userId).incrementAndGet();
+        }
+    }
+
+    private AtomicLong userVersion(String userId) {
+        return userVersions.computeIfAbsent(userId, id -> new AtomicLong());
+    }
+
+    /**
+     * Unicode-normalized, lowercase, without whitespace and punctuation
+     * ("借書期限是多久？" and "借書期限 是多久?" share an entry)
+     */
+    static String normalize(String message) {
+        if (message == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(message, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder out = new StringBuilder(text.length());
+        text.codePoints()
+            .filter(Character::isLetterOrDigit)
+            .forEach(out::appendCodePoint);
+        return out.toString();
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {  // 64 bits is plenty to tell conversations apart
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+
+    // ===== Metrics =====
+
+    public CacheStats getStats() {
+        CacheStats stats = new CacheStats();
+        synchronized (entries) {
+            stats.size = entries.size();
+        }
+        stats.maxEntries = maxEntries;
+        stats.ttlSeconds = ttlMs / 1000;
+        stats.hits = hits.get();
+        stats.misses = misses.get();
+        stats.bypassed = bypassed.get();
+        stats.evictions = evictions.get();
+        stats.expirations = expirations.get();
+        stats.catalogVersion = catalogVersion.get();
+        long total = stats.hits + stats.misses;
+        stats.hitRate = total > 0 ? (double) stats.hits / total : 0.0;
+        return stats;
+    }
+
+    public static class CacheStats {
+        public int size;
+        public int maxEntries;
+        public long ttlSeconds;
+        public long hits;
+        public long misses;
+        public long bypassed;
+        public long evictions;
+        public long expirations;
+        public long catalogVersion;
+        public double hitRate;
+    }
+
+    // ===== Internals =====
+
+    private static class Entry {
+        final String answer;
+        final long expiresAt;
+
+        Entry(String answer, long expiresAt) {
+            this.answer = answer;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -25,6 +25,9 @@ public class ChatContext {
     // Statistics
     private BookDatabaseRepository.LibraryStats stats;
 
+    // Retrieval time per source in ms (-1 = timed out or failed), in retrieval order
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+
     // Getters and Setters
     public List<BorrowHistory> getBorrowHistory() { return borrowHistory; }
     public void setBorrowHistory(List<BorrowHistory> borrowHistory) {
@@ -56,6 +59,23 @@ public class ChatContext {
         this.stats = stats;
     }
 
+    public Map<String, Long> getTimings() { return timings; }
+    public void recordTiming(String source, long ms) {
+        timings.put(source, ms);
+    }
+
+    /**
+     * 合併另一個來源檢索到的部分資料（非 null 的欄位覆蓋目前的值）
+     */
+    public void merge(ChatContext part) {
+        if (part.borrowHistory != null) borrowHistory = part.borrowHistory;
+        if (part.currentBorrowings != null) currentBorrowings = part.currentBorrowings;
+        if (part.availableBooks != null) availableBooks = part.availableBooks;
+        if (part.targetBook != null) targetBook = part.targetBook;
+        if (part.libraryRules != null) libraryRules = part.libraryRules;
+        if (part.stats != null) stats = part.stats;
+    }
+
     /**
      * 檢查是否有任何資料
      */
@@ -92,6 +112,9 @@ public class ChatContext {
         if (stats != null) {
             sb.append("stats=").append(stats).append(", ");
         }
+        if (!timings.isEmpty()) {
+            sb.append("timings=").append(timings).append(", ");
+        }
 
         if (sb.length() > 13) {
             sb.setLength(sb.length() - 2);  // 移除最後的 ", "
@@ -0,0 +1,307 @@
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Chat Context Builder
+ * Serializes a ChatContext into the compact JSON sent to the AI service
+ *
+ * Each list section is ranked against the user's message and cut off at a
+ * character budget, so the prompt stays the same size however large the
+ * catalog or history gets:
+ * - availableBooks : full-text index rank, then the retrieved order
+ * - libraryRules   : shared terms with the message
+ * - borrowHistory  : current borrowings first, then shared terms with the message
+ * Budgets are in characters of JSON (for Chinese text roughly one token per character).
+ * The number of books left out is reported as availableBooksTotal.
+ */
+public class ChatContextBuilder {
+
+    private static final int RANK_CANDIDATES = 200;  // Index hits considered when ranking books
+
+    private final BookSearchIndex searchIndex;
+    private final int booksBudget;
+    private final int rulesBudget;
+    private final int historyBudget;
+    private final int descriptionLimit;
+
+    private volatile BookLookup lastLookup;
+
+    public ChatContextBuilder(BookSearchIndex searchIndex) {
+        this(searchIndex,
+             intEnv("CHAT_CONTEXT_BOOKS_CHARS", 3000),
+             intEnv("CHAT_CONTEXT_RULES_CHARS", 2000),
+             intEnv("CHAT_CONTEXT_HISTORY_CHARS", 1500),
+             intEnv("CHAT_CONTEXT_DESCRIPTION_CHARS", 120));
+    }
+
+    /**
+     * @param searchIndex Used to rank books (null keeps the retrieved order)
+     */
+    public ChatContextBuilder(BookSearchIndex searchIndex, int booksBudget, int rulesBudget,
+                              int historyBudget, int descriptionLimit) {
+        this.searchIndex = searchIndex;
+        this.booksBudget = booksBudget;
+        this.rulesBudget = rulesBudget;
+        this.historyBudget = historyBudget;
+        this.descriptionLimit = descriptionLimit;
+    }
+
+    /**
+     * Context JSON for one question
+     */
+    public String toJson(ChatContext context, String message) {
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter out = new JsonWriter(buffer)) {
+            out.beginObject();
+            out.name("hasData").value(!context.isEmpty());
+
+            if (context.getStats() != null) {
+                out.name("stats").beginObject()
+                    .name("totalBooks").value(context.getStats().totalBooks)
+                    .name("availableBooks").value(context.getStats().availableBooks)
+                    .name("borrowedBooks").value(context.getStats().borrowedBooks)
+                    .endObject();
+            }
+
+            if (context.getTargetBook() != null) {
+                out.name("targetBook");
+                writeTargetBook(out, context.getTargetBook());
+            }
+
+            Set<String> terms = new HashSet<>(BookSearchIndex.tokenize(message));
+            writeHistory(out, context, terms);
+
+            List<BookInfo> books = context.getAvailableBooks();
+            if (books != null && !books.isEmpty()) {
+                Written written = writeSection(out, "availableBooks", rankBooks(books, message), booksBudget, this::writeBook);
+                if (written.items < books.size()) {
+                    out.name("availableBooksTotal").value(books.size());
+                }
+            }
+
+            List<LibraryRulesRepository.LibraryRule> rules = context.getLibraryRules();
+            if (rules != null && !rules.isEmpty()) {
+                List<LibraryRulesRepository.LibraryRule> ranked = rankByTerms(rules, terms,
+                    rule -> rule.category + " " + rule.question + " " + rule.answer);
+                writeSection(out, "libraryRules", ranked, rulesBudget, ChatContextBuilder::writeRule);
+            }
+
+            out.endObject();
+        } catch (IOException e) {
+            // StringWriter doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return buffer.toString();
+    }
+
+    // ===== Sections =====
+
+    /**
+     * Current borrowings and history share one budget; current borrowings are written first
+     */
+    private void writeHistory(JsonWriter out, ChatContext context, Set<String> terms) throws IOException {
+        int remaining = historyBudget;
+        List<BorrowHistory> current = context.getCurrentBorrowings();
+        if (current != null && !current.isEmpty()) {
+            remaining -= writeSection(out, "currentBorrowings", current, remaining,
+                ChatContextBuilder::writeCurrentBorrowing).chars;
+        }
+
+        List<BorrowHistory> history = context.getBorrowHistory();
+        if (history != null && !history.isEmpty()) {
+            List<BorrowHistory> ranked = rankByTerms(history, terms, BorrowHistory::getBookTitle);
+            writeSection(out, "borrowHistory", ranked, Math.max(0, remaining), ChatContextBuilder::writeHistoryRecord);
+        }
+    }
+
+    /**
+     * Writes items in order until the next one would exceed the budget (the first item always fits)
+     */
+    private static <T> Written writeSection(JsonWriter out, String name, Iterable<T> items, int budget,
+                                            ItemWriter<T> writer) throws IOException {
+        Written written = new Written();
+        out.name(name).beginArray();
+        StringWriter item = new StringWriter();
+        for (T value : items) {
+            item.getBuffer().setLength(0);
+            JsonWriter itemOut = new JsonWriter(item);
+            writer.write(itemOut, value);
+            itemOut.flush();
+
+            int size = item.getBuffer().length() + 1;  // Plus the separating comma
+            if (written.items > 0 && written.chars + size > budget) {
+                break;
+            }
+            out.jsonValue(item.toString());
+            written.chars += size;
+            written.items++;
+        }
+        out.endArray();
+        return written;
+    }
+
+    private static class Written {
+        int items;
+        int chars;
+    }
+
+    // ===== Ranking =====
+
+    /**
+     * Index hits first (best first), then the remaining books in their retrieved order
+     * Lazy, so only the books that fit the budget are visited
+     */
+    private Iterable<BookInfo> rankBooks(List<BookInfo> books, String message) {
+        BookSearchIndex.SearchResult hits = searchIndex != null && message != null
+            ? searchIndex.search(message, 0, RANK_CANDIDATES)
+            : null;
+        if (hits == null || hits.bookIds.isEmpty()) {
+            return books;
+        }
+
+        Map<String, BookInfo> byId = indexById(books);
+        List<BookInfo> matched = new ArrayList<>();
+        Set<String> placed = new HashSet<>();
+        for (String id : hits.bookIds) {
+            BookInfo book = byId.get(id);
+            if (book != null && placed.add(id)) {
+                matched.add(book);
+            }
+        }
+        return () -> Stream.concat(
+            matched.stream(),
+            books.stream().filter(book -> !placed.contains(book.getId()))
+        ).iterator();
+    }
+
+    /**
+     * Id lookup for a book list; reused while the retriever hands out the same snapshot list
+     */
+    private Map<String, BookInfo> indexById(List<BookInfo> books) {
+        BookLookup last = lastLookup;
+        if (last != null && last.books == books) {
+            return last.byId;
+        }
+        Map<String, BookInfo> byId = new HashMap<>(books.size() * 2);
+        for (BookInfo book : books) {
+            byId.put(book.getId(), book);
+        }
+        lastLookup = new BookLookup(books, byId);
+        return byId;
+    }
+
+    private static class BookLookup {
+        final List<BookInfo> books;
+        final Map<String, BookInfo> byId;
+
+        BookLookup(List<BookInfo> books, Map<String, BookInfo> byId) {
+            this.books = books;
+            this.byId = byId;
+        }
+    }
+
+    /**
+     * Stable sort by the number of message terms found in each item's text
+     */
+    private static <T> List<T> rankByTerms(List<T> items, Set<String> terms, Function<T, String> text) {
+        if (terms.isEmpty()) {
+            return items;
+        }
+        Map<T, Integer> scores = new IdentityHashMap<>();
+        for (T item : items) {
+            int score = 0;
+            for (String token : new HashSet<>(BookSearchIndex.tokenize(text.apply(item)))) {
+                if (terms.contains(token)) {
+                    score++;
+                }
+            }
+            scores.put(item, score);
+        }
+        List<T> ranked = new ArrayList<>(items);
+        ranked.sort((a, b) -> Integer.compare(scores.get(b), scores.get(a)));
+        return ranked;
+    }
+
+    // ===== Items =====
+
+    private interface ItemWriter<T> {
+        void write(JsonWriter out, T item) throws IOException;
+    }
+
+    private void writeBook(JsonWriter out, BookInfo book) throws IOException {
+        out.beginObject()
+            .name("id").value(book.getId())
+            .name("title").value(book.getTitle())
+            .name("author").value(book.getAuthor())
+            .name("publisher").value(book.getPublisher())
+            .name("available").value(book.isAvailable())
+            .name("description").value(trimDescription(book.getDescription()))
+            .endObject();
+    }
+
+    private void writeTargetBook(JsonWriter out, BookInfo book) throws IOException {
+        out.beginObject()
+            .name("id").value(book.getId())
+            .name("title").value(book.getTitle())
+            .name("author").value(book.getAuthor())
+            .name("publisher").value(book.getPublisher())
+            .name("available").value(book.isAvailable())
+            .name("description").value(trimDescription(book.getDescription()))
+            .name("borrowCount").value(book.getBorrowCount())
+            .name("averageRating").value(book.getAverageRating())
+            .name("reviewCount").value(book.getReviewCount())
+            .endObject();
+    }
+
+    private static void writeHistoryRecord(JsonWriter out, BorrowHistory record) throws IOException {
+        out.beginObject()
+            .name("bookId").value(record.getBookId())
+            .name("bookTitle").value(record.getBookTitle())
+            .name("borrowDate").value(record.getBorrowDate())
+            .name("returnDate").value(record.getReturnDate() != null ? record.getReturnDate() : "未歸還")
+            .name("status").value(record.getStatus())
+            .endObject();
+    }
+
+    private static void writeCurrentBorrowing(JsonWriter out, BorrowHistory record) throws IOException {
+        out.beginObject()
+            .name("bookId").value(record.getBookId())
+            .name("bookTitle").value(record.getBookTitle())
+            .name("borrowDate").value(record.getBorrowDate())
+            .name("dueDate").value(record.getDueDate() != null ? record.getDueDate() : "未提供")
+            .name("status").value(record.getStatus())
+            .endObject();
+    }
+
+    private static void writeRule(JsonWriter out, LibraryRulesRepository.LibraryRule rule) throws IOException {
+        out.beginObject()
+            .name("category").value(rule.category)
+            .name("question").value(rule.question)
+            .name("answer").value(rule.answer)
+            .endObject();
+    }
+
+    private String trimDescription(String description) {
+        if (description == null) {
+            return "";
+        }
+        if (description.length() <= descriptionLimit) {
+            return description;
+        }
+        return description.substring(0, descriptionLimit) + "...";
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
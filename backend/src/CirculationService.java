@@ -0,0 +1,266 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circulation Service
+ * Borrow and return, each as a single transaction on the shared writer
+ *
+ * Borrow:  UPDATE books ... WHERE is_available = 1   (only one concurrent borrow wins)
+ *          loan limit check, borrow_history INSERT, outbox event
+ * Return:  UPDATE borrow_history ... WHERE status is active   (only one return wins)
+ *          UPDATE books back to available, outbox event
+ *
+ * A borrow starts with its conditional UPDATE, so the loan limit is counted with the write
+ * lock already held. Any step failing rolls back all of them; the catalog cache and change
+ * listeners are only updated after the commit. The cache is updated before the writer is
+ * released, so it sees a book's borrows and returns in commit order.
+ */
+public class CirculationService {
+
+    public enum Outcome {
+        SUCCESS,
+        BOOK_NOT_FOUND,
+        NOT_AVAILABLE,     // Borrow: someone else has the book
+        LIMIT_REACHED,     // Borrow: user already has MAX_ACTIVE_LOANS books
+        NOT_BORROWED,      // Return: no active loan for the book
+        NOT_BORROWER,      // Return: the active loan belongs to another user
+        FAILED             // Database error, everything rolled back
+    }
+
+    private final BookDatabaseRepository bookRepository;
+    private final BorrowHistoryRepository historyRepository;
+    private final LibraryRulesRepository rules;
+    private final OutboxRepository outboxRepository;
+    private final OutboxDispatcher outboxDispatcher;
+
+    // Metrics
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong returns = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong limitRejections = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong transactionNanos = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+
+    /**
+     * @param outboxRepository Where borrow/return events are recorded (null: no events)
+     * @param outboxDispatcher Woken after a commit (may be null)
+     */
+    public CirculationService(BookDatabaseRepository bookRepository, BorrowHistoryRepository historyRepository,
+                              LibraryRulesRepository rules, OutboxRepository outboxRepository,
+                              OutboxDispatcher outboxDispatcher) {
+        this.bookRepository = bookRepository;
+        this.historyRepository = historyRepository;
+        this.rules = rules;
+        this.outboxRepository = outboxRepository;
+        this.outboxDispatcher = outboxDispatcher;
+    }
+
+    /**
+     * Borrow a book for the user
+     */
+    public Result borrow(String userId, String bookId) {
+        BookInfo book = bookRepository.findById(bookId);
+        if (book == null) {
+            return new Result(Outcome.BOOK_NOT_FOUND, null);
+        }
+
+        LocalDate borrowDate = LocalDate.now();
+        LocalDate dueDate = borrowDate.plusDays(rules.getLoanDays());
+        Result result = new Result(Outcome.FAILED, book);
+        result.borrowDate = borrowDate.toString();
+        result.dueDate = dueDate.toString();
+
+        long start = System.nanoTime();
+        try {
+            commit(bookId, false, conn -> {
+                if (!bookRepository.compareAndSetAvailable(conn, bookId, true, false)) {
+                    result.outcome = Outcome.NOT_AVAILABLE;
+                    return false;
+                }
+                // After the UPDATE: no other borrow by this user can commit in between
+                if (historyRepository.countActiveLoans(conn, userId) >= rules.getMaxActiveLoans()) {
+                    result.outcome = Outcome.LIMIT_REACHED;
+                    return false;
+                }
+                historyRepository.insertBorrowRecord(conn, userId, bookId, book.getTitle(), borrowDate, dueDate);
+                if (!appendEvent(NotificationService.EVENT_BOOK_BORROWED, NotificationService.bookBorrowedPayload(
+                        userId, book.getTitle(), result.borrowDate, result.dueDate))) {
+                    return false;
+                }
+                result.outcome = Outcome.SUCCESS;
+                return true;
+            });
+        } catch (SQLException e) {
+            System.err.println("❌ Borrow of " + bookId + " by " + userId + " failed: " + e.getMessage());
+            result.outcome = Outcome.FAILED;
+        }
+        record(result.outcome, start, borrows);
+
+        if (result.outcome == Outcome.SUCCESS) {
+            bookRepository.availabilityCommitted(bookId);
+            historyRepository.loanCommitted(BookChangeListener.ChangeType.BORROWED, bookId, userId);
+            wakeOutbox();
+            result.book = bookRepository.findById(bookId);
+        }
+        return result;
+    }
+
+    /**
+     * Return a book the user has borrowed
+     */
+    public Result returnBook(String userId, String bookId) {
+        BookInfo book = bookRepository.findById(bookId);
+        if (book == null) {
+            return new Result(Outcome.BOOK_NOT_FOUND, null);
+        }
+
+        LocalDate returnDate = LocalDate.now();
+        Result result = new Result(Outcome.FAILED, book);
+
+        long start = System.nanoTime();
+        try {
+            commit(bookId, true, conn -> {
+                BorrowHistory loan = historyRepository.findActiveLoan(conn, bookId);
+                if (loan == null) {
+                    result.outcome = Outcome.NOT_BORROWED;
+                    return false;
+                }
+                if (!userId.equals(loan.getUserId())) {
+                    result.outcome = Outcome.NOT_BORROWER;
+                    return false;
+                }
+                if (!historyRepository.closeLoan(conn, loan.getId(), returnDate)) {
+                    result.outcome = Outcome.NOT_BORROWED;  // Returned concurrently
+                    return false;
+                }
+                // Already available only if the two tables were out of sync; the loan still closes
+                bookRepository.compareAndSetAvailable(conn, bookId, false, true);
+
+                LocalDate dueDate = LocalDate.parse(loan.getDueDate());
+                result.borrowDate = loan.getBorrowDate();
+                result.dueDate = loan.getDueDate();
+                result.borrowDays = (int) ChronoUnit.DAYS.between(LocalDate.parse(loan.getBorrowDate()), returnDate);
+                result.overdue = returnDate.isAfter(dueDate);
+                if (!appendEvent(NotificationService.EVENT_BOOK_RETURNED, NotificationService.bookReturnedPayload(
+                        userId, book.getTitle(), result.borrowDays, result.overdue))) {
+                    return false;
+                }
+                result.outcome = Outcome.SUCCESS;
+                return true;
+            });
+        } catch (SQLException e) {
+            System.err.println("❌ Return of " + bookId + " by " + userId + " failed: " + e.getMessage());
+            result.outcome = Outcome.FAILED;
+        }
+        record(result.outcome, start, returns);
+
+        if (result.outcome == Outcome.SUCCESS) {
+            bookRepository.availabilityCommitted(bookId);
+            historyRepository.loanCommitted(BookChangeListener.ChangeType.RETURNED, bookId, userId);
+            wakeOutbox();
+            result.book = bookRepository.findById(bookId);
+        }
+        return result;
+    }
+
+    /**
+     * Run work as one transaction; once committed, put the book's new availability in the
+     * catalog cache before the writer is released
+     */
+    private boolean commit(String bookId, boolean available, DatabaseConnectionPool.TransactionWork work)
+            throws SQLException {
+        DatabaseConnectionPool pool = bookRepository.getPool();
+        Connection writer = pool.write();  // Held past the commit (inTransaction re-enters it)
+        try {
+            boolean committed = pool.inTransaction(work);
+            if (committed) {
+                bookRepository.cacheCommittedAvailability(bookId, available);
+            }
+            return committed;
+        } finally {
+            writer.close();
+        }
+    }
+
+    private boolean appendEvent(String eventType, String payload) {
+        return outboxRepository == null || outboxRepository.append(eventType, payload);
+    }
+
+    private void wakeOutbox() {
+        if (outboxDispatcher != null) {
+            outboxDispatcher.wakeUp();
+        }
+    }
+
+    private void record(Outcome outcome, long start, AtomicLong successes) {
+        transactions.incrementAndGet();
+        transactionNanos.addAndGet(System.nanoTime() - start);
+        switch (outcome) {
+            case SUCCESS:
+                successes.incrementAndGet();
+                break;
+            case NOT_AVAILABLE:
+            case NOT_BORROWED:
+                conflicts.incrementAndGet();
+                break;
+            case LIMIT_REACHED:
+                limitRejections.incrementAndGet();
+                break;
+            case FAILED:
+                failures.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Outcome of a borrow or return, with the book after it and the loan dates
+     */
+    public static class Result {
+        public Outcome outcome;
+        public BookInfo book;
+        public String borrowDate;
+        public String dueDate;
+        public int borrowDays;
+        public boolean overdue;
+
+        Result(Outcome outcome, BookInfo book) {
+            this.outcome = outcome;
+            this.book = book;
+        }
+
+        public boolean isSuccess() {
+            return outcome == Outcome.SUCCESS;
+        }
+    }
+
+    // ===== Metrics =====
+
+    public CirculationStats getStats() {
+        CirculationStats stats = new CirculationStats();
+        stats.maxActiveLoans = rules.getMaxActiveLoans();
+        stats.borrows = borrows.get();
+        stats.returns = returns.get();
+        stats.conflicts = conflicts.get();
+        stats.limitRejections = limitRejections.get();
+        stats.failures = failures.get();
+        long count = transactions.get();
+        stats.avgTransactionMs = count > 0 ? transactionNanos.get() / 1_000_000.0 / count : 0;
+        return stats;
+    }
+
+    public static class CirculationStats {
+        public int maxActiveLoans;
+        public long borrows;
+        public long returns;
+        public long conflicts;
+        public long limitRejections;
+        public long failures;
+        public double avgTransactionMs;
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.sql.*;
 
@@ -6,13 +8,32 @@ import java.sql.*;
  * Context Retriever - 上下文檢索器
  * 根據問題類型從資料庫檢索相關資料
  *
+ * - 各資料來源（借閱記錄、可借書籍、目標書籍、規則、統計）平行檢索
+ * - 每次聊天有總期限（CONTEXT_DEADLINE_MS），逾時的來源直接略過
+ * - 可借書籍清單由目錄快取的版本化快照產生，目錄沒變就不重算
+ * - 各來源耗時記錄在 ChatContext 中
+ *
  * Status: 階段 4 - 完整實作
  */
 public class ContextRetriever {
 
+    private static final long DEADLINE_MS = longEnv("CONTEXT_DEADLINE_MS", 1500);
+
+    // Shared by every retriever; lookups are short database/cache reads
+    private static final ExecutorService LOOKUPS = Executors.newFixedThreadPool(
+        (int) longEnv("CONTEXT_THREADS", 8), runnable -> {
+            Thread thread = new Thread(runnable, "context-retriever");
+            thread.setDaemon(true);
+            return thread;
+        });
+
     private final BorrowHistoryRepository historyRepo;
     private final BookDatabaseRepository bookRepo;
     private final LibraryRulesRepository rulesRepo;
+    private final QuestionClassifier classifier = new QuestionClassifier();
+
+    // Available books derived from one catalog snapshot (read-only, shared between chats)
+    private volatile AvailableBooks availableBooks;
 
     public ContextRetriever(BorrowHistoryRepository historyRepo,
                            BookDatabaseRepository bookRepo,
@@ -36,30 +57,64 @@ public class ContextRetriever {
         System.out.println("🔍 Retrieving context for user: " + userId);
         System.out.println("   Question types: " + types);
 
-        ChatContext context = new ChatContext();
+        // Each source fills its own part; parts are merged in this order afterwards
+        Map<String, Consumer<ChatContext>> sources = new LinkedHashMap<>();
 
         // 1. 借閱記錄
         if (types.contains(QuestionClassifier.QuestionType.BORROW_HISTORY)) {
-            retrieveBorrowHistory(userId, context);
+            sources.put("borrowHistory", part -> retrieveBorrowHistory(userId, part));
         }
 
         // 2. 書籍搜尋
         if (types.contains(QuestionClassifier.QuestionType.BOOK_SEARCH)) {
-            retrieveAvailableBooks(context);
+            sources.put("availableBooks", this::retrieveAvailableBooks);
         }
 
         // 3. 書籍可借狀態
         if (types.contains(QuestionClassifier.QuestionType.BOOK_AVAILABILITY)) {
-            retrieveTargetBook(message, context);
+            sources.put("targetBook", part -> retrieveTargetBook(message, part));
         }
 
         // 4. 圖書館規則
         if (types.contains(QuestionClassifier.QuestionType.LIBRARY_RULES)) {
-            retrieveLibraryRules(context);
+            sources.put("libraryRules", this::retrieveLibraryRules);
         }
 
         // 5. 總是包含統計資訊
-        retrieveStats(context);
+        sources.put("stats", this::retrieveStats);
+
+        ChatContext context = new ChatContext();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DEADLINE_MS);
+
+        Map<String, CompletableFuture<ChatContext>> running = new LinkedHashMap<>();
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        for (Map.Entry<String, Consumer<ChatContext>> source : sources.entrySet()) {
+            running.put(source.getKey(), CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                ChatContext part = new ChatContext();
+                source.getValue().accept(part);
+                timings.put(source.getKey(), (System.nanoTime() - start) / 1_000_000);
+                return part;
+            }, LOOKUPS));
+        }
+
+        for (Map.Entry<String, CompletableFuture<ChatContext>> source : running.entrySet()) {
+            try {
+                long remaining = deadline - System.nanoTime();
+                context.merge(source.getValue().get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+                context.recordTiming(source.getKey(), timings.getOrDefault(source.getKey(), 0L));
+            } catch (TimeoutException e) {
+                source.getValue().cancel(false);
+                context.recordTiming(source.getKey(), -1);
+                System.err.println("⏱️  Context source timed out: " + source.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                context.recordTiming(source.getKey(), -1);
+                System.err.println("❌ Error retrieving " + source.getKey() + ": " + e.getCause());
+            }
+        }
 
         System.out.println("✅ Context retrieved: " + context.getSummary());
 
@@ -76,9 +131,9 @@ public class ContextRetriever {
             if (history != null && !history.isEmpty()) {
                 context.setBorrowHistory(history);
 
-                // 自動篩選出當前借閱
+                // 自動篩選出當前借閱（借閱中或逾期，尚未歸還）
                 List<BorrowHistory> current = history.stream()
-                    .filter(h -> "borrowed".equals(h.getStatus()))
+                    .filter(h -> h.isBorrowing() || h.isOverdue())
                     .collect(Collectors.toList());
 
                 context.setCurrentBorrowings(current);
@@ -93,37 +148,13 @@ public class ContextRetriever {
 
     /**
      * 檢索可借閱書籍
+     * 優先使用目錄快取的快照（依版本重用）；快取無法載入時才查資料庫
      */
     private void retrieveAvailableBooks(ChatContext context) {
         try {
-            List<BookInfo> allBooks = new ArrayList<>();
-
-            String sql = "SELECT id, title, author, publisher, description, is_available "
-                       + "FROM books "
-                       + "WHERE is_available = 1 "
-                       + "ORDER BY title COLLATE NOCASE";
-
-            try (java.sql.Connection conn = bookRepo.getConnection();
-                 java.sql.Statement stmt = conn.createStatement();
-                 java.sql.ResultSet rs = stmt.executeQuery(sql)) {
-
-                while (rs.next()) {
-                    BookInfo book = new BookInfo(
-                        rs.getString("id"),
-                        rs.getString("title"),
-                        rs.getString("author"),
-                        rs.getString("publisher"),
-                        rs.getString("description")
-                    );
-
-                    if (rs.getInt("is_available") == 1) {
-                        book.markAsReturned();
-                    } else {
-                        book.markAsBorrowed();
-                    }
-
-                    allBooks.add(book);
-                }
+            List<BookInfo> allBooks = availableFromSnapshot();
+            if (allBooks == null) {
+                allBooks = loadAvailableBooks();
             }
 
             if (!allBooks.isEmpty()) {
@@ -136,13 +167,65 @@ public class ContextRetriever {
         }
     }
 
+    /**
+     * Available books ordered by title, rebuilt only when the catalog version changes
+     * @return shared read-only list, or null if the catalog cache can't be loaded
+     */
+    private List<BookInfo> availableFromSnapshot() {
+        BookCatalogCache catalog = bookRepo.getCatalogCache();
+        long version = catalog.getVersion();
+        if (version < 0) {
+            return null;
+        }
+        AvailableBooks current = availableBooks;
+        if (current != null && current.version == version) {
+            return current.books;
+        }
+        List<BookInfo> books = catalog.filter(BookInfo::isAvailable);
+        books.sort(Comparator.comparing(BookInfo::getTitle, String.CASE_INSENSITIVE_ORDER));
+        availableBooks = new AvailableBooks(version, Collections.unmodifiableList(books));
+        return availableBooks.books;
+    }
+
+    private List<BookInfo> loadAvailableBooks() throws SQLException {
+        List<BookInfo> allBooks = new ArrayList<>();
+
+        String sql = "SELECT id, title, author, publisher, description, is_available "
+                   + "FROM books "
+                   + "WHERE is_available = 1 "
+                   + "ORDER BY title COLLATE NOCASE";
+
+        try (java.sql.Connection conn = bookRepo.getPool().read();
+             java.sql.Statement stmt = conn.createStatement();
+             java.sql.ResultSet rs = stmt.executeQuery(sql)) {
+
+            while (rs.next()) {
+                BookInfo book = new BookInfo(
+                    rs.getString("id"),
+                    rs.getString("title"),
+                    rs.getString("author"),
+                    rs.getString("publisher"),
+                    rs.getString("description")
+                );
+
+                if (rs.getInt("is_available") == 1) {
+                    book.markAsReturned();
+                } else {
+                    book.markAsBorrowed();
+                }
+
+                allBooks.add(book);
+            }
+        }
+        return allBooks;
+    }
+
     /**
      * 檢索特定書籍
      */
     private void retrieveTargetBook(String message, ChatContext context) {
         try {
             // 使用 QuestionClassifier 提取書名
-            QuestionClassifier classifier = new QuestionClassifier();
             String bookTitle = classifier.extractBookTitle(message);
 
             if (bookTitle != null && !bookTitle.isEmpty()) {
@@ -212,4 +295,23 @@ public class ContextRetriever {
             return new ArrayList<>();
         }
     }
+
+    private static class AvailableBooks {
+        final long version;
+        final List<BookInfo> books;
+
+        AvailableBooks(long version, List<BookInfo> books) {
+            this.version = version;
+            this.books = books;
+        }
+    }
+
+    private static long longEnv(String name, long defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
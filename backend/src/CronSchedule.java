@@ -0,0 +1,130 @@
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * Cron Schedule
+ * Standard 5-field cron expression: minute hour day-of-month month day-of-week
+ *
+ * Each field accepts *, numbers, ranges (1-5), lists (1,15) and steps (0-59/10, 8-18/2).
+ * Day of week is 0-7 (0 and 7 are Sunday). As in cron, when both day fields are
+ * restricted a day matching either one fires.
+ *
+ * Times are evaluated in the zone of the ZonedDateTime passed to {@link #next}: a
+ * "0 9 * * *" job fires at 09:00 local time on both sides of a DST change.
+ */
+public class CronSchedule {
+
+    private final String expression;
+    private final BitSet minutes;
+    private final BitSet hours;
+    private final BitSet daysOfMonth;
+    private final BitSet months;
+    private final BitSet daysOfWeek;
+    private final boolean dayOfMonthRestricted;
+    private final boolean dayOfWeekRestricted;
+
+    /**
+     * @throws IllegalArgumentException When the expression is not a valid 5-field cron expression
+     */
+    public CronSchedule(String expression) {
+        String[] fields = expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression needs 5 fields: " + expression);
+        }
+        this.expression = expression.trim();
+        this.minutes = parseField(fields[0], 0, 59);
+        this.hours = parseField(fields[1], 0, 23);
+        this.daysOfMonth = parseField(fields[2], 1, 31);
+        this.months = parseField(fields[3], 1, 12);
+        this.daysOfWeek = parseField(fields[4], 0, 7);
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+        }
+        this.dayOfMonthRestricted = !"*".equals(fields[2]);
+        this.dayOfWeekRestricted = !"*".equals(fields[4]);
+    }
+
+    /**
+     * First fire time strictly after the given time
+     */
+    public ZonedDateTime next(ZonedDateTime after) {
+        ZonedDateTime time = after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        ZonedDateTime limit = time.plusYears(5);  // e.g. "0 0 31 2 *" never fires
+
+        while (time.isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!dayMatches(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!minutes.get(time.getMinute())) {
+                time = time.plusMinutes(1);
+            } else {
+                return time;
+            }
+        }
+        throw new IllegalStateException("Cron expression never fires: " + expression);
+    }
+
+    private boolean dayMatches(ZonedDateTime time) {
+        boolean dom = daysOfMonth.get(time.getDayOfMonth());
+        boolean dow = daysOfWeek.get(time.getDayOfWeek().getValue() % 7);
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            return dom || dow;
+        }
+        return dom && dow;
+    }
+
+    private static BitSet parseField(String field, int min, int max) {
+        BitSet values = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            String range = part;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, max);
+                range = part.substring(0, slash);
+            }
+
+            int from;
+            int to;
+            if ("*".equals(range)) {
+                from = min;
+                to = max;
+            } else if (range.contains("-")) {
+                String[] bounds = range.split("-", 2);
+                from = parseNumber(bounds[0], min, max);
+                to = parseNumber(bounds[1], min, max);
+            } else {
+                from = parseNumber(range, min, max);
+                to = slash >= 0 ? max : from;
+            }
+            if (from > to) {
+                throw new IllegalArgumentException("Invalid cron range: " + part);
+            }
+            for (int value = from; value <= to; value += step) {
+                values.set(value);
+            }
+        }
+        return values;
+    }
+
+    private static int parseNumber(String value, int min, int max) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number < min || number > max) {
+                throw new IllegalArgumentException("Cron value " + number + " outside " + min + "-" + max);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cron value: " + value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
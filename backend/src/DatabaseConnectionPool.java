@@ -0,0 +1,764 @@
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Database Connection Pool
+ * Long-lived SQLite connections shared by every repository
+ *
+ * Layout (SQLite allows one writer and many readers in WAL mode):
+ * - 1 writer connection, handed out exclusively (re-entrant per thread)
+ * - N reader connections (PRAGMA query_only), handed out from a bounded queue
+ *
+ * Connections are returned as proxies: close() gives the connection back to
+ * the pool, and prepareStatement() is served from a per-connection cache.
+ * A thread that already holds a connection gets the same one again, so
+ * repository methods can be composed inside a transaction without deadlocking.
+ */
+public class DatabaseConnectionPool {
+
+    private static final int DEFAULT_READERS = intEnv("DB_POOL_READERS", 4);
+    private static final long CHECKOUT_TIMEOUT_MS = intEnv("DB_POOL_TIMEOUT_MS", 5000);
+    private static final int BUSY_TIMEOUT_MS = 5000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    private static final long VALIDATE_AFTER_IDLE_MS = 30_000;
+    private static final int WAIT_SAMPLES = 1024;
+
+    // One pool per database file, so books/users/notifications share the same writer
+    private static final Map<String, DatabaseConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseConnectionPool::closeAll, "db-pool-shutdown"));
+    }
+
+    private final String name;
+    private final String dbUrl;
+    private final boolean ownsConnections;
+
+    private final PooledConnection writer;
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private final BlockingQueue<PooledConnection> idleReaders;
+    private final int readerCount;
+    private final ThreadLocal<Lease> currentLease = new ThreadLocal<>();
+
+    // Writer sessions released so far; each one gets the next number as it is handed back
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final ThreadLocal<Long> lastWriteSequence = ThreadLocal.withInitial(() -> 0L);
+    private volatile boolean closed = false;
+
+    // Metrics
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final long[] waitSamples = new long[WAIT_SAMPLES];
+    private int waitSampleIndex = 0;
+    private int waitSampleCount = 0;
+
+    /**
+     * Get (or create) the shared pool for a database file path
+     */
+    public static DatabaseConnectionPool forPath(String dbPath) {
+        String key = new File(dbPath).getAbsolutePath();
+        synchronized (POOLS) {
+            DatabaseConnectionPool pool = POOLS.get(key);
+            // A deleted database file means the pooled handles point at a dead inode
+            if (pool != null && !new File(dbPath).exists()) {
+                pool.close();
+                POOLS.remove(key);
+                pool = null;
+            }
+            if (pool == null) {
+                pool = new DatabaseConnectionPool(dbPath, DEFAULT_READERS);
+                POOLS.put(key, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Get the shared pool for a JDBC url ("jdbc:sqlite:path")
+     */
+    public static DatabaseConnectionPool forUrl(String dbUrl) {
+        return forPath(dbUrl.startsWith("jdbc:sqlite:") ? dbUrl.substring("jdbc:sqlite:".length()) : dbUrl);
+    }
+
+    /**
+     * Wrap a single caller-owned connection (legacy constructors and tests)
+     * All access is serialized through the writer lock; the connection is never closed by the pool
+     */
+    public static DatabaseConnectionPool wrap(Connection connection) {
+        return new DatabaseConnectionPool(connection);
+    }
+
+    /**
+     * Close every shared pool (called on JVM shutdown)
+     */
+    public static void closeAll() {
+        synchronized (POOLS) {
+            for (DatabaseConnectionPool pool : POOLS.values()) {
+                pool.close();
+            }
+            POOLS.clear();
+        }
+    }
+
+    /**
+     * Snapshot of all shared pools, keyed by database file
+     */
+    public static Map<String, PoolStats> getAllStats() {
+        Map<String, PoolStats> stats = new LinkedHashMap<>();
+        for (DatabaseConnectionPool pool : POOLS.values()) {
+            stats.put(pool.name, pool.getStats());
+        }
+        return stats;
+    }
+
+    private DatabaseConnectionPool(String dbPath, int readers) {
+        this.name = dbPath;
+        this.dbUrl = "jdbc:sqlite:" + dbPath;
+        this.ownsConnections = true;
+        this.readerCount = readers;
+        this.idleReaders = new ArrayBlockingQueue<>(Math.max(1, readers));
+
+        // Create data directory once, instead of on every checkout
+        File parentDir = new File(dbPath).getAbsoluteFile().getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+
+        // No database file means any -wal/-shm left behind belongs to a deleted database
+        if (!new File(dbPath).exists()) {
+            new File(dbPath + "-wal").delete();
+            new File(dbPath + "-shm").delete();
+        }
+
+        try {
+            this.writer = new PooledConnection(openConnection(false), true);
+            for (int i = 0; i < readers; i++) {
+                idleReaders.add(new PooledConnection(openConnection(true), false));
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to open database pool for " + dbPath + ": " + e.getMessage(), e);
+        }
+
+        System.out.println("✅ Connection pool ready: " + dbPath + " (1 writer + " + readers + " readers, WAL)");
+    }
+
+    private DatabaseConnectionPool(Connection connection) {
+        this.name = "wrapped@" + Integer.toHexString(System.identityHashCode(connection));
+        this.dbUrl = null;
+        this.ownsConnections = false;
+        this.readerCount = 0;
+        this.idleReaders = new ArrayBlockingQueue<>(1);
+        this.writer = new PooledConnection(connection, true);
+    }
+
+    /**
+     * Open and configure a raw connection
+     */
+    private Connection openConnection(boolean readOnly) throws SQLException {
+        Connection conn = DriverManager.getConnection(dbUrl);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+            if (!readOnly) {
+                stmt.execute("PRAGMA journal_mode = WAL");
+                stmt.execute("PRAGMA synchronous = NORMAL");
+            } else {
+                stmt.execute("PRAGMA query_only = 1");
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * Check out a connection for reads
+     * Falls back to the writer when this thread already holds it (read-your-writes)
+     */
+    public Connection read() throws SQLException {
+        Lease lease = currentLease.get();
+        if (lease != null) {
+            lease.depth++;
+            return lease.slot.newProxy(lease);
+        }
+        if (readerCount == 0) {
+            return write();
+        }
+
+        ensureOpen();
+        long start = System.nanoTime();
+        PooledConnection slot;
+        try {
+            slot = idleReaders.poll(CHECKOUT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+        if (slot == null) {
+            timeouts.incrementAndGet();
+            throw new SQLException("Timed out after " + CHECKOUT_TIMEOUT_MS + " ms waiting for a reader connection");
+        }
+        recordWait(System.nanoTime() - start);
+        return lease(slot);
+    }
+
+    /**
+     * Check out the writer connection (exclusive, re-entrant for the holding thread)
+     */
+    public Connection write() throws SQLException {
+        Lease lease = currentLease.get();
+        if (lease != null && lease.slot.isWriter) {
+            lease.depth++;
+            return lease.slot.newProxy(lease);
+        }
+        if (lease != null) {
+            // Upgrading a held reader would hide the writes from this thread's reader; keep them separate
+            throw new SQLException("Cannot acquire the writer while holding a reader connection");
+        }
+
+        ensureOpen();
+        long start = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(CHECKOUT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + CHECKOUT_TIMEOUT_MS + " ms waiting for the writer connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the writer connection");
+        }
+        recordWait(System.nanoTime() - start);
+        return lease(writer);
+    }
+
+    private Connection lease(PooledConnection slot) throws SQLException {
+        try {
+            slot.validate();
+        } catch (SQLException e) {
+            giveBack(slot);
+            throw e;
+        }
+        Lease lease = new Lease(slot);
+        currentLease.set(lease);
+        checkouts.incrementAndGet();
+        inUse.incrementAndGet();
+        return slot.newProxy(lease);
+    }
+
+    /**
+     * Work done inside {@link #inTransaction}
+     */
+    @FunctionalInterface
+    public interface TransactionWork {
+        /**
+         * @return true to commit, false to roll back
+         */
+        boolean run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Run work as one transaction on the writer
+     * Repository methods called from work get the same writer connection, so their
+     * statements join the transaction. Called inside another transaction, work simply
+     * joins the outer one (the outer caller commits).
+     *
+     * @return true if work returned true and the transaction committed; rolled back otherwise
+     * @throws SQLException If work or the commit fails (after rolling back)
+     */
+    public boolean inTransaction(TransactionWork work) throws SQLException {
+        try (Connection conn = write()) {
+            if (!conn.getAutoCommit()) {
+                return work.run(conn);
+            }
+
+            conn.setAutoCommit(false);
+            try {
+                if (work.run(conn)) {
+                    conn.commit();
+                    return true;
+                }
+                conn.rollback();
+                return false;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Read work done inside {@link #snapshot}
+     */
+    @FunctionalInterface
+    public interface SnapshotWork {
+        void run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Run read-only work on the writer inside one transaction, then roll it back
+     * No write can commit while it runs, so writeSequence() read inside it marks exactly
+     * which writes it saw. The session is not counted as a write.
+     */
+    public void snapshot(SnapshotWork work) throws SQLException {
+        try (Connection conn = write()) {
+            Lease lease = currentLease.get();
+            if (lease.depth == 1) {
+                lease.readOnly = true;
+            }
+            if (!conn.getAutoCommit()) {
+                work.run(conn);  // Inside the caller's transaction
+                return;
+            }
+            conn.setAutoCommit(false);
+            try {
+                work.run(conn);
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Writer sessions completed so far
+     * Read while holding the writer, it marks exactly which writes a snapshot contains
+     */
+    public long writeSequence() {
+        return writeSequence.get();
+    }
+
+    /**
+     * Sequence number of this thread's latest write: the writer session it holds now,
+     * otherwise the last one it released. A change listener compares it with the
+     * writeSequence() taken for a snapshot to tell whether the write is already in it.
+     */
+    public long lastWriteSequence() {
+        Lease lease = currentLease.get();
+        if (lease != null && lease.slot.isWriter) {
+            return writeSequence.get() + 1;  // Nobody else can release the writer before us
+        }
+        return lastWriteSequence.get();
+    }
+
+    /**
+     * Called when a proxy is closed
+     */
+    private void release(Lease lease) {
+        if (--lease.depth > 0) {
+            return;
+        }
+        currentLease.remove();
+        inUse.decrementAndGet();
+
+        PooledConnection slot = lease.slot;
+        slot.lastUsed = System.currentTimeMillis();
+        try {
+            // Never hand out a connection stuck inside someone else's transaction
+            if (!slot.raw.getAutoCommit()) {
+                System.err.println("⚠️  Connection returned with an open transaction, rolling back");
+                slot.raw.rollback();
+                slot.raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            slot.broken = true;
+        }
+        if (slot.isWriter && !lease.readOnly) {
+            lastWriteSequence.set(writeSequence.incrementAndGet());
+        }
+        giveBack(slot);
+    }
+
+    private void giveBack(PooledConnection slot) {
+        if (slot.isWriter) {
+            writerLock.unlock();
+        } else if (closed) {
+            slot.closeQuietly();
+        } else {
+            idleReaders.offer(slot);
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed: " + name);
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+        synchronized (waitSamples) {
+            waitSamples[waitSampleIndex] = nanos;
+            waitSampleIndex = (waitSampleIndex + 1) % WAIT_SAMPLES;
+            if (waitSampleCount < WAIT_SAMPLES) {
+                waitSampleCount++;
+            }
+        }
+    }
+
+    /**
+     * Close all pooled connections
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!ownsConnections) {
+            return;
+        }
+        PooledConnection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            reader.closeQuietly();
+        }
+        writer.closeQuietly();
+    }
+
+    /**
+     * Current pool metrics
+     */
+    public PoolStats getStats() {
+        PoolStats stats = new PoolStats();
+        stats.readers = readerCount;
+        stats.idleReaders = idleReaders.size();
+        stats.inUse = inUse.get();
+        stats.writerHeld = writerLock.isLocked();
+        stats.writerQueueLength = writerLock.getQueueLength();
+        stats.checkouts = checkouts.get();
+        stats.timeouts = timeouts.get();
+        long count = Math.max(1, checkouts.get());
+        stats.avgWaitMs = totalWaitNanos.get() / 1_000_000.0 / count;
+        stats.maxWaitMs = maxWaitNanos.get() / 1_000_000.0;
+        stats.p99WaitMs = percentileWaitMs(0.99);
+        stats.statementCacheHits = statementCacheHits.get();
+        stats.statementCacheMisses = statementCacheMisses.get();
+        stats.reconnects = reconnects.get();
+        return stats;
+    }
+
+    private double percentileWaitMs(double percentile) {
+        long[] copy;
+        synchronized (waitSamples) {
+            copy = Arrays.copyOf(waitSamples, waitSampleCount);
+        }
+        if (copy.length == 0) {
+            return 0.0;
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * Pool statistics - serialized as-is by the metrics endpoint
+     */
+    public static class PoolStats {
+        public int readers;
+        public int idleReaders;
+        public int inUse;
+        public boolean writerHeld;
+        public int writerQueueLength;
+        public long checkouts;
+        public long timeouts;
+        public double avgWaitMs;
+        public double p99WaitMs;
+        public double maxWaitMs;
+        public long statementCacheHits;
+        public long statementCacheMisses;
+        public long reconnects;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // ===== Internals =====
+
+    /**
+     * One checkout of a pooled connection by a thread (depth counts re-entrant checkouts)
+     */
+    private static class Lease {
+        final PooledConnection slot;
+        int depth = 1;
+        boolean readOnly;  // Writer session opened by snapshot(): not counted as a write
+
+        Lease(PooledConnection slot) {
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * A physical connection plus its prepared-statement cache
+     */
+    private class PooledConnection {
+        Connection raw;
+        final boolean isWriter;
+        final Map<String, CachedStatement> statements;
+        long lastUsed = System.currentTimeMillis();
+        boolean broken = false;
+
+        PooledConnection(Connection raw, boolean isWriter) {
+            this.raw = raw;
+            this.isWriter = isWriter;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() > STATEMENT_CACHE_SIZE && !eldest.getValue().inUse) {
+                        eldest.getValue().closeQuietly();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        /**
+         * Health check: reopen broken or stale connections before handing them out
+         */
+        void validate() throws SQLException {
+            boolean idleTooLong = System.currentTimeMillis() - lastUsed > VALIDATE_AFTER_IDLE_MS;
+            if (!broken && !idleTooLong) {
+                return;
+            }
+            if (!broken && raw.isValid(2)) {
+                return;
+            }
+            if (!ownsConnections) {
+                throw new SQLException("Wrapped connection is no longer valid");
+            }
+            closeQuietly();
+            raw = openConnection(!isWriter);
+            broken = false;
+            reconnects.incrementAndGet();
+            System.err.println("⚠️  Reopened " + (isWriter ? "writer" : "reader") + " connection for " + name);
+        }
+
+        Connection newProxy(Lease lease) {
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new ConnectionHandler(this, lease)
+            );
+        }
+
+        PreparedStatement prepare(String sql, Integer autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + "#" + sql;
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse) {
+                statementCacheHits.incrementAndGet();
+            } else if (cached != null) {
+                // Same SQL already open higher up the call stack; use a one-off statement
+                statementCacheMisses.incrementAndGet();
+                return statementProxy(new CachedStatement(newStatement(sql, autoGeneratedKeys)), false);
+            } else {
+                statementCacheMisses.incrementAndGet();
+                cached = new CachedStatement(newStatement(sql, autoGeneratedKeys));
+                statements.put(key, cached);
+            }
+            cached.inUse = true;
+            return statementProxy(cached, true);
+        }
+
+        private PreparedStatement newStatement(String sql, Integer autoGeneratedKeys) throws SQLException {
+            return autoGeneratedKeys == null
+                ? raw.prepareStatement(sql)
+                : raw.prepareStatement(sql, autoGeneratedKeys);
+        }
+
+        private PreparedStatement statementProxy(CachedStatement cached, boolean keep) {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new StatementHandler(cached, keep)
+            );
+        }
+
+        void closeQuietly() {
+            for (CachedStatement cached : statements.values()) {
+                cached.closeQuietly();
+            }
+            statements.clear();
+            if (ownsConnections) {
+                try {
+                    raw.close();
+                } catch (SQLException ignored) {
+                    // Already gone
+                }
+            }
+        }
+    }
+
+    private static class CachedStatement {
+        final PreparedStatement statement;
+        ResultSet lastResult;
+        boolean inUse;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * Connection proxy: close() returns to the pool, prepareStatement() hits the cache
+     */
+    private class ConnectionHandler implements InvocationHandler {
+        private final PooledConnection slot;
+        private final Lease lease;
+        private boolean released = false;
+
+        ConnectionHandler(PooledConnection slot, Lease lease) {
+            this.slot = slot;
+            this.lease = lease;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            switch (methodName) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(lease);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || slot.raw.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + name + (slot.isWriter ? ", writer" : ", reader") + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if ("prepareStatement".equals(methodName) && args != null) {
+                if (args.length == 1) {
+                    return slot.prepare((String) args[0], null);
+                }
+                if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                    return slot.prepare((String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(slot.raw, args);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException && !"rollback".equals(methodName)) {
+                    checkBroken();
+                }
+                throw e.getCause();
+            }
+        }
+
+        private void checkBroken() {
+            try {
+                if (slot.raw.isClosed()) {
+                    slot.broken = true;
+                }
+            } catch (SQLException e) {
+                slot.broken = true;
+            }
+        }
+    }
+
+    /**
+     * Statement proxy: close() resets the cached statement instead of finalizing it
+     */
+    private static class StatementHandler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final boolean keep;
+        private boolean closed = false;
+
+        StatementHandler(CachedStatement cached, boolean keep) {
+            this.cached = cached;
+            this.keep = keep;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            switch (methodName) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        reset();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                Object result = method.invoke(cached.statement, args);
+                if ("executeQuery".equals(methodName)) {
+                    cached.lastResult = (ResultSet) result;
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void reset() throws SQLException {
+            try {
+                // Callers often leave the ResultSet open; finish it so the read snapshot is released
+                if (cached.lastResult != null) {
+                    cached.lastResult.close();
+                    cached.lastResult = null;
+                }
+                if (keep) {
+                    cached.statement.clearParameters();
+                    cached.statement.clearBatch();
+                } else {
+                    cached.statement.close();
+                }
+            } finally {
+                cached.inUse = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Due Reminder Engine
+ * Sends "due soon" reminders for every active loan due within REMINDER_DAYS, once per day
+ *
+ * A run is set-based instead of per loan:
+ * 1. One query selects the loans due soon that have no reminder logged today
+ * 2. Messages are rendered in memory
+ * 3. Reminder logs and notifications are written in one batched transaction
+ * so the cost is three statements per run, not four round trips per loan.
+ */
+public class DueReminderEngine {
+
+    private static final int REMINDER_DAYS = 3;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private final NotificationRepository notificationRepository;
+
+    private volatile RunReport lastRun;
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong totalSent = new AtomicLong();
+
+    public DueReminderEngine(NotificationRepository notificationRepository) {
+        this.notificationRepository = notificationRepository;
+    }
+
+    /**
+     * Send today's reminders
+     * @return Counts and timings of this run
+     */
+    public RunReport run(LocalDate today) {
+        long start = System.nanoTime();
+        String todayStr = today.format(DATE_FORMAT);
+        String lastDue = today.plusDays(REMINDER_DAYS).format(DATE_FORMAT);
+
+        // 1. Loans due today .. today + REMINDER_DAYS without a reminder today
+        List<NotificationRepository.DueBorrowing> borrowings =
+            notificationRepository.findDueSoonBorrowings(todayStr, lastDue, todayStr);
+        long selected = System.nanoTime();
+
+        // 2. Render (only REMINDER_DAYS + 1 distinct due dates)
+        Map<String, Long> daysLeftByDueDate = new HashMap<>();
+        List<Notification> reminders = new ArrayList<>(borrowings.size());
+        for (NotificationRepository.DueBorrowing borrowing : borrowings) {
+            long daysLeft = daysLeftByDueDate.computeIfAbsent(borrowing.dueDate,
+                due -> ChronoUnit.DAYS.between(today, LocalDate.parse(due)));
+            String message = String.format(
+                "您借閱的《%s》還有 %d 天到期，請記得按時歸還。",
+                borrowing.bookTitle, daysLeft
+            );
+            reminders.add(new Notification(borrowing.userId, NotificationType.DUE.getCode(), "到期提醒", message, "/history"));
+        }
+        long rendered = System.nanoTime();
+
+        // 3. Logs + notifications, one transaction
+        int sent = notificationRepository.createDueReminders(todayStr, borrowings, reminders);
+        long written = System.nanoTime();
+
+        RunReport report = new RunReport();
+        report.date = todayStr;
+        report.candidates = borrowings.size();
+        report.sent = sent;
+        report.queryMs = (selected - start) / 1_000_000;
+        report.renderMs = (rendered - selected) / 1_000_000;
+        report.writeMs = (written - rendered) / 1_000_000;
+        report.durationMs = (written - start) / 1_000_000;
+
+        lastRun = report;
+        runs.incrementAndGet();
+        totalSent.addAndGet(sent);
+        System.out.println("⏰ Due reminders " + todayStr + ": sent " + sent + " of " + report.candidates
+            + " due loans in " + report.durationMs + " ms (query " + report.queryMs + " ms, render "
+            + report.renderMs + " ms, write " + report.writeMs + " ms)");
+        return report;
+    }
+
+    // ===== Metrics =====
+
+    public EngineStats getStats() {
+        EngineStats stats = new EngineStats();
+        stats.reminderDays = REMINDER_DAYS;
+        stats.runs = runs.get();
+        stats.totalSent = totalSent.get();
+        stats.lastRun = lastRun;
+        return stats;
+    }
+
+    public static class EngineStats {
+        public int reminderDays;
+        public long runs;
+        public long totalSent;
+        public RunReport lastRun;
+    }
+
+    public static class RunReport {
+        public String date;
+        public int candidates;
+        public int sent;
+        public long queryMs;
+        public long renderMs;
+        public long writeMs;
+        public long durationMs;
+    }
+}
@@ -0,0 +1,433 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HTTP Request Engine
+ * Execution model for the HttpServer: which threads run handlers and how many may run per route
+ *
+ * Modes (HTTP_EXECUTOR):
+ * - "virtual"  : one virtual thread per request (default; needs a JDK with virtual threads)
+ * - "platform" : bounded platform thread pool (HTTP_THREADS, HTTP_QUEUE); requests that find the
+ *                queue full are parsed on a small shed pool and get the busy response (503)
+ * When virtual threads are not available the engine falls back to the platform pool.
+ *
+ * Per-route limits (HTTP_ROUTE_LIMITS, e.g. "/api/chat=8,/api/recommendations=16"):
+ * a request waits up to HTTP_ROUTE_WAIT_MS for a permit on the most specific matching
+ * prefix, then gets the busy response (503) instead of tying up a thread.
+ *
+ * Async handlers (registerAsync) return as soon as their upstream call is started and finish
+ * the exchange from a callback on the completion executor (HTTP_COMPLETION_THREADS). They never
+ * wait for a permit: above the route limit they get the busy response straight away, and the
+ * permit is held until the returned stage completes.
+ */
+public class HttpRequestEngine {
+
+    private static final String DEFAULT_ROUTE_LIMITS = "/api/chat=8,/api/recommendations=16";
+    private static final int SHED_THREADS = 2;
+
+    // Set while a shed thread runs an overflow request: wrap() answers 503 without calling the handler
+    private static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> false);
+
+    private final String mode;
+    private final ExecutorService executor;
+    private final ThreadPoolExecutor platformPool;
+    private final ExecutorService completionExecutor;
+    private final ThreadPoolExecutor shedPool;
+    private final HttpHandler busyHandler;
+    private final long routeWaitMs;
+
+    // Prefix -> limiter, longest prefix first
+    private final NavigableMap<String, RouteLimiter> limiters = new TreeMap<>(
+        Comparator.comparingInt(String::length).reversed().thenComparing(Comparator.naturalOrder())
+    );
+    private final Map<String, RouteStats> routeStats = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final AtomicInteger peakActiveRequests = new AtomicInteger();
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * Create engine from environment configuration
+     * @param busyHandler Writes the response for requests rejected by a route limit
+     */
+    public HttpRequestEngine(HttpHandler busyHandler) {
+        this(envOrDefault("HTTP_EXECUTOR", "virtual"),
+             intEnv("HTTP_THREADS", 32),
+             intEnv("HTTP_QUEUE", 256),
+             envOrDefault("HTTP_ROUTE_LIMITS", DEFAULT_ROUTE_LIMITS),
+             intEnv("HTTP_ROUTE_WAIT_MS", 2000),
+             intEnv("HTTP_COMPLETION_THREADS", 4),
+             busyHandler);
+    }
+
+    public HttpRequestEngine(String requestedMode, int threads, int queueSize,
+                             String routeLimits, long routeWaitMs, int completionThreads,
+                             HttpHandler busyHandler) {
+        this.busyHandler = busyHandler;
+        this.routeWaitMs = routeWaitMs;
+
+        ExecutorService virtual = "virtual".equalsIgnoreCase(requestedMode) ? newVirtualThreadExecutor() : null;
+        if (virtual != null) {
+            this.mode = "virtual";
+            this.executor = virtual;
+            this.platformPool = null;
+            this.completionExecutor = virtual;
+            this.shedPool = null;
+        } else {
+            if ("virtual".equalsIgnoreCase(requestedMode)) {
+                System.out.println("⚠️  Virtual threads not available on Java " + Runtime.version().feature()
+                    + ", using platform thread pool");
+            }
+            this.mode = "platform";
+            // AbortPolicy once the shed queue is full too: HttpServer then just closes the connection
+            this.shedPool = new ThreadPoolExecutor(SHED_THREADS, SHED_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), daemonFactory("http-shed-"),
+                new ThreadPoolExecutor.AbortPolicy());
+            this.platformPool = newPlatformPool(threads, queueSize, shedPool);
+            this.executor = platformPool;
+            this.completionExecutor = Executors.newFixedThreadPool(Math.max(1, completionThreads),
+                daemonFactory("http-completion-"));
+        }
+
+        parseRouteLimits(routeLimits);
+    }
+
+    /**
+     * Register a handler on the server, wrapped with route limits and gauges
+     */
+    public void register(HttpServer server, String path, HttpHandler handler) {
+        server.createContext(path, wrap(path, handler));
+    }
+
+    /**
+     * Register a handler that finishes its exchange asynchronously
+     */
+    public void registerAsync(HttpServer server, String path, AsyncHandler handler) {
+        server.createContext(path, wrapAsync(path, handler));
+    }
+
+    /**
+     * Wrap a handler with route limits and gauges
+     */
+    public HttpHandler wrap(String path, HttpHandler handler) {
+        RouteLimiter limiter = findLimiter(path);
+        RouteStats stats = routeStats.computeIfAbsent(path, p -> new RouteStats());
+
+        return exchange -> {
+            totalRequests.incrementAndGet();
+            stats.requests.incrementAndGet();
+
+            if (SHEDDING.get() || (limiter != null && !limiter.acquire(routeWaitMs))) {
+                reject(exchange, stats);
+                return;
+            }
+
+            int active = activeRequests.incrementAndGet();
+            peakActiveRequests.accumulateAndGet(active, Math::max);
+            stats.active.incrementAndGet();
+            try {
+                handler.handle(exchange);
+            } finally {
+                stats.active.decrementAndGet();
+                activeRequests.decrementAndGet();
+                if (limiter != null) {
+                    limiter.release();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap an async handler: the permit and gauges are released when its stage completes,
+     * not when handleAsync() returns
+     */
+    public HttpHandler wrapAsync(String path, AsyncHandler handler) {
+        RouteLimiter limiter = findLimiter(path);
+        RouteStats stats = routeStats.computeIfAbsent(path, p -> new RouteStats());
+
+        return exchange -> {
+            totalRequests.incrementAndGet();
+            stats.requests.incrementAndGet();
+
+            if (SHEDDING.get() || (limiter != null && !limiter.tryAcquire())) {
+                reject(exchange, stats);
+                return;
+            }
+
+            int active = activeRequests.incrementAndGet();
+            peakActiveRequests.accumulateAndGet(active, Math::max);
+            stats.active.incrementAndGet();
+            Runnable finish = () -> {
+                stats.active.decrementAndGet();
+                activeRequests.decrementAndGet();
+                if (limiter != null) {
+                    limiter.release();
+                }
+            };
+
+            CompletionStage<?> done;
+            try {
+                done = handler.handleAsync(exchange);
+            } catch (IOException | RuntimeException e) {
+                finish.run();
+                throw e;
+            }
+            if (done == null) {
+                finish.run();
+                return;
+            }
+            done.whenComplete((result, error) -> {
+                if (error != null) {
+                    System.err.println("❌ Async handler for " + path + " failed: " + error.getMessage());
+                    exchange.close();
+                }
+                finish.run();
+            });
+        };
+    }
+
+    /**
+     * Executor that async handlers finish their exchanges on - never the caller's I/O threads
+     */
+    public Executor getCompletionExecutor() {
+        return completionExecutor;
+    }
+
+    /**
+     * Executor to pass to HttpServer.setExecutor()
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Stop accepting work and wait briefly for in-flight requests
+     */
+    public void shutdown() {
+        executor.shutdown();
+        completionExecutor.shutdown();
+        if (shedPool != null) {
+            shedPool.shutdown();
+        }
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reject(HttpExchange exchange, RouteStats stats) throws IOException {
+        rejectedRequests.incrementAndGet();
+        stats.rejected.incrementAndGet();
+        rejectBusy(exchange);
+    }
+
+    private void rejectBusy(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        if (busyHandler != null) {
+            busyHandler.handle(exchange);
+        } else {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Most specific limiter whose prefix matches whole path segments
+     * ("/api/chat" covers "/api/chat" and "/api/chat/stream", not "/api/chatbot")
+     */
+    private RouteLimiter findLimiter(String path) {
+        for (Map.Entry<String, RouteLimiter> entry : limiters.entrySet()) {
+            String prefix = entry.getKey();
+            if (path.equals(prefix) || (path.startsWith(prefix)
+                    && (prefix.endsWith("/") || path.charAt(prefix.length()) == '/'))) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private void parseRouteLimits(String routeLimits) {
+        if (routeLimits == null || routeLimits.isBlank()) {
+            return;
+        }
+        for (String entry : routeLimits.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                continue;
+            }
+            try {
+                int permits = Integer.parseInt(parts[1].trim());
+                if (permits > 0) {
+                    limiters.put(parts[0].trim(), new RouteLimiter(permits));
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("⚠️  Invalid route limit: " + entry);
+            }
+        }
+    }
+
+    /**
+     * Virtual-thread-per-task executor, looked up reflectively so the server still runs on Java 17
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadPoolExecutor newPlatformPool(int threads, int queueSize, ThreadPoolExecutor shedPool) {
+        ThreadFactory factory = daemonFactory("http-worker-");
+        // Queue full: hand the request to the shed pool, which answers 503 + Retry-After.
+        // Never run it on the caller - that is the HttpServer dispatcher thread, and a slow
+        // handler there would stall every connection
+        RejectedExecutionHandler shed = (task, pool) -> shedPool.execute(() -> {
+            SHEDDING.set(true);
+            try {
+                task.run();
+            } finally {
+                SHEDDING.remove();
+            }
+        });
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)), factory, shed);
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Handler that starts its work and returns a stage completing once the response is written
+     * (null when the response was already written synchronously)
+     */
+    public interface AsyncHandler {
+        CompletionStage<?> handleAsync(HttpExchange exchange) throws IOException;
+    }
+
+    // ===== Metrics =====
+
+    /**
+     * Current engine gauges - serialized as-is by the metrics endpoint
+     */
+    public EngineStats getStats() {
+        EngineStats stats = new EngineStats();
+        stats.mode = mode;
+        stats.activeRequests = activeRequests.get();
+        stats.peakActiveRequests = peakActiveRequests.get();
+        stats.totalRequests = totalRequests.get();
+        stats.rejectedRequests = rejectedRequests.get();
+        if (platformPool != null) {
+            stats.poolSize = platformPool.getMaximumPoolSize();
+            stats.busyThreads = platformPool.getActiveCount();
+            stats.queueDepth = platformPool.getQueue().size();
+        }
+
+        for (Map.Entry<String, RouteLimiter> entry : limiters.entrySet()) {
+            RouteLimiter limiter = entry.getValue();
+            LimitStats limit = new LimitStats();
+            limit.maxConcurrent = limiter.permits;
+            limit.inFlight = limiter.permits - limiter.semaphore.availablePermits();
+            limit.waiting = limiter.semaphore.getQueueLength();
+            stats.queueDepth += limit.waiting;
+            stats.routeLimits.put(entry.getKey(), limit);
+        }
+
+        for (Map.Entry<String, RouteStats> entry : new TreeMap<>(routeStats).entrySet()) {
+            RouteStats route = entry.getValue();
+            if (route.requests.get() == 0) {
+                continue;
+            }
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("active", (long) route.active.get());
+            values.put("requests", route.requests.get());
+            values.put("rejected", route.rejected.get());
+            stats.routes.put(entry.getKey(), values);
+        }
+        return stats;
+    }
+
+    public static class EngineStats {
+        public String mode;
+        public int activeRequests;
+        public int peakActiveRequests;
+        public long totalRequests;
+        public long rejectedRequests;
+        public int poolSize;
+        public int busyThreads;
+        public int queueDepth;
+        public Map<String, LimitStats> routeLimits = new LinkedHashMap<>();
+        public Map<String, Map<String, Long>> routes = new LinkedHashMap<>();
+    }
+
+    public static class LimitStats {
+        public int maxConcurrent;
+        public int inFlight;
+        public int waiting;
+    }
+
+    private static class RouteLimiter {
+        final int permits;
+        final Semaphore semaphore;
+
+        RouteLimiter(int permits) {
+            this.permits = permits;
+            this.semaphore = new Semaphore(permits, true);
+        }
+
+        boolean acquire(long waitMs) {
+            try {
+                return semaphore.tryAcquire(waitMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        boolean tryAcquire() {
+            return semaphore.tryAcquire();
+        }
+
+        void release() {
+            semaphore.release();
+        }
+    }
+
+    private static class RouteStats {
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(envOrDefault(name, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Job Run Repository
+ * Persists the last run of each scheduled job, so runs missed while the server was
+ * down are caught up on the next start
+ */
+public class JobRunRepository {
+
+    private final DatabaseConnectionPool pool;
+
+    public JobRunRepository(DatabaseConnectionPool pool) {
+        this.pool = pool;
+        initialize();
+    }
+
+    /**
+     * Initialize job_runs table
+     * Idempotent: safe to run multiple times
+     */
+    private void initialize() {
+        String createTableSQL = """
+            CREATE TABLE IF NOT EXISTS job_runs (
+                job_name TEXT PRIMARY KEY,
+                last_scheduled_at INTEGER,
+                last_started_at INTEGER,
+                last_finished_at INTEGER,
+                last_status TEXT,
+                last_duration_ms INTEGER,
+                last_result TEXT,
+                run_count INTEGER NOT NULL DEFAULT 0,
+                failure_count INTEGER NOT NULL DEFAULT 0
+            )
+            """;
+
+        try (Connection conn = pool.write();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(createTableSQL);
+            System.out.println("✅ Job runs table initialized successfully");
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to initialize job_runs table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Last run of every job that has run, keyed by job name
+     */
+    public Map<String, JobRun> loadAll() {
+        String sql = """
+            SELECT job_name, last_scheduled_at, last_started_at, last_finished_at, last_status,
+                   last_duration_ms, last_result, run_count, failure_count
+            FROM job_runs
+            """;
+
+        Map<String, JobRun> runs = new HashMap<>();
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                JobRun run = new JobRun();
+                run.jobName = rs.getString("job_name");
+                run.lastScheduledAt = rs.getLong("last_scheduled_at");
+                run.lastStartedAt = rs.getLong("last_started_at");
+                run.lastFinishedAt = rs.getLong("last_finished_at");
+                run.lastStatus = rs.getString("last_status");
+                run.lastDurationMs = rs.getLong("last_duration_ms");
+                run.lastResult = rs.getString("last_result");
+                run.runCount = rs.getLong("run_count");
+                run.failureCount = rs.getLong("failure_count");
+                runs.put(run.jobName, run);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to load job runs: " + e.getMessage());
+        }
+        return runs;
+    }
+
+    /**
+     * Record a finished run
+     * @param scheduledAt Fire time this run satisfied (only advanced on success, so a
+     *                    failed run is retried and caught up after a restart)
+     */
+    public boolean recordRun(String jobName, long scheduledAt, long startedAt, long finishedAt,
+                             boolean success, String result) {
+        String sql = """
+            INSERT INTO job_runs (job_name, last_scheduled_at, last_started_at, last_finished_at,
+                                  last_status, last_duration_ms, last_result, run_count, failure_count)
+            VALUES (?, ?, ?, ?, ?, ?, ?, 1, ?)
+            ON CONFLICT(job_name) DO UPDATE SET
+                last_scheduled_at = CASE WHEN excluded.last_status = 'success'
+                                         THEN excluded.last_scheduled_at ELSE job_runs.last_scheduled_at END,
+                last_started_at = excluded.last_started_at,
+                last_finished_at = excluded.last_finished_at,
+                last_status = excluded.last_status,
+                last_duration_ms = excluded.last_duration_ms,
+                last_result = excluded.last_result,
+                run_count = job_runs.run_count + 1,
+                failure_count = job_runs.failure_count + excluded.failure_count
+            """;
+
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (success) {
+                pstmt.setLong(2, scheduledAt);
+            } else {
+                pstmt.setNull(2, Types.INTEGER);
+            }
+            pstmt.setString(1, jobName);
+            pstmt.setLong(3, startedAt);
+            pstmt.setLong(4, finishedAt);
+            pstmt.setString(5, success ? "success" : "failed");
+            pstmt.setLong(6, finishedAt - startedAt);
+            pstmt.setString(7, result);
+            pstmt.setInt(8, success ? 0 : 1);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Failed to record job run: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public static class JobRun {
+        public String jobName;
+        public long lastScheduledAt;
+        public long lastStartedAt;
+        public long lastFinishedAt;
+        public String lastStatus;
+        public long lastDurationMs;
+        public String lastResult;
+        public long runCount;
+        public long failureCount;
+    }
+}
@@ -0,0 +1,375 @@
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Job Scheduler
+ * Runs background jobs (due reminders, overdue status, session cleanup, ...) on cron schedules
+ *
+ * - Schedules are 5-field cron expressions in the server's time zone ({@link CronSchedule})
+ * - The fire time each successful run satisfied is persisted (job_runs); on start a job
+ *   whose next fire time already passed runs once to catch up (missed runs are coalesced)
+ * - Jobs run on a bounded worker pool (JOB_WORKERS, default 2); the dispatcher thread
+ *   only computes fire times
+ * - A job never overlaps itself: the next fire is scheduled after a run finishes, and a
+ *   manual run while it is running is skipped
+ * - Each fire is delayed by a random jitter (up to the job's maxJitterMs)
+ * - A failed run is retried after JOB_RETRY_SECONDS (default 300) unless the schedule
+ *   fires sooner
+ */
+public class JobScheduler {
+
+    private final JobRunRepository repository;
+    private final Clock clock;
+    private final long retryDelayMs;
+    private final ScheduledExecutorService dispatcher;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private volatile boolean started = false;
+
+    public JobScheduler(JobRunRepository repository) {
+        this(repository, intEnv("JOB_WORKERS", 2), intEnv("JOB_RETRY_SECONDS", 300) * 1000L, Clock.systemDefaultZone());
+    }
+
+    public JobScheduler(JobRunRepository repository, int workerCount, long retryDelayMs, Clock clock) {
+        this.repository = repository;
+        this.clock = clock;
+        this.retryDelayMs = retryDelayMs;
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger counter = new AtomicInteger();
+        // Every job has at most one queued or running instance, so a small queue suffices
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(16), runnable -> {
+                Thread thread = new Thread(runnable, "job-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Register a job (before {@link #start})
+     * @param cron 5-field cron expression, e.g. "0 9 * * *"
+     * @param maxJitterMs Random delay added to each fire, spreading load after a restart
+     * @param task Returns a short result summary for the admin endpoint (may be null)
+     */
+    public synchronized void register(String name, String cron, long maxJitterMs, Callable<?> task) {
+        if (started) {
+            throw new IllegalStateException("Register jobs before start(): " + name);
+        }
+        jobs.put(name, new Job(name, new CronSchedule(cron), maxJitterMs, task));
+    }
+
+    /**
+     * Load persisted state and schedule every job, catching up missed runs
+     */
+    public synchronized void start() {
+        Map<String, JobRunRepository.JobRun> runs = repository.loadAll();
+        ZonedDateTime now = ZonedDateTime.now(clock);
+
+        for (Job job : jobs.values()) {
+            JobRunRepository.JobRun run = runs.get(job.name);
+            if (run != null) {
+                job.restore(run);
+            }
+
+            if (job.lastScheduledAt > 0) {
+                ZonedDateTime missed = job.schedule.next(atZone(job.lastScheduledAt));
+                if (!missed.isAfter(now)) {
+                    System.out.println("⏰ Job " + job.name + " missed its run at " + missed + ", catching up");
+                    job.caughtUp.incrementAndGet();
+                    scheduleAt(job, missed, now);
+                    continue;
+                }
+            }
+            scheduleAt(job, job.schedule.next(now), now);
+        }
+        started = true;
+        System.out.println("✓ JobScheduler started with " + jobs.size() + " jobs (" + workers.getMaximumPoolSize() + " workers)");
+    }
+
+    public boolean hasJob(String name) {
+        return jobs.containsKey(name);
+    }
+
+    /**
+     * Run a job now, outside its schedule (admin endpoint)
+     * @return false if no such job or it is already running
+     */
+    public boolean runNow(String name) {
+        Job job = jobs.get(name);
+        if (job == null || !job.tryStart()) {
+            if (job != null) {
+                job.skipped.incrementAndGet();
+            }
+            return false;
+        }
+        try {
+            workers.execute(() -> execute(job, clock.millis(), false));
+            return true;
+        } catch (RejectedExecutionException e) {
+            job.finish();
+            job.skipped.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Schedule the job's fire (plus jitter) for the given time
+     */
+    private void scheduleAt(Job job, ZonedDateTime fireTime, ZonedDateTime now) {
+        scheduleAt(job, fireTime, fireTime.toInstant().toEpochMilli(), now);
+    }
+
+    /**
+     * @param scheduledAt Cron fire time the run satisfies (earlier than fireTime for a retry)
+     */
+    private void scheduleAt(Job job, ZonedDateTime fireTime, long scheduledAt, ZonedDateTime now) {
+        long jitter = job.maxJitterMs > 0 ? ThreadLocalRandom.current().nextLong(job.maxJitterMs + 1) : 0;
+        long delay = Math.max(0, fireTime.toInstant().toEpochMilli() - now.toInstant().toEpochMilli()) + jitter;
+        job.nextFireAt = now.toInstant().toEpochMilli() + delay;
+        dispatcher.schedule(() -> fire(job, scheduledAt), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void fire(Job job, long scheduledAt) {
+        if (!job.tryFire()) {
+            // A manual run is in progress: it reschedules when done
+            job.skipped.incrementAndGet();
+            return;
+        }
+        try {
+            workers.execute(() -> execute(job, scheduledAt, true));
+        } catch (RejectedExecutionException e) {
+            job.finish();
+            job.skipped.incrementAndGet();
+            if (!dispatcher.isShutdown()) {
+                ZonedDateTime now = ZonedDateTime.now(clock);
+                scheduleAt(job, now.plusNanos(TimeUnit.MILLISECONDS.toNanos(retryDelayMs)), scheduledAt, now);
+            }
+        }
+    }
+
+    private void execute(Job job, long scheduledAt, boolean scheduled) {
+        long startedAt = clock.millis();
+        boolean success = false;
+        String result;
+        try {
+            Object value = job.task.call();
+            result = value != null ? String.valueOf(value) : null;
+            success = true;
+        } catch (Throwable e) {
+            result = e.getClass().getSimpleName() + ": " + e.getMessage();
+            System.err.println("❌ Job " + job.name + " failed: " + result);
+        }
+        long finishedAt = clock.millis();
+
+        job.record(scheduledAt, startedAt, finishedAt, success, result);
+        repository.recordRun(job.name, scheduledAt, startedAt, finishedAt, success, result);
+        System.out.println((success ? "✓ Job " : "✗ Job ") + job.name + " finished in "
+            + (finishedAt - startedAt) + " ms" + (result != null ? ": " + result : ""));
+
+        // A manual run leaves the regular fire alone, unless that fire was skipped while it ran
+        boolean fireSkipped = job.finish();
+        if (!dispatcher.isShutdown() && (scheduled || fireSkipped)) {
+            rescheduleAfterRun(job, success, scheduledAt);
+        }
+    }
+
+    /**
+     * Next cron fire; after a failure, a retry of the same fire time if that comes sooner
+     */
+    private void rescheduleAfterRun(Job job, boolean success, long scheduledAt) {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime next = job.schedule.next(now);
+        if (!success) {
+            ZonedDateTime retry = now.plusNanos(TimeUnit.MILLISECONDS.toNanos(retryDelayMs));
+            if (retry.isBefore(next)) {
+                scheduleAt(job, retry, scheduledAt, now);
+                return;
+            }
+        }
+        scheduleAt(job, next, now);
+    }
+
+    private ZonedDateTime atZone(long epochMs) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochMilli(epochMs), clock.getZone());
+    }
+
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+        }
+        System.out.println("✓ JobScheduler shutdown");
+    }
+
+    // ===== Metrics =====
+
+    public List<JobStats> getStats() {
+        List<JobStats> stats = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            stats.add(job.stats());
+        }
+        return stats;
+    }
+
+    public static class JobStats {
+        public String name;
+        public String schedule;
+        public boolean running;
+        public String nextRunAt;
+        public String lastRunAt;
+        public String lastStatus;
+        public long lastDurationMs;
+        public String lastResult;
+        public long runs;
+        public long failures;
+        public long skipped;
+        public long caughtUp;
+        public long avgDurationMs;
+        public long maxDurationMs;
+    }
+
+    // ===== Internals =====
+
+    private class Job {
+        final String name;
+        final CronSchedule schedule;
+        final long maxJitterMs;
+        final Callable<?> task;
+        // Guarded by the job: a run in progress, and a regular fire that found it running
+        private boolean running;
+        private boolean fireSkipped;
+        volatile long nextFireAt;
+
+        // Last run (persisted) and counters (persisted totals + this process)
+        volatile long lastScheduledAt;
+        volatile long lastStartedAt;
+        volatile String lastStatus;
+        volatile long lastDurationMs;
+        volatile String lastResult;
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong caughtUp = new AtomicLong();
+        final AtomicLong totalDurationMs = new AtomicLong();
+        final AtomicLong timedRuns = new AtomicLong();
+        final AtomicLong maxDurationMs = new AtomicLong();
+
+        Job(String name, CronSchedule schedule, long maxJitterMs, Callable<?> task) {
+            this.name = name;
+            this.schedule = schedule;
+            this.maxJitterMs = maxJitterMs;
+            this.task = task;
+        }
+
+        synchronized boolean tryStart() {
+            if (running) {
+                return false;
+            }
+            running = true;
+            return true;
+        }
+
+        synchronized boolean tryFire() {
+            if (running) {
+                fireSkipped = true;
+                return false;
+            }
+            running = true;
+            return true;
+        }
+
+        /**
+         * @return Whether a regular fire was skipped while this run was in progress
+         */
+        synchronized boolean finish() {
+            boolean skippedFire = fireSkipped;
+            running = false;
+            fireSkipped = false;
+            return skippedFire;
+        }
+
+        synchronized boolean isRunning() {
+            return running;
+        }
+
+        void restore(JobRunRepository.JobRun run) {
+            lastScheduledAt = run.lastScheduledAt;
+            lastStartedAt = run.lastStartedAt;
+            lastStatus = run.lastStatus;
+            lastDurationMs = run.lastDurationMs;
+            lastResult = run.lastResult;
+            runs.set(run.runCount);
+            failures.set(run.failureCount);
+        }
+
+        void record(long scheduledAt, long startedAt, long finishedAt, boolean success, String result) {
+            long duration = finishedAt - startedAt;
+            if (success) {
+                lastScheduledAt = Math.max(lastScheduledAt, scheduledAt);
+            } else {
+                failures.incrementAndGet();
+            }
+            lastStartedAt = startedAt;
+            lastStatus = success ? "success" : "failed";
+            lastDurationMs = duration;
+            lastResult = result;
+            runs.incrementAndGet();
+            timedRuns.incrementAndGet();
+            totalDurationMs.addAndGet(duration);
+            maxDurationMs.accumulateAndGet(duration, Math::max);
+        }
+
+        JobStats stats() {
+            JobStats stats = new JobStats();
+            stats.name = name;
+            stats.schedule = schedule.toString();
+            stats.running = isRunning();
+            stats.nextRunAt = nextFireAt > 0 ? atZone(nextFireAt).toString() : null;
+            stats.lastRunAt = lastStartedAt > 0 ? atZone(lastStartedAt).toString() : null;
+            stats.lastStatus = lastStatus;
+            stats.lastDurationMs = lastDurationMs;
+            stats.lastResult = lastResult;
+            stats.runs = runs.get();
+            stats.failures = failures.get();
+            stats.skipped = skipped.get();
+            stats.caughtUp = caughtUp.get();
+            long timed = timedRuns.get();
+            stats.avgDurationMs = timed > 0 ? totalDurationMs.get() / timed : 0;
+            stats.maxDurationMs = maxDurationMs.get();
+            return stats;
+        }
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * JSON Response Writer
+ * Streams a response object straight onto the exchange instead of building a String first
+ *
+ * - Gson serializes through a JsonWriter onto the response body (chunked transfer encoding)
+ * - Compact output by default; pretty-printed only for ?pretty=1
+ * - UTF-8 regardless of the platform charset, encoded straight into the output buffer
+ * - Output buffers are pooled, so a large list costs one bounded buffer, not three full copies
+ */
+public class JsonResponseWriter {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int POOL_SIZE = 64;
+
+    // Layout comes from the JsonWriter (setIndent), so one Gson serves both forms
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private JsonResponseWriter() {
+    }
+
+    /**
+     * Stream body as JSON; headers other than Content-Type must already be set
+     */
+    public static void send(HttpExchange exchange, int statusCode, Object body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(statusCode, 0);  // 0 = chunked
+        try (OutputStream os = exchange.getResponseBody()) {
+            write(os, body, wantsPretty(exchange));
+        }
+    }
+
+    /**
+     * Serialize body onto out through a pooled buffer (out is flushed, not closed)
+     */
+    public static void write(OutputStream out, Object body, boolean pretty) throws IOException {
+        byte[] buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+        try {
+            JsonWriter json = new JsonWriter(new PooledUtf8Writer(out, buffer));
+            if (pretty) {
+                json.setIndent("  ");
+            }
+            GSON.toJson(body, body != null ? body.getClass() : Object.class, json);
+            json.flush();
+        } finally {
+            BUFFERS.offer(buffer);  // Dropped if the pool is full
+        }
+    }
+
+    static boolean wantsPretty(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return false;
+        }
+        for (String param : query.split("&")) {
+            if ("pretty=1".equals(param) || "pretty=true".equals(param)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * UTF-8 Writer that encodes straight into a borrowed byte array
+     * (OutputStreamWriter wraps every small write from JsonWriter in a new CharBuffer)
+     */
+    private static class PooledUtf8Writer extends Writer {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int count = 0;
+        private char pendingHighSurrogate = 0;
+
+        PooledUtf8Writer(OutputStream out, byte[] buffer) {
+            this.out = out;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            encode((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                encode(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                encode(str.charAt(i));
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();  // The caller owns out
+        }
+
+        private void encode(char c) throws IOException {
+            if (count > buffer.length - 4) {
+                drain();
+            }
+            if (pendingHighSurrogate != 0) {
+                char high = pendingHighSurrogate;
+                pendingHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+                    return;
+                }
+                buffer[count++] = '?';  // Unpaired surrogate
+                encode(c);
+                return;
+            }
+            if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xC0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                pendingHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                buffer[count++] = '?';  // Unpaired surrogate
+            } else {
+                buffer[count++] = (byte) (0xE0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        private void drain() throws IOException {
+            if (count > 0) {
+                out.write(buffer, 0, count);
+                count = 0;
+            }
+        }
+    }
+}
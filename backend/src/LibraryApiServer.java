@@ -11,13 +11,10 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Set;
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.util.Collections;
 import java.nio.charset.StandardCharsets;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import com.google.gson.reflect.TypeToken;
 
 /**
  * Library API Server - Stage 5
@@ -26,6 +23,7 @@ import com.google.gson.reflect.TypeToken;
  * Endpoints:
  * - GET  /api/books             - Get all books
  * - GET  /api/books?id=001      - Get book by ID
+ * - GET  /api/books/search?q=   - Full-text search (title, author, publisher, description)
  * - GET  /api/stats             - Get statistics
  * - POST /api/auth/login        - Login (get session cookie)
  * - POST /api/auth/logout       - Logout (clear session)
@@ -35,17 +33,39 @@ import com.google.gson.reflect.TypeToken;
  */
 public class LibraryApiServer {
 
-    private static Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    // Origins the web app is served from: development (5173), Docker (7777, 80) and this server
+    // Used for CORS and to reject cross-site WebSocket handshakes
+    static final Set<String> ALLOWED_ORIGINS = Set.of(
+        "http://localhost:5173",
+        "http://localhost:7777",
+        "http://localhost:80",
+        "http://localhost",
+        "http://localhost:7070"
+    );
+
+    private static Gson gson = new GsonBuilder().create();
     private static BookDatabaseRepository repository;
     private static UserDatabaseRepository userRepository;
     private static BorrowHistoryRepository historyRepository;
     private static BookRatingRepository ratingRepository;
     private static BookReviewRepository reviewRepository;
     private static RecommendationService recommendationService;
+    private static ChatAiClient chatAiClient;
+    private static ChatAnswerCache chatAnswerCache;
+    private static RecommendationCache recommendationCache;
+    private static RecommendationWorkScheduler recommendationScheduler;
     private static NotificationRepository notificationRepository;
     private static NotificationService notificationService;
     private static TaskManager taskManager;
     private static RecommendationWebSocketServer wsServer;
+    private static HttpRequestEngine requestEngine;
+    private static RecommendationContextBuilder contextBuilder;
+    private static LibraryMetricsStore metricsStore;
+    private static JobScheduler jobScheduler;
+    private static OutboxRepository outboxRepository;
+    private static OutboxDispatcher outboxDispatcher;
+    private static CirculationService circulationService;
+    private static BookLeaderboard leaderboard;
     private static long serverStartTime = System.currentTimeMillis();
 
     public static void main(String[] args) throws IOException, java.sql.SQLException {
@@ -57,26 +77,63 @@ public class LibraryApiServer {
         userRepository.initialize();
 
         // Initialize borrow history repository
-        historyRepository = new BorrowHistoryRepository(repository.getConnection());
+        historyRepository = new BorrowHistoryRepository(repository.getPool());
 
         // Initialize rating repository (Phase 6)
-        ratingRepository = new BookRatingRepository(repository.getConnection());
+        ratingRepository = new BookRatingRepository(repository.getPool());
 
         // Initialize review repository (Phase 6)
-        reviewRepository = new BookReviewRepository(repository.getConnection());
+        reviewRepository = new BookReviewRepository(repository.getPool());
+
+        // Keep cached catalog statistics in sync with borrow/rating/review writes
+        historyRepository.addBookChangeListener(repository.getCatalogCache());
+        ratingRepository.addBookChangeListener(repository.getCatalogCache());
+        reviewRepository.addBookChangeListener(repository.getCatalogCache());
+
+        // Dashboard counters, seeded once and then maintained by the same write events
+        metricsStore = new LibraryMetricsStore(repository.getPool(), userRepository, ratingRepository);
+        metricsStore.rebuild();
+        historyRepository.addBookChangeListener(metricsStore);
+        ratingRepository.addBookChangeListener(metricsStore);
+        userRepository.addUserChangeListener(metricsStore);
+
+        // Live top-K rankings (top books, top rated)
+        leaderboard = new BookLeaderboard(repository.getPool(), repository);
+        leaderboard.rebuild();
+        repository.addBookChangeListener(leaderboard);
+        historyRepository.addBookChangeListener(leaderboard);
+        ratingRepository.addBookChangeListener(leaderboard);
+        reviewRepository.addBookChangeListener(leaderboard);
 
         // Initialize recommendation service (Phase 10 - AI)
         recommendationService = new RecommendationService();
 
+        // Shared client for chat: bounded in-flight calls + circuit breaker (Phase 11)
+        chatAiClient = new ChatAiClient();
+
+        // Answers to repeated questions, keyed by the inputs they depend on
+        chatAnswerCache = new ChatAnswerCache(new LibraryRulesRepository());
+        repository.addBookChangeListener(chatAnswerCache);
+        historyRepository.addBookChangeListener(chatAnswerCache);
+        ratingRepository.addBookChangeListener(chatAnswerCache);
+        reviewRepository.addBookChangeListener(chatAnswerCache);
+        contextBuilder = new RecommendationContextBuilder(repository, historyRepository);
+        recommendationCache = new RecommendationCache();
+        repository.addBookChangeListener(recommendationCache);
+        historyRepository.addBookChangeListener(recommendationCache);
+        recommendationScheduler = new RecommendationWorkScheduler();
+
         // Initialize task manager for async recommendations (Phase 14 - WebSocket)
         taskManager = new TaskManager();
 
         // Initialize WebSocket server for real-time recommendation delivery
-        wsServer = new RecommendationWebSocketServer(7071, taskManager);
+        wsServer = new RecommendationWebSocketServer(7071, taskManager, ALLOWED_ORIGINS);
         wsServer.start();
 
         // Initialize notification system (Phase 13)
-        notificationRepository = new NotificationRepository("jdbc:sqlite:data/library.db");
+        notificationRepository = new NotificationRepository(repository.getPool());
+        wsServer.enableNotifications(notificationRepository);
+        ApiSessionManager.addSessionListener(wsServer);
         notificationService = new NotificationService(
             notificationRepository,
             historyRepository,
@@ -84,8 +141,30 @@ public class LibraryApiServer {
             userRepository
         );
 
-        // Start notification scheduler
-        NotificationScheduler.start(notificationService);
+        // Side effects of borrow/return/review: recorded with the write, delivered in the background
+        outboxRepository = new OutboxRepository(repository.getPool());
+        outboxDispatcher = new OutboxDispatcher(outboxRepository);
+        notificationService.registerOutboxHandlers(outboxDispatcher);
+        outboxDispatcher.start();
+
+        // Borrow/return as single transactions (conditional updates, loan limit, outbox event)
+        circulationService = new CirculationService(repository, historyRepository, new LibraryRulesRepository(),
+            outboxRepository, outboxDispatcher);
+
+        // Background jobs: cron schedules, last runs persisted for catch-up after downtime
+        jobScheduler = new JobScheduler(new JobRunRepository(repository.getPool()));
+        NotificationScheduler.register(jobScheduler, notificationService);
+        jobScheduler.register("overdue-status", "5 * * * *", 30_000,
+            () -> "marked " + historyRepository.updateOverdueStatus() + " overdue");
+        jobScheduler.register("session-cleanup", "*/10 * * * *", 10_000,
+            () -> "removed " + ApiSessionManager.cleanupExpiredSessions() + " expired sessions");
+        jobScheduler.register("metrics-rebuild", "30 3 * * *", 300_000, () -> {
+            metricsStore.rebuild();  // Reconcile incremental counters with the database
+            return "rebuilt";
+        });
+        jobScheduler.register("outbox-purge", "15 4 * * *", 300_000, () -> "purged "
+            + outboxRepository.purgeDelivered(System.currentTimeMillis() - 7L * 24 * 60 * 60 * 1000) + " delivered events");
+        jobScheduler.start();
 
         // Initialize authentication helper with user repository
         ApiAuthenticationHelper.initialize(userRepository);
@@ -93,82 +172,95 @@ public class LibraryApiServer {
         // Create HTTP server on port 7070
         HttpServer server = HttpServer.create(new InetSocketAddress(7070), 0);
 
+        // Request engine: worker threads + per-route concurrency limits
+        requestEngine = new HttpRequestEngine(exchange -> {
+            String response = gson.toJson(new ErrorResponse("Server busy - please retry shortly"));
+            sendResponse(exchange, 503, "application/json", response);
+        });
+
         System.out.println("=================================");
         System.out.println("Library API Server - Stage 5");
         System.out.println("URL: http://localhost:7070");
         System.out.println("Database: SQLite (data/library.db)");
+        System.out.println("Executor: " + requestEngine.getMode() + " threads");
         System.out.println("User System: Enabled");
         System.out.println("=================================\n");
 
         // Register handlers
-        server.createContext("/api/hello", new HelloHandler());
-        server.createContext("/api/status", new StatusHandler());
-        server.createContext("/api/books", new BooksHandler());
-        server.createContext("/api/books/borrow", new BorrowHandler());
-        server.createContext("/api/books/return", new ReturnHandler());
-        server.createContext("/api/stats", new StatsHandler());
+        requestEngine.register(server, "/api/hello", new HelloHandler());
+        requestEngine.register(server, "/api/status", new StatusHandler());
+        requestEngine.register(server, "/api/books", new BooksHandler());
+        requestEngine.register(server, "/api/books/search", new BookSearchHandler());
+        requestEngine.register(server, "/api/books/borrow", new BorrowHandler());
+        requestEngine.register(server, "/api/books/return", new ReturnHandler());
+        requestEngine.register(server, "/api/stats", new StatsHandler());
 
         // Authentication handlers (Stage 5)
-        server.createContext("/api/auth/register", new RegisterHandler());
-        server.createContext("/api/auth/login", new LoginHandler());
-        server.createContext("/api/auth/logout", new LogoutHandler());
-        server.createContext("/api/auth/whoami", new WhoAmIHandler());
+        requestEngine.register(server, "/api/auth/register", new RegisterHandler());
+        requestEngine.register(server, "/api/auth/login", new LoginHandler());
+        requestEngine.register(server, "/api/auth/logout", new LogoutHandler());
+        requestEngine.register(server, "/api/auth/whoami", new WhoAmIHandler());
 
         // Admin handlers (requires authentication + admin role)
-        server.createContext("/api/books/add", new AddBookHandler());
-        server.createContext("/api/books/update", new UpdateBookHandler());
-        server.createContext("/api/books/delete", new DeleteBookHandler());
-        server.createContext("/api/borrow-records", new BorrowRecordsHandler());
+        requestEngine.register(server, "/api/books/add", new AddBookHandler());
+        requestEngine.register(server, "/api/books/update", new UpdateBookHandler());
+        requestEngine.register(server, "/api/books/delete", new DeleteBookHandler());
+        requestEngine.register(server, "/api/borrow-records", new BorrowRecordsHandler());
 
         // History handlers (Phase 6)
-        server.createContext("/api/history/user", new UserHistoryHandler());
-        server.createContext("/api/history/current", new CurrentBorrowingsHandler());
-        server.createContext("/api/history/book", new BookHistoryHandler());
-        server.createContext("/api/history/all", new AllHistoryHandler());
+        requestEngine.register(server, "/api/history/user", new UserHistoryHandler());
+        requestEngine.register(server, "/api/history/current", new CurrentBorrowingsHandler());
+        requestEngine.register(server, "/api/history/book", new BookHistoryHandler());
+        requestEngine.register(server, "/api/history/all", new AllHistoryHandler());
 
         // Rating handlers (Phase 6)
-        server.createContext("/api/ratings/rate", new RateBookHandler());
-        server.createContext("/api/ratings/book", new GetBookRatingsHandler());
-        server.createContext("/api/ratings/user", new GetUserRatingHandler());
-        server.createContext("/api/ratings/top", new GetTopRatedBooksHandler());
+        requestEngine.register(server, "/api/ratings/rate", new RateBookHandler());
+        requestEngine.register(server, "/api/ratings/book", new GetBookRatingsHandler());
+        requestEngine.register(server, "/api/ratings/user", new GetUserRatingHandler());
+        requestEngine.register(server, "/api/ratings/top", new GetTopRatedBooksHandler());
 
         // Review handlers (Phase 6)
-        server.createContext("/api/reviews/add", new AddReviewHandler());
-        server.createContext("/api/reviews/book", new GetBookReviewsHandler());
-        server.createContext("/api/reviews/user", new GetUserReviewsHandler());
-        server.createContext("/api/reviews/update", new UpdateReviewHandler());
-        server.createContext("/api/reviews/delete", new DeleteReviewHandler());
-        server.createContext("/api/reviews/latest", new GetLatestReviewsHandler());
+        requestEngine.register(server, "/api/reviews/add", new AddReviewHandler());
+        requestEngine.register(server, "/api/reviews/book", new GetBookReviewsHandler());
+        requestEngine.register(server, "/api/reviews/user", new GetUserReviewsHandler());
+        requestEngine.register(server, "/api/reviews/update", new UpdateReviewHandler());
+        requestEngine.register(server, "/api/reviews/delete", new DeleteReviewHandler());
+        requestEngine.register(server, "/api/reviews/latest", new GetLatestReviewsHandler());
 
         // AI Recommendation handlers (Phase 10)
-        server.createContext("/api/recommendations/personal", new PersonalRecommendationsHandler());
-        server.createContext("/api/recommendations/related", new RelatedRecommendationsHandler());
-        server.createContext("/api/recommendations/health", new AIHealthHandler());
+        requestEngine.register(server, "/api/recommendations/personal", new PersonalRecommendationsHandler());
+        requestEngine.register(server, "/api/recommendations/related", new RelatedRecommendationsHandler());
+        requestEngine.register(server, "/api/recommendations/health", new AIHealthHandler());
 
         // AI Chatbot handler (Phase 11)
-        server.createContext("/api/chat", new ChatHandler());
+        requestEngine.registerAsync(server, "/api/chat", new ChatHandler());
+        requestEngine.registerAsync(server, "/api/chat/stream", new ChatHandler(true));
 
         // Notification handlers (Phase 13)
-        server.createContext("/api/notifications", new GetNotificationsHandler());
-        server.createContext("/api/notifications/unread-count", new GetUnreadCountHandler());
-        server.createContext("/api/notifications/read-all", new MarkAllAsReadHandler());
-        server.createContext("/api/notifications/clear", new ClearNotificationsHandler());
+        requestEngine.register(server, "/api/notifications", new GetNotificationsHandler());
+        requestEngine.register(server, "/api/notifications/unread-count", new GetUnreadCountHandler());
+        requestEngine.register(server, "/api/notifications/read-all", new MarkAllAsReadHandler());
+        requestEngine.register(server, "/api/notifications/clear", new ClearNotificationsHandler());
 
         // Account Management handlers (Phase 12)
-        server.createContext("/api/accounts/users", new AccountUsersHandler());
-        server.createContext("/api/accounts/staff", new AccountStaffHandler());
+        requestEngine.register(server, "/api/accounts/users", new AccountUsersHandler());
+        requestEngine.register(server, "/api/accounts/staff", new AccountStaffHandler());
 
         // Dashboard Statistics handler (Phase 12 Enhancement)
-        server.createContext("/api/dashboard/stats", new DashboardStatsHandler());
-        server.createContext("/api/dashboard/borrow-trend", new BorrowTrendHandler());
-        server.createContext("/api/dashboard/system-info", new SystemInfoHandler());
-        server.createContext("/api/dashboard/top-books", new TopBooksHandler());
+        requestEngine.register(server, "/api/dashboard/stats", new DashboardStatsHandler());
+        requestEngine.register(server, "/api/dashboard/borrow-trend", new BorrowTrendHandler());
+        requestEngine.register(server, "/api/dashboard/system-info", new SystemInfoHandler());
+        requestEngine.register(server, "/api/dashboard/top-books", new TopBooksHandler());
+
+        // Runtime metrics (connection pool, ...)
+        requestEngine.register(server, "/api/metrics", new MetricsHandler());
+        requestEngine.register(server, "/api/admin/jobs", new JobsHandler());
 
         // Static file handler for HTML frontend
-        server.createContext("/", new StaticFileHandler("web"));
+        requestEngine.register(server, "/", new StaticFileHandler("web"));
 
         // Start server
-        server.setExecutor(null);
+        server.setExecutor(requestEngine.getExecutor());
         server.start();
 
         System.out.println("✅ Server started successfully!\n");
@@ -244,8 +336,7 @@ public class LibraryApiServer {
             List<BookInfo> books = repository.getAllBooks();
 
             BooksResponse response = new BooksResponse(true, books.size() + " books found", books);
-            String json = gson.toJson(response);
-            sendResponse(exchange, 200, "application/json", json);
+            sendJson(exchange, 200, response);
         }
 
         private void handleGetBookById(HttpExchange exchange, String id) throws IOException {
@@ -263,6 +354,55 @@ public class LibraryApiServer {
         }
     }
 
+    /**
+     * Handler for GET /api/books/search?q=&limit=&cursor=
+     * Ranked full-text search; cursor is the nextCursor of the previous page
+     */
+    static class BookSearchHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                String response = gson.toJson(new ErrorResponse("Method not allowed. Use GET"));
+                sendResponse(exchange, 405, "application/json", response);
+                return;
+            }
+
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            String q = params.get("q");
+            if (q == null || q.isBlank()) {
+                String response = gson.toJson(new ErrorResponse("Missing search query (q)"));
+                sendResponse(exchange, 400, "application/json", response);
+                return;
+            }
+
+            int limit = parseLimit(params.get("limit"), 20, 100);
+            int offset = 0;
+            if (params.containsKey("cursor")) {
+                try {
+                    offset = Math.max(0, Integer.parseInt(params.get("cursor")));
+                } catch (NumberFormatException e) {
+                    String response = gson.toJson(new ErrorResponse("Invalid cursor"));
+                    sendResponse(exchange, 400, "application/json", response);
+                    return;
+                }
+            }
+
+            BookSearchIndex.SearchResult result = repository.getSearchIndex().search(q, offset, limit);
+            if (result == null) {
+                String response = gson.toJson(new ErrorResponse("Search is temporarily unavailable"));
+                sendResponse(exchange, 503, "application/json", response);
+                return;
+            }
+
+            List<BookInfo> books = new ArrayList<>(repository.findByIds(result.bookIds).values());
+            BookSearchResponse response = new BookSearchResponse(true, q, books, result.total);
+            if (offset + result.bookIds.size() < result.total) {
+                response.nextCursor = String.valueOf(offset + result.bookIds.size());
+            }
+            sendJson(exchange, 200, response);
+        }
+    }
+
     /**
      * Handler for /api/stats
      */
@@ -309,50 +449,14 @@ public class LibraryApiServer {
                 return;
             }
 
-            // Find book
-            BookInfo book = repository.findById(request.bookId);
-            if (book == null) {
-                String response = gson.toJson(new ErrorResponse("Book not found: " + request.bookId));
-                sendResponse(exchange, 404, "application/json", response);
-                return;
-            }
-
-            // Check if available
-            if (!book.isAvailable()) {
-                String response = gson.toJson(new ErrorResponse("Book is already borrowed"));
-                sendResponse(exchange, 400, "application/json", response);
+            // Availability check, loan limit, borrow history and notification event: one transaction
+            CirculationService.Result result = circulationService.borrow(session.username, request.bookId);
+            if (!result.isSuccess()) {
+                sendCirculationError(exchange, result, request.bookId);
                 return;
             }
 
-            // Calculate borrow and due dates
-            String borrowDate = java.time.LocalDate.now().toString();
-            String dueDate = java.time.LocalDate.now().plusDays(14).toString();
-
-            // Borrow book
-            book.markAsBorrowed();
-            repository.updateBook(book);
-
-            // Record borrow history (Phase 6)
-            historyRepository.createBorrowRecord(session.username, request.bookId, book.getTitle());
-
-            // Send borrow notification (Phase 13)
-            try {
-                boolean sent = notificationService.sendBorrowNotification(
-                    session.username,
-                    book.getTitle(),
-                    borrowDate,
-                    dueDate
-                );
-                if (sent) {
-                    System.out.println("✅ Borrow notification sent to user: " + session.username);
-                } else {
-                    System.err.println("❌ Failed to send borrow notification to user: " + session.username);
-                }
-            } catch (Exception e) {
-                System.err.println("❌ Failed to send borrow notification: " + e.getMessage());
-                e.printStackTrace();
-            }
-
+            BookInfo book = result.book;
             OperationResponse response = new OperationResponse(
                 true,
                 "Successfully borrowed: " + book.getTitle(),
@@ -396,69 +500,14 @@ public class LibraryApiServer {
                 return;
             }
 
-            // Find book
-            BookInfo book = repository.findById(request.bookId);
-            if (book == null) {
-                String response = gson.toJson(new ErrorResponse("Book not found: " + request.bookId));
-                sendResponse(exchange, 404, "application/json", response);
-                return;
-            }
-
-            // Check if borrowed
-            if (book.isAvailable()) {
-                String response = gson.toJson(new ErrorResponse("Book is not borrowed"));
-                sendResponse(exchange, 400, "application/json", response);
+            // Active loan check, loan close, availability and notification event: one transaction
+            CirculationService.Result result = circulationService.returnBook(session.username, request.bookId);
+            if (!result.isSuccess()) {
+                sendCirculationError(exchange, result, request.bookId);
                 return;
             }
 
-            // Ensure the book is currently borrowed by this user
-            BorrowHistory borrowInfo = historyRepository.findActiveBorrowByBook(request.bookId);
-            if (borrowInfo == null) {
-                String response = gson.toJson(new ErrorResponse("Book is not currently borrowed"));
-                sendResponse(exchange, 400, "application/json", response);
-                return;
-            }
-
-            if (!session.username.equals(borrowInfo.getUserId())) {
-                String response = gson.toJson(new ErrorResponse("You did not borrow this book"));
-                sendResponse(exchange, 403, "application/json", response);
-                return;
-            }
-
-            // Return book
-            book.markAsReturned();
-            repository.updateBook(book);
-
-            // Mark as returned in history (Phase 6)
-            boolean updated = historyRepository.markAsReturned(session.username, request.bookId);
-            if (!updated) {
-                System.err.println("❌ Failed to mark borrow history as returned for user " +
-                    session.username + " and book " + request.bookId);
-            }
-
-            // Send return notification (Phase 13)
-            if (borrowInfo != null) {
-                try {
-                    // Calculate borrow days and check if overdue
-                    java.time.LocalDate borrowDate = java.time.LocalDate.parse(borrowInfo.getBorrowDate());
-                    java.time.LocalDate returnDate = java.time.LocalDate.now();
-                    java.time.LocalDate dueDate = java.time.LocalDate.parse(borrowInfo.getDueDate());
-
-                    int borrowDays = (int) java.time.temporal.ChronoUnit.DAYS.between(borrowDate, returnDate);
-                    boolean isOverdue = returnDate.isAfter(dueDate);
-
-                    notificationService.sendReturnNotification(
-                        session.username,
-                        book.getTitle(),
-                        borrowDays,
-                        isOverdue
-                    );
-                } catch (Exception e) {
-                    System.err.println("Failed to send return notification: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }
-
+            BookInfo book = result.book;
             OperationResponse response = new OperationResponse(
                 true,
                 "Successfully returned: " + book.getTitle(),
@@ -730,6 +779,7 @@ public class LibraryApiServer {
     /**
      * Handler for /api/borrow-records
      * GET request to get all borrowed books (requires admin authentication)
+     * Paging: limit (default 50, max 500), cursor (nextCursor of the previous page)
      */
     static class BorrowRecordsHandler implements HttpHandler {
         @Override
@@ -759,12 +809,36 @@ public class LibraryApiServer {
                 return;
             }
 
-            // Get borrowed books
+            // Get borrowed books (ordered by book id)
             List<BookInfo> borrowedBooks = repository.getBorrowedBooks();
 
-            BorrowRecordsResponse response = new BorrowRecordsResponse(true, borrowedBooks);
-            String json = gson.toJson(response);
-            sendResponse(exchange, 200, "application/json", json);
+            // Without limit/cursor the whole list is returned (existing clients)
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!params.containsKey("limit") && !params.containsKey("cursor")) {
+                sendJson(exchange, 200, new BorrowRecordsResponse(true, borrowedBooks));
+                return;
+            }
+
+            // Keyset on book id: everything after the cursor, up to limit
+            int limit = parseLimit(params.get("limit"), 50, 500);
+            String cursor = params.get("cursor");
+            List<BookInfo> page = new ArrayList<>(limit);
+            boolean hasMore = false;
+            for (BookInfo book : borrowedBooks) {
+                if (cursor != null && book.getId().compareTo(cursor) <= 0) {
+                    continue;
+                }
+                if (page.size() == limit) {
+                    hasMore = true;
+                    break;
+                }
+                page.add(book);
+            }
+
+            BorrowRecordsResponse response = new BorrowRecordsResponse(true, page);
+            response.nextCursor = hasMore ? page.get(page.size() - 1).getId() : null;
+            response.totalEstimate = (long) borrowedBooks.size();
+            sendJson(exchange, 200, response);
         }
     }
 
@@ -829,7 +903,7 @@ public class LibraryApiServer {
 
             // Set session cookie
             exchange.getResponseHeaders().add("Set-Cookie",
-                "sessionId=" + sessionId + "; Path=/; HttpOnly; Max-Age=1800");
+                "sessionId=" + sessionId + "; Path=/; HttpOnly; SameSite=Lax; Max-Age=1800");
 
             // Send response
             RegisterResponse response = new RegisterResponse(
@@ -885,7 +959,7 @@ public class LibraryApiServer {
 
             // Set session cookie
             exchange.getResponseHeaders().add("Set-Cookie",
-                "sessionId=" + sessionId + "; Path=/; HttpOnly; Max-Age=1800");
+                "sessionId=" + sessionId + "; Path=/; HttpOnly; SameSite=Lax; Max-Age=1800");
 
             // Send response
             LoginResponse response = new LoginResponse(
@@ -922,7 +996,7 @@ public class LibraryApiServer {
 
             // Clear cookie
             exchange.getResponseHeaders().add("Set-Cookie",
-                "sessionId=; Path=/; HttpOnly; Max-Age=0");
+                "sessionId=; Path=/; HttpOnly; SameSite=Lax; Max-Age=0");
 
             // Send response
             SimpleResponse response = new SimpleResponse(true, "Logout successful");
@@ -965,6 +1039,59 @@ public class LibraryApiServer {
         }
     }
 
+    /**
+     * Error response for a borrow or return that did not happen
+     */
+    private static void sendCirculationError(HttpExchange exchange, CirculationService.Result result,
+                                             String bookId) throws IOException {
+        int status;
+        String message;
+        switch (result.outcome) {
+            case BOOK_NOT_FOUND:
+                status = 404;
+                message = "Book not found: " + bookId;
+                break;
+            case NOT_AVAILABLE:
+                status = 400;
+                message = "Book is already borrowed";
+                break;
+            case LIMIT_REACHED:
+                status = 400;
+                message = "Borrow limit reached (max " + LibraryRulesRepository.MAX_ACTIVE_LOANS + " books)";
+                break;
+            case NOT_BORROWED:
+                status = 400;
+                message = "Book is not borrowed";
+                break;
+            case NOT_BORROWER:
+                status = 403;
+                message = "You did not borrow this book";
+                break;
+            default:
+                status = 500;
+                message = "Failed to update the loan, please try again";
+                break;
+        }
+        sendResponse(exchange, status, "application/json", gson.toJson(new ErrorResponse(message)));
+    }
+
+    /**
+     * Run a write and the outbox events it appends as one transaction, then wake the dispatcher
+     * @return false if work returned false or failed (everything rolled back)
+     */
+    private static boolean commitWithOutbox(DatabaseConnectionPool.TransactionWork work) {
+        try {
+            boolean committed = repository.getPool().inTransaction(work);
+            if (committed) {
+                outboxDispatcher.wakeUp();
+            }
+            return committed;
+        } catch (java.sql.SQLException | RuntimeException e) {
+            System.err.println("❌ Transaction failed: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Helper method to extract session ID from cookie
      */
@@ -997,13 +1124,60 @@ public class LibraryApiServer {
     private static void sendResponse(HttpExchange exchange, int statusCode,
                                       String contentType, String response) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", contentType);
+        setCorsHeaders(exchange);
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+
+        OutputStream os = exchange.getResponseBody();
+        os.write(bytes);
+        os.close();
+    }
+
+    /**
+     * Stream a (potentially large) response object as JSON without building a String
+     * Compact by default, pretty-printed with ?pretty=1
+     */
+    private static void sendJson(HttpExchange exchange, int statusCode, Object body) throws IOException {
+        setCorsHeaders(exchange);
+        JsonResponseWriter.send(exchange, statusCode, body);
+    }
+
+    /**
+     * Parse a query string into decoded name/value pairs (first value wins)
+     */
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String name = java.net.URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = java.net.URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (!value.isEmpty()) {
+                params.putIfAbsent(name, value);
+            }
+        }
+        return params;
+    }
+
+    private static int parseLimit(String value, int defaultLimit, int maxLimit) {
+        try {
+            int limit = Integer.parseInt(value);
+            return limit >= 1 && limit <= maxLimit ? limit : defaultLimit;
+        } catch (NumberFormatException e) {
+            return defaultLimit;
+        }
+    }
+
+    private static void setCorsHeaders(HttpExchange exchange) {
         // CORS headers for credentials support
         String origin = exchange.getRequestHeaders().getFirst("Origin");
-        // Support both development (5173) and Docker (7777) environments
-        if (origin != null && (origin.equals("http://localhost:5173")
-                            || origin.equals("http://localhost:7777")
-                            || origin.equals("http://localhost:80")
-                            || origin.equals("http://localhost"))) {
+        if (origin != null && ALLOWED_ORIGINS.contains(origin)) {
             exchange.getResponseHeaders().set("Access-Control-Allow-Origin", origin);
         } else {
             exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "http://localhost:5173");
@@ -1011,11 +1185,6 @@ public class LibraryApiServer {
         exchange.getResponseHeaders().set("Access-Control-Allow-Credentials", "true");
         exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
         exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Cookie");
-        exchange.sendResponseHeaders(statusCode, response.getBytes().length);
-
-        OutputStream os = exchange.getResponseBody();
-        os.write(response.getBytes());
-        os.close();
     }
 
     // ===== Response Classes =====
@@ -1053,6 +1222,21 @@ public class LibraryApiServer {
         }
     }
 
+    static class BookSearchResponse {
+        public boolean success;
+        public String query;
+        public List<BookInfo> books;
+        public int total;
+        public String nextCursor;  // null on the last page
+
+        public BookSearchResponse(boolean success, String query, List<BookInfo> books, int total) {
+            this.success = success;
+            this.query = query;
+            this.books = books;
+            this.total = total;
+        }
+    }
+
     static class BookResponse {
         public boolean success;
         public String message;
@@ -1235,6 +1419,9 @@ public class LibraryApiServer {
     static class BorrowRecordsResponse {
         public boolean success;
         public List<BookInfo> records;
+        // Paged requests only (omitted from the JSON when null)
+        public String nextCursor;
+        public Long totalEstimate;
 
         public BorrowRecordsResponse(boolean success, List<BookInfo> records) {
             this.success = success;
@@ -1364,7 +1551,10 @@ public class LibraryApiServer {
 
     /**
      * Handler for GET /api/history/all
-     * Returns all borrow history records (admin only)
+     * Returns borrow history records, newest first (admin only)
+     * Paging: limit (default 50, max 500), cursor (nextCursor of the previous page)
+     * Filters: status (borrowing|returned|overdue), userId, bookId, from/to (yyyy-MM-dd)
+     * Without any parameter every record is returned
      */
     static class AllHistoryHandler implements HttpHandler {
         @Override
@@ -1393,12 +1583,42 @@ public class LibraryApiServer {
                 return;
             }
 
-            // Get all history
-            List<BorrowHistory> history = historyRepository.getAllHistory();
+            // Without paging or filter parameters the full history is returned (existing clients)
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (params.isEmpty() || (params.size() == 1 && params.containsKey("pretty"))) {
+                List<BorrowHistory> history = historyRepository.getAllHistory();
+                sendJson(exchange, 200, new HistoryResponse(true, history));
+                return;
+            }
 
-            HistoryResponse response = new HistoryResponse(true, history);
-            String json = gson.toJson(response);
-            sendResponse(exchange, 200, "application/json", json);
+            BorrowHistoryRepository.HistoryQuery query = new BorrowHistoryRepository.HistoryQuery();
+            query.limit = parseLimit(params.get("limit"), 50, 500);
+            query.status = params.get("status");
+            query.userId = params.get("userId");
+            query.bookId = params.get("bookId");
+            query.fromDate = params.get("from");
+            query.toDate = params.get("to");
+            if (params.containsKey("cursor")) {
+                try {
+                    query.beforeId = Integer.parseInt(params.get("cursor"));
+                } catch (NumberFormatException e) {
+                    String response = gson.toJson(new ErrorResponse("Invalid cursor"));
+                    sendResponse(exchange, 400, "application/json", response);
+                    return;
+                }
+            }
+            if (query.status != null && !Set.of("borrowing", "returned", "overdue").contains(query.status)) {
+                String response = gson.toJson(new ErrorResponse("Invalid status. Use borrowing, returned or overdue"));
+                sendResponse(exchange, 400, "application/json", response);
+                return;
+            }
+
+            BorrowHistoryRepository.HistoryPage page = historyRepository.getHistoryPage(query);
+
+            HistoryResponse response = new HistoryResponse(true, page.records);
+            response.nextCursor = page.nextCursor;
+            response.totalEstimate = metricsStore.estimateHistoryCount(query);
+            sendJson(exchange, 200, response);
         }
     }
 
@@ -1407,6 +1627,9 @@ public class LibraryApiServer {
     static class HistoryResponse {
         public boolean success;
         public List<BorrowHistory> history;
+        // Paged requests only (omitted from the JSON when null)
+        public Integer nextCursor;
+        public Long totalEstimate;
 
         public HistoryResponse(boolean success, List<BorrowHistory> history) {
             this.success = success;
@@ -1593,8 +1816,8 @@ public class LibraryApiServer {
     }
 
     /**
-     * Handler for GET /api/ratings/top?limit=10
-     * Get top rated books
+     * Handler for GET /api/ratings/top?limit=10&days=7
+     * Get top rated books (Bayesian average), optionally over the last 7/30 days
      */
     static class GetTopRatedBooksHandler implements HttpHandler {
         @Override
@@ -1605,8 +1828,9 @@ public class LibraryApiServer {
                 return;
             }
 
-            // Get limit from query parameter (default 10)
+            // Get limit (default 10) and optional window in days from query parameters
             int limit = 10;
+            int days = 0;
             URI uri = exchange.getRequestURI();
             String query = uri.getQuery();
 
@@ -1614,27 +1838,24 @@ public class LibraryApiServer {
                 String[] params = query.split("&");
                 for (String param : params) {
                     String[] kv = param.split("=");
-                    if (kv.length == 2 && "limit".equals(kv[0])) {
+                    if (kv.length == 2 && ("limit".equals(kv[0]) || "days".equals(kv[0]))) {
                         try {
-                            limit = Integer.parseInt(kv[1]);
+                            int value = Integer.parseInt(kv[1]);
+                            if ("limit".equals(kv[0])) {
+                                limit = value;
+                            } else {
+                                days = value;
+                            }
                         } catch (NumberFormatException e) {
                             // Use default
                         }
-                        break;
                     }
                 }
             }
 
-            // Get top rated books
-            List<String> bookIds = ratingRepository.getTopRatedBooks(limit);
-            List<BookInfo> books = new java.util.ArrayList<>();
-
-            for (String bookId : bookIds) {
-                BookInfo book = repository.findById(bookId);
-                if (book != null) {
-                    books.add(book);
-                }
-            }
+            // Get top rated books from the live leaderboard
+            List<String> bookIds = leaderboard.topBookIds(BookLeaderboard.Metric.RATING, limit, days);
+            List<BookInfo> books = new java.util.ArrayList<>(repository.findByIds(bookIds).values());
 
             TopRatedBooksResponse response = new TopRatedBooksResponse(true, books);
             String json = gson.toJson(response);
@@ -1762,28 +1983,25 @@ public class LibraryApiServer {
                 return;
             }
 
-            // Add review
-            int reviewId = reviewRepository.addReview(
-                session.username,
-                user.getName(),
-                request.bookId,
-                book.getTitle(),
-                request.reviewText
-            );
-
-            if (reviewId > 0) {
-                // Send notification to users who borrowed this book (Phase 13)
-                try {
-                    notificationService.sendNewReviewNotification(
-                        request.bookId,
-                        book.getTitle(),
-                        session.username
-                    );
-                } catch (Exception e) {
-                    System.err.println("Failed to send review notification: " + e.getMessage());
-                }
+            // Add review + event to notify users who borrowed this book (Phase 13), one transaction
+            int[] reviewId = { 0 };
+            String payload = NotificationService.reviewAddedPayload(request.bookId, book.getTitle(), session.username);
+            boolean added = commitWithOutbox(conn -> {
+                reviewId[0] = reviewRepository.insertReview(
+                    conn,
+                    session.username,
+                    user.getName(),
+                    request.bookId,
+                    book.getTitle(),
+                    request.reviewText
+                );
+                return reviewId[0] > 0 && outboxRepository.append(NotificationService.EVENT_REVIEW_ADDED, payload);
+            });
 
-                ReviewResponse response = new ReviewResponse(true, "Review added successfully", reviewId);
+            if (added) {
+                // Listeners (leaderboard, catalog cache) only see the review once it has committed
+                reviewRepository.reviewCommitted(request.bookId, session.username);
+                ReviewResponse response = new ReviewResponse(true, "Review added successfully", reviewId[0]);
                 String json = gson.toJson(response);
                 sendResponse(exchange, 200, "application/json", json);
             } else {
@@ -2118,87 +2336,73 @@ public class LibraryApiServer {
                 // Generate unique task ID
                 String taskId = java.util.UUID.randomUUID().toString();
 
-                // Create task
-                RecommendationTask task = taskManager.createTask(taskId, userId, "personal");
+                // Cached recommendations complete the task right away (delivered on subscribe);
+                // stale ones are refreshed in the background for the next visit
+                RecommendationCache.Lookup cached = recommendationCache.get(userId);
+                if (cached != null) {
+                    taskManager.createTask(taskId, userId, "personal");
+                    taskManager.completeTask(taskId, cached.recommendations);
+                    TaskCreatedResponse taskResponse = new TaskCreatedResponse(true, taskId, "completed");
+                    sendResponse(exchange, 200, "application/json", gson.toJson(taskResponse));
+                    System.out.println("⚡ Recommendation cache hit for user: " + userId + " (" + cached.freshness + ")");
+
+                    if (cached.freshness == RecommendationCache.Freshness.STALE) {
+                        refreshPersonalRecommendations(userId);
+                    }
+                    return;
+                }
+
+                // Create task, or join the one already generating from the same inputs
+                // (double clicks / several tabs share one AI call and all get the result)
+                RecommendationTask task = taskManager.createOrAttach(
+                    taskId, userId, "personal", recommendationCache.fingerprint(userId).toString());
+
+                if (!task.getTaskId().equals(taskId)) {
+                    // Attached: the task's own job will notify every subscriber
+                    TaskCreatedResponse taskResponse = new TaskCreatedResponse(true, task.getTaskId(), "processing");
+                    sendResponse(exchange, 200, "application/json", gson.toJson(taskResponse));
+                    return;
+                }
+
+                // Queue context assembly on the recommendation workers; 429 when saturated
+                java.util.concurrent.CompletableFuture<java.util.concurrent.CompletableFuture<List<Recommendation>>> generation;
+                try {
+                    generation = recommendationScheduler.submit(
+                        RecommendationWorkScheduler.Priority.INTERACTIVE, () -> generatePersonalRecommendations(userId));
+                } catch (java.util.concurrent.RejectedExecutionException e) {
+                    taskManager.failTask(taskId, "Server busy");
+                    sendTooManyRequests(exchange);
+                    return;
+                }
 
                 // Return task ID immediately (non-blocking)
                 TaskCreatedResponse taskResponse = new TaskCreatedResponse(true, taskId, "processing");
                 sendResponse(exchange, 200, "application/json", gson.toJson(taskResponse));
 
-                // Process recommendations asynchronously
-                java.util.concurrent.CompletableFuture.runAsync(() -> {
-                    try {
-                        // Get user's borrow history (all records, for preference learning)
-                        List<BorrowHistory> history = historyRepository.getUserHistory(userId);
-                        List<BookInfo> borrowHistory = new ArrayList<>();
-                        for (BorrowHistory h : history) {
-                            BookInfo book = repository.findById(h.getBookId());
-                            if (book != null) {
-                                borrowHistory.add(book);
-                            }
-                        }
-
-                        // Get currently borrowed books (to exclude from recommendations)
-                        List<BorrowHistory> currentBorrowings = historyRepository.getCurrentBorrowings(userId);
-                        List<String> currentlyBorrowedIds = new ArrayList<>();
-                        for (BorrowHistory b : currentBorrowings) {
-                            currentlyBorrowedIds.add(b.getBookId());
-                        }
+                // Complete the task when the AI answers
+                generation
+                    .thenCompose(recommendations -> recommendations)
+                    .thenAccept(recommendations -> {
+                        // Complete task
+                        task.setResult(recommendations);
+                        taskManager.completeTask(taskId, recommendations);
 
-                        // Get available books (excluding currently borrowed ones)
-                        List<BookInfo> allBooks = repository.getAllBooks();
-                        List<BookInfo> availableBooks = new ArrayList<>();
-                        for (BookInfo book : allBooks) {
-                            // Only exclude books that are currently borrowed by this user
-                            boolean currentlyBorrowed = currentlyBorrowedIds.contains(book.getId());
-                            if (!currentlyBorrowed && book.isAvailable()) {
-                                availableBooks.add(book);
-                            }
-                        }
+                        // Notify WebSocket clients
+                        wsServer.notifyTaskComplete(taskId);
 
-                        System.out.println("📊 Recommendation context for user " + userId + ":");
-                        System.out.println("   - Borrow history: " + borrowHistory.size() + " books");
-                        System.out.println("   - Currently borrowed: " + currentlyBorrowedIds.size() + " books");
-                        System.out.println("   - Available for recommendation: " + availableBooks.size() + " books");
-
-                        // Generate recommendations asynchronously
-                        recommendationService.getPersonalRecommendationsAsync(userId, borrowHistory, availableBooks)
-                            .thenAccept(recommendations -> {
-                                // Build response with full book info
-                                List<RecommendationWithBook> result = new ArrayList<>();
-                                for (Recommendation rec : recommendations) {
-                                    BookInfo book = repository.findById(rec.getBookId());
-                                    if (book != null) {
-                                        result.add(new RecommendationWithBook(book, rec.getReason(), rec.getScore()));
-                                    }
-                                }
-
-                                // Complete task
-                                task.setResult(recommendations);
-                                taskManager.completeTask(taskId, recommendations);
-
-                                // Notify WebSocket clients
-                                wsServer.notifyTaskComplete(taskId);
-
-                                System.out.println("✓ Personal recommendations completed for user: " + userId);
-                            })
-                            .exceptionally(e -> {
-                                // Handle error
-                                String error = "AI service error: " + e.getMessage();
-                                task.setError(error);
-                                taskManager.failTask(taskId, error);
-                                wsServer.notifyTaskComplete(taskId);
-                                System.err.println("✗ Personal recommendations failed: " + error);
-                                return null;
-                            });
-
-                    } catch (Exception e) {
-                        task.setError(e.getMessage());
-                        taskManager.failTask(taskId, e.getMessage());
+                        System.out.println("✓ Personal recommendations completed for user: " + userId);
+                    })
+                    .exceptionally(e -> {
+                        // Handle error
+                        Throwable cause = e instanceof java.util.concurrent.CompletionException && e.getCause() != null
+                            ? e.getCause() : e;
+                        String error = "AI service error: " + cause.getMessage();
+                        task.setError(error);
+                        taskManager.failTask(taskId, error);
                         wsServer.notifyTaskComplete(taskId);
-                        System.err.println("✗ Error in async recommendation processing: " + e.getMessage());
-                    }
-                });
+                        System.err.println("✗ Personal recommendations failed: " + error);
+                        return null;
+                    });
 
             } catch (Exception e) {
                 System.err.println("Error creating recommendation task: " + e.getMessage());
@@ -2209,6 +2413,70 @@ public class LibraryApiServer {
         }
     }
 
+    /**
+     * Generate personal recommendations (context + AI) and store them in the recommendation cache
+     */
+    private static java.util.concurrent.CompletableFuture<List<Recommendation>> generatePersonalRecommendations(String userId) {
+        // Captured before reading any input, so the result is never tagged newer than its data
+        RecommendationCache.Fingerprint fingerprint = recommendationCache.fingerprint(userId);
+
+        // Batched context assembly: history + exclusions + available books
+        RecommendationContextBuilder.RecommendationContext context = contextBuilder.build(userId);
+        List<BookInfo> borrowHistory = context.borrowHistory;
+        List<BookInfo> availableBooks = context.availableBooks;
+
+        System.out.println("📊 Recommendation context for user " + userId + ":");
+        System.out.println("   - Borrow history: " + borrowHistory.size() + " books");
+        System.out.println("   - Currently borrowed: " + context.currentlyBorrowedIds.size() + " books");
+        System.out.println("   - Available for recommendation: " + availableBooks.size() + " books");
+
+        // Generate recommendations asynchronously
+        return recommendationService.getPersonalRecommendationsAsync(userId, borrowHistory, availableBooks)
+            .thenApply(recommendations -> {
+                // Build response with full book info
+                Map<String, BookInfo> books = contextBuilder.resolveBooks(context, recommendations);
+                List<RecommendationWithBook> result = new ArrayList<>();
+                for (Recommendation rec : recommendations) {
+                    BookInfo book = books.get(rec.getBookId());
+                    if (book != null) {
+                        result.add(new RecommendationWithBook(book, rec.getReason(), rec.getScore()));
+                    }
+                }
+                System.out.println("   - Stage timings: " + context.timingSummary());
+
+                recommendationCache.put(userId, fingerprint, recommendations);
+                return recommendations;
+            });
+    }
+
+    /**
+     * Refresh a user's stale cached recommendations in the background (at most one refresh per user)
+     */
+    private static void refreshPersonalRecommendations(String userId) {
+        if (!recommendationCache.startRefresh(userId)) {
+            return;
+        }
+        java.util.concurrent.CompletableFuture<java.util.concurrent.CompletableFuture<List<Recommendation>>> generation;
+        try {
+            generation = recommendationScheduler.submit(
+                RecommendationWorkScheduler.Priority.PREFETCH, () -> generatePersonalRecommendations(userId));
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // Busy: keep serving the stale entry, a later visit retries
+            recommendationCache.refreshDone(userId);
+            return;
+        }
+        generation
+            .thenCompose(recommendations -> recommendations)
+            .whenComplete((recommendations, error) -> {
+                recommendationCache.refreshDone(userId);
+                if (error != null) {
+                    System.err.println("⚠️  Recommendation refresh failed for user " + userId + ": " + error.getMessage());
+                } else {
+                    System.out.println("🔄 Refreshed cached recommendations for user: " + userId);
+                }
+            });
+    }
+
     /**
      * Handler for /api/recommendations/related?bookId=XXX
      * Get related book recommendations for a specific book
@@ -2241,38 +2509,27 @@ public class LibraryApiServer {
                     return;
                 }
 
-                // Get books by same author or same publisher
-                List<BookInfo> allBooks = repository.getAllBooks();
-                List<BookInfo> relatedBooks = new ArrayList<>();
-
-                for (BookInfo book : allBooks) {
-                    if (!book.getId().equals(bookId)) {
-                        if (book.getAuthor().equals(currentBook.getAuthor()) ||
-                            book.getPublisher().equals(currentBook.getPublisher())) {
-                            relatedBooks.add(book);
-                        }
-                    }
+                // Candidate assembly runs on the recommendation workers; 429 when saturated
+                java.util.concurrent.CompletableFuture<java.util.concurrent.CompletableFuture<List<Recommendation>>> generation;
+                try {
+                    generation = recommendationScheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE,
+                        () -> generateRelatedRecommendations(currentBook));
+                } catch (java.util.concurrent.RejectedExecutionException e) {
+                    sendTooManyRequests(exchange);
+                    return;
                 }
+                List<Recommendation> recommendations = generation.thenCompose(related -> related).join();
 
-                // If not enough, add other available books
-                if (relatedBooks.size() < 10) {
-                    for (BookInfo book : allBooks) {
-                        if (!book.getId().equals(bookId) && !relatedBooks.contains(book) && book.isAvailable()) {
-                            relatedBooks.add(book);
-                            if (relatedBooks.size() >= 15) break;
-                        }
-                    }
+                // Build response (one batched lookup for all recommended books)
+                List<String> recommendedIds = new ArrayList<>();
+                for (Recommendation rec : recommendations) {
+                    recommendedIds.add(rec.getBookId());
                 }
+                Map<String, BookInfo> recommendedBooks = repository.findByIds(recommendedIds);
 
-                // Generate related recommendations
-                List<Recommendation> recommendations = recommendationService.getRelatedRecommendations(
-                    currentBook, relatedBooks
-                );
-
-                // Build response
                 List<RecommendationWithBook> result = new ArrayList<>();
                 for (Recommendation rec : recommendations) {
-                    BookInfo book = repository.findById(rec.getBookId());
+                    BookInfo book = recommendedBooks.get(rec.getBookId());
                     if (book != null) {
                         result.add(new RecommendationWithBook(book, rec.getReason(), rec.getScore()));
                     }
@@ -2290,6 +2547,54 @@ public class LibraryApiServer {
         }
     }
 
+    /**
+     * Related books (same author or publisher, topped up with available books) and the AI ranking of them
+     */
+    private static java.util.concurrent.CompletableFuture<List<Recommendation>> generateRelatedRecommendations(BookInfo currentBook) {
+        String bookId = currentBook.getId();
+
+        // Get books by same author or same publisher
+        List<BookInfo> allBooks = repository.getAllBooks();
+        List<BookInfo> relatedBooks = new ArrayList<>();
+
+        for (BookInfo book : allBooks) {
+            if (!book.getId().equals(bookId)) {
+                if (book.getAuthor().equals(currentBook.getAuthor()) ||
+                    book.getPublisher().equals(currentBook.getPublisher())) {
+                    relatedBooks.add(book);
+                }
+            }
+        }
+
+        // If not enough, add other available books
+        if (relatedBooks.size() < 10) {
+            for (BookInfo book : allBooks) {
+                if (!book.getId().equals(bookId) && !relatedBooks.contains(book) && book.isAvailable()) {
+                    relatedBooks.add(book);
+                    if (relatedBooks.size() >= 15) break;
+                }
+            }
+        }
+
+        // Generate related recommendations (AI errors give an empty list, as before)
+        return recommendationService.getRelatedRecommendationsAsync(currentBook, relatedBooks)
+            .exceptionally(e -> {
+                System.err.println("Related recommendations error: " + e.getMessage());
+                return new ArrayList<>();
+            });
+    }
+
+    /**
+     * Recommendation workers are saturated: 429 with a Retry-After estimated from the queue
+     */
+    private static void sendTooManyRequests(HttpExchange exchange) throws IOException {
+        long retryAfter = recommendationScheduler.retryAfterSeconds();
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfter));
+        String response = gson.toJson(new ErrorResponse("Too many recommendation requests - retry in " + retryAfter + "s"));
+        sendResponse(exchange, 429, "application/json", response);
+        System.out.println("⏳ Recommendation request rejected (queue full), Retry-After: " + retryAfter + "s");
+    }
+
     /**
      * Handler for /api/recommendations/health
      * Check if AI service is available
@@ -2332,19 +2637,28 @@ public class LibraryApiServer {
     }
 
     /**
-     * Handler for /api/chat
+     * Handler for /api/chat and /api/chat/stream
      * ChatHandler - 處理 /api/chat 端點（已升級支援 RAG）
+     * 串流模式以 Server-Sent Events 逐段回傳 AI 回應（event: token / done / error）
      */
-    static class ChatHandler implements HttpHandler {
+    static class ChatHandler implements HttpRequestEngine.AsyncHandler {
 
+        private final boolean streaming;
         private final BookDatabaseRepository bookRepo;
         private final UserDatabaseRepository userRepo;
         private final BorrowHistoryRepository borrowHistoryRepo;
         private final LibraryRulesRepository rulesRepo;
         private final QuestionClassifier questionClassifier;
         private final ContextRetriever contextRetriever;
+        private final ChatContextBuilder contextBuilder;
 
         public ChatHandler() {
+            this(false);
+        }
+
+        public ChatHandler(boolean streaming) {
+            this.streaming = streaming;
+
             // 初始化所有 repository
             this.bookRepo = repository;
             this.userRepo = userRepository;
@@ -2360,20 +2674,21 @@ public class LibraryApiServer {
                 bookRepo,
                 rulesRepo
             );
+            this.contextBuilder = new ChatContextBuilder(bookRepo.getSearchIndex());
         }
 
         @Override
-        public void handle(HttpExchange exchange) throws IOException {
+        public java.util.concurrent.CompletionStage<?> handleAsync(HttpExchange exchange) throws IOException {
             // CORS preflight
             if ("OPTIONS".equals(exchange.getRequestMethod())) {
                 sendResponse(exchange, 204, "text/plain", "");
-                return;
+                return null;
             }
 
             if (!"POST".equals(exchange.getRequestMethod())) {
                 String response = gson.toJson(new ErrorResponse("Method not allowed. Use POST"));
                 sendResponse(exchange, 405, "application/json", response);
-                return;
+                return null;
             }
 
             // 1. 驗證 session
@@ -2386,7 +2701,7 @@ public class LibraryApiServer {
                     "請先登入"
                 );
                 sendResponse(exchange, 401, "application/json", gson.toJson(errorResponse));
-                return;
+                return null;
             }
 
             // 2. 解析請求
@@ -2398,291 +2713,205 @@ public class LibraryApiServer {
 
             System.out.println("📩 [ChatHandler] User: " + userId + " | Message: " + userMessage);
 
+            ChatContext context = null;
+            String contextJson = null;
+            Set<QuestionClassifier.QuestionType> questionTypes = null;
+            String cacheKey = null;
+            String cachedAnswer = null;
             try {
                 // 3. RAG 流程：分類問題
-                Set<QuestionClassifier.QuestionType> questionTypes =
-                    questionClassifier.classify(userMessage);
+                long stageStart = System.nanoTime();
+                questionTypes = questionClassifier.classify(userMessage);
+                chatAiClient.recordStage(ChatAiClient.STAGE_CLASSIFY, System.nanoTime() - stageStart);
 
                 System.out.println("🏷️  [ChatHandler] Question types: " + questionTypes);
 
+                // 重複的問題直接使用快取答案（不需檢索，也不呼叫 AI）
+                cacheKey = chatAnswerCache.keyFor(userId, userMessage, questionTypes, gson.toJson(request.history));
+                cachedAnswer = chatAnswerCache.get(cacheKey);
+            } catch (Exception e) {
+                System.err.println("❌ [ChatHandler] Classify error: " + e.getMessage());
+                questionTypes = Collections.singleton(QuestionClassifier.QuestionType.GENERAL_CHAT);
+            }
+
+            if (cachedAnswer != null) {
+                System.out.println("⚡ [ChatHandler] Answer cache hit");
+                if (streaming) {
+                    SseStream sse = new SseStream(exchange);
+                    sse.send("token", Map.of("text", cachedAnswer));
+                    sse.send("done", Map.of("success", true, "cached", true));
+                    sse.close();
+                } else {
+                    ChatResponse response = new ChatResponse(true, cachedAnswer);
+                    response.cached = true;
+                    sendResponse(exchange, 200, "application/json", gson.toJson(response));
+                }
+                return null;
+            }
+
+            try {
                 // 4. RAG 流程：檢索資料
-                ChatContext context = contextRetriever.retrieveContext(
+                long stageStart = System.nanoTime();
+                context = contextRetriever.retrieveContext(
                     userId,
                     userMessage,
                     questionTypes
                 );
+                chatAiClient.recordStage(ChatAiClient.STAGE_RETRIEVE, System.nanoTime() - stageStart);
 
                 System.out.println("📊 [ChatHandler] Context retrieved: hasData=" + !context.isEmpty());
                 if (!context.isEmpty()) {
-                System.out.println("    " + context.getSummary());
-            }
-
-            // 5. 將 ChatContext 轉換為 JSON
-            String contextJson = convertContextToJson(context);
-            int contextSize = contextJson.length();
-            int borrowCount = context.getBorrowHistory() != null ? context.getBorrowHistory().size() : 0;
-            int currentCount = context.getCurrentBorrowings() != null ? context.getCurrentBorrowings().size() : 0;
-            int availableCount = context.getAvailableBooks() != null ? context.getAvailableBooks().size() : 0;
-            int rulesCount = context.getLibraryRules() != null ? context.getLibraryRules().size() : 0;
-
-            System.out.println("📦 [ChatHandler] Context size: " + contextSize + " chars");
-            System.out.println("    借閱歷史: " + borrowCount +
-                               ", 當前借閱: " + currentCount +
-                               ", 可借書籍: " + availableCount +
-                               ", 規則數: " + rulesCount);
-
-            // 6. 呼叫 Python AI Service（使用 RAG）
-            String aiResponse = callAiServiceWithContext(
-                userMessage,
-                request.history,
-                    contextJson
-                );
+                    System.out.println("    " + context.getSummary());
+                }
 
-                // 7. 返回回應
-                ChatResponse response = new ChatResponse(true, aiResponse);
-                sendResponse(exchange, 200, "application/json", gson.toJson(response));
+                // 5. 將 ChatContext 轉換為 JSON
+                stageStart = System.nanoTime();
+                contextJson = contextBuilder.toJson(context, userMessage);
+                chatAiClient.recordStage(ChatAiClient.STAGE_SERIALIZE, System.nanoTime() - stageStart);
 
-            } catch (Exception e) {
-                System.err.println("❌ [ChatHandler] Error: " + e.getMessage());
-                e.printStackTrace();
+                int borrowCount = context.getBorrowHistory() != null ? context.getBorrowHistory().size() : 0;
+                int currentCount = context.getCurrentBorrowings() != null ? context.getCurrentBorrowings().size() : 0;
+                int availableCount = context.getAvailableBooks() != null ? context.getAvailableBooks().size() : 0;
+                int rulesCount = context.getLibraryRules() != null ? context.getLibraryRules().size() : 0;
 
-                // 降級處理：不使用 RAG，直接呼叫 AI
-                try {
-                    String fallbackResponse = callAiServiceWithoutContext(
-                        userMessage,
-                        request.history
-                    );
-                    ChatResponse response = new ChatResponse(true, fallbackResponse);
-                    sendResponse(exchange, 200, "application/json", gson.toJson(response));
-                } catch (Exception fallbackError) {
-                    ChatResponse errorResponse = new ChatResponse(
-                        false,
-                        "AI 服務暫時無法使用，請稍後再試"
-                    );
-                    sendResponse(exchange, 500, "application/json", gson.toJson(errorResponse));
-                }
-            }
-        }
+                System.out.println("📦 [ChatHandler] Context size: " + contextJson.length() + " chars");
+                System.out.println("    借閱歷史: " + borrowCount +
+                                   ", 當前借閱: " + currentCount +
+                                   ", 可借書籍: " + availableCount +
+                                   ", 規則數: " + rulesCount);
 
-        /**
-         * 將 ChatContext 轉換為 JSON 字串
-         */
-        private String convertContextToJson(ChatContext context) {
-            Map<String, Object> contextMap = new HashMap<>();
-
-            // hasData 標誌
-            contextMap.put("hasData", !context.isEmpty());
-
-            // 借閱歷史
-            if (context.getBorrowHistory() != null && !context.getBorrowHistory().isEmpty()) {
-                List<Map<String, Object>> historyList = new ArrayList<>();
-                for (BorrowHistory record : context.getBorrowHistory()) {
-                    Map<String, Object> recordMap = new HashMap<>();
-                    recordMap.put("bookId", record.getBookId());
-                    recordMap.put("bookTitle", record.getBookTitle());
-                    recordMap.put("borrowDate", record.getBorrowDate());
-                    recordMap.put("returnDate", record.getReturnDate() != null ?
-                        record.getReturnDate() : "未歸還");
-                    recordMap.put("status", record.getStatus());
-                    historyList.add(recordMap);
-                }
-                contextMap.put("borrowHistory", historyList);
-            }
-
-            // 可借閱書籍
-            if (context.getAvailableBooks() != null && !context.getAvailableBooks().isEmpty()) {
-                List<Map<String, Object>> booksList = new ArrayList<>();
-                for (BookInfo book : context.getAvailableBooks()) {
-                    Map<String, Object> bookMap = new HashMap<>();
-                    bookMap.put("id", book.getId());
-                    bookMap.put("title", book.getTitle());
-                    bookMap.put("author", book.getAuthor());
-                    bookMap.put("publisher", book.getPublisher());
-                    bookMap.put("available", book.isAvailable());
-                    bookMap.put("description", trimDescription(book.getDescription()));
-                    booksList.add(bookMap);
-                }
-                contextMap.put("availableBooks", booksList);
-            }
-
-            // 當前借閱
-            if (context.getCurrentBorrowings() != null && !context.getCurrentBorrowings().isEmpty()) {
-                List<Map<String, Object>> currentList = new ArrayList<>();
-                for (BorrowHistory record : context.getCurrentBorrowings()) {
-                    Map<String, Object> recordMap = new HashMap<>();
-                    recordMap.put("bookId", record.getBookId());
-                    recordMap.put("bookTitle", record.getBookTitle());
-                    recordMap.put("borrowDate", record.getBorrowDate());
-                    recordMap.put("dueDate", record.getDueDate() != null ? record.getDueDate() : "未提供");
-                    recordMap.put("status", record.getStatus());
-                    currentList.add(recordMap);
-                }
-                contextMap.put("currentBorrowings", currentList);
-            }
-
-            // 目標書籍
-            if (context.getTargetBook() != null) {
-                BookInfo target = context.getTargetBook();
-                Map<String, Object> targetMap = new HashMap<>();
-                targetMap.put("id", target.getId());
-                targetMap.put("title", target.getTitle());
-                targetMap.put("author", target.getAuthor());
-                targetMap.put("publisher", target.getPublisher());
-                targetMap.put("available", target.isAvailable());
-                targetMap.put("description", trimDescription(target.getDescription()));
-                targetMap.put("borrowCount", target.getBorrowCount());
-                targetMap.put("averageRating", target.getAverageRating());
-                targetMap.put("reviewCount", target.getReviewCount());
-                contextMap.put("targetBook", targetMap);
-            }
-
-            // 圖書館規則
-            if (context.getLibraryRules() != null && !context.getLibraryRules().isEmpty()) {
-                List<Map<String, Object>> rulesList = new ArrayList<>();
-                for (LibraryRulesRepository.LibraryRule rule : context.getLibraryRules()) {
-                    Map<String, Object> ruleMap = new HashMap<>();
-                    ruleMap.put("category", rule.category);
-                    ruleMap.put("question", rule.question);
-                    ruleMap.put("answer", rule.answer);
-                    rulesList.add(ruleMap);
-                }
-                contextMap.put("libraryRules", rulesList);
+            } catch (Exception e) {
+                // 降級處理：不使用 RAG，直接呼叫 AI
+                System.err.println("❌ [ChatHandler] RAG error, continuing without context: " + e.getMessage());
+                e.printStackTrace();
+                context = null;
+                contextJson = null;
             }
 
-            // 統計資訊
-            if (context.getStats() != null) {
-                Map<String, Integer> statsMap = new HashMap<>();
-                statsMap.put("totalBooks", context.getStats().totalBooks);
-                statsMap.put("availableBooks", context.getStats().availableBooks);
-                statsMap.put("borrowedBooks", context.getStats().borrowedBooks);
-                contextMap.put("stats", statsMap);
+            // 6. 呼叫 Python AI Service
+            // 不在請求執行緒上等待：AI 回覆完成後由 completion executor 寫出回應，
+            // 請求執行緒立即歸還；路由名額由 HttpRequestEngine 保留到回傳的 stage 完成為止
+            if (streaming) {
+                return streamReply(exchange, userMessage, request.history, contextJson, context, cacheKey);
             }
+            ChatContext ragContext = context;
+            String answerKey = cacheKey;
+            return chatAiClient.chatAsync(userMessage, request.history, contextJson)
+                .handleAsync((aiResponse, error) -> {
+                    try {
+                        if (error != null) {
+                            sendUnavailable(exchange, ragContext, ChatAiClient.unwrap(error));
+                            return null;
+                        }
+                        chatAnswerCache.put(answerKey, aiResponse);
 
-            return gson.toJson(contextMap);
-        }
-
-        private String trimDescription(String description) {
-            if (description == null) {
-                return "";
-            }
-            int maxLength = 120;
-            if (description.length() <= maxLength) {
-                return description;
-            }
-            return description.substring(0, maxLength) + "...";
+                        // 7. 返回回應
+                        sendResponse(exchange, 200, "application/json", gson.toJson(new ChatResponse(true, aiResponse)));
+                    } catch (IOException e) {
+                        System.err.println("❌ [ChatHandler] Failed to send reply: " + e.getMessage());
+                        exchange.close();
+                    }
+                    return null;
+                }, requestEngine.getCompletionExecutor());
         }
 
         /**
-         * 呼叫 AI Service（使用 RAG context）
+         * 串流回應：AI 產生的每個片段立即以 SSE 送出
+         * ChatAiClient 的執行緒只把寫出工作排入 SerialWriter，由 completion executor 依序寫給客戶端
+         * 尚未送出任何片段前失敗時，改用一般的降級回應（JSON）
+         * @return 串流結束（或客戶端離線）後完成的 stage
          */
-        private String callAiServiceWithContext(String message,
-                                               List<ChatMessage> history,
-                                               String contextJson) throws Exception {
-            // Support both Docker (AI_SERVICE_URL env var) and local development
-            String aiServiceUrl = System.getenv("AI_SERVICE_URL");
-            if (aiServiceUrl == null || aiServiceUrl.isEmpty()) {
-                aiServiceUrl = "http://localhost:8888";
-            }
-            String url = aiServiceUrl + "/chat";
-
-            // 構建請求 body（包含 context）
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("message", message);
-            requestBody.put("history", history);
-            requestBody.put("context", contextJson);  // 新增 context 參數
-
-            String requestJson = gson.toJson(requestBody);
-
-            // 發送 HTTP POST 請求
-            HttpURLConnection conn = (HttpURLConnection)
-                new URL(url).openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(30000);
-
-            // 寫入請求
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(requestJson.getBytes(StandardCharsets.UTF_8));
-            }
-
-            // 讀取回應
-            int responseCode = conn.getResponseCode();
-            if (responseCode == 200) {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
+        private java.util.concurrent.CompletionStage<?> streamReply(HttpExchange exchange, String userMessage,
+                                                                     List<ChatMessage> history, String contextJson,
+                                                                     ChatContext ragContext, String cacheKey) {
+            SseStream sse = new SseStream(exchange);
+            SerialWriter writer = new SerialWriter(requestEngine.getCompletionExecutor());
+            java.util.concurrent.atomic.AtomicBoolean clientGone = new java.util.concurrent.atomic.AtomicBoolean();
+            java.util.concurrent.CompletableFuture<Void> done = new java.util.concurrent.CompletableFuture<>();
+
+            java.util.concurrent.CompletableFuture<String> reply = chatAiClient.streamAsync(userMessage, history, contextJson,
+                token -> {
+                    if (clientGone.get()) {
+                        throw new IOException("Client disconnected");  // Cancels the upstream request
                     }
+                    writer.execute(() -> {
+                        if (clientGone.get()) {
+                            return;
+                        }
+                        try {
+                            sse.send("token", Map.of("text", token));
+                        } catch (IOException e) {
+                            clientGone.set(true);
+                        }
+                    });
+                });
+            // Queued after every token write, so "done" is always the last frame
+            reply.whenComplete((fullText, error) -> writer.execute(() -> {
+                try {
+                    finishStream(exchange, sse, ragContext, cacheKey, fullText,
+                        error != null ? ChatAiClient.unwrap(error) : null, clientGone.get());
+                } finally {
+                    done.complete(null);
+                }
+            }));
+            return done;
+        }
 
-                    // 解析回應
-                    Map<String, Object> responseMap = gson.fromJson(
-                        response.toString(),
-                        new TypeToken<Map<String, Object>>(){}.getType()
-                    );
-
-                    return (String) responseMap.get("message");
+        private void finishStream(HttpExchange exchange, SseStream sse, ChatContext ragContext, String cacheKey,
+                                  String fullText, Throwable cause, boolean clientGone) {
+            try {
+                if (clientGone || cause instanceof java.util.concurrent.CancellationException) {
+                    System.out.println("🔌 [ChatHandler] Client disconnected, stream cancelled");
+                    sse.close();
+                } else if (cause == null) {
+                    chatAnswerCache.put(cacheKey, fullText);
+                    sse.send("done", Map.of("success", true));
+                    sse.close();
+                } else if (!sse.isStarted()) {
+                    sendUnavailable(exchange, ragContext, cause);
+                } else {
+                    System.err.println("❌ [ChatHandler] Stream interrupted: " + cause.getMessage());
+                    sse.send("error", Map.of("message", "AI 回應中斷，請稍後再試"));
+                    sse.close();
                 }
-            } else {
-                throw new Exception("AI Service returned error: " + responseCode);
+            } catch (IOException e) {
+                System.err.println("❌ [ChatHandler] Failed to finish stream: " + e.getMessage());
+                sse.close();
             }
         }
 
         /**
-         * 呼叫 AI Service（不使用 RAG，降級處理）
+         * AI 服務無法回應時的降級回應
+         * - 有檢索到的圖書館規則：直接回覆規則內容（200, degraded）
+         * - 逾時：504；熔斷中或忙碌：503；其他錯誤：502
          */
-        private String callAiServiceWithoutContext(String message,
-                                                  List<ChatMessage> history) throws Exception {
-            // Support both Docker (AI_SERVICE_URL env var) and local development
-            String aiServiceUrl = System.getenv("AI_SERVICE_URL");
-            if (aiServiceUrl == null || aiServiceUrl.isEmpty()) {
-                aiServiceUrl = "http://localhost:8888";
-            }
-            String url = aiServiceUrl + "/chat";
-
-            // 構建請求 body（不包含 context）
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("message", message);
-            requestBody.put("history", history);
-
-            String requestJson = gson.toJson(requestBody);
-
-            // 發送 HTTP POST 請求（同上）
-            HttpURLConnection conn = (HttpURLConnection)
-                new URL(url).openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setDoOutput(true);
-            conn.setConnectTimeout(30000);
-            conn.setReadTimeout(30000);
-
-            try (OutputStream os = conn.getOutputStream()) {
-                os.write(requestJson.getBytes(StandardCharsets.UTF_8));
-            }
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode == 200) {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
-                    }
-
-                    Map<String, Object> responseMap = gson.fromJson(
-                        response.toString(),
-                        new TypeToken<Map<String, Object>>(){}.getType()
-                    );
+        private void sendUnavailable(HttpExchange exchange, ChatContext context, Throwable error) throws IOException {
+            System.err.println("❌ [ChatHandler] AI service unavailable: " + error.getMessage());
 
-                    return (String) responseMap.get("message");
+            if (context != null && context.getLibraryRules() != null && !context.getLibraryRules().isEmpty()) {
+                StringBuilder answer = new StringBuilder("AI 助理暫時無法回應，以下是相關的圖書館規定：\n");
+                for (LibraryRulesRepository.LibraryRule rule : context.getLibraryRules()) {
+                    answer.append("\n• ").append(rule.question).append("\n  ").append(rule.answer);
                 }
+                ChatResponse response = new ChatResponse(true, answer.toString());
+                response.degraded = true;
+                sendResponse(exchange, 200, "application/json", gson.toJson(response));
+                return;
+            }
+
+            int status;
+            String message;
+            if (error instanceof java.net.http.HttpTimeoutException) {
+                status = 504;
+                message = "AI 回應超時，請稍後再試";
+            } else if (error instanceof ChatAiClient.UnavailableException) {
+                status = 503;
+                message = "AI 服務暫時無法使用，請稍後再試";
             } else {
-                throw new Exception("AI Service returned error: " + responseCode);
+                status = 502;
+                message = "AI 服務暫時無法使用，請稍後再試";
             }
+            sendResponse(exchange, status, "application/json", gson.toJson(new ChatResponse(false, message)));
         }
     }
 
@@ -2735,6 +2964,8 @@ public class LibraryApiServer {
     static class ChatResponse {
         public boolean success;
         public String message;
+        public Boolean degraded;  // true when answered without the AI service
+        public Boolean cached;    // true when served from the answer cache
 
         public ChatResponse(boolean success, String message) {
             this.success = success;
@@ -2742,6 +2973,96 @@ public class LibraryApiServer {
         }
     }
 
+    /**
+     * Server-Sent Events writer for one exchange
+     * Headers go out with the first event, and every event is flushed immediately.
+     */
+    static class SseStream {
+        private final HttpExchange exchange;
+        private OutputStream out;
+
+        SseStream(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        synchronized boolean isStarted() {
+            return out != null;
+        }
+
+        /**
+         * Write one event; IOException means the client has gone away
+         */
+        synchronized void send(String event, Object data) throws IOException {
+            if (out == null) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.getResponseHeaders().set("X-Accel-Buffering", "no");  // Don't let nginx buffer the stream
+                setCorsHeaders(exchange);
+                exchange.sendResponseHeaders(200, 0);
+                out = exchange.getResponseBody();
+            }
+            String frame = "event: " + event + "\ndata: " + gson.toJson(data) + "\n\n";
+            out.write(frame.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        synchronized void close() {
+            try {
+                if (out != null) {
+                    out.close();
+                } else {
+                    exchange.close();
+                }
+            } catch (IOException e) {
+                // Client already gone
+            }
+        }
+    }
+
+    /**
+     * Runs tasks one at a time, in submission order, on a shared executor
+     * Used to write one SSE stream from callbacks without holding a thread between frames
+     */
+    static class SerialWriter implements java.util.concurrent.Executor {
+        private final java.util.concurrent.Executor executor;
+        private final java.util.Queue<Runnable> tasks = new java.util.concurrent.ConcurrentLinkedQueue<>();
+        private final java.util.concurrent.atomic.AtomicBoolean scheduled = new java.util.concurrent.atomic.AtomicBoolean();
+
+        SerialWriter(java.util.concurrent.Executor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("❌ Serial write task failed: " + e.getMessage());
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // A task may have been added after the last poll but before scheduled was cleared
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
     // ===== Notification Handlers (Phase 13) =====
 
     /**
@@ -2764,8 +3085,8 @@ public class LibraryApiServer {
                 return;
             }
 
-            // Handle POST /api/notifications/{id}/read
-            if ("POST".equals(method) && path.matches("/api/notifications/\\d+/read")) {
+            // Handle POST /api/notifications/{id}/read (broadcasts have negative ids)
+            if ("POST".equals(method) && path.matches("/api/notifications/-?\\d+/read")) {
                 handleMarkAsRead(exchange, session);
                 return;
             }
@@ -2792,6 +3113,11 @@ public class LibraryApiServer {
 
             try {
                 int notificationId = Integer.parseInt(parts[3]);
+                if (notificationId == 0) {
+                    String response = gson.toJson(new ErrorResponse("Invalid notification ID"));
+                    sendResponse(exchange, 400, "application/json", response);
+                    return;
+                }
                 boolean success = notificationRepository.markAsRead(notificationId, session.username);
 
                 if (success) {
@@ -3240,21 +3566,22 @@ public class LibraryApiServer {
             DashboardStats stats = new DashboardStats();
 
             // Total books (already available from existing stats)
-            stats.totalBooks = repository.getAllBooks().size();
+            stats.totalBooks = repository.getStats().totalBooks;
 
             // Total users (user role only, exclude staff and admin)
-            stats.totalUsers = userRepository.getUsersByRole("user").size();
+            stats.totalUsers = metricsStore.getUserCount("user");
 
             // Today's borrows
-            stats.todayBorrows = historyRepository.getTodayBorrowCount();
+            java.time.LocalDate today = java.time.LocalDate.now();
+            stats.todayBorrows = metricsStore.getBorrowCount(today);
 
             // Average rating across all books
-            stats.averageRating = ratingRepository.getOverallAverageRating();
+            stats.averageRating = metricsStore.getOverallAverageRating();
 
             // Yesterday data for trends
-            stats.yesterdayUsers = userRepository.getYesterdayUserCount();
-            stats.yesterdayBorrows = historyRepository.getYesterdayBorrowCount();
-            stats.yesterdayAvgRating = ratingRepository.getYesterdayAverageRating();
+            stats.yesterdayUsers = metricsStore.getYesterdayUserCount();
+            stats.yesterdayBorrows = metricsStore.getBorrowCount(today.minusDays(1));
+            stats.yesterdayAvgRating = metricsStore.getYesterdayAverageRating();
 
             DashboardStatsResponse response = new DashboardStatsResponse(true, stats);
             String json = gson.toJson(response);
@@ -3367,9 +3694,9 @@ public class LibraryApiServer {
             }
 
             // Total records (sum of all tables)
-            info.totalRecords = repository.getAllBooks().size() +
-                               userRepository.getUsersByRole("user").size() +
-                               historyRepository.getAllHistory().size() +
+            info.totalRecords = repository.getStats().totalBooks +
+                               metricsStore.getUserCount("user") +
+                               (int) metricsStore.getTotalBorrowCount() +
                                ratingRepository.getTopRatedBooks(1000).size();
 
             // System uptime
@@ -3395,7 +3722,8 @@ public class LibraryApiServer {
     /**
      * Handler for /api/dashboard/top-books
      * GET: Get top books with complete statistics (borrow count, rating, reviews)
-     * Query parameter: limit (default: 10, max: 50)
+     * Query parameters: limit (default: 10, max: 50), by (borrows|rating|reviews, default: borrows),
+     *                   days (7 or 30 for a recent window, default: all time)
      * Requires authentication (館長 or 館員)
      */
     static class TopBooksHandler implements HttpHandler {
@@ -3439,8 +3767,30 @@ public class LibraryApiServer {
                 }
             }
 
-            // Get top books with statistics
-            ArrayList<BookInfo> topBooks = repository.getTopBooksWithStats(limit);
+            BookLeaderboard.Metric metric = BookLeaderboard.Metric.BORROWS;
+            if (query != null && query.contains("by=")) {
+                try {
+                    metric = BookLeaderboard.Metric.valueOf(query.split("by=")[1].split("&")[0].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    metric = BookLeaderboard.Metric.BORROWS;
+                }
+            }
+
+            int days = 0;  // All time
+            if (query != null && query.contains("days=")) {
+                try {
+                    days = Integer.parseInt(query.split("days=")[1].split("&")[0]);
+                    if (days < 0 || days > BookLeaderboard.MAX_WINDOW_DAYS) {
+                        days = 0;
+                    }
+                } catch (Exception e) {
+                    days = 0;
+                }
+            }
+
+            // Get top books from the live leaderboard, statistics from the catalog cache
+            List<String> bookIds = leaderboard.topBookIds(metric, limit, days);
+            ArrayList<BookInfo> topBooks = new ArrayList<>(repository.findByIds(bookIds).values());
 
             TopBooksResponse response = new TopBooksResponse(true, topBooks);
             String json = gson.toJson(response);
@@ -3448,6 +3798,60 @@ public class LibraryApiServer {
         }
     }
 
+    /**
+     * Handler for /api/metrics
+     * GET: Runtime metrics (request engine, caches, database connection pools)
+     * Requires authentication (館長 or 館員)
+     */
+    static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                String response = gson.toJson(new ErrorResponse("Method not allowed. Use GET"));
+                sendResponse(exchange, 405, "application/json", response);
+                return;
+            }
+
+            // Authentication required (館長 or 館員)
+            String sessionId = getSessionIdFromCookie(exchange);
+            ApiSessionManager.SessionData session = ApiSessionManager.validateSession(sessionId);
+
+            if (session == null) {
+                String response = gson.toJson(new ErrorResponse("Unauthorized - Please login"));
+                sendResponse(exchange, 401, "application/json", response);
+                return;
+            }
+
+            if (!"館長".equals(session.userType) && !"館員".equals(session.userType)) {
+                String response = gson.toJson(new ErrorResponse("Permission denied - Admin or Staff only"));
+                sendResponse(exchange, 403, "application/json", response);
+                return;
+            }
+
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("httpEngine", requestEngine.getStats());
+            metrics.put("bookCatalogCache", repository.getCatalogCache().getStats());
+            metrics.put("libraryMetrics", metricsStore.getStats());
+            metrics.put("chatAi", chatAiClient.getStats());
+            metrics.put("chatAnswerCache", chatAnswerCache.getStats());
+            metrics.put("recommendationCache", recommendationCache.getStats());
+            metrics.put("tasks", taskManager.getStats());
+            metrics.put("recommendationWorkers", recommendationScheduler.getStats());
+            metrics.put("notificationPush", wsServer.getNotificationStats());
+            metrics.put("dueReminders", notificationService.getDueReminderEngine().getStats());
+            metrics.put("outbox", outboxDispatcher.getStats());
+            metrics.put("circulation", circulationService.getStats());
+            metrics.put("recommendationCoalescing", Map.of(
+                "attachedTasks", taskManager.getCoalescedCount(),
+                "aiRequests", recommendationService.getCoalescingStats()));
+            metrics.put("connectionPools", DatabaseConnectionPool.getAllStats());
+
+            MetricsResponse response = new MetricsResponse(true, metrics);
+            String json = gson.toJson(response);
+            sendResponse(exchange, 200, "application/json", json);
+        }
+    }
+
     // ===== Account Management Request/Response Classes =====
 
     static class CreateAccountRequest {
@@ -3540,4 +3944,75 @@ public class LibraryApiServer {
         }
     }
 
+    /**
+     * Handler for /api/admin/jobs and /api/admin/jobs/{name}/run
+     * GET: Scheduled jobs with schedule, next/last run, duration and success counts
+     * POST .../{name}/run: Run a job now (409 if it is already running)
+     * Requires authentication (館長 or 館員)
+     */
+    static class JobsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+
+            // Authentication required (館長 or 館員)
+            String sessionId = getSessionIdFromCookie(exchange);
+            ApiSessionManager.SessionData session = ApiSessionManager.validateSession(sessionId);
+
+            if (session == null) {
+                String response = gson.toJson(new ErrorResponse("Unauthorized - Please login"));
+                sendResponse(exchange, 401, "application/json", response);
+                return;
+            }
+
+            if (!"館長".equals(session.userType) && !"館員".equals(session.userType)) {
+                String response = gson.toJson(new ErrorResponse("Permission denied - Admin or Staff only"));
+                sendResponse(exchange, 403, "application/json", response);
+                return;
+            }
+
+            // POST /api/admin/jobs/{name}/run
+            if ("POST".equals(method) && path.matches("/api/admin/jobs/[\\w-]+/run")) {
+                String name = path.split("/")[4];
+                if (!jobScheduler.hasJob(name)) {
+                    sendResponse(exchange, 404, "application/json", gson.toJson(new ErrorResponse("Unknown job: " + name)));
+                } else if (jobScheduler.runNow(name)) {
+                    sendResponse(exchange, 202, "application/json", gson.toJson(new SimpleResponse(true, "Job started: " + name)));
+                } else {
+                    sendResponse(exchange, 409, "application/json", gson.toJson(new ErrorResponse("Job already running: " + name)));
+                }
+                return;
+            }
+
+            if (!"GET".equals(method)) {
+                String response = gson.toJson(new ErrorResponse("Method not allowed"));
+                sendResponse(exchange, 405, "application/json", response);
+                return;
+            }
+
+            sendResponse(exchange, 200, "application/json", gson.toJson(new JobsResponse(true, jobScheduler.getStats())));
+        }
+    }
+
+    static class JobsResponse {
+        public boolean success;
+        public List<JobScheduler.JobStats> jobs;
+
+        public JobsResponse(boolean success, List<JobScheduler.JobStats> jobs) {
+            this.success = success;
+            this.jobs = jobs;
+        }
+    }
+
+    static class MetricsResponse {
+        public boolean success;
+        public Map<String, Object> metrics;
+
+        public MetricsResponse(boolean success, Map<String, Object> metrics) {
+            this.success = success;
+            this.metrics = metrics;
+        }
+    }
+
 }
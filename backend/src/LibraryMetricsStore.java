@@ -0,0 +1,346 @@
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Library Metrics Store
+ * Materialized dashboard counters, maintained on each write instead of aggregated per request
+ *
+ * Counters:
+ * - users by role
+ * - borrows per day, open loans
+ * - rating sum/count per book (and overall)
+ *
+ * rebuild() seeds everything from SQL at startup; afterwards the repositories'
+ * change listeners keep the counters current. rebuild() reads inside one transaction
+ * on the writer (pool.snapshot), so no write commits during it, and records the pool's write
+ * sequence at that point. Listeners fire after their write commits; a change whose
+ * write sequence is at or below the snapshot's is already counted and is skipped, so
+ * a write that commits just before a rebuild and notifies just after it is not counted twice.
+ * "Yesterday" figures that the tables can't answer incrementally are computed once
+ * per day and recomputed only when a write could change them. Per-book rankings
+ * live in BookLeaderboard.
+ */
+public class LibraryMetricsStore implements BookChangeListener, UserDatabaseRepository.UserChangeListener {
+
+    private final DatabaseConnectionPool pool;
+
+    // Replaced as a whole by rebuild(), so readers never see a half-filled map
+    private volatile Map<String, AtomicInteger> usersByRole = new ConcurrentHashMap<>();
+    private volatile Map<String, AtomicInteger> borrowsByDay = new ConcurrentHashMap<>();
+    private volatile Map<String, BookCounters> bookCounters = new ConcurrentHashMap<>();
+    private final AtomicLong totalBorrows = new AtomicLong();
+    private final AtomicLong openBorrows = new AtomicLong();
+
+    // Overall rating = sum of per-book sums / sum of per-book counts
+    private long ratingSum = 0;
+    private long ratingCount = 0;
+    private final Object ratingLock = new Object();
+
+    private final DailyValue<Integer> yesterdayUsers;
+    private final DailyValue<Double> yesterdayAvgRating;
+
+    // Write sequence the counters were last rebuilt at (guarded by this)
+    private long snapshotSequence = -1;
+
+    private volatile long lastRebuildMs = 0;
+    private final AtomicLong updates = new AtomicLong();
+
+    public LibraryMetricsStore(DatabaseConnectionPool pool,
+                               UserDatabaseRepository userRepository,
+                               BookRatingRepository ratingRepository) {
+        this.pool = pool;
+        this.yesterdayUsers = new DailyValue<>(userRepository::getYesterdayUserCount);
+        this.yesterdayAvgRating = new DailyValue<>(ratingRepository::getYesterdayAverageRating);
+    }
+
+    /**
+     * Seed all counters from the database (startup, or after bulk changes)
+     * Holds the writer for the duration of the read: writes wait, they are not lost
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            // Lock order is writer, then this monitor - the same as a listener fired inside a write
+            pool.snapshot(conn -> {
+                synchronized (this) {
+                    readSnapshot(conn);
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to rebuild library metrics: " + e.getMessage());
+            return;
+        }
+
+        lastRebuildMs = System.currentTimeMillis();
+        System.out.println("✅ Library metrics rebuilt in " + (lastRebuildMs - start) + " ms");
+    }
+
+    /**
+     * Read every counter on the writer's transaction and swap them in
+     */
+    private void readSnapshot(Connection conn) throws SQLException {
+        Map<String, AtomicInteger> roles = new HashMap<>();
+        Map<String, AtomicInteger> days = new HashMap<>();
+        Map<String, BookCounters> books = new HashMap<>();
+        long borrows = 0;
+        long open = 0;
+        long sum = 0;
+        long count = 0;
+
+        try (Statement stmt = conn.createStatement()) {
+
+            try (ResultSet rs = stmt.executeQuery("SELECT user_type, COUNT(*) AS count FROM users GROUP BY user_type")) {
+                while (rs.next()) {
+                    roles.put(rs.getString("user_type"), new AtomicInteger(rs.getInt("count")));
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT strftime('%Y-%m-%d', borrow_date) AS day, COUNT(*) AS count FROM borrow_history GROUP BY day")) {
+                while (rs.next()) {
+                    days.put(rs.getString("day"), new AtomicInteger(rs.getInt("count")));
+                    borrows += rs.getInt("count");
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) AS count FROM borrow_history WHERE status IN ('borrowing', 'overdue')")) {
+                if (rs.next()) {
+                    open = rs.getLong("count");
+                }
+            }
+
+            try (ResultSet rs = stmt.executeQuery(
+                    "SELECT book_id, COUNT(*) AS count, SUM(rating) AS total FROM book_ratings GROUP BY book_id")) {
+                while (rs.next()) {
+                    BookCounters counters = books.computeIfAbsent(rs.getString("book_id"), id -> new BookCounters());
+                    counters.ratingCount = rs.getInt("count");
+                    counters.ratingSum = rs.getLong("total");
+                    sum += counters.ratingSum;
+                    count += counters.ratingCount;
+                }
+            }
+        }
+
+        usersByRole = new ConcurrentHashMap<>(roles);
+        borrowsByDay = new ConcurrentHashMap<>(days);
+        bookCounters = new ConcurrentHashMap<>(books);
+        totalBorrows.set(borrows);
+        openBorrows.set(open);
+        synchronized (ratingLock) {
+            ratingSum = sum;
+            ratingCount = count;
+        }
+        yesterdayUsers.invalidate();
+        yesterdayAvgRating.invalidate();
+        snapshotSequence = pool.writeSequence();
+    }
+
+    // ===== Reads (O(1)) =====
+
+    public int getUserCount(String role) {
+        AtomicInteger count = usersByRole.get(role);
+        return count != null ? count.get() : 0;
+    }
+
+    public int getBorrowCount(LocalDate day) {
+        AtomicInteger count = borrowsByDay.get(day.toString());
+        return count != null ? count.get() : 0;
+    }
+
+    public long getTotalBorrowCount() {
+        return totalBorrows.get();
+    }
+
+    /**
+     * Borrow records not returned yet ('borrowing' or 'overdue')
+     */
+    public long getOpenBorrowCount() {
+        return openBorrows.get();
+    }
+
+    /**
+     * Row count for a borrow history filter, when the counters can answer it
+     * @return count, or null for filters the counters don't track (user, book, dates, borrowing, overdue)
+     */
+    public Long estimateHistoryCount(BorrowHistoryRepository.HistoryQuery query) {
+        if (query.userId != null || query.bookId != null || query.fromDate != null || query.toDate != null) {
+            return null;
+        }
+        if (query.status == null) {
+            return totalBorrows.get();
+        }
+        switch (query.status) {
+            case "returned":
+                return totalBorrows.get() - openBorrows.get();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Average of all ratings, rounded to 1 decimal place
+     */
+    public double getOverallAverageRating() {
+        synchronized (ratingLock) {
+            if (ratingCount == 0) {
+                return 0.0;
+            }
+            return Math.round((double) ratingSum / ratingCount * 10.0) / 10.0;
+        }
+    }
+
+    public int getYesterdayUserCount() {
+        return yesterdayUsers.get();
+    }
+
+    public double getYesterdayAverageRating() {
+        return yesterdayAvgRating.get();
+    }
+
+    // ===== Write paths =====
+
+    @Override
+    public void onBookChanged(ChangeType type, String bookId, String userId) {
+        if (type != ChangeType.BORROWED && type != ChangeType.RETURNED && type != ChangeType.RATED) {
+            return;  // Availability and catalog edits don't touch the counters; don't wait on a rebuild
+        }
+        synchronized (this) {
+            if (countedInSnapshot()) {
+                return;
+            }
+            applyBookChange(type, bookId);
+        }
+    }
+
+    /**
+     * Whether the write that triggered the current notification (made by this thread)
+     * is already part of the last rebuild's snapshot. Caller holds this monitor.
+     */
+    private boolean countedInSnapshot() {
+        return pool.lastWriteSequence() <= snapshotSequence;
+    }
+
+    private void applyBookChange(ChangeType type, String bookId) {
+        switch (type) {
+            case BORROWED:
+                updates.incrementAndGet();
+                totalBorrows.incrementAndGet();
+                openBorrows.incrementAndGet();
+                borrowsByDay.computeIfAbsent(LocalDate.now().toString(), d -> new AtomicInteger()).incrementAndGet();
+                break;
+            case RETURNED:
+                updates.incrementAndGet();
+                openBorrows.decrementAndGet();
+                break;
+            case RATED:
+                updates.incrementAndGet();
+                refreshRatings(bookId);
+                yesterdayAvgRating.invalidate();  // An upsert can move a rating out of yesterday
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public synchronized void onUserAdded(String userId, String userType) {
+        if (countedInSnapshot()) {
+            return;
+        }
+        updates.incrementAndGet();
+        usersByRole.computeIfAbsent(userType, r -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @Override
+    public synchronized void onUserRemoved(String userId, String userType) {
+        if (countedInSnapshot()) {
+            return;
+        }
+        updates.incrementAndGet();
+        if (userType != null) {
+            usersByRole.computeIfAbsent(userType, r -> new AtomicInteger()).decrementAndGet();
+        }
+        yesterdayUsers.invalidate();
+    }
+
+    /**
+     * Re-read one book's rating totals (upserts replace a user's previous rating)
+     */
+    private void refreshRatings(String bookId) {
+        String sql = "SELECT COUNT(*) AS count, COALESCE(SUM(rating), 0) AS total FROM book_ratings WHERE book_id = ?";
+
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, bookId);
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                BookCounters counters = bookCounters.computeIfAbsent(bookId, id -> new BookCounters());
+                synchronized (ratingLock) {
+                    ratingSum += rs.getLong("total") - counters.ratingSum;
+                    ratingCount += rs.getInt("count") - counters.ratingCount;
+                    counters.ratingSum = rs.getLong("total");
+                    counters.ratingCount = rs.getInt("count");
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to refresh rating metrics: " + e.getMessage());
+        }
+    }
+
+    // ===== Metrics =====
+
+    public StoreStats getStats() {
+        StoreStats stats = new StoreStats();
+        stats.trackedBooks = bookCounters.size();
+        stats.trackedDays = borrowsByDay.size();
+        stats.updates = updates.get();
+        stats.lastRebuild = lastRebuildMs;
+        return stats;
+    }
+
+    public static class StoreStats {
+        public int trackedBooks;
+        public int trackedDays;
+        public long updates;
+        public long lastRebuild;
+    }
+
+    // ===== Internals =====
+
+    // Guarded by ratingLock
+    private static class BookCounters {
+        long ratingSum;
+        int ratingCount;
+    }
+
+    /**
+     * A value computed at most once per calendar day (or again after invalidate())
+     */
+    private static class DailyValue<T> {
+        private final Supplier<T> loader;
+        private LocalDate day;
+        private T value;
+
+        DailyValue(Supplier<T> loader) {
+            this.loader = loader;
+        }
+
+        synchronized T get() {
+            LocalDate today = LocalDate.now();
+            if (!today.equals(day)) {
+                value = loader.get();
+                day = today;
+            }
+            return value;
+        }
+
+        synchronized void invalidate() {
+            day = null;
+        }
+    }
+}
@@ -9,6 +9,10 @@ import java.util.stream.Collectors;
  */
 public class LibraryRulesRepository {
 
+    // Enforced by CirculationService; the rule texts below are generated from them
+    public static final int MAX_ACTIVE_LOANS = 3;
+    public static final int LOAN_DAYS = 14;
+
     public static class LibraryRule {
         public String category;  // "借閱規則", "逾期規則", "預約規則"
         public String question;
@@ -36,13 +40,13 @@ public class LibraryRulesRepository {
         rules.add(new LibraryRule(
             "借閱規則",
             "借書期限是多久？",
-            "一般書籍借期為 14 天。到期前可續借一次，續借期限為 14 天。"
+            "一般書籍借期為 " + LOAN_DAYS + " 天。到期前可續借一次，續借期限為 " + LOAN_DAYS + " 天。"
         ));
 
         rules.add(new LibraryRule(
             "借閱規則",
             "一次可以借幾本書？",
-            "使用者最多可同時借閱 3 本書。"
+            "使用者最多可同時借閱 " + MAX_ACTIVE_LOANS + " 本書。"
         ));
 
         rules.add(new LibraryRule(
@@ -122,6 +126,28 @@ public class LibraryRulesRepository {
             .collect(Collectors.toList());
     }
 
+    /**
+     * Content fingerprint of the rules; changes whenever a rule is added, removed or edited
+     * (answers cached against the rules are keyed by it)
+     */
+    public String getVersion() {
+        return Integer.toHexString(getAllRules().toString().hashCode());
+    }
+
+    /**
+     * Books a user may have on loan at the same time
+     */
+    public int getMaxActiveLoans() {
+        return MAX_ACTIVE_LOANS;
+    }
+
+    /**
+     * Loan period in days
+     */
+    public int getLoanDays() {
+        return LOAN_DAYS;
+    }
+
     /**
      * Get all category names
      */
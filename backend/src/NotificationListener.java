@@ -0,0 +1,55 @@
+/**
+ * Notification Listener
+ * Notified after a NotificationRepository write that changes a user's notifications
+ *
+ * Fired after the write succeeded, so a push channel can forward the change
+ * instead of clients polling for the unread count.
+ */
+public interface NotificationListener {
+
+    enum ChangeType {
+        CREATED,    // Notification inserted (unread)
+        READ,       // One or all unread notifications marked as read
+        CLEARED     // All notifications soft-deleted (unread count is now 0)
+    }
+
+    /**
+     * @param type What changed
+     * @param userId Owner of the notifications
+     * @param notification The new notification (CREATED only, otherwise null)
+     * @param unreadDelta Change in the user's unread count (+1 for CREATED, -n for READ, 0 for CLEARED)
+     */
+    void onNotificationChanged(ChangeType type, String userId, Notification notification, int unreadDelta);
+
+    /**
+     * A broadcast was created: +1 unread for every user it targets
+     * @param targetRole "all" or the user_type it is addressed to
+     * @param notification The broadcast (negative id, no userId)
+     */
+    default void onBroadcast(String targetRole, Notification notification) {
+    }
+
+    /**
+     * Notify every listener; a failing listener never fails the write that triggered it
+     */
+    static void fireAll(Iterable<NotificationListener> listeners, ChangeType type, String userId,
+                        Notification notification, int unreadDelta) {
+        for (NotificationListener listener : listeners) {
+            try {
+                listener.onNotificationChanged(type, userId, notification, unreadDelta);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Notification listener failed (" + type + " " + userId + "): " + e.getMessage());
+            }
+        }
+    }
+
+    static void fireBroadcast(Iterable<NotificationListener> listeners, String targetRole, Notification notification) {
+        for (NotificationListener listener : listeners) {
+            try {
+                listener.onBroadcast(targetRole, notification);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Notification listener failed (broadcast " + targetRole + "): " + e.getMessage());
+            }
+        }
+    }
+}
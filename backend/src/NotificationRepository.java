@@ -1,20 +1,50 @@
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Notification Repository
  * Handles all database operations for notifications
+ *
+ * Announcements to everyone (or to one role) are stored once in broadcast_notifications
+ * instead of one notifications row per user (fan-out on read). A user's read/cleared
+ * state for a broadcast is a broadcast_receipts row, written only when it changes.
+ * Listing, counting and mark-all merge both sources; a broadcast appears with a
+ * negative id (-broadcast id) so markAsRead can tell the two apart.
  */
 public class NotificationRepository {
 
-    private final String dbUrl;
+    private static final DateTimeFormatter CREATED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final DatabaseConnectionPool pool;
+    private final List<NotificationListener> listeners = new CopyOnWriteArrayList<>();
 
     public NotificationRepository(String dbUrl) {
-        this.dbUrl = dbUrl;
+        this(DatabaseConnectionPool.forUrl(dbUrl));
+    }
+
+    public NotificationRepository(DatabaseConnectionPool pool) {
+        this.pool = pool;
         initDatabase();
     }
 
+    /**
+     * Get the shared connection pool for this database file
+     */
+    public DatabaseConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Register a listener for writes that change a user's notifications
+     */
+    public void addNotificationListener(NotificationListener listener) {
+        listeners.add(listener);
+    }
+
     /**
      * Initialize database tables and indexes
      */
@@ -59,13 +89,39 @@ public class NotificationRepository {
             )
         """;
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        String createBroadcastsTable = """
+            CREATE TABLE IF NOT EXISTS broadcast_notifications (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                target_role TEXT NOT NULL DEFAULT 'all',
+                type TEXT NOT NULL,
+                title TEXT NOT NULL,
+                message TEXT NOT NULL,
+                link TEXT,
+                created_at TEXT NOT NULL DEFAULT (datetime('now', 'localtime'))
+            )
+        """;
+
+        String createBroadcastReceiptsTable = """
+            CREATE TABLE IF NOT EXISTS broadcast_receipts (
+                broadcast_id INTEGER NOT NULL,
+                user_id TEXT NOT NULL,
+                read INTEGER DEFAULT 0,
+                deleted INTEGER DEFAULT 0,
+                read_at TEXT,
+                PRIMARY KEY (broadcast_id, user_id),
+                FOREIGN KEY (broadcast_id) REFERENCES broadcast_notifications(id)
+            )
+        """;
+
+        try (Connection conn = pool.write();
              Statement stmt = conn.createStatement()) {
 
             stmt.execute(createNotificationsTable);
             stmt.execute(createIndex1);
             stmt.execute(createIndex2);
             stmt.execute(createReminderLogsTable);
+            stmt.execute(createBroadcastsTable);
+            stmt.execute(createBroadcastReceiptsTable);
 
             System.out.println("Notification tables initialized successfully");
 
@@ -91,7 +147,7 @@ public class NotificationRepository {
         System.out.println("   message: " + notification.getMessage());
         System.out.println("   link: " + notification.getLink());
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, notification.getUserId());
@@ -105,6 +161,8 @@ public class NotificationRepository {
 
             if (success) {
                 System.out.println("✅ Notification created successfully, rows affected: " + rowsAffected);
+                notification.setId((int) lastInsertRowId(conn));
+                created(notification);
             } else {
                 System.err.println("❌ Notification creation returned 0 rows affected");
             }
@@ -132,24 +190,15 @@ public class NotificationRepository {
         PreparedStatement pstmt = null;
 
         try {
-            conn = DriverManager.getConnection(dbUrl);
+            conn = pool.write();
             conn.setAutoCommit(false);
             pstmt = conn.prepareStatement(sql);
 
-            for (Notification notification : notifications) {
-                pstmt.setString(1, notification.getUserId());
-                pstmt.setString(2, notification.getType());
-                pstmt.setString(3, notification.getTitle());
-                pstmt.setString(4, notification.getMessage());
-                pstmt.setString(5, notification.getLink());
-                pstmt.addBatch();
-            }
-
-            int[] results = pstmt.executeBatch();
+            count = insertNotifications(conn, pstmt, notifications);
             conn.commit();
 
-            for (int result : results) {
-                if (result > 0) count++;
+            for (Notification notification : notifications) {
+                created(notification);
             }
 
         } catch (SQLException e) {
@@ -177,41 +226,174 @@ public class NotificationRepository {
     }
 
     /**
-     * Get user notifications with filters
+     * Batch insert inside the caller's transaction and assign the new ids
+     * @return Rows inserted
      */
-    public List<Notification> getUserNotifications(
-            String userId,
-            boolean unreadOnly,
-            String type,
-            int limit,
-            int offset) {
+    private int insertNotifications(Connection conn, PreparedStatement pstmt,
+                                    List<Notification> notifications) throws SQLException {
+        if (notifications.isEmpty()) {
+            return 0;
+        }
+        for (Notification notification : notifications) {
+            pstmt.setString(1, notification.getUserId());
+            pstmt.setString(2, notification.getType());
+            pstmt.setString(3, notification.getTitle());
+            pstmt.setString(4, notification.getMessage());
+            pstmt.setString(5, notification.getLink());
+            pstmt.addBatch();
+        }
+
+        int count = 0;
+        for (int result : pstmt.executeBatch()) {
+            if (result > 0) count++;
+        }
+
+        // One transaction on the write connection: the batch got consecutive ids ending at lastId
+        long lastId = lastInsertRowId(conn);
+        if (count == notifications.size() && lastId > 0) {
+            for (int i = 0; i < notifications.size(); i++) {
+                notifications.get(i).setId((int) (lastId - (notifications.size() - 1 - i)));
+            }
+        }
+        return count;
+    }
+
+    private long lastInsertRowId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private void created(Notification notification) {
+        if (notification.getCreatedAt() == null) {
+            notification.setCreatedAt(LocalDateTime.now().format(CREATED_AT));
+        }
+        NotificationListener.fireAll(listeners, NotificationListener.ChangeType.CREATED,
+            notification.getUserId(), notification, 1);
+    }
+
+    /**
+     * Create a broadcast: one row, however many users it reaches
+     * @param targetRole "all" or a user_type
+     * @return The broadcast as a notification (negative id, no userId), or null on failure
+     */
+    public Notification createBroadcast(String targetRole, String type, String title, String message, String link) {
+        String sql = """
+            INSERT INTO broadcast_notifications (target_role, type, title, message, link)
+            VALUES (?, ?, ?, ?, ?)
+        """;
+
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, targetRole);
+            pstmt.setString(2, type);
+            pstmt.setString(3, title);
+            pstmt.setString(4, message);
+            pstmt.setString(5, link);
+            pstmt.executeUpdate();
+
+            Notification notification = new Notification(null, type, title, message, link);
+            notification.setId((int) -lastInsertRowId(conn));
+            notification.setCreatedAt(LocalDateTime.now().format(CREATED_AT));
+            NotificationListener.fireBroadcast(listeners, targetRole, notification);
+            return notification;
+
+        } catch (SQLException e) {
+            System.err.println("Failed to create broadcast: " + e.getMessage());
+            return null;
+        }
+    }
 
+    /**
+     * User's own notifications UNION ALL the broadcasts addressed to them, same columns
+     * Parameters are bound by {@link #bindMerged}.
+     */
+    private String mergedNotificationsSql(boolean unreadOnly, String type) {
+        boolean byType = type != null && !type.isEmpty();
         StringBuilder sql = new StringBuilder("""
-            SELECT * FROM notifications
+            SELECT id, user_id, type, title, message, link, read, deleted, created_at, read_at
+            FROM notifications
             WHERE user_id = ? AND deleted = 0
         """);
-
         if (unreadOnly) {
             sql.append(" AND read = 0");
         }
-
-        if (type != null && !type.isEmpty()) {
+        if (byType) {
             sql.append(" AND type = ?");
         }
 
-        sql.append(" ORDER BY created_at DESC LIMIT ? OFFSET ?");
+        sql.append("""
 
-        List<Notification> notifications = new ArrayList<>();
-
-        try (Connection conn = DriverManager.getConnection(dbUrl);
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            UNION ALL
+            SELECT -b.id, ?, b.type, b.title, b.message, b.link,
+                   COALESCE(r.read, 0), 0, b.created_at, r.read_at
+            FROM broadcast_notifications b
+            LEFT JOIN broadcast_receipts r ON r.broadcast_id = b.id AND r.user_id = ?
+            WHERE b.target_role IN ('all', ?) AND COALESCE(r.deleted, 0) = 0
+        """);
+        if (unreadOnly) {
+            sql.append(" AND COALESCE(r.read, 0) = 0");
+        }
+        if (byType) {
+            sql.append(" AND b.type = ?");
+        }
+        return sql.toString();
+    }
 
-            int paramIndex = 1;
-            pstmt.setString(paramIndex++, userId);
+    /**
+     * @return Next parameter index
+     */
+    private int bindMerged(PreparedStatement pstmt, Connection conn, String userId, String type) throws SQLException {
+        boolean byType = type != null && !type.isEmpty();
+        int paramIndex = 1;
+        pstmt.setString(paramIndex++, userId);
+        if (byType) {
+            pstmt.setString(paramIndex++, type);
+        }
+        pstmt.setString(paramIndex++, userId);
+        pstmt.setString(paramIndex++, userId);
+        pstmt.setString(paramIndex++, userRole(conn, userId));
+        if (byType) {
+            pstmt.setString(paramIndex++, type);
+        }
+        return paramIndex;
+    }
 
-            if (type != null && !type.isEmpty()) {
-                pstmt.setString(paramIndex++, type);
+    /**
+     * user_type of the user, which decides the role-targeted broadcasts they see
+     * The users table lives in the same database; without it only "all" broadcasts match.
+     */
+    private String userRole(Connection conn, String userId) {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT user_type FROM users WHERE id = ?")) {
+            pstmt.setString(1, userId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
             }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get user notifications with filters (own notifications and broadcasts, newest first)
+     */
+    public List<Notification> getUserNotifications(
+            String userId,
+            boolean unreadOnly,
+            String type,
+            int limit,
+            int offset) {
+
+        String sql = mergedNotificationsSql(unreadOnly, type) + " ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?";
+
+        List<Notification> notifications = new ArrayList<>();
+
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int paramIndex = bindMerged(pstmt, conn, userId, type);
 
             pstmt.setInt(paramIndex++, limit);
             pstmt.setInt(paramIndex, offset);
@@ -233,28 +415,12 @@ public class NotificationRepository {
      * Get total count of notifications
      */
     public int getTotalCount(String userId, boolean unreadOnly, String type) {
-        StringBuilder sql = new StringBuilder("""
-            SELECT COUNT(*) FROM notifications
-            WHERE user_id = ? AND deleted = 0
-        """);
+        String sql = "SELECT COUNT(*) FROM (" + mergedNotificationsSql(unreadOnly, type) + ")";
 
-        if (unreadOnly) {
-            sql.append(" AND read = 0");
-        }
-
-        if (type != null && !type.isEmpty()) {
-            sql.append(" AND type = ?");
-        }
-
-        try (Connection conn = DriverManager.getConnection(dbUrl);
-             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-
-            int paramIndex = 1;
-            pstmt.setString(paramIndex++, userId);
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            if (type != null && !type.isEmpty()) {
-                pstmt.setString(paramIndex, type);
-            }
+            bindMerged(pstmt, conn, userId, type);
 
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
@@ -273,14 +439,20 @@ public class NotificationRepository {
      */
     public int getUnreadCount(String userId) {
         String sql = """
-            SELECT COUNT(*) FROM notifications
-            WHERE user_id = ? AND read = 0 AND deleted = 0
+            SELECT (SELECT COUNT(*) FROM notifications
+                    WHERE user_id = ? AND read = 0 AND deleted = 0)
+                 + (SELECT COUNT(*) FROM broadcast_notifications b
+                    LEFT JOIN broadcast_receipts r ON r.broadcast_id = b.id AND r.user_id = ?
+                    WHERE b.target_role IN ('all', ?)
+                      AND COALESCE(r.read, 0) = 0 AND COALESCE(r.deleted, 0) = 0)
         """;
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, userId);
+            pstmt.setString(2, userId);
+            pstmt.setString(3, userRole(conn, userId));
             ResultSet rs = pstmt.executeQuery();
 
             if (rs.next()) {
@@ -295,22 +467,39 @@ public class NotificationRepository {
     }
 
     /**
-     * Mark notification as read
+     * Mark notification as read (a negative id is a broadcast)
      */
     public boolean markAsRead(int notificationId, String userId) {
+        if (notificationId < 0) {
+            return markBroadcastAsRead(-notificationId, userId);
+        }
+
         String sql = """
             UPDATE notifications
             SET read = 1, read_at = datetime('now', 'localtime')
-            WHERE id = ? AND user_id = ?
+            WHERE id = ? AND user_id = ? AND read = 0
         """;
+        // Already read: still a success, but the unread count didn't change
+        String existsSql = "SELECT 1 FROM notifications WHERE id = ? AND user_id = ?";
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, notificationId);
             pstmt.setString(2, userId);
 
-            return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() > 0) {
+                NotificationListener.fireAll(listeners, NotificationListener.ChangeType.READ, userId, null, -1);
+                return true;
+            }
+
+            try (PreparedStatement exists = conn.prepareStatement(existsSql)) {
+                exists.setInt(1, notificationId);
+                exists.setString(2, userId);
+                try (ResultSet rs = exists.executeQuery()) {
+                    return rs.next();
+                }
+            }
 
         } catch (SQLException e) {
             System.err.println("Failed to mark as read: " + e.getMessage());
@@ -318,8 +507,82 @@ public class NotificationRepository {
         }
     }
 
+    private boolean markBroadcastAsRead(int broadcastId, String userId) {
+        String sql = """
+            INSERT INTO broadcast_receipts (broadcast_id, user_id, read, read_at)
+            SELECT b.id, ?, 1, datetime('now', 'localtime')
+            FROM broadcast_notifications b
+            WHERE b.id = ? AND b.target_role IN ('all', ?)
+            ON CONFLICT(broadcast_id, user_id) DO UPDATE SET
+                read = 1, read_at = excluded.read_at
+            WHERE broadcast_receipts.read = 0
+        """;
+        String existsSql = "SELECT 1 FROM broadcast_notifications WHERE id = ? AND target_role IN ('all', ?)";
+
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            String role = userRole(conn, userId);
+            pstmt.setString(1, userId);
+            pstmt.setInt(2, broadcastId);
+            pstmt.setString(3, role);
+
+            if (pstmt.executeUpdate() > 0) {
+                NotificationListener.fireAll(listeners, NotificationListener.ChangeType.READ, userId, null, -1);
+                return true;
+            }
+
+            try (PreparedStatement exists = conn.prepareStatement(existsSql)) {
+                exists.setInt(1, broadcastId);
+                exists.setString(2, role);
+                try (ResultSet rs = exists.executeQuery()) {
+                    return rs.next();
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Failed to mark broadcast as read: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Write a read (or cleared) receipt for every broadcast the user sees that isn't
+     * read (or cleared) yet
+     * Receipts are only written when a user acts, so their number is bounded by users who
+     * read or clear a broadcast, not by users who received it.
+     * @return Receipts written
+     */
+    private int updateBroadcastReceipts(Connection conn, String userId, boolean clear) throws SQLException {
+        String markReadSql = """
+            INSERT INTO broadcast_receipts (broadcast_id, user_id, read, read_at)
+            SELECT b.id, ?, 1, datetime('now', 'localtime')
+            FROM broadcast_notifications b
+            LEFT JOIN broadcast_receipts r ON r.broadcast_id = b.id AND r.user_id = ?
+            WHERE b.target_role IN ('all', ?) AND COALESCE(r.read, 0) = 0 AND COALESCE(r.deleted, 0) = 0
+            ON CONFLICT(broadcast_id, user_id) DO UPDATE SET
+                read = 1, read_at = excluded.read_at
+        """;
+        String clearSql = """
+            INSERT INTO broadcast_receipts (broadcast_id, user_id, deleted)
+            SELECT b.id, ?, 1
+            FROM broadcast_notifications b
+            LEFT JOIN broadcast_receipts r ON r.broadcast_id = b.id AND r.user_id = ?
+            WHERE b.target_role IN ('all', ?) AND COALESCE(r.deleted, 0) = 0
+            ON CONFLICT(broadcast_id, user_id) DO UPDATE SET
+                deleted = 1
+        """;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(clear ? clearSql : markReadSql)) {
+            pstmt.setString(1, userId);
+            pstmt.setString(2, userId);
+            pstmt.setString(3, userRole(conn, userId));
+            return pstmt.executeUpdate();
+        }
+    }
+
     /**
-     * Mark all notifications as read
+     * Mark all notifications (and broadcasts) as read
      */
     public int markAllAsRead(String userId) {
         String sql = """
@@ -328,11 +591,15 @@ public class NotificationRepository {
             WHERE user_id = ? AND read = 0 AND deleted = 0
         """;
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, userId);
-            return pstmt.executeUpdate();
+            int updated = pstmt.executeUpdate() + updateBroadcastReceipts(conn, userId, false);
+            if (updated > 0) {
+                NotificationListener.fireAll(listeners, NotificationListener.ChangeType.READ, userId, null, -updated);
+            }
+            return updated;
 
         } catch (SQLException e) {
             System.err.println("Failed to mark all as read: " + e.getMessage());
@@ -341,7 +608,7 @@ public class NotificationRepository {
     }
 
     /**
-     * Clear (soft delete) all notifications
+     * Clear (soft delete) all notifications and hide current broadcasts
      */
     public int clearNotifications(String userId) {
         String sql = """
@@ -350,11 +617,15 @@ public class NotificationRepository {
             WHERE user_id = ?
         """;
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, userId);
-            return pstmt.executeUpdate();
+            int cleared = pstmt.executeUpdate() + updateBroadcastReceipts(conn, userId, true);
+            if (cleared > 0) {
+                NotificationListener.fireAll(listeners, NotificationListener.ChangeType.CLEARED, userId, null, 0);
+            }
+            return cleared;
 
         } catch (SQLException e) {
             System.err.println("Failed to clear notifications: " + e.getMessage());
@@ -371,7 +642,7 @@ public class NotificationRepository {
             WHERE borrow_history_id = ? AND reminder_date = ?
         """;
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, borrowHistoryId);
@@ -400,7 +671,7 @@ public class NotificationRepository {
             VALUES (?, ?, ?, ?, ?)
         """;
 
-        try (Connection conn = DriverManager.getConnection(dbUrl);
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, borrowHistoryId);
@@ -420,6 +691,143 @@ public class NotificationRepository {
         }
     }
 
+    /**
+     * Active borrowings due between fromDate and toDate (inclusive, yyyy-MM-dd) that have
+     * no reminder logged for reminderDate, with the book's current title
+     * One query: the status/due-date index finds the loans, the log's unique
+     * (borrow_history_id, reminder_date) index answers the anti-join.
+     */
+    public List<DueBorrowing> findDueSoonBorrowings(String fromDate, String toDate, String reminderDate) {
+        String sql = """
+            SELECT bh.id, bh.user_id, bh.book_id, bh.due_date, b.title
+            FROM borrow_history bh
+            JOIN books b ON b.id = bh.book_id
+            WHERE bh.status = 'borrowing'
+              AND bh.due_date BETWEEN ? AND ?
+              AND NOT EXISTS (
+                  SELECT 1 FROM due_reminder_logs l
+                  WHERE l.borrow_history_id = bh.id AND l.reminder_date = ?
+              )
+            ORDER BY bh.id
+        """;
+
+        List<DueBorrowing> borrowings = new ArrayList<>();
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, fromDate);
+            pstmt.setString(2, toDate);
+            pstmt.setString(3, reminderDate);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    borrowings.add(new DueBorrowing(
+                        rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5)));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Failed to find due borrowings: " + e.getMessage());
+        }
+
+        return borrowings;
+    }
+
+    /**
+     * Log reminders and create their notifications in one transaction
+     * reminders.get(i) is the notification for borrowings.get(i). A borrowing already
+     * logged for reminderDate (e.g. by a concurrent run) gets no second notification.
+     *
+     * @return Notifications created
+     */
+    public int createDueReminders(String reminderDate, List<DueBorrowing> borrowings, List<Notification> reminders) {
+        String logSql = """
+            INSERT OR IGNORE INTO due_reminder_logs
+            (borrow_history_id, user_id, book_id, reminder_date, due_date)
+            VALUES (?, ?, ?, ?, ?)
+        """;
+        String notificationSql = """
+            INSERT INTO notifications (user_id, type, title, message, link)
+            VALUES (?, ?, ?, ?, ?)
+        """;
+
+        if (borrowings.isEmpty()) {
+            return 0;
+        }
+
+        List<Notification> toSend = new ArrayList<>();
+        Connection conn = null;
+        try {
+            conn = pool.write();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement logs = conn.prepareStatement(logSql);
+                 PreparedStatement notifications = conn.prepareStatement(notificationSql)) {
+                for (DueBorrowing borrowing : borrowings) {
+                    logs.setInt(1, borrowing.borrowHistoryId);
+                    logs.setString(2, borrowing.userId);
+                    logs.setString(3, borrowing.bookId);
+                    logs.setString(4, reminderDate);
+                    logs.setString(5, borrowing.dueDate);
+                    logs.addBatch();
+                }
+                int[] logged = logs.executeBatch();
+                for (int i = 0; i < logged.length; i++) {
+                    if (logged[i] > 0) {
+                        toSend.add(reminders.get(i));
+                    }
+                }
+
+                insertNotifications(conn, notifications, toSend);
+            }
+            conn.commit();
+
+        } catch (SQLException e) {
+            System.err.println("Failed to create due reminders: " + e.getMessage());
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+            }
+            return 0;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        for (Notification notification : toSend) {
+            created(notification);
+        }
+        return toSend.size();
+    }
+
+    /**
+     * Borrowing that needs a due reminder
+     */
+    public static class DueBorrowing {
+        public final int borrowHistoryId;
+        public final String userId;
+        public final String bookId;
+        public final String dueDate;
+        public final String bookTitle;
+
+        public DueBorrowing(int borrowHistoryId, String userId, String bookId, String dueDate, String bookTitle) {
+            this.borrowHistoryId = borrowHistoryId;
+            this.userId = userId;
+            this.bookId = bookId;
+            this.dueDate = dueDate;
+            this.bookTitle = bookTitle;
+        }
+    }
+
     /**
      * Map ResultSet to Notification object
      */
@@ -1,87 +1,36 @@
-import java.util.Timer;
-import java.util.TimerTask;
-import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-
 /**
  * Notification Scheduler
- * Handles scheduled tasks for notifications (e.g., due reminders)
+ * Registers the notification jobs (e.g., due reminders) on the JobScheduler
  */
 public class NotificationScheduler {
 
-    private static Timer timer;
-    private static NotificationService notificationService;
-
-    /**
-     * Start the scheduler
-     * Runs due reminders daily at 9:00 AM
-     */
-    public static void start(NotificationService service) {
-        notificationService = service;
-
-        if (timer != null) {
-            timer.cancel();
-        }
-
-        timer = new Timer("NotificationScheduler", true);
-
-        // Calculate delay to next 9:00 AM
-        long delay = calculateDelayToNextRun();
-        long period = 24 * 60 * 60 * 1000; // 24 hours
-
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    System.out.println("Starting due reminder task at: " + LocalDateTime.now());
-                    int count = notificationService.sendDueReminders();
-                    System.out.println("Due reminder task completed, sent " + count + " notifications");
-                } catch (Exception e) {
-                    System.err.println("Due reminder task failed: " + e.getMessage());
-                    e.printStackTrace();
-                }
-            }
-        }, delay, period);
+    public static final String DUE_REMINDERS_JOB = "due-reminders";
 
-        System.out.println("Notification scheduler started, will run daily at 9:00 AM");
-    }
+    private static JobScheduler jobScheduler;
 
     /**
-     * Stop the scheduler
+     * Register the jobs
+     * Due reminders run daily at 9:00 AM (within a minute of jitter); a run missed
+     * while the server was down is caught up on the next start
      */
-    public static void stop() {
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
-            System.out.println("Notification scheduler stopped");
-        }
-    }
-
-    /**
-     * Calculate delay in milliseconds to next 9:00 AM
-     */
-    private static long calculateDelayToNextRun() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime nextRun = now.withHour(9).withMinute(0).withSecond(0).withNano(0);
-
-        // If 9:00 AM has passed today, schedule for tomorrow
-        if (now.isAfter(nextRun)) {
-            nextRun = nextRun.plusDays(1);
-        }
-
-        return ChronoUnit.MILLIS.between(now, nextRun);
+    public static void register(JobScheduler scheduler, NotificationService service) {
+        jobScheduler = scheduler;
+        scheduler.register(DUE_REMINDERS_JOB, "0 9 * * *", 60_000,
+            () -> "sent " + service.sendDueReminders() + " reminders");
+        System.out.println("Notification scheduler registered, will run daily at 9:00 AM");
     }
 
     /**
      * Manually trigger due reminders (for testing)
+     * @return false if the scheduler isn't set up or the job is already running
      */
-    public static int triggerDueReminders() {
-        if (notificationService == null) {
-            System.err.println("NotificationService not initialized");
-            return 0;
+    public static boolean triggerDueReminders() {
+        if (jobScheduler == null) {
+            System.err.println("JobScheduler not initialized");
+            return false;
         }
 
         System.out.println("Manually triggering due reminder task");
-        return notificationService.sendDueReminders();
+        return jobScheduler.runNow(DUE_REMINDERS_JOB);
     }
 }
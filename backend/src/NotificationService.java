@@ -1,6 +1,5 @@
+import com.google.gson.Gson;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -12,10 +11,18 @@ import java.util.Set;
  */
 public class NotificationService {
 
+    // Outbox event types whose delivery sends notifications (see registerOutboxHandlers)
+    public static final String EVENT_BOOK_BORROWED = "book.borrowed";
+    public static final String EVENT_BOOK_RETURNED = "book.returned";
+    public static final String EVENT_REVIEW_ADDED = "review.added";
+
+    private static final Gson gson = new Gson();
+
     private final NotificationRepository notificationRepository;
     private final BorrowHistoryRepository borrowHistoryRepository;
     private final BookDatabaseRepository bookRepository;
     private final UserDatabaseRepository userRepository;
+    private final DueReminderEngine dueReminderEngine;
 
     public NotificationService(
             NotificationRepository notificationRepository,
@@ -27,6 +34,7 @@ public class NotificationService {
         this.borrowHistoryRepository = borrowHistoryRepository;
         this.bookRepository = bookRepository;
         this.userRepository = userRepository;
+        this.dueReminderEngine = new DueReminderEngine(notificationRepository);
     }
 
     /**
@@ -78,14 +86,8 @@ public class NotificationService {
         System.out.println("   borrowDate: " + borrowDate);
         System.out.println("   dueDate: " + dueDate);
 
-        String title = "借閱成功";
-        String message = String.format(
-            "您已成功借閱《%s》。\n借閱日期: %s\n應還日期: %s",
-            bookTitle, borrowDate, dueDate
-        );
-        String link = "/history";
-
-        boolean result = sendNotification(userId, NotificationType.BORROW, title, message, link);
+        boolean result = notificationRepository.createNotification(
+            borrowNotification(userId, bookTitle, borrowDate, dueDate));
 
         if (result) {
             System.out.println("✅ Borrow notification sent successfully");
@@ -107,7 +109,27 @@ public class NotificationService {
         System.out.println("   borrowDays: " + borrowDays);
         System.out.println("   isOverdue: " + isOverdue);
 
-        String title = "歸還成功";
+        boolean result = notificationRepository.createNotification(
+            returnNotification(userId, bookTitle, borrowDays, isOverdue));
+
+        if (result) {
+            System.out.println("✅ Return notification sent successfully");
+        } else {
+            System.err.println("❌ Failed to send return notification");
+        }
+
+        return result;
+    }
+
+    private Notification borrowNotification(String userId, String bookTitle, String borrowDate, String dueDate) {
+        String message = String.format(
+            "您已成功借閱《%s》。\n借閱日期: %s\n應還日期: %s",
+            bookTitle, borrowDate, dueDate
+        );
+        return new Notification(userId, NotificationType.BORROW.getCode(), "借閱成功", message, "/history");
+    }
+
+    private Notification returnNotification(String userId, String bookTitle, int borrowDays, boolean isOverdue) {
         String message;
 
         if (isOverdue) {
@@ -121,18 +143,93 @@ public class NotificationService {
                 bookTitle, borrowDays
             );
         }
+        return new Notification(userId, NotificationType.RETURN.getCode(), "歸還成功", message, "/history");
+    }
 
-        String link = "/history";
+    // ===== Outbox =====
 
-        boolean result = sendNotification(userId, NotificationType.RETURN, title, message, link);
+    /**
+     * Deliver borrow/return/review events recorded by the request handlers
+     * Borrow and return notifications of one batch are inserted in a single transaction.
+     */
+    public void registerOutboxHandlers(OutboxDispatcher dispatcher) {
+        dispatcher.register(EVENT_BOOK_BORROWED, events -> {
+            List<Notification> notifications = new ArrayList<>();
+            for (OutboxRepository.OutboxEvent event : events) {
+                BookBorrowedEvent borrowed = gson.fromJson(event.payload, BookBorrowedEvent.class);
+                notifications.add(borrowNotification(
+                    borrowed.userId, borrowed.bookTitle, borrowed.borrowDate, borrowed.dueDate));
+            }
+            createAll(notifications);
+        });
+        dispatcher.register(EVENT_BOOK_RETURNED, events -> {
+            List<Notification> notifications = new ArrayList<>();
+            for (OutboxRepository.OutboxEvent event : events) {
+                BookReturnedEvent returned = gson.fromJson(event.payload, BookReturnedEvent.class);
+                notifications.add(returnNotification(
+                    returned.userId, returned.bookTitle, returned.borrowDays, returned.overdue));
+            }
+            createAll(notifications);
+        });
+        dispatcher.register(EVENT_REVIEW_ADDED, events -> {
+            for (OutboxRepository.OutboxEvent event : events) {
+                ReviewAddedEvent review = gson.fromJson(event.payload, ReviewAddedEvent.class);
+                sendNewReviewNotification(review.bookId, review.bookTitle, review.reviewerUserId);
+            }
+        });
+    }
 
-        if (result) {
-            System.out.println("✅ Return notification sent successfully");
-        } else {
-            System.err.println("❌ Failed to send return notification");
+    private void createAll(List<Notification> notifications) {
+        int created = notificationRepository.batchCreateNotifications(notifications);
+        if (created < notifications.size()) {
+            throw new IllegalStateException("Created " + created + " of " + notifications.size() + " notifications");
         }
+    }
 
-        return result;
+    public static String bookBorrowedPayload(String userId, String bookTitle, String borrowDate, String dueDate) {
+        BookBorrowedEvent event = new BookBorrowedEvent();
+        event.userId = userId;
+        event.bookTitle = bookTitle;
+        event.borrowDate = borrowDate;
+        event.dueDate = dueDate;
+        return gson.toJson(event);
+    }
+
+    public static String bookReturnedPayload(String userId, String bookTitle, int borrowDays, boolean overdue) {
+        BookReturnedEvent event = new BookReturnedEvent();
+        event.userId = userId;
+        event.bookTitle = bookTitle;
+        event.borrowDays = borrowDays;
+        event.overdue = overdue;
+        return gson.toJson(event);
+    }
+
+    public static String reviewAddedPayload(String bookId, String bookTitle, String reviewerUserId) {
+        ReviewAddedEvent event = new ReviewAddedEvent();
+        event.bookId = bookId;
+        event.bookTitle = bookTitle;
+        event.reviewerUserId = reviewerUserId;
+        return gson.toJson(event);
+    }
+
+    static class BookBorrowedEvent {
+        String userId;
+        String bookTitle;
+        String borrowDate;
+        String dueDate;
+    }
+
+    static class BookReturnedEvent {
+        String userId;
+        String bookTitle;
+        int borrowDays;
+        boolean overdue;
+    }
+
+    static class ReviewAddedEvent {
+        String bookId;
+        String bookTitle;
+        String reviewerUserId;
     }
 
     /**
@@ -171,122 +268,25 @@ public class NotificationService {
 
     /**
      * Send due reminders (called by scheduler)
+     * @return Number of reminders sent
      */
     public int sendDueReminders() {
-        int count = 0;
-        LocalDate today = LocalDate.now();
-        String todayStr = today.format(DateTimeFormatter.ISO_LOCAL_DATE);
-
-        // Get borrowings due within 3 days
-        List<BorrowHistory> borrowings = getDueSoonBorrowings(3);
-
-        for (BorrowHistory history : borrowings) {
-            // Check if reminder already sent today
-            if (notificationRepository.hasReminderSent(history.getId(), todayStr)) {
-                continue;
-            }
-
-            // Calculate days left
-            LocalDate dueDate = LocalDate.parse(history.getDueDate());
-            long daysLeft = ChronoUnit.DAYS.between(today, dueDate);
-
-            if (daysLeft < 0) {
-                continue; // Already overdue, skip
-            }
-
-            // Get book info
-            BookInfo book = bookRepository.findById(history.getBookId());
-            if (book == null) {
-                continue;
-            }
-
-            // Send reminder
-            String title = "到期提醒";
-            String message = String.format(
-                "您借閱的《%s》還有 %d 天到期，請記得按時歸還。",
-                book.getTitle(), daysLeft
-            );
-            String link = "/history";
-
-            boolean sent = sendNotification(
-                history.getUserId(),
-                NotificationType.DUE,
-                title,
-                message,
-                link
-            );
-
-            if (sent) {
-                // Log reminder sent
-                notificationRepository.logDueReminder(
-                    history.getId(),
-                    history.getUserId(),
-                    history.getBookId(),
-                    todayStr,
-                    history.getDueDate()
-                );
-                count++;
-            }
-        }
-
-        return count;
+        return dueReminderEngine.run(LocalDate.now()).sent;
     }
 
-    /**
-     * Get borrowings that are due soon
-     */
-    private List<BorrowHistory> getDueSoonBorrowings(int daysThreshold) {
-        List<BorrowHistory> allBorrowings = borrowHistoryRepository.getAllHistory();
-        List<BorrowHistory> dueSoon = new ArrayList<>();
-        LocalDate today = LocalDate.now();
-
-        for (BorrowHistory history : allBorrowings) {
-            if (!"borrowing".equals(history.getStatus())) {
-                continue;
-            }
-
-            try {
-                LocalDate dueDate = LocalDate.parse(history.getDueDate());
-                long daysUntilDue = ChronoUnit.DAYS.between(today, dueDate);
-
-                if (daysUntilDue >= 0 && daysUntilDue <= daysThreshold) {
-                    dueSoon.add(history);
-                }
-            } catch (Exception e) {
-                System.err.println("Failed to parse due date: " + history.getDueDate());
-            }
-        }
-
-        return dueSoon;
+    public DueReminderEngine getDueReminderEngine() {
+        return dueReminderEngine;
     }
 
     /**
      * Send system announcement to all users or specific role
+     * Stored once as a broadcast and merged into each user's notifications when read,
+     * so the cost doesn't grow with the number of users.
+     * @param targetRole "all" or a user_type
+     * @return The announcement, or null if it could not be stored
      */
-    public int sendSystemAnnouncement(String title, String content, String targetRole) {
-        List<User> users;
-
-        if ("all".equals(targetRole)) {
-            users = userRepository.getAllUsers();
-        } else {
-            users = userRepository.getUsersByRole(targetRole);
-        }
-
-        if (users.isEmpty()) {
-            return 0;
-        }
-
-        List<String> userIds = new ArrayList<>();
-        for (User user : users) {
-            userIds.add(user.getId());
-        }
-
-        return sendNotificationToUsers(
-            userIds,
-            NotificationType.SYSTEM,
-            title,
-            content,
-            null
-        );
+    public Notification sendSystemAnnouncement(String title, String content, String targetRole) {
+        String role = targetRole == null || targetRole.isEmpty() ? "all" : targetRole;
+        return notificationRepository.createBroadcast(role, NotificationType.SYSTEM.getCode(), title, content, null);
     }
 }
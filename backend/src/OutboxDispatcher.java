@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outbox Dispatcher
+ * Background thread that delivers outbox events to their handlers
+ *
+ * - Batching: up to OUTBOX_BATCH due events per pass, grouped by type, one handler call
+ *   per group and one UPDATE transaction to mark them delivered
+ * - Retries: a failed group is retried event by event, so one bad event doesn't hold
+ *   back the rest; a failed event waits OUTBOX_RETRY_BASE_MS * 2^attempts (capped) and
+ *   is marked dead after OUTBOX_MAX_ATTEMPTS
+ * - Delivery is at-least-once: handlers must tolerate seeing an event twice
+ *
+ * Writers call {@link #wakeUp()} after committing, otherwise the next poll picks the
+ * events up within OUTBOX_POLL_MS.
+ */
+public class OutboxDispatcher {
+
+    private static final int DEFAULT_BATCH = intEnv("OUTBOX_BATCH", 100);
+    private static final int DEFAULT_POLL_MS = intEnv("OUTBOX_POLL_MS", 1000);
+    private static final int DEFAULT_RETRY_BASE_MS = intEnv("OUTBOX_RETRY_BASE_MS", 2000);
+    private static final int DEFAULT_MAX_ATTEMPTS = intEnv("OUTBOX_MAX_ATTEMPTS", 8);
+    private static final long MAX_RETRY_DELAY_MS = 5 * 60 * 1000;
+
+    /**
+     * Delivers a batch of events of one type
+     * Throwing fails the whole batch, which is then retried one event at a time.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void deliver(List<OutboxRepository.OutboxEvent> events) throws Exception;
+    }
+
+    private final OutboxRepository repository;
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long pollMs;
+    private final long retryBaseMs;
+    private final int maxAttempts;
+
+    private final Object dispatchLock = new Object();
+    private final Semaphore wakeups = new Semaphore(0);
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // Metrics
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalLagMs = new AtomicLong();
+    private final AtomicLong maxLagMs = new AtomicLong();
+
+    public OutboxDispatcher(OutboxRepository repository) {
+        this(repository, DEFAULT_BATCH, DEFAULT_POLL_MS, DEFAULT_RETRY_BASE_MS, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    public OutboxDispatcher(OutboxRepository repository, int batchSize, long pollMs, long retryBaseMs, int maxAttempts) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.pollMs = pollMs;
+        this.retryBaseMs = retryBaseMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public void register(String eventType, Handler handler) {
+        handlers.put(eventType, handler);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::runLoop, "outbox-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("✓ Outbox dispatcher started (batch " + batchSize + ", poll " + pollMs + " ms)");
+    }
+
+    /**
+     * New events were committed: deliver now instead of at the next poll
+     */
+    public void wakeUp() {
+        if (wakeups.availablePermits() == 0) {
+            wakeups.release();
+        }
+    }
+
+    public synchronized void shutdown() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                // A full batch means more may be waiting: go again without sleeping
+                if (dispatchOnce() < batchSize) {
+                    wakeups.tryAcquire(pollMs, TimeUnit.MILLISECONDS);
+                    wakeups.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("❌ Outbox dispatch failed: " + e.getMessage());
+                try {
+                    Thread.sleep(pollMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deliver one batch of due events
+     * @return Events fetched
+     */
+    public int dispatchOnce() {
+        synchronized (dispatchLock) {
+            return dispatchDue();
+        }
+    }
+
+    private int dispatchDue() {
+        List<OutboxRepository.OutboxEvent> due = repository.fetchDue(System.currentTimeMillis(), batchSize);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        batches.incrementAndGet();
+
+        Map<String, List<OutboxRepository.OutboxEvent>> byType = new LinkedHashMap<>();
+        for (OutboxRepository.OutboxEvent event : due) {
+            byType.computeIfAbsent(event.eventType, type -> new ArrayList<>()).add(event);
+        }
+
+        List<OutboxRepository.OutboxEvent> done = new ArrayList<>(due.size());
+        for (Map.Entry<String, List<OutboxRepository.OutboxEvent>> group : byType.entrySet()) {
+            Handler handler = handlers.get(group.getKey());
+            if (handler == null) {
+                for (OutboxRepository.OutboxEvent event : group.getValue()) {
+                    fail(event, "No handler for " + group.getKey());
+                }
+                continue;
+            }
+            try {
+                handler.deliver(group.getValue());
+                done.addAll(group.getValue());
+            } catch (Exception e) {
+                if (group.getValue().size() == 1) {
+                    fail(group.getValue().get(0), describe(e));
+                    continue;
+                }
+                for (OutboxRepository.OutboxEvent event : group.getValue()) {
+                    try {
+                        handler.deliver(List.of(event));
+                        done.add(event);
+                    } catch (Exception single) {
+                        fail(event, describe(single));
+                    }
+                }
+            }
+        }
+
+        if (!done.isEmpty()) {
+            long now = System.currentTimeMillis();
+            // If this fails the events are delivered again on the next pass (at-least-once)
+            if (repository.markDelivered(done, now)) {
+                delivered.addAndGet(done.size());
+                for (OutboxRepository.OutboxEvent event : done) {
+                    long lag = now - event.createdAt;
+                    totalLagMs.addAndGet(lag);
+                    maxLagMs.accumulateAndGet(lag, Math::max);
+                }
+            }
+        }
+        return due.size();
+    }
+
+    private void fail(OutboxRepository.OutboxEvent event, String error) {
+        failures.incrementAndGet();
+        int attempts = event.attempts + 1;
+        boolean dead = attempts >= maxAttempts;
+        long delay = Math.min(MAX_RETRY_DELAY_MS, retryBaseMs << Math.min(attempts - 1, 20));
+        repository.markFailed(event, System.currentTimeMillis() + delay, dead, error);
+        if (dead) {
+            deadLettered.incrementAndGet();
+            System.err.println("❌ Outbox event " + event.id + " (" + event.eventType + ") gave up after "
+                + attempts + " attempts: " + error);
+        } else {
+            System.err.println("⚠️  Outbox event " + event.id + " (" + event.eventType + ") failed, retry in "
+                + delay + " ms: " + error);
+        }
+    }
+
+    private static String describe(Exception e) {
+        return e.getClass().getSimpleName() + ": " + e.getMessage();
+    }
+
+    // ===== Metrics =====
+
+    public DispatcherStats getStats() {
+        OutboxRepository.Backlog backlog = repository.getBacklog(System.currentTimeMillis());
+        DispatcherStats stats = new DispatcherStats();
+        stats.running = running;
+        stats.pending = backlog.pending;
+        stats.dead = backlog.dead;
+        stats.oldestPendingAgeMs = backlog.oldestPendingAgeMs;
+        stats.delivered = delivered.get();
+        stats.failures = failures.get();
+        stats.deadLettered = deadLettered.get();
+        stats.batches = batches.get();
+        stats.avgLagMs = stats.delivered > 0 ? (double) totalLagMs.get() / stats.delivered : 0;
+        stats.maxLagMs = maxLagMs.get();
+        return stats;
+    }
+
+    public static class DispatcherStats {
+        public boolean running;
+        public int pending;
+        public int dead;
+        public long oldestPendingAgeMs;
+        public long delivered;
+        public long failures;
+        public long deadLettered;
+        public long batches;
+        public double avgLagMs;
+        public long maxLagMs;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
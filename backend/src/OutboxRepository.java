@@ -0,0 +1,235 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outbox Repository
+ * Side effects of a write (notifications after a borrow, return or review) are stored
+ * as events in outbox_events by the same transaction as the write itself, then delivered
+ * by {@link OutboxDispatcher} in the background.
+ *
+ * An event is therefore recorded if and only if its write committed, and a crash between
+ * commit and delivery only delays the side effect.
+ */
+public class OutboxRepository {
+
+    public static final String PENDING = "pending";
+    public static final String DELIVERED = "delivered";
+    public static final String DEAD = "dead";
+
+    private final DatabaseConnectionPool pool;
+
+    public OutboxRepository(DatabaseConnectionPool pool) {
+        this.pool = pool;
+        initialize();
+    }
+
+    public DatabaseConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Initialize outbox_events table
+     * Idempotent: safe to run multiple times
+     */
+    private void initialize() {
+        String createTableSQL = """
+            CREATE TABLE IF NOT EXISTS outbox_events (
+                id INTEGER PRIMARY KEY AUTOINCREMENT,
+                event_type TEXT NOT NULL,
+                payload TEXT NOT NULL,
+                status TEXT NOT NULL DEFAULT 'pending',
+                attempts INTEGER NOT NULL DEFAULT 0,
+                available_at INTEGER NOT NULL,
+                created_at INTEGER NOT NULL,
+                delivered_at INTEGER,
+                last_error TEXT
+            )
+            """;
+
+        String createIndexSQL = """
+            CREATE INDEX IF NOT EXISTS idx_outbox_pending
+            ON outbox_events(status, available_at, id)
+            """;
+
+        try (Connection conn = pool.write();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(createTableSQL);
+            stmt.execute(createIndexSQL);
+            System.out.println("✅ Outbox table initialized successfully");
+        } catch (SQLException e) {
+            System.err.println("❌ Failed to initialize outbox_events table: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Record an event
+     * Call inside the transaction of the write it belongs to (see
+     * {@link DatabaseConnectionPool#inTransaction}); on its own it commits immediately.
+     */
+    public boolean append(String eventType, String payload) {
+        String sql = """
+            INSERT INTO outbox_events (event_type, payload, available_at, created_at)
+            VALUES (?, ?, ?, ?)
+            """;
+
+        long now = System.currentTimeMillis();
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, eventType);
+            pstmt.setString(2, payload);
+            pstmt.setLong(3, now);
+            pstmt.setLong(4, now);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Failed to append outbox event " + eventType + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Pending events whose retry time has come, oldest first
+     */
+    public List<OutboxEvent> fetchDue(long now, int limit) {
+        String sql = """
+            SELECT id, event_type, payload, attempts, created_at
+            FROM outbox_events
+            WHERE status = 'pending' AND available_at <= ?
+            ORDER BY id
+            LIMIT ?
+            """;
+
+        List<OutboxEvent> events = new ArrayList<>();
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, now);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    events.add(new OutboxEvent(rs.getLong("id"), rs.getString("event_type"),
+                        rs.getString("payload"), rs.getInt("attempts"), rs.getLong("created_at")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to fetch outbox events: " + e.getMessage());
+        }
+        return events;
+    }
+
+    /**
+     * Mark events delivered, one statement batch in one transaction
+     */
+    public boolean markDelivered(List<OutboxEvent> events, long deliveredAt) {
+        String sql = "UPDATE outbox_events SET status = 'delivered', delivered_at = ?, last_error = NULL WHERE id = ?";
+
+        try {
+            return pool.inTransaction(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (OutboxEvent event : events) {
+                        pstmt.setLong(1, deliveredAt);
+                        pstmt.setLong(2, event.id);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            System.err.println("Failed to mark outbox events delivered: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Record a failed attempt
+     * @param retryAt When to try again, ignored when dead
+     * @param dead Give up: the event stays in the table with status 'dead'
+     */
+    public boolean markFailed(OutboxEvent event, long retryAt, boolean dead, String error) {
+        String sql = """
+            UPDATE outbox_events
+            SET attempts = attempts + 1, available_at = ?, status = ?, last_error = ?
+            WHERE id = ?
+            """;
+
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, retryAt);
+            pstmt.setString(2, dead ? DEAD : PENDING);
+            pstmt.setString(3, error);
+            pstmt.setLong(4, event.id);
+            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("Failed to record outbox failure: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Delete delivered events older than the given time
+     * @return Events deleted
+     */
+    public int purgeDelivered(long deliveredBefore) {
+        String sql = "DELETE FROM outbox_events WHERE status = 'delivered' AND delivered_at < ?";
+
+        try (Connection conn = pool.write();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, deliveredBefore);
+            return pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("Failed to purge outbox events: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Pending and dead counts, and the age of the oldest pending event
+     */
+    public Backlog getBacklog(long now) {
+        String sql = """
+            SELECT
+                SUM(CASE WHEN status = 'pending' THEN 1 ELSE 0 END),
+                SUM(CASE WHEN status = 'dead' THEN 1 ELSE 0 END),
+                MIN(CASE WHEN status = 'pending' THEN created_at END)
+            FROM outbox_events
+            WHERE status IN ('pending', 'dead')
+            """;
+
+        Backlog backlog = new Backlog();
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                backlog.pending = rs.getInt(1);
+                backlog.dead = rs.getInt(2);
+                long oldest = rs.getLong(3);
+                backlog.oldestPendingAgeMs = rs.wasNull() ? 0 : Math.max(0, now - oldest);
+            }
+        } catch (SQLException e) {
+            System.err.println("Failed to read outbox backlog: " + e.getMessage());
+        }
+        return backlog;
+    }
+
+    public static class OutboxEvent {
+        public final long id;
+        public final String eventType;
+        public final String payload;
+        public final int attempts;
+        public final long createdAt;
+
+        public OutboxEvent(long id, String eventType, String payload, int attempts, long createdAt) {
+            this.id = id;
+            this.eventType = eventType;
+            this.payload = payload;
+            this.attempts = attempts;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public static class Backlog {
+        public int pending;
+        public int dead;
+        public long oldestPendingAgeMs;
+    }
+}
@@ -4,7 +4,11 @@ import java.util.*;
  * Question Classifier - Question type classifier
  * Identifies the type of user question to determine which data to retrieve
  *
- * Status: Phase 0 - Empty implementation
+ * Keywords are declared once in {@link Signal}; each question type fires when any
+ * of its {@link #RULES} (a set of signals that must all be present) is satisfied.
+ * All keywords are compiled into one Aho-Corasick automaton, so a message is
+ * classified in a single pass regardless of how many keywords there are.
+ * The automaton is immutable and shared by every instance.
  */
 public class QuestionClassifier {
 
@@ -18,208 +22,323 @@ public class QuestionClassifier {
     }
 
     /**
-     * 分類使用者問題類型
-     * 使用基於規則的多條件判斷，支援多類型返回
-     *
-     * @param message 使用者訊息
-     * @return 問題類型集合（可能包含多個類型）
+     * 關鍵詞訊號（任一關鍵詞出現即成立）
      */
-    public Set<QuestionType> classify(String message) {
-        if (message == null || message.isEmpty()) {
-            return Collections.singleton(QuestionType.GENERAL_CHAT);
-        }
-
-        Set<QuestionType> types = new HashSet<>();
-        String msg = message.toLowerCase();
+    private enum Signal {
+        // 問句類型
+        WHAT("什麼", "哪些", "什么", "甚麼"),
+        HOW("怎麼", "如何", "怎么", "怎样"),
+        CAN("可以", "能不能", "能否", "可不可以"),
+        WHEN("什麼時候", "何時", "什么时候"),
+
+        // 單字 / 組合用的片段
+        BORROW("借"),
+        BOOK("書", "书"),
+        RETURN("還", "还"),
+        AMOUNT("幾", "几", "多少", "多久"),
+        ABOUT("關於", "关于", "有關", "有关"),
+        TITLE_OPEN("《"),
+        TITLE_CLOSE("》"),
+        HISTORY_MARK("過", "记录", "記錄", "历史", "歷史", "了哪些", "了什么", "了什麼"),
 
-        // 分析問句類型
-        boolean isWhatQuestion = msg.contains("什麼") || msg.contains("哪些") ||
-                                 msg.contains("什么") || msg.contains("甚麼");
-        boolean isHowQuestion = msg.contains("怎麼") || msg.contains("如何") ||
-                                msg.contains("怎么") || msg.contains("怎样");
-        boolean isCanQuestion = msg.contains("可以") || msg.contains("能不能") ||
-                                msg.contains("能否") || msg.contains("可不可以");
-        boolean isWhereQuestion = msg.contains("在哪") || msg.contains("哪裡") ||
-                                  msg.contains("哪里");
-        boolean isWhenQuestion = msg.contains("什麼時候") || msg.contains("何時") ||
-                                 msg.contains("什么时候");
-
-        // 1. 借閱歷史 (BORROW_HISTORY)
-        if (classifyBorrowHistory(msg)) {
-            types.add(QuestionType.BORROW_HISTORY);
-        }
+        // 直接關鍵詞
+        HISTORY_KEYWORD(
+            "我借了", "我借过", "我借過", "借閱記錄", "借阅记录",
+            "借書歷史", "借书历史", "借閱歷史", "借阅历史",
+            "借過哪些", "借过哪些", "查看借閱", "查看借阅"),
+        SEARCH_KEYWORD(
+            "推薦", "推荐", "找書", "找书", "搜尋", "搜索", "查詢", "查询",
+            "有哪些書", "有哪些书", "有什麼書", "有什么书",
+            "想看", "想借", "想找", "尋找", "寻找",
+            "館藏", "馆藏", "書籍", "书籍", "藏書", "藏书"),
+        AVAILABILITY_KEYWORD(
+            "有沒有", "有没有", "在不在", "還有", "还有",
+            "可借", "能借", "借得到", "可以借嗎", "可以借吗",
+            "有沒有這本", "有没有这本", "這本書", "这本书"),
+        RULES_KEYWORD(
+            "規則", "规则", "期限", "时限", "時限", "流程",
+            "手續", "手续", "辦法", "办法", "方法",
+            "逾期", "罰款", "罚款", "延期", "續借", "续借",
+            "借多久", "借幾本", "借几本", "借多少",
+            "還書", "还书", "歸還", "归还");
 
-        // 2. 書籍搜尋 (BOOK_SEARCH)
-        if (classifyBookSearch(msg, isWhatQuestion)) {
-            types.add(QuestionType.BOOK_SEARCH);
-        }
+        final String[] keywords;
 
-        // 3. 書籍可借狀態 (BOOK_AVAILABILITY)
-        if (classifyBookAvailability(msg, isCanQuestion)) {
-            types.add(QuestionType.BOOK_AVAILABILITY);
+        Signal(String... keywords) {
+            this.keywords = keywords;
         }
 
-        // 4. 圖書館規則 (LIBRARY_RULES)
-        if (classifyLibraryRules(msg, isHowQuestion, isCanQuestion, isWhenQuestion)) {
-            types.add(QuestionType.LIBRARY_RULES);
+        long bit() {
+            return 1L << ordinal();
         }
-
-        // 5. 如果沒有匹配任何類型，返回 GENERAL_CHAT
-        if (types.isEmpty()) {
-            types.add(QuestionType.GENERAL_CHAT);
-        }
-
-        return types;
     }
 
     /**
-     * 判斷是否為借閱歷史查詢
+     * 各問題類型的判斷規則：任一組訊號全部出現即成立
      */
-    private boolean classifyBorrowHistory(String msg) {
-        // 關鍵詞組合：借 + (過/記錄/歷史/了)
-        if (msg.contains("借")) {
-            if (msg.contains("過") || msg.contains("记录") || msg.contains("記錄") ||
-                msg.contains("历史") || msg.contains("歷史") || msg.contains("了哪些") ||
-                msg.contains("了什么") || msg.contains("了什麼")) {
-                return true;
-            }
-        }
-
-        // 直接關鍵詞
-        String[] keywords = {
-            "我借了", "我借过", "我借過", "借閱記錄", "借阅记录",
-            "借書歷史", "借书历史", "借閱歷史", "借阅历史",
-            "借過哪些", "借过哪些", "查看借閱", "查看借阅"
-        };
+    private static final Map<QuestionType, Signal[][]> RULES = new EnumMap<>(QuestionType.class);
+    static {
+        RULES.put(QuestionType.BORROW_HISTORY, new Signal[][] {
+            { Signal.BORROW, Signal.HISTORY_MARK },        // 借 + (過/記錄/歷史/了)
+            { Signal.HISTORY_KEYWORD }
+        });
+        RULES.put(QuestionType.BOOK_SEARCH, new Signal[][] {
+            { Signal.WHAT, Signal.BOOK },                  // "什麼書" 或 "哪些書"
+            { Signal.SEARCH_KEYWORD },
+            { Signal.BOOK, Signal.ABOUT }                  // 主題相關：AI、Python、Java 等 + 書
+        });
+        RULES.put(QuestionType.BOOK_AVAILABILITY, new Signal[][] {
+            { Signal.TITLE_OPEN, Signal.TITLE_CLOSE },     // 包含書名標記《》
+            { Signal.CAN, Signal.BORROW },                 // "可以借" 或 "能不能借"
+            { Signal.AVAILABILITY_KEYWORD }
+        });
+        RULES.put(QuestionType.LIBRARY_RULES, new Signal[][] {
+            { Signal.HOW, Signal.BORROW },                 // "怎麼借" 或 "如何借"
+            { Signal.RULES_KEYWORD },
+            { Signal.CAN, Signal.AMOUNT },                 // "可以借幾本" 之類的問題
+            { Signal.WHEN, Signal.RETURN }                 // "什麼時候還"
+        });
+    }
 
-        for (String keyword : keywords) {
-            if (msg.contains(keyword.toLowerCase())) {
-                return true;
+    // Types checked in this order (matches the order of the rules above)
+    private static final QuestionType[] RULE_TYPES = RULES.keySet().toArray(new QuestionType[0]);
+    private static final long[][] RULE_MASKS = new long[RULE_TYPES.length][];
+    private static final long[] TYPE_SIGNALS = new long[RULE_TYPES.length];  // Signals that count toward a type's score
+
+    private static final Automaton AUTOMATON;
+
+    static {
+        for (int t = 0; t < RULE_TYPES.length; t++) {
+            Signal[][] groups = RULES.get(RULE_TYPES[t]);
+            RULE_MASKS[t] = new long[groups.length];
+            for (int g = 0; g < groups.length; g++) {
+                for (Signal signal : groups[g]) {
+                    RULE_MASKS[t][g] |= signal.bit();
+                }
+                TYPE_SIGNALS[t] |= RULE_MASKS[t][g];
             }
         }
+        AUTOMATON = new Automaton();
+    }
 
-        return false;
+    /**
+     * 分類使用者問題類型
+     * 使用基於規則的多條件判斷，支援多類型返回
+     *
+     * @param message 使用者訊息
+     * @return 問題類型集合（可能包含多個類型）
+     */
+    public Set<QuestionType> classify(String message) {
+        return match(message, new int[RULE_TYPES.length]);
     }
 
     /**
-     * 判斷是否為書籍搜尋
+     * 分類並計算各類型的分數（命中的相關關鍵詞次數）
      */
-    private boolean classifyBookSearch(String msg, boolean isWhatQuestion) {
-        // "什麼書" 或 "哪些書"
-        if (isWhatQuestion && (msg.contains("書") || msg.contains("书"))) {
-            return true;
+    public Classification analyze(String message) {
+        int[] scores = new int[RULE_TYPES.length];
+        return new Classification(match(message, scores), scores);
+    }
+
+    private Set<QuestionType> match(String message, int[] scores) {
+        if (message == null || message.isEmpty()) {
+            return Collections.singleton(QuestionType.GENERAL_CHAT);
         }
 
-        // 關鍵詞
-        String[] keywords = {
-            "推薦", "推荐", "找書", "找书", "搜尋", "搜索", "查詢", "查询",
-            "有哪些書", "有哪些书", "有什麼書", "有什么书",
-            "想看", "想借", "想找", "尋找", "寻找",
-            "館藏", "馆藏", "書籍", "书籍", "藏書", "藏书"
-        };
+        long signals = AUTOMATON.scan(message, scores);
 
-        for (String keyword : keywords) {
-            if (msg.contains(keyword.toLowerCase())) {
-                return true;
+        Set<QuestionType> types = EnumSet.noneOf(QuestionType.class);
+        for (int t = 0; t < RULE_TYPES.length; t++) {
+            for (long mask : RULE_MASKS[t]) {
+                if ((signals & mask) == mask) {
+                    types.add(RULE_TYPES[t]);
+                    break;
+                }
             }
         }
 
-        // 主題相關：AI、Python、Java 等 + 書
-        if ((msg.contains("書") || msg.contains("书")) &&
-            (msg.contains("關於") || msg.contains("关于") || msg.contains("有關") || msg.contains("有关"))) {
-            return true;
+        // 如果沒有匹配任何類型，返回 GENERAL_CHAT
+        if (types.isEmpty()) {
+            types.add(QuestionType.GENERAL_CHAT);
         }
-
-        return false;
+        return types;
     }
 
     /**
-     * 判斷是否為書籍可借狀態查詢
+     * 從訊息中提取書名
+     * 簡單實作：提取《》中的內容
      */
-    private boolean classifyBookAvailability(String msg, boolean isCanQuestion) {
-        // 包含書名標記《》
-        if (msg.contains("《") && msg.contains("》")) {
-            return true;
+    public String extractBookTitle(String message) {
+        if (message == null || message.isEmpty()) {
+            return null;
+        }
+
+        // 查找《》符號
+        int start = message.indexOf('《');
+        if (start == -1) {
+            return null;
         }
+        int end = message.indexOf('》');
 
-        // "可以借" 或 "能不能借"
-        if (isCanQuestion && msg.contains("借")) {
-            return true;
+        if (end > start) {
+            return message.substring(start + 1, end);
         }
 
-        // 關鍵詞組合
-        String[] patterns = {
-            "有沒有", "有没有", "在不在", "還有", "还有",
-            "可借", "能借", "借得到", "可以借嗎", "可以借吗",
-            "有沒有這本", "有没有这本", "這本書", "这本书"
-        };
+        // 如果沒有《》，返回 null
+        return null;
+    }
+
+    public static class Classification {
+        public final Set<QuestionType> types;
+        public final Map<QuestionType, Integer> scores;
 
-        for (String pattern : patterns) {
-            if (msg.contains(pattern.toLowerCase())) {
-                return true;
+        Classification(Set<QuestionType> types, int[] scores) {
+            this.types = types;
+            this.scores = new EnumMap<>(QuestionType.class);
+            for (int t = 0; t < RULE_TYPES.length; t++) {
+                this.scores.put(RULE_TYPES[t], scores[t]);
             }
         }
-
-        return false;
     }
 
+    // ===== Automaton =====
+
     /**
-     * 判斷是否為圖書館規則查詢
+     * Aho-Corasick automaton over every Signal keyword
+     * Each state stores its outgoing edges as sorted char / target arrays (binary searched)
+     * plus the signals and per-type keyword counts of every keyword ending there,
+     * including those inherited through failure links.
      */
-    private boolean classifyLibraryRules(String msg, boolean isHowQuestion,
-                                         boolean isCanQuestion, boolean isWhenQuestion) {
-        // "怎麼借" 或 "如何借"
-        if (isHowQuestion && msg.contains("借")) {
-            return true;
+    private static class Automaton {
+        private char[][] edgeChars = new char[16][];
+        private int[][] edgeTargets = new int[16][];
+        private int[] fail;
+        private long[] outputSignals = new long[16];
+        private int[][] outputScores = new int[16][];
+        private int stateCount = 1;
+
+        Automaton() {
+            edgeChars[0] = new char[0];
+            edgeTargets[0] = new int[0];
+            outputScores[0] = new int[RULE_TYPES.length];
+            for (Signal signal : Signal.values()) {
+                for (String keyword : signal.keywords) {
+                    addKeyword(keyword.toLowerCase(Locale.ROOT), signal);
+                }
+            }
+            buildFailureLinks();
         }
 
-        // 關鍵詞
-        String[] keywords = {
-            "規則", "规则", "期限", "时限", "時限", "流程",
-            "手續", "手续", "辦法", "办法", "方法",
-            "逾期", "罰款", "罚款", "延期", "續借", "续借",
-            "借多久", "借幾本", "借几本", "借多少",
-            "還書", "还书", "歸還", "归还"
-        };
-
-        for (String keyword : keywords) {
-            if (msg.contains(keyword.toLowerCase())) {
-                return true;
+        /**
+         * @param scores Incremented per type for each keyword occurrence
+         * @return Bit set of the signals found in the text
+         */
+        long scan(String text, int[] scores) {
+            long signals = 0;
+            int state = 0;
+            for (int i = 0; i < text.length(); i++) {
+                char c = Character.toLowerCase(text.charAt(i));
+                int next;
+                while ((next = step(state, c)) < 0 && state != 0) {
+                    state = fail[state];
+                }
+                state = Math.max(next, 0);
+                if (outputSignals[state] != 0) {
+                    signals |= outputSignals[state];
+                    int[] counts = outputScores[state];
+                    for (int t = 0; t < counts.length; t++) {
+                        scores[t] += counts[t];
+                    }
+                }
             }
+            return signals;
         }
 
-        // "可以借幾本" 之類的問題
-        if (isCanQuestion &&
-            (msg.contains("幾") || msg.contains("几") || msg.contains("多少") || msg.contains("多久"))) {
-            return true;
+        private int step(int state, char c) {
+            int index = Arrays.binarySearch(edgeChars[state], c);
+            return index >= 0 ? edgeTargets[state][index] : -1;
         }
 
-        // "什麼時候還"
-        if (isWhenQuestion && (msg.contains("還") || msg.contains("还"))) {
-            return true;
+        private void addKeyword(String keyword, Signal signal) {
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                int next = step(state, c);
+                if (next < 0) {
+                    next = newState();
+                    int index = -Arrays.binarySearch(edgeChars[state], c) - 1;
+                    edgeChars[state] = insert(edgeChars[state], index, c);
+                    edgeTargets[state] = insert(edgeTargets[state], index, next);
+                }
+                state = next;
+            }
+            outputSignals[state] |= signal.bit();
+            for (int t = 0; t < RULE_TYPES.length; t++) {
+                if ((TYPE_SIGNALS[t] & signal.bit()) != 0) {
+                    outputScores[state][t]++;
+                }
+            }
         }
 
-        return false;
-    }
-
-    /**
-     * 從訊息中提取書名
-     * 簡單實作：提取《》中的內容
-     */
-    public String extractBookTitle(String message) {
-        if (message == null || message.isEmpty()) {
-            return null;
+        /**
+         * Breadth-first: a state's failure target is always finalized before the state itself
+         */
+        private void buildFailureLinks() {
+            fail = new int[stateCount];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int child : edgeTargets[0]) {
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (int e = 0; e < edgeChars[state].length; e++) {
+                    char c = edgeChars[state][e];
+                    int child = edgeTargets[state][e];
+                    int target = fail[state];
+                    int next;
+                    while ((next = step(target, c)) < 0 && target != 0) {
+                        target = fail[target];
+                    }
+                    fail[child] = Math.max(next, 0);
+
+                    outputSignals[child] |= outputSignals[fail[child]];
+                    for (int t = 0; t < RULE_TYPES.length; t++) {
+                        outputScores[child][t] += outputScores[fail[child]][t];
+                    }
+                    queue.add(child);
+                }
+            }
         }
 
-        // 查找《》符號
-        int start = message.indexOf("《");
-        int end = message.indexOf("》");
+        private int newState() {
+            if (stateCount == edgeChars.length) {
+                int size = stateCount * 2;
+                edgeChars = Arrays.copyOf(edgeChars, size);
+                edgeTargets = Arrays.copyOf(edgeTargets, size);
+                outputSignals = Arrays.copyOf(outputSignals, size);
+                outputScores = Arrays.copyOf(outputScores, size);
+            }
+            int state = stateCount++;
+            edgeChars[state] = new char[0];
+            edgeTargets[state] = new int[0];
+            outputScores[state] = new int[RULE_TYPES.length];
+            return state;
+        }
 
-        if (start != -1 && end != -1 && end > start) {
-            return message.substring(start + 1, end);
+        private static char[] insert(char[] array, int index, char value) {
+            char[] copy = new char[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = value;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+            return copy;
         }
 
-        // 如果沒有《》，返回 null
-        return null;
+        private static int[] insert(int[] array, int index, int value) {
+            int[] copy = new int[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = value;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+            return copy;
+        }
     }
 }
@@ -0,0 +1,270 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recommendation Cache
+ * Keeps each user's last personal recommendations so repeated visits don't call the AI again
+ *
+ * An entry is tagged with the fingerprint of the inputs it was generated from:
+ * the user's borrow version (bumped on their own borrows/returns) plus the catalog
+ * version (bumped on any availability or catalog change).
+ * - Same fingerprint and younger than the TTL : FRESH, served as is
+ * - Only the catalog changed, or older than the TTL : STALE, served immediately
+ *   while the caller refreshes it in the background (one refresh per user at a time)
+ * - The user borrowed/returned since, or older than the max staleness : dropped (miss)
+ *
+ * Configured with RECOMMENDATION_CACHE_TTL_SECONDS, RECOMMENDATION_CACHE_MAX_STALE_SECONDS
+ * and RECOMMENDATION_CACHE_MAX_ENTRIES.
+ */
+public class RecommendationCache implements BookChangeListener {
+
+    public enum Freshness {
+        FRESH,
+        STALE
+    }
+
+    private final long ttlMs;
+    private final long maxStaleMs;
+    private final int maxEntries;
+
+    // Access-ordered for LRU eviction; guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final Map<String, AtomicLong> userVersions = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RecommendationCache() {
+        this(intEnv("RECOMMENDATION_CACHE_TTL_SECONDS", 600) * 1000L,
+             intEnv("RECOMMENDATION_CACHE_MAX_STALE_SECONDS", 86400) * 1000L,
+             intEnv("RECOMMENDATION_CACHE_MAX_ENTRIES", 10000));
+    }
+
+    public RecommendationCache(long ttlMs, long maxStaleMs, int maxEntries) {
+        this.ttlMs = ttlMs;
+        this.maxStaleMs = maxStaleMs;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Fingerprint of the user's current inputs; capture it before generating
+     * so a result is never stored under a newer fingerprint than it was built from
+     */
+    public Fingerprint fingerprint(String userId) {
+        return new Fingerprint(userVersion(userId).get(), catalogVersion.get());
+    }
+
+    /**
+     * @return Cached recommendations and whether they need a refresh, or null on a miss
+     */
+    public Lookup get(String userId) {
+        Fingerprint fingerprint = fingerprint(userId);
+        synchronized (entries) {
+            Entry entry = entries.get(userId);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            long age = System.currentTimeMillis() - entry.storedAt;
+            if (entry.fingerprint.userVersion != fingerprint.userVersion || age > maxStaleMs) {
+                entries.remove(userId);
+                misses.incrementAndGet();
+                return null;
+            }
+            if (entry.fingerprint.catalogVersion == fingerprint.catalogVersion && age <= ttlMs) {
+                hits.incrementAndGet();
+                return new Lookup(entry.recommendations, Freshness.FRESH);
+            }
+            staleHits.incrementAndGet();
+            return new Lookup(entry.recommendations, Freshness.STALE);
+        }
+    }
+
+    public void put(String userId, Fingerprint fingerprint, List<Recommendation> recommendations) {
+        if (userId == null || recommendations == null) {
+            return;
+        }
+        // Generated before the user's latest borrow/return: already wrong
+        if (fingerprint.userVersion != userVersion(userId).get()) {
+            return;
+        }
+        synchronized (entries) {
+            Entry current = entries.get(userId);
+            // A slower, older generation must not overwrite a newer one
+            if (current != null && current.fingerprint.isNewerThan(fingerprint)) {
+                return;
+            }
+            entries.put(userId, new Entry(fingerprint, Collections.unmodifiableList(new ArrayList<>(recommendations)),
+                System.currentTimeMillis()));
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Claim the background refresh for a user
+     * @return true if the caller should refresh (and call {@link #refreshDone} afterwards)
+     */
+    public boolean startRefresh(String userId) {
+        if (refreshing.add(userId)) {
+            refreshes.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    public void refreshDone(String userId) {
+        refreshing.remove(userId);
+    }
+
+    public void invalidate(String userId) {
+        userVersion(userId).incrementAndGet();
+        synchronized (entries) {
+            if (entries.remove(userId) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @Override
+    public void onBookChanged(ChangeType type, String bookId, String userId) {
+        switch (type) {
+            case BORROWED:
+            case RETURNED:
+                // The user's history changed: their old recommendations are wrong, not just old
+                if (userId != null) {
+                    invalidate(userId);
+                }
+                catalogVersion.incrementAndGet();
+                break;
+            case ADDED:
+            case UPDATED:
+            case AVAILABILITY:
+            case REMOVED:
+                catalogVersion.incrementAndGet();
+                break;
+            default:
+                // Ratings and reviews aren't recommendation inputs
+                break;
+        }
+    }
+
+    private AtomicLong userVersion(String userId) {
+        return userVersions.computeIfAbsent(userId, id -> new AtomicLong());
+    }
+
+    // ===== Metrics =====
+
+    public CacheStats getStats() {
+        CacheStats stats = new CacheStats();
+        synchronized (entries) {
+            stats.size = entries.size();
+        }
+        stats.maxEntries = maxEntries;
+        stats.ttlSeconds = ttlMs / 1000;
+        stats.maxStaleSeconds = maxStaleMs / 1000;
+        stats.hits = hits.get();
+        stats.staleHits = staleHits.get();
+        stats.misses = misses.get();
+        stats.invalidations = invalidations.get();
+        stats.refreshes = refreshes.get();
+        stats.refreshing = refreshing.size();
+        stats.evictions = evictions.get();
+        stats.catalogVersion = catalogVersion.get();
+        long total = stats.hits + stats.staleHits + stats.misses;
+        stats.hitRate = total > 0 ? (double) (stats.hits + stats.staleHits) / total : 0.0;
+        return stats;
+    }
+
+    public static class CacheStats {
+        public int size;
+        public int maxEntries;
+        public long ttlSeconds;
+        public long maxStaleSeconds;
+        public long hits;
+        public long staleHits;
+        public long misses;
+        public long invalidations;
+        public long refreshes;
+        public int refreshing;
+        public long evictions;
+        public long catalogVersion;
+        public double hitRate;
+    }
+
+    /**
+     * Input versions a result was generated from (both only ever grow)
+     */
+    public static class Fingerprint {
+        final long userVersion;
+        final long catalogVersion;
+
+        Fingerprint(long userVersion, long catalogVersion) {
+            this.userVersion = userVersion;
+            this.catalogVersion = catalogVersion;
+        }
+
+        @Override
+        public String toString() {
+            return userVersion + "@" + catalogVersion;
+        }
+
+        boolean isNewerThan(Fingerprint other) {
+            if (userVersion != other.userVersion) {
+                return userVersion > other.userVersion;
+            }
+            return catalogVersion > other.catalogVersion;
+        }
+    }
+
+    public static class Lookup {
+        public final List<Recommendation> recommendations;
+        public final Freshness freshness;
+
+        Lookup(List<Recommendation> recommendations, Freshness freshness) {
+            this.recommendations = recommendations;
+            this.freshness = freshness;
+        }
+    }
+
+    // ===== Internals =====
+
+    private static class Entry {
+        final Fingerprint fingerprint;
+        final List<Recommendation> recommendations;
+        final long storedAt;
+
+        Entry(Fingerprint fingerprint, List<Recommendation> recommendations, long storedAt) {
+            this.fingerprint = fingerprint;
+            this.recommendations = recommendations;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -9,9 +9,13 @@ import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * AI Recommendation Service (Async Version)
@@ -29,6 +33,11 @@ public class RecommendationService {
     private final Gson gson;
     private final ExecutorService executor;
 
+    // Endpoint + request body -> shared result, while the AI call is in flight
+    private final Map<String, CompletableFuture<List<Recommendation>>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong aiCalls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
     public RecommendationService() {
         this.executor = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
         this.client = HttpClient.newBuilder()
@@ -75,17 +84,18 @@ public class RecommendationService {
             payload.add("available_books", books);
 
             // Build HTTP request
+            String body = gson.toJson(payload);
             HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(AI_SERVICE_URL + "/generate-personal-recommendations"))
                 .header("Content-Type", "application/json")
                 .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(payload)))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
             System.out.println("→ Sending async request to AI service for user: " + userId);
 
-            // Send request asynchronously
-            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            // Send request asynchronously (identical requests in flight share one call)
+            return coalesce(request.uri().getPath(), body, () -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
                 .thenApply(response -> {
                     // Parse response
                     try {
@@ -124,7 +134,7 @@ public class RecommendationService {
                 .exceptionally(e -> {
                     System.err.println("Async recommendation error: " + e.getMessage());
                     return new ArrayList<Recommendation>();
-                });
+                }));
 
         } catch (Exception e) {
             System.err.println("Error building request: " + e.getMessage());
@@ -160,16 +170,17 @@ public class RecommendationService {
             }
             payload.add("related_books", books);
 
+            String body = gson.toJson(payload);
             HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(AI_SERVICE_URL + "/generate-related-recommendations"))
                 .header("Content-Type", "application/json")
                 .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(payload)))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
                 .build();
 
             System.out.println("→ Sending async request to AI service for book: " + currentBook.getId());
 
-            return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            return coalesce(request.uri().getPath(), body, () -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
                 .thenApply(response -> {
                     try {
                         if (response.statusCode() != 200) {
@@ -206,7 +217,7 @@ public class RecommendationService {
                 .exceptionally(e -> {
                     System.err.println("Async related recommendations error: " + e.getMessage());
                     return new ArrayList<Recommendation>();
-                });
+                }));
 
         } catch (Exception e) {
             System.err.println("Error building request: " + e.getMessage());
@@ -214,6 +225,56 @@ public class RecommendationService {
         }
     }
 
+    /**
+     * Single-flight: while a request with the same endpoint and body is in flight, callers share
+     * its result (the AI call is not repeated). Each caller gets its own copy of the list.
+     */
+    private CompletableFuture<List<Recommendation>> coalesce(
+            String endpoint, String body, Supplier<CompletableFuture<List<Recommendation>>> call) {
+        String key = endpoint + "\n" + body;
+        CompletableFuture<List<Recommendation>> created = new CompletableFuture<>();
+        CompletableFuture<List<Recommendation>> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            System.out.println("→ Joined in-flight AI request (" + inFlight.size() + " in flight)");
+            return existing.thenApply(ArrayList::new);
+        }
+
+        aiCalls.incrementAndGet();
+        CompletableFuture<List<Recommendation>> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((recommendations, error) -> {
+            inFlight.remove(key, created);
+            if (error != null) {
+                created.completeExceptionally(error);
+            } else {
+                created.complete(recommendations);
+            }
+        });
+        return created.thenApply(ArrayList::new);
+    }
+
+    /**
+     * Number of AI calls made, and of requests that joined one already in flight
+     */
+    public CoalescingStats getCoalescingStats() {
+        CoalescingStats stats = new CoalescingStats();
+        stats.aiCalls = aiCalls.get();
+        stats.coalesced = coalesced.get();
+        stats.inFlight = inFlight.size();
+        return stats;
+    }
+
+    public static class CoalescingStats {
+        public long aiCalls;
+        public long coalesced;
+        public int inFlight;
+    }
+
     /**
      * Synchronous wrapper for backward compatibility
      * Blocks until async operation completes
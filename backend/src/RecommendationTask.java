@@ -19,11 +19,17 @@ public class RecommendationTask {
     private String error;
     private long createdAt;
     private String type;  // "personal" or "related"
+    private String fingerprint;  // Inputs the task was started with (null = never shared)
 
     public RecommendationTask(String taskId, String userId, String type) {
+        this(taskId, userId, type, null);
+    }
+
+    public RecommendationTask(String taskId, String userId, String type, String fingerprint) {
         this.taskId = taskId;
         this.userId = userId;
         this.type = type;
+        this.fingerprint = fingerprint;
         this.status = Status.PROCESSING;
         this.createdAt = System.currentTimeMillis();
     }
@@ -71,6 +77,10 @@ public class RecommendationTask {
         return type;
     }
 
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
     public boolean isExpired(long maxAgeMs) {
         return System.currentTimeMillis() - createdAt > maxAgeMs;
     }
@@ -1,40 +1,93 @@
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import java.net.InetSocketAddress;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * WebSocket Server for Real-time Recommendation Delivery
  * Listens on port 7071 and pushes recommendation results to connected clients
+ *
+ * Also the per-user notification channel: a client sends { "action": "subscribeNotifications" }
+ * (authenticated by the sessionId cookie of the handshake), gets its unread count once,
+ * then every new notification and unread-count change is pushed as it happens:
+ * - { "type": "notification", "notification": {...}, "unreadDelta": 1 }
+ * - { "type": "unread", "unreadDelta": -n }       (marked as read)
+ * - { "type": "unread", "unreadCount": n }        (initial sync, cleared)
+ * Broadcasts (system announcements) arrive as a "notification" to every subscribed user
+ * they target.
+ *
+ * The initial count is read in a pool snapshot together with the write sequence it reflects.
+ * Changes that arrive before it is sent are held back, and afterwards a change is pushed only
+ * if its write came after the snapshot, so the badge never counts a change twice or misses one.
+ * A channel is closed when the session it was opened with ends (logout or expiry).
+ *
+ * Browsers send the sessionId cookie with a WebSocket handshake from any site, so handshakes
+ * whose Origin is not one of the web app's origins are closed before any message is read
+ * (cross-site WebSocket hijacking). Clients without an Origin header are not browsers.
  */
-public class RecommendationWebSocketServer extends WebSocketServer {
+public class RecommendationWebSocketServer extends WebSocketServer
+        implements NotificationListener, ApiSessionManager.SessionListener {
 
     private final TaskManager taskManager;
     private final Gson gson;
-    // Map taskId -> WebSocket connection
-    private final Map<String, WebSocket> taskConnections;
+    // Map taskId -> WebSocket connections (several clients can share one task)
+    private final Map<String, Set<WebSocket>> taskConnections;
+    // Map userId -> notification channels (one per open tab)
+    private final Map<String, Set<NotificationChannel>> userConnections = new ConcurrentHashMap<>();
+    // Map userId -> user type, to route role-targeted broadcasts
+    private final Map<String, String> userTypes = new ConcurrentHashMap<>();
+    private final Set<String> allowedOrigins;
+    private volatile NotificationRepository notificationRepository;
+    private final AtomicLong notificationPushes = new AtomicLong();
 
-    public RecommendationWebSocketServer(int port, TaskManager taskManager) {
+    /**
+     * @param allowedOrigins Origins of the web app allowed to open a connection
+     */
+    public RecommendationWebSocketServer(int port, TaskManager taskManager, Set<String> allowedOrigins) {
         super(new InetSocketAddress(port));
         this.taskManager = taskManager;
+        this.allowedOrigins = allowedOrigins;
         this.gson = new Gson();
         this.taskConnections = new ConcurrentHashMap<>();
         System.out.println("✓ WebSocket server created on port " + port);
     }
 
+    /**
+     * Push notification changes from this repository to subscribed users
+     */
+    public void enableNotifications(NotificationRepository repository) {
+        this.notificationRepository = repository;
+        repository.addNotificationListener(this);
+    }
+
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        String origin = handshake.getFieldValue("Origin");
+        if (!origin.isEmpty() && !allowedOrigins.contains(origin)) {
+            System.err.println("⚠️  Rejected WebSocket connection from origin " + origin);
+            conn.close(CloseFrame.POLICY_VALIDATION, "Origin not allowed");
+            return;
+        }
+
+        // Keep the session cookie: the notification channel is per user
+        conn.setAttachment(sessionIdFromCookie(handshake.getFieldValue("Cookie")));
         System.out.println("→ New WebSocket connection from: " + conn.getRemoteSocketAddress());
     }
 
     @Override
     public void onClose(WebSocket conn, int code, String reason, boolean remote) {
         // Clean up task connections
-        taskConnections.entrySet().removeIf(entry -> entry.getValue() == conn);
+        unsubscribe(conn);
         System.out.println("→ WebSocket connection closed: " + conn.getRemoteSocketAddress());
     }
 
@@ -49,7 +102,11 @@ public class RecommendationWebSocketServer extends WebSocketServer {
                 String taskId = json.get("taskId").getAsString();
 
                 // Register connection for this task
-                taskConnections.put(taskId, conn);
+                taskConnections.compute(taskId, (id, conns) -> {
+                    Set<WebSocket> subscribers = conns != null ? conns : ConcurrentHashMap.newKeySet();
+                    subscribers.add(conn);
+                    return subscribers;
+                });
                 System.out.println("→ Client subscribed to task: " + taskId);
 
                 // Check if task is already completed
@@ -58,6 +115,8 @@ public class RecommendationWebSocketServer extends WebSocketServer {
                     // Send result immediately
                     sendTaskResult(conn, task);
                 }
+            } else if ("subscribeNotifications".equals(action)) {
+                subscribeNotifications(conn);
             }
         } catch (Exception e) {
             System.err.println("Error handling WebSocket message: " + e.getMessage());
@@ -70,7 +129,7 @@ public class RecommendationWebSocketServer extends WebSocketServer {
         System.err.println("WebSocket error: " + ex.getMessage());
         if (conn != null) {
             // Clean up on error
-            taskConnections.entrySet().removeIf(entry -> entry.getValue() == conn);
+            unsubscribe(conn);
         }
     }
 
@@ -85,16 +144,172 @@ public class RecommendationWebSocketServer extends WebSocketServer {
      * Called by LibraryApiServer after AI processing
      */
     public void notifyTaskComplete(String taskId) {
-        WebSocket conn = taskConnections.get(taskId);
-        if (conn != null && conn.isOpen()) {
-            RecommendationTask task = taskManager.getTask(taskId);
-            if (task != null) {
+        RecommendationTask task = taskManager.getTask(taskId);
+        if (task == null) {
+            return;
+        }
+        Set<WebSocket> conns = taskConnections.remove(taskId);
+        if (conns == null) {
+            return;
+        }
+        for (WebSocket conn : conns) {
+            if (conn.isOpen()) {
                 sendTaskResult(conn, task);
-                taskConnections.remove(taskId);
+            }
+        }
+    }
+
+    private void unsubscribe(WebSocket conn) {
+        for (String taskId : taskConnections.keySet()) {
+            taskConnections.computeIfPresent(taskId, (id, conns) -> {
+                conns.remove(conn);
+                return conns.isEmpty() ? null : conns;
+            });
+        }
+        for (String userId : userConnections.keySet()) {
+            userConnections.computeIfPresent(userId, (id, conns) -> {
+                conns.removeIf(channel -> channel.conn == conn);
+                if (conns.isEmpty()) {
+                    userTypes.remove(id);
+                    return null;
+                }
+                return conns;
+            });
+        }
+    }
+
+    // ===== Notification channel =====
+
+    private void subscribeNotifications(WebSocket conn) {
+        String sessionId = conn.getAttachment();
+        ApiSessionManager.SessionData session = ApiSessionManager.validateSession(sessionId);
+        if (session == null || notificationRepository == null) {
+            sendError(conn, "Authentication required");
+            return;
+        }
+
+        // Register before reading the count, so no change between the two is missed;
+        // the channel holds changes back until the count is sent
+        NotificationChannel channel = new NotificationChannel(conn);
+        userConnections.compute(session.username, (id, conns) -> {
+            Set<NotificationChannel> subscribers = conns != null ? conns : ConcurrentHashMap.newKeySet();
+            subscribers.add(channel);
+            userTypes.put(id, session.userType);
+            return subscribers;
+        });
+
+        DatabaseConnectionPool pool = notificationRepository.getPool();
+        int[] unread = new int[1];
+        long[] sequence = new long[1];
+        try {
+            pool.snapshot(c -> {
+                unread[0] = notificationRepository.getUnreadCount(session.username);
+                sequence[0] = pool.writeSequence();
+            });
+        } catch (SQLException e) {
+            System.err.println("Error reading unread count: " + e.getMessage());
+            unsubscribe(conn);
+            sendError(conn, "Notifications unavailable");
+            return;
+        }
+        channel.sync(unread[0], sequence[0]);
+        System.out.println("→ Client subscribed to notifications: " + session.username);
+    }
+
+    /**
+     * Close every connection opened with a session that has ended
+     */
+    @Override
+    public void onSessionEnded(String sessionId, ApiSessionManager.SessionData session) {
+        for (WebSocket conn : getConnections()) {
+            if (sessionId.equals(conn.getAttachment())) {
+                conn.close(CloseFrame.POLICY_VALIDATION, "Session ended");
+            }
+        }
+    }
+
+    @Override
+    public void onNotificationChanged(NotificationListener.ChangeType type, String userId,
+                                      Notification notification, int unreadDelta) {
+        Set<NotificationChannel> conns = userConnections.get(userId);
+        if (conns == null || conns.isEmpty()) {
+            return;  // Not connected: the client syncs the count when it subscribes
+        }
+
+        JsonObject message = new JsonObject();
+        switch (type) {
+            case CREATED:
+                message.addProperty("type", "notification");
+                message.add("notification", gson.toJsonTree(notification));
+                message.addProperty("unreadDelta", unreadDelta);
+                break;
+            case READ:
+                message.addProperty("type", "unread");
+                message.addProperty("unreadDelta", unreadDelta);
+                break;
+            default:
+                message.addProperty("type", "unread");
+                message.addProperty("unreadCount", 0);
+                break;
+        }
+        long sequence = writeSequenceOfThisChange();
+        for (NotificationChannel channel : conns) {
+            channel.deliver(message, sequence);
+        }
+    }
+
+    @Override
+    public void onBroadcast(String targetRole, Notification notification) {
+        JsonObject message = new JsonObject();
+        message.addProperty("type", "notification");
+        message.add("notification", gson.toJsonTree(notification));
+        message.addProperty("unreadDelta", 1);
+
+        boolean everyone = "all".equals(targetRole);
+        long sequence = writeSequenceOfThisChange();
+        for (Map.Entry<String, Set<NotificationChannel>> entry : userConnections.entrySet()) {
+            if (!everyone && !targetRole.equals(userTypes.get(entry.getKey()))) {
+                continue;
+            }
+            for (NotificationChannel channel : entry.getValue()) {
+                channel.deliver(message, sequence);
             }
         }
     }
 
+    /**
+     * Listeners run on the thread that made the write, right after it
+     */
+    private long writeSequenceOfThisChange() {
+        NotificationRepository repository = notificationRepository;
+        return repository != null ? repository.getPool().lastWriteSequence() : Long.MAX_VALUE;
+    }
+
+    private void send(WebSocket conn, JsonObject message) {
+        try {
+            conn.send(message.toString());
+            notificationPushes.incrementAndGet();
+        } catch (Exception e) {
+            System.err.println("Error sending notification: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parse "sessionId=xxx; other=yyy"
+     */
+    private static String sessionIdFromCookie(String cookieHeader) {
+        if (cookieHeader == null) {
+            return null;
+        }
+        for (String cookie : cookieHeader.split(";")) {
+            String[] parts = cookie.trim().split("=");
+            if (parts.length == 2 && parts[0].equals("sessionId")) {
+                return parts[1];
+            }
+        }
+        return null;
+    }
+
     /**
      * Send task result to client
      */
@@ -140,4 +355,67 @@ public class RecommendationWebSocketServer extends WebSocketServer {
     public int getActiveConnections() {
         return getConnections().size();
     }
+
+    public NotificationPushStats getNotificationStats() {
+        NotificationPushStats stats = new NotificationPushStats();
+        stats.connectedUsers = userConnections.size();
+        for (Set<NotificationChannel> conns : userConnections.values()) {
+            stats.connections += conns.size();
+        }
+        stats.messagesPushed = notificationPushes.get();
+        return stats;
+    }
+
+    /**
+     * One subscribed connection
+     * Until the initial count is sent, changes are held back with their write sequence;
+     * afterwards only changes whose write is newer than the count's snapshot are pushed.
+     */
+    private class NotificationChannel {
+        final WebSocket conn;
+        private List<HeldChange> held = new ArrayList<>();  // null once synced
+        private long syncedAt;
+
+        NotificationChannel(WebSocket conn) {
+            this.conn = conn;
+        }
+
+        synchronized void deliver(JsonObject message, long sequence) {
+            if (held != null) {
+                held.add(new HeldChange(message, sequence));
+            } else if (sequence > syncedAt && conn.isOpen()) {
+                send(conn, message);
+            }
+        }
+
+        synchronized void sync(int unreadCount, long sequence) {
+            syncedAt = sequence;
+            JsonObject sync = new JsonObject();
+            sync.addProperty("type", "unread");
+            sync.addProperty("unreadCount", unreadCount);
+            send(conn, sync);
+
+            List<HeldChange> changes = held;
+            held = null;
+            for (HeldChange change : changes) {
+                deliver(change.message, change.sequence);
+            }
+        }
+    }
+
+    private static class HeldChange {
+        final JsonObject message;
+        final long sequence;
+
+        HeldChange(JsonObject message, long sequence) {
+            this.message = message;
+            this.sequence = sequence;
+        }
+    }
+
+    public static class NotificationPushStats {
+        public int connectedUsers;
+        public int connections;
+        public long messagesPushed;
+    }
 }
@@ -0,0 +1,229 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Recommendation Work Scheduler
+ * Runs recommendation context assembly (DB-heavy) on its own workers instead of the
+ * common ForkJoinPool, which is shared with parallel streams and sized to the core count
+ *
+ * - RECOMMENDATION_WORKERS threads (default 4) take jobs from one priority queue:
+ *   INTERACTIVE (a user is waiting) always runs before PREFETCH (background refresh)
+ * - At most RECOMMENDATION_QUEUE jobs wait (default 64); PREFETCH is only admitted while
+ *   the queue is less than half full, so refreshes never crowd out interactive requests
+ * - Beyond that, submit() throws RejectedExecutionException and the handler answers
+ *   429 with {@link #retryAfterSeconds()}
+ */
+public class RecommendationWorkScheduler {
+
+    public enum Priority {
+        INTERACTIVE,
+        PREFETCH
+    }
+
+    private final int workers;
+    private final int queueCapacity;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Priority, Counters> counters = new EnumMap<>(Priority.class);
+
+    public RecommendationWorkScheduler() {
+        this(intEnv("RECOMMENDATION_WORKERS", 4), intEnv("RECOMMENDATION_QUEUE", 64));
+    }
+
+    public RecommendationWorkScheduler(int workers, int queueCapacity) {
+        this.workers = Math.max(1, workers);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        for (Priority priority : Priority.values()) {
+            counters.put(priority, new Counters());
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        // The queue itself is unbounded; admission is capped in submit() so that
+        // PREFETCH can be turned away earlier than INTERACTIVE
+        this.executor = new ThreadPoolExecutor(this.workers, this.workers, 60, TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "recommendation-worker-" + counter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        System.out.println("✓ RecommendationWorkScheduler initialized (" + this.workers
+            + " workers, queue " + this.queueCapacity + ")");
+    }
+
+    /**
+     * Queue a job
+     * @return Future completed with the job's result on a worker thread
+     * @throws RejectedExecutionException When the queue is full for this priority
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Supplier<T> work) {
+        Counters stats = counters.get(priority);
+        int limit = priority == Priority.INTERACTIVE ? queueCapacity : queueCapacity / 2;
+        if (queued.incrementAndGet() > limit) {
+            queued.decrementAndGet();
+            stats.rejected.incrementAndGet();
+            throw new RejectedExecutionException("Recommendation queue full (" + priority + ")");
+        }
+        stats.submitted.incrementAndGet();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Job job = new Job(priority, sequence.incrementAndGet(), () -> {
+            try {
+                result.complete(work.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            // Shut down
+            queued.decrementAndGet();
+            stats.rejected.incrementAndGet();
+            throw e;
+        }
+        return result;
+    }
+
+    /**
+     * Seconds a rejected client should wait: time for the workers to drain the current queue
+     */
+    public long retryAfterSeconds() {
+        long runs = 0;
+        long runNanos = 0;
+        for (Counters stats : counters.values()) {
+            runs += stats.completed.get();
+            runNanos += stats.runNanos.get();
+        }
+        long avgRunMs = runs > 0 ? TimeUnit.NANOSECONDS.toMillis(runNanos / runs) : 1000;
+        long drainMs = (queued.get() + workers - 1) / workers * avgRunMs;
+        return Math.max(1, Math.min(60, (drainMs + 999) / 1000));
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+        }
+        System.out.println("✓ RecommendationWorkScheduler shutdown");
+    }
+
+    // ===== Metrics =====
+
+    public SchedulerStats getStats() {
+        SchedulerStats stats = new SchedulerStats();
+        stats.workers = workers;
+        stats.busyWorkers = executor.getActiveCount();
+        stats.queued = executor.getQueue().size();
+        stats.queueCapacity = queueCapacity;
+        stats.retryAfterSeconds = retryAfterSeconds();
+        for (Map.Entry<Priority, Counters> entry : counters.entrySet()) {
+            Counters counter = entry.getValue();
+            PriorityStats priority = new PriorityStats();
+            priority.submitted = counter.submitted.get();
+            priority.rejected = counter.rejected.get();
+            priority.completed = counter.completed.get();
+            if (priority.completed > 0) {
+                priority.avgQueueWaitMs = TimeUnit.NANOSECONDS.toMillis(counter.waitNanos.get() / priority.completed);
+                priority.avgRunMs = TimeUnit.NANOSECONDS.toMillis(counter.runNanos.get() / priority.completed);
+            }
+            priority.maxQueueWaitMs = TimeUnit.NANOSECONDS.toMillis(counter.maxWaitNanos.get());
+            priority.maxRunMs = TimeUnit.NANOSECONDS.toMillis(counter.maxRunNanos.get());
+            stats.priorities.put(entry.getKey().name().toLowerCase(), priority);
+        }
+        return stats;
+    }
+
+    public static class SchedulerStats {
+        public int workers;
+        public int busyWorkers;
+        public int queued;
+        public int queueCapacity;
+        public long retryAfterSeconds;
+        public Map<String, PriorityStats> priorities = new java.util.LinkedHashMap<>();
+    }
+
+    public static class PriorityStats {
+        public long submitted;
+        public long rejected;
+        public long completed;
+        public long avgQueueWaitMs;
+        public long maxQueueWaitMs;
+        public long avgRunMs;
+        public long maxRunMs;
+    }
+
+    // ===== Internals =====
+
+    /**
+     * Queued job: ordered by priority, then FIFO within a priority
+     */
+    private class Job implements Runnable, Comparable<Job> {
+        final Priority priority;
+        final long sequence;
+        final Runnable work;
+        final long queuedAt = System.nanoTime();
+
+        Job(Priority priority, long sequence, Runnable work) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            queued.decrementAndGet();
+            long started = System.nanoTime();
+            try {
+                work.run();
+            } finally {
+                Counters stats = counters.get(priority);
+                long waited = started - queuedAt;
+                long ran = System.nanoTime() - started;
+                stats.completed.incrementAndGet();
+                stats.waitNanos.addAndGet(waited);
+                stats.runNanos.addAndGet(ran);
+                stats.maxWaitNanos.accumulateAndGet(waited, Math::max);
+                stats.maxRunNanos.accumulateAndGet(ran, Math::max);
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class Counters {
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong waitNanos = new AtomicLong();
+        final AtomicLong runNanos = new AtomicLong();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final AtomicLong maxRunNanos = new AtomicLong();
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
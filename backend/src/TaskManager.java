@@ -1,35 +1,78 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Task Manager - Manages async recommendation tasks
- * Stores task state and automatically cleans up expired tasks
+ * Stores task state in a bounded store and expires tasks with a hashed timer wheel
+ *
+ * - Pending tasks live for TASK_PENDING_TTL_SECONDS (default 120, longer than the AI timeout)
+ * - Completed / failed tasks live for TASK_COMPLETED_TTL_SECONDS (default 60), enough for
+ *   the client to subscribe and receive the result
+ * - At most TASK_MAX_ENTRIES tasks (default 10000); the least recently used is evicted
+ *
+ * The wheel has one slot per second; each tick only visits the tasks due in its slot,
+ * so expiry cost doesn't grow with the number of stored tasks.
  */
 public class TaskManager {
 
-    private static final long TASK_EXPIRY_MS = 5 * 60 * 1000;  // 5 minutes
-    private static final long CLEANUP_INTERVAL_MS = 60 * 1000;  // 1 minute
+    private static final long TICK_MS = 1000;
+    private static final int WHEEL_SLOTS = 512;
+
+    private final long pendingTtlTicks;
+    private final long completedTtlTicks;
+    private final int maxEntries;
+
+    // Access-ordered for LRU eviction; the store and the wheel are guarded by the store
+    private final LinkedHashMap<String, Entry> tasks = new LinkedHashMap<>(64, 0.75f, true);
+    private final List<Set<String>> wheel = new ArrayList<>(WHEEL_SLOTS);
+    private final long startMs = System.currentTimeMillis();
+    private long lastTick = 0;
 
-    private final Map<String, RecommendationTask> tasks;
+    // (user, type, fingerprint) -> id of the task still processing those inputs
+    private final Map<String, String> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
     private final ScheduledExecutorService cleanupScheduler;
 
     public TaskManager() {
-        this.tasks = new ConcurrentHashMap<>();
-        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor();
+        this(intEnv("TASK_PENDING_TTL_SECONDS", 120) * 1000L,
+             intEnv("TASK_COMPLETED_TTL_SECONDS", 60) * 1000L,
+             intEnv("TASK_MAX_ENTRIES", 10000));
+    }
+
+    public TaskManager(long pendingTtlMs, long completedTtlMs, int maxEntries) {
+        this.pendingTtlTicks = Math.max(1, (pendingTtlMs + TICK_MS - 1) / TICK_MS);
+        this.completedTtlTicks = Math.max(1, (completedTtlMs + TICK_MS - 1) / TICK_MS);
+        this.maxEntries = maxEntries;
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel.add(new HashSet<>());
+        }
+        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
 
-        // Schedule periodic cleanup of expired tasks
+        // Advance the timer wheel once per tick
         cleanupScheduler.scheduleAtFixedRate(
             this::cleanupExpiredTasks,
-            CLEANUP_INTERVAL_MS,
-            CLEANUP_INTERVAL_MS,
+            TICK_MS,
+            TICK_MS,
             TimeUnit.MILLISECONDS
         );
 
-        System.out.println("✓ TaskManager initialized with auto-cleanup");
+        System.out.println("✓ TaskManager initialized with auto-cleanup (max " + maxEntries + " tasks)");
     }
 
     /**
@@ -37,25 +80,63 @@ public class TaskManager {
      */
     public RecommendationTask createTask(String taskId, String userId, String type) {
         RecommendationTask task = new RecommendationTask(taskId, userId, type);
-        tasks.put(taskId, task);
+        releaseAll(store(task));
         System.out.println("→ Created task: " + taskId + " for user: " + userId + " (type: " + type + ")");
         return task;
     }
 
+    /**
+     * Create a task, or attach to the one already processing the same request
+     * Identical (user, type, fingerprint) requests share a task, so the AI is called once
+     * and every subscriber of that task is notified when it completes.
+     *
+     * @return The existing task (its id differs from taskId) or a new one with taskId
+     */
+    public RecommendationTask createOrAttach(String taskId, String userId, String type, String fingerprint) {
+        String key = userId + "|" + type + "|" + fingerprint;
+        RecommendationTask[] result = new RecommendationTask[1];
+        List<RecommendationTask> evictedTasks = new ArrayList<>();
+        inFlight.compute(key, (k, existingId) -> {
+            RecommendationTask existing = existingId != null ? getTask(existingId) : null;
+            if (existing != null && existing.getStatus() == RecommendationTask.Status.PROCESSING) {
+                result[0] = existing;
+                return existingId;
+            }
+            RecommendationTask task = new RecommendationTask(taskId, userId, type, fingerprint);
+            evictedTasks.addAll(store(task));
+            result[0] = task;
+            return taskId;
+        });
+        // Outside compute(): releasing touches inFlight again
+        releaseAll(evictedTasks);
+
+        if (result[0].getTaskId().equals(taskId)) {
+            System.out.println("→ Created task: " + taskId + " for user: " + userId + " (type: " + type + ")");
+        } else {
+            coalesced.incrementAndGet();
+            System.out.println("→ Attached to in-flight task: " + result[0].getTaskId() + " for user: " + userId);
+        }
+        return result[0];
+    }
+
     /**
      * Get task by ID
      */
     public RecommendationTask getTask(String taskId) {
-        return tasks.get(taskId);
+        synchronized (tasks) {
+            Entry entry = tasks.get(taskId);
+            return entry != null ? entry.task : null;
+        }
     }
 
     /**
      * Complete a task with result
      */
     public void completeTask(String taskId, java.util.List<Recommendation> result) {
-        RecommendationTask task = tasks.get(taskId);
+        RecommendationTask task = finish(taskId);
         if (task != null) {
             task.setResult(result);
+            releaseInFlight(task);
             System.out.println("✓ Task completed: " + taskId);
         }
     }
@@ -64,19 +145,39 @@ public class TaskManager {
      * Mark task as failed
      */
     public void failTask(String taskId, String error) {
-        RecommendationTask task = tasks.get(taskId);
+        RecommendationTask task = finish(taskId);
         if (task != null) {
             task.setError(error);
+            releaseInFlight(task);
             System.err.println("✗ Task failed: " + taskId + " - " + error);
         }
     }
 
+    /**
+     * Later identical requests start a new task once this one has finished
+     */
+    private void releaseInFlight(RecommendationTask task) {
+        if (task.getFingerprint() != null) {
+            inFlight.remove(task.getUserId() + "|" + task.getType() + "|" + task.getFingerprint(), task.getTaskId());
+        }
+    }
+
+    private void releaseAll(List<RecommendationTask> removed) {
+        for (RecommendationTask task : removed) {
+            releaseInFlight(task);
+        }
+    }
+
     /**
      * Remove a task (after client receives result)
      */
     public void removeTask(String taskId) {
-        RecommendationTask removed = tasks.remove(taskId);
+        Entry removed;
+        synchronized (tasks) {
+            removed = tasks.remove(taskId);
+        }
         if (removed != null) {
+            releaseInFlight(removed.task);
             System.out.println("→ Removed task: " + taskId);
         }
     }
@@ -85,27 +186,145 @@ public class TaskManager {
      * Get number of active tasks
      */
     public int getActiveTaskCount() {
-        return tasks.size();
+        synchronized (tasks) {
+            return tasks.size();
+        }
+    }
+
+    /**
+     * Number of requests that attached to an in-flight task instead of starting one
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    // ===== Store and timer wheel =====
+
+    /**
+     * Insert a pending task, evicting the least recently used beyond the cap
+     * @return Evicted tasks (their in-flight keys must be released by the caller)
+     */
+    private List<RecommendationTask> store(RecommendationTask task) {
+        List<RecommendationTask> evictedTasks = new ArrayList<>();
+        synchronized (tasks) {
+            Entry entry = new Entry(task);
+            tasks.put(task.getTaskId(), entry);
+            schedule(task.getTaskId(), entry, pendingTtlTicks);
+
+            Iterator<Map.Entry<String, Entry>> eldest = tasks.entrySet().iterator();
+            while (tasks.size() > maxEntries && eldest.hasNext()) {
+                evictedTasks.add(eldest.next().getValue().task);
+                eldest.remove();  // Its wheel slot drops the id lazily
+                evicted.incrementAndGet();
+            }
+        }
+        return evictedTasks;
+    }
+
+    /**
+     * Move a task to the completed TTL
+     */
+    private RecommendationTask finish(String taskId) {
+        synchronized (tasks) {
+            Entry entry = tasks.get(taskId);
+            if (entry == null) {
+                return null;
+            }
+            schedule(taskId, entry, completedTtlTicks);
+            return entry.task;
+        }
+    }
+
+    // Caller holds the store lock
+    private void schedule(String taskId, Entry entry, long ttlTicks) {
+        entry.deadlineTick = currentTick() + ttlTicks;
+        wheel.get((int) (entry.deadlineTick % WHEEL_SLOTS)).add(taskId);
+    }
+
+    private long currentTick() {
+        return (System.currentTimeMillis() - startMs) / TICK_MS;
     }
 
     /**
-     * Cleanup expired tasks
+     * Advance the wheel to the current tick, expiring the tasks due in each slot passed
+     * A slot also holds ids whose task was rescheduled, removed or is due in a later
+     * round; those are dropped or kept without expiring.
      */
     private void cleanupExpiredTasks() {
-        int before = tasks.size();
-        Iterator<Map.Entry<String, RecommendationTask>> iterator = tasks.entrySet().iterator();
-
-        while (iterator.hasNext()) {
-            Map.Entry<String, RecommendationTask> entry = iterator.next();
-            if (entry.getValue().isExpired(TASK_EXPIRY_MS)) {
-                System.out.println("→ Cleaning up expired task: " + entry.getKey());
-                iterator.remove();
+        List<RecommendationTask> removed = new ArrayList<>();
+        synchronized (tasks) {
+            long now = currentTick();
+            for (long tick = lastTick + 1; tick <= now && tick <= lastTick + WHEEL_SLOTS; tick++) {
+                int slot = (int) (tick % WHEEL_SLOTS);
+                Iterator<String> ids = wheel.get(slot).iterator();
+                while (ids.hasNext()) {
+                    String taskId = ids.next();
+                    Entry entry = tasks.get(taskId);
+                    if (entry == null || entry.deadlineTick % WHEEL_SLOTS != slot) {
+                        ids.remove();
+                    } else if (entry.deadlineTick <= now) {
+                        ids.remove();
+                        tasks.remove(taskId);
+                        removed.add(entry.task);
+                    }
+                }
+            }
+            lastTick = now;
+        }
+        releaseAll(removed);
+
+        if (!removed.isEmpty()) {
+            expired.addAndGet(removed.size());
+            System.out.println("✓ Cleaned up " + removed.size() + " expired tasks (remaining: " + getActiveTaskCount() + ")");
+        }
+    }
+
+    // ===== Metrics =====
+
+    public TaskStats getStats() {
+        TaskStats stats = new TaskStats();
+        synchronized (tasks) {
+            for (Entry entry : tasks.values()) {
+                switch (entry.task.getStatus()) {
+                    case PROCESSING:
+                        stats.pending++;
+                        break;
+                    case COMPLETED:
+                        stats.completed++;
+                        break;
+                    default:
+                        stats.failed++;
+                        break;
+                }
             }
         }
+        stats.maxEntries = maxEntries;
+        stats.pendingTtlSeconds = pendingTtlTicks * TICK_MS / 1000;
+        stats.completedTtlSeconds = completedTtlTicks * TICK_MS / 1000;
+        stats.expired = expired.get();
+        stats.evicted = evicted.get();
+        stats.coalesced = coalesced.get();
+        return stats;
+    }
+
+    public static class TaskStats {
+        public int pending;
+        public int completed;
+        public int failed;
+        public int maxEntries;
+        public long pendingTtlSeconds;
+        public long completedTtlSeconds;
+        public long expired;
+        public long evicted;
+        public long coalesced;
+    }
+
+    private static class Entry {
+        final RecommendationTask task;
+        long deadlineTick;
 
-        int removed = before - tasks.size();
-        if (removed > 0) {
-            System.out.println("✓ Cleaned up " + removed + " expired tasks (remaining: " + tasks.size() + ")");
+        Entry(RecommendationTask task) {
+            this.task = task;
         }
     }
 
@@ -121,7 +340,22 @@ public class TaskManager {
         } catch (InterruptedException e) {
             cleanupScheduler.shutdownNow();
         }
-        tasks.clear();
+        synchronized (tasks) {
+            tasks.clear();
+            for (Set<String> slot : wheel) {
+                slot.clear();
+            }
+        }
+        inFlight.clear();
         System.out.println("✓ TaskManager shutdown");
     }
+
+    private static int intEnv(String name, int defaultValue) {
+        try {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
 }
@@ -3,6 +3,8 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * User Database Repository
@@ -15,20 +17,57 @@ import java.util.Base64;
  */
 public class UserDatabaseRepository {
 
-    private final String dbUrl;
+    private final DatabaseConnectionPool pool;
+    private final List<UserChangeListener> changeListeners = new CopyOnWriteArrayList<>();
 
     /**
-     * Constructor - uses same database as books
+     * Notified after a user account is created or deleted
+     */
+    public interface UserChangeListener {
+        void onUserAdded(String userId, String userType);
+
+        void onUserRemoved(String userId, String userType);
+    }
+
+    /**
+     * Constructor - uses same database (and connection pool) as books
      */
     public UserDatabaseRepository(String dbPath) {
-        this.dbUrl = "jdbc:sqlite:" + dbPath;
+        this.pool = DatabaseConnectionPool.forPath(dbPath);
+    }
+
+    /**
+     * Register a listener for account creation/deletion
+     */
+    public void addUserChangeListener(UserChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    private void fireUserAdded(String userId, String userType) {
+        for (UserChangeListener listener : changeListeners) {
+            try {
+                listener.onUserAdded(userId, userType);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  User change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void fireUserRemoved(String userId, String userType) {
+        for (UserChangeListener listener : changeListeners) {
+            try {
+                listener.onUserRemoved(userId, userType);
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  User change listener failed: " + e.getMessage());
+            }
+        }
     }
 
     /**
      * Initialize users table and insert default admin accounts
      */
     public void initialize() {
-        try (Connection conn = getConnection()) {
+        try (Connection conn = pool.write()) {
             // Create users table
             String createTableSQL = """
                 CREATE TABLE IF NOT EXISTS users (
@@ -58,19 +97,12 @@ public class UserDatabaseRepository {
         }
     }
 
-    /**
-     * Get database connection
-     */
-    private Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(dbUrl);
-    }
-
     /**
      * Get total user count
      */
     private int getUserCount() {
         String sql = "SELECT COUNT(*) FROM users";
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -93,7 +125,7 @@ public class UserDatabaseRepository {
         String sql = "INSERT INTO users (id, name, password_hash, email, user_type, created_at) " +
                      "VALUES (?, ?, ?, ?, ?, datetime('now'))";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             // Default admin accounts (from original Admin.java)
@@ -166,7 +198,7 @@ public class UserDatabaseRepository {
         String sql = "INSERT INTO users (id, name, password_hash, email, user_type, created_at) " +
                      "VALUES (?, ?, ?, ?, 'user', datetime('now'))";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, id.trim());
@@ -176,12 +208,14 @@ public class UserDatabaseRepository {
 
             pstmt.executeUpdate();
             System.out.println("✅ User registered: " + id + " (" + name + ")");
-            return true;
 
         } catch (SQLException e) {
             System.err.println("Error registering user: " + e.getMessage());
             return false;
         }
+
+        fireUserAdded(id.trim(), "user");
+        return true;
     }
 
     /**
@@ -215,7 +249,7 @@ public class UserDatabaseRepository {
         String sql = "SELECT id, name, password_hash, email, user_type, created_at, last_login " +
                      "FROM users WHERE id = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, id);
@@ -245,7 +279,7 @@ public class UserDatabaseRepository {
     private void updateLastLogin(String id) {
         String sql = "UPDATE users SET last_login = datetime('now') WHERE id = ?";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, id);
@@ -277,7 +311,7 @@ public class UserDatabaseRepository {
         String sql = "SELECT id, name, password_hash, email, user_type, created_at, last_login FROM users";
         java.util.List<User> users = new java.util.ArrayList<>();
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -308,7 +342,7 @@ public class UserDatabaseRepository {
                      "FROM users WHERE user_type = ?";
         java.util.List<User> users = new java.util.ArrayList<>();
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, role);
@@ -339,26 +373,38 @@ public class UserDatabaseRepository {
      * @return true if deletion successful, false otherwise
      */
     public boolean deleteUser(String userId) {
+        String findSql = "SELECT user_type FROM users WHERE id = ?";
         String sql = "DELETE FROM users WHERE id = ?";
+        String userType = null;
+
+        try (Connection conn = pool.write()) {
+            // Remember the role of the deleted account (for change listeners)
+            try (PreparedStatement findStmt = conn.prepareStatement(findSql)) {
+                findStmt.setString(1, userId);
+                ResultSet rs = findStmt.executeQuery();
+                if (rs.next()) {
+                    userType = rs.getString("user_type");
+                }
+            }
 
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, userId);
-            int affectedRows = pstmt.executeUpdate();
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, userId);
+                int affectedRows = pstmt.executeUpdate();
 
-            if (affectedRows > 0) {
+                if (affectedRows == 0) {
+                    System.out.println("⚠️ User not found: " + userId);
+                    return false;
+                }
                 System.out.println("✅ User deleted successfully: " + userId);
-                return true;
-            } else {
-                System.out.println("⚠️ User not found: " + userId);
-                return false;
             }
 
         } catch (SQLException e) {
             System.err.println("❌ Error deleting user: " + e.getMessage());
             return false;
         }
+
+        fireUserRemoved(userId, userType);
+        return true;
     }
 
     /**
@@ -378,7 +424,7 @@ public class UserDatabaseRepository {
         String sql = "INSERT INTO users (id, name, password_hash, email, user_type, created_at) " +
                      "VALUES (?, ?, ?, ?, '館員', datetime('now'))";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.write();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, id);
@@ -388,16 +434,18 @@ public class UserDatabaseRepository {
 
             int affectedRows = pstmt.executeUpdate();
 
-            if (affectedRows > 0) {
-                System.out.println("✅ Staff created successfully: " + id + " (" + name + ")");
-                return true;
+            if (affectedRows == 0) {
+                return false;
             }
+            System.out.println("✅ Staff created successfully: " + id + " (" + name + ")");
 
         } catch (SQLException e) {
             System.err.println("❌ Error creating staff: " + e.getMessage());
+            return false;
         }
 
-        return false;
+        fireUserAdded(id, "館員");
+        return true;
     }
 
     /**
@@ -409,7 +457,7 @@ public class UserDatabaseRepository {
                      "WHERE user_type = 'user' " +
                      "AND strftime('%Y-%m-%d', created_at) = strftime('%Y-%m-%d', date('now', '-1 day'))";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = pool.read();
              PreparedStatement pstmt = conn.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
 
@@ -0,0 +1,87 @@
+import java.util.*;
+
+/**
+ * Latency benchmark for BookSearchIndex
+ *
+ * Builds the index over a synthetic catalog (no database needed) and reports
+ * p50 / p99 query latency for exact, CJK, prefix and typo queries.
+ *
+ * Usage: java -cp "lib/*:backend/bin:backend/tests" BenchmarkBookSearchIndex [books]
+ */
+public class BenchmarkBookSearchIndex {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    private static final String[] LATIN = {
+        "java", "python", "algorithms", "database", "network", "security", "design", "patterns",
+        "machine", "learning", "statistics", "economics", "marketing", "finance", "physics", "chemistry"
+    };
+    private static final String[] CJK = {
+        "程式設計", "資料科學", "演算法", "資料庫", "網頁設計", "管理學", "經濟學", "統計學",
+        "文學", "物理學", "化學", "生物學", "日語", "英語", "歷史", "哲學"
+    };
+    private static final String[] QUERIES = {
+        "python", "資料科學", "machine learning", "演算", "datab", "pyhton", "統計 finance", "java 程式"
+    };
+
+    public static void main(String[] args) {
+        int books = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        System.out.println("=".repeat(60));
+        System.out.println("BookSearchIndex latency benchmark (" + books + " books)");
+        System.out.println("=".repeat(60));
+
+        List<BookInfo> catalog = buildCatalog(books);
+        BookSearchIndex index = new BookSearchIndex(() -> catalog, id -> null);
+
+        long buildStart = System.nanoTime();
+        index.search("warmup", 0, 1);
+        System.out.printf("  build  : %,d ms%n", (System.nanoTime() - buildStart) / 1_000_000);
+
+        for (int i = 0; i < WARMUP; i++) {
+            index.search(QUERIES[i % QUERIES.length], 0, 20);
+        }
+
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            index.search(QUERIES[i % QUERIES.length], 0, 20);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double p50 = samples[ITERATIONS / 2] / 1_000_000.0;
+        double p99 = samples[ITERATIONS * 99 / 100] / 1_000_000.0;
+
+        for (String query : QUERIES) {
+            BookSearchIndex.SearchResult result = index.search(query, 0, 20);
+            System.out.printf("  %-18s %,7d hits%n", "\"" + query + "\"", result.total);
+        }
+        System.out.printf("  p50    : %.3f ms%n", p50);
+        System.out.printf("  p99    : %.3f ms%n", p99);
+
+        if (index.search("pyhton", 0, 1).total == 0) {
+            throw new AssertionError("Typo query should match");
+        }
+        if (p50 >= 1.0) {
+            throw new AssertionError("Median query should stay under 1 ms");
+        }
+        System.out.println("\nBenchmark passed! ✅");
+    }
+
+    /**
+     * Titles mix Latin words and CJK phrases; most terms are rare, a few are common
+     */
+    private static List<BookInfo> buildCatalog(int books) {
+        Random random = new Random(42);
+        List<BookInfo> catalog = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            String title = LATIN[random.nextInt(LATIN.length)] + " " + CJK[random.nextInt(CJK.length)]
+                + " vol" + (i % 5000);
+            String author = "作者" + (i % 3000) + " author" + (i % 7000);
+            String description = LATIN[random.nextInt(LATIN.length)] + " " + CJK[random.nextInt(CJK.length)];
+            catalog.add(new BookInfo(String.format("B%06d", i), title, author, "出版社" + (i % 50), description));
+        }
+        return catalog;
+    }
+}
@@ -0,0 +1,102 @@
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+/**
+ * Benchmark for DueReminderEngine on a large loan table
+ *
+ * Seeds a temporary database with N loans (a third due within the reminder
+ * window), runs the engine twice for the same day and checks that every due loan gets
+ * exactly one reminder and that the run stays within a few seconds.
+ *
+ * Usage: java -cp "lib/*:backend/bin:backend/tests" BenchmarkDueReminders [loans]
+ */
+public class BenchmarkDueReminders {
+
+    private static final long MAX_RUN_MS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int loans = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+
+        System.out.println("=".repeat(60));
+        System.out.println("DueReminderEngine benchmark (" + loans + " active loans)");
+        System.out.println("=".repeat(60));
+
+        File db = File.createTempFile("due-reminders", ".db");
+        db.deleteOnExit();
+        DatabaseConnectionPool pool = DatabaseConnectionPool.forPath(db.getAbsolutePath());
+        new BorrowHistoryRepository(pool);
+        NotificationRepository notifications = new NotificationRepository(pool);
+        LocalDate today = LocalDate.of(2026, 3, 2);
+        int due = seed(pool, loans, today);
+
+        DueReminderEngine engine = new DueReminderEngine(notifications);
+        DueReminderEngine.RunReport first = engine.run(today);
+        System.out.printf("  first run : %,d sent in %,d ms%n", first.sent, first.durationMs);
+        DueReminderEngine.RunReport second = engine.run(today);
+        System.out.printf("  second run: %,d sent in %,d ms%n", second.sent, second.durationMs);
+
+        check("每筆到期借閱一則提醒", first.candidates == due && first.sent == due);
+        check("同一天不重複提醒", second.sent == 0);
+        check("在 " + MAX_RUN_MS + " ms 內完成", first.durationMs < MAX_RUN_MS);
+        check("通知已寫入", notifications.getUnreadCount("user1") > 0);
+
+        DatabaseConnectionPool.closeAll();
+        System.out.println("\nBenchmark passed! ✅");
+    }
+
+    /**
+     * Loans due 0..11 days from today (a third within the reminder window), 2% already returned
+     * @return Loans that should get a reminder
+     */
+    static int seed(DatabaseConnectionPool pool, int loans, LocalDate today) throws Exception {
+        int due = 0;
+        try (Connection conn = pool.write()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS books (id TEXT PRIMARY KEY, title TEXT NOT NULL, "
+                    + "author TEXT NOT NULL, publisher TEXT NOT NULL, is_available INTEGER NOT NULL DEFAULT 1)");
+            }
+            try (PreparedStatement books = conn.prepareStatement(
+                    "INSERT INTO books (id, title, author, publisher, is_available) VALUES (?, ?, 'a', 'p', 0)")) {
+                for (int i = 0; i < 1000; i++) {
+                    books.setString(1, "B" + i);
+                    books.setString(2, "書名 " + i);
+                    books.addBatch();
+                }
+                books.executeBatch();
+            }
+            try (PreparedStatement history = conn.prepareStatement(
+                    "INSERT INTO borrow_history (user_id, book_id, book_title, borrow_date, due_date, status) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < loans; i++) {
+                    int daysLeft = i % 12;
+                    String status = i % 50 == 0 ? "returned" : "borrowing";
+                    history.setString(1, "user" + (i % 5000));
+                    history.setString(2, "B" + (i % 1000));
+                    history.setString(3, "書名 " + (i % 1000));
+                    history.setString(4, today.minusDays(14 - daysLeft).toString());
+                    history.setString(5, today.plusDays(daysLeft).toString());
+                    history.setString(6, status);
+                    history.addBatch();
+                    if (daysLeft <= 3 && "borrowing".equals(status)) {
+                        due++;
+                    }
+                }
+                history.executeBatch();
+            }
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+        return due;
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Allocation benchmark for JsonResponseWriter
+ *
+ * Compares, per response, the bytes allocated by:
+ * - legacy : pretty Gson -> String -> getBytes() twice (old sendResponse)
+ * - stream : JsonResponseWriter onto the output stream (compact, pooled buffer)
+ *
+ * Usage: java -cp "lib/*:backend/bin:backend/tests" BenchmarkJsonResponseWriter [rows]
+ */
+public class BenchmarkJsonResponseWriter {
+
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+        System.out.println("=".repeat(60));
+        System.out.println("JsonResponseWriter allocation benchmark (" + rows + " history rows)");
+        System.out.println("=".repeat(60));
+
+        Map<String, Object> body = buildHistoryResponse(rows);
+        Gson pretty = new GsonBuilder().setPrettyPrinting().create();
+
+        // Sanity check: both paths produce the same document
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        JsonResponseWriter.write(streamed, body, false);
+        Object legacyTree = new Gson().fromJson(pretty.toJson(body), Object.class);
+        Object streamTree = new Gson().fromJson(streamed.toString(StandardCharsets.UTF_8), Object.class);
+        if (!legacyTree.equals(streamTree)) {
+            throw new AssertionError("Streamed JSON differs from legacy JSON");
+        }
+
+        OutputStream sink = OutputStream.nullOutputStream();
+
+        long legacy = measure(() -> {
+            String response = pretty.toJson(body);
+            int length = response.getBytes().length;
+            sink.write(response.getBytes(), 0, length);
+        });
+
+        long stream = measure(() -> JsonResponseWriter.write(sink, body, false));
+
+        System.out.printf("  legacy : %,12d bytes allocated / response%n", legacy);
+        System.out.printf("  stream : %,12d bytes allocated / response%n", stream);
+        System.out.printf("  ratio  : %.1fx less%n", (double) legacy / Math.max(1, stream));
+        System.out.printf("  size   : %,d bytes compact vs %,d bytes pretty%n",
+            streamed.size(), pretty.toJson(body).getBytes(StandardCharsets.UTF_8).length);
+
+        if (stream >= legacy) {
+            throw new AssertionError("Streaming should allocate less than the legacy path");
+        }
+        System.out.println("\nBenchmark passed! ✅");
+    }
+
+    interface Task {
+        void run() throws IOException;
+    }
+
+    /**
+     * Average bytes allocated by the current thread per run
+     */
+    private static long measure(Task task) throws IOException {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            task.run();
+        }
+        return (threads.getThreadAllocatedBytes(thread) - before) / ITERATIONS;
+    }
+
+    /**
+     * Shape of /api/history/all with synthetic rows (no database needed)
+     */
+    private static Map<String, Object> buildHistoryResponse(int rows) {
+        List<BorrowHistory> history = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            history.add(new BorrowHistory(i, "user" + (i % 500), String.format("%03d", i % 200),
+                "📚 測試書籍 Test Book " + (i % 200), "2024-01-" + String.format("%02d", 1 + i % 28),
+                "2024-02-" + String.format("%02d", 1 + i % 28), i % 3 == 0 ? null : "2024-01-30",
+                i % 3 == 0 ? "borrowing" : "returned"));
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("success", true);
+        body.put("history", history);
+        return body;
+    }
+}
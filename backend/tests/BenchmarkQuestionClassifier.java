@@ -0,0 +1,62 @@
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Throughput benchmark for QuestionClassifier
+ *
+ * Compares the compiled keyword automaton with the previous String.contains
+ * implementation (LegacyQuestionClassifier) on typical chat messages, after a
+ * warmup so both are JIT-compiled.
+ *
+ * Usage: java -cp "lib/*:backend/bin:backend/tests" BenchmarkQuestionClassifier [iterations]
+ */
+public class BenchmarkQuestionClassifier {
+
+    private static final int WARMUP = 200_000;
+
+    private static final String[] MESSAGES = {
+        "你好",
+        "我借過哪些書？",
+        "有什麼 Python 的書推薦？",
+        "《紅樓夢》可以借嗎？",
+        "借書期限是多久？逾期罰款怎麼算？",
+        "我上個月借了一本關於資料科學的書，現在想續借，請問要怎麼辦理？還有什麼時候要還？",
+        "Could you recommend some books about machine learning for beginners?"
+    };
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        System.out.println("=".repeat(60));
+        System.out.println("QuestionClassifier benchmark (" + iterations + " messages)");
+        System.out.println("=".repeat(60));
+
+        QuestionClassifier compiled = new QuestionClassifier();
+        LegacyQuestionClassifier legacy = new LegacyQuestionClassifier();
+
+        double legacyNs = measure("contains ", legacy::classify, iterations);
+        double compiledNs = measure("automaton", compiled::classify, iterations);
+        System.out.printf("  speedup  : %.1fx%n", legacyNs / compiledNs);
+
+        if (compiledNs >= legacyNs) {
+            throw new AssertionError("Automaton should be faster than String.contains scanning");
+        }
+        System.out.println("\nBenchmark passed! ✅");
+    }
+
+    private static double measure(String label, Function<String, Set<QuestionClassifier.QuestionType>> classify,
+                                  int iterations) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink += classify.apply(MESSAGES[i % MESSAGES.length]).size();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += classify.apply(MESSAGES[i % MESSAGES.length]).size();
+        }
+        double nsPerMessage = (System.nanoTime() - start) / (double) iterations;
+        System.out.printf("  %s: %,.0f ns/message%n", label, nsPerMessage);
+        return nsPerMessage;
+    }
+}
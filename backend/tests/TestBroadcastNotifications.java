@@ -0,0 +1,96 @@
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Test for broadcast notifications (one row per announcement, merged per user when read)
+ */
+public class TestBroadcastNotifications {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing broadcast notifications");
+        System.out.println("=".repeat(60));
+
+        File db = File.createTempFile("broadcasts", ".db");
+        db.deleteOnExit();
+        DatabaseConnectionPool pool = DatabaseConnectionPool.forPath(db.getAbsolutePath());
+        try (Connection conn = pool.write(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE users (id TEXT PRIMARY KEY, user_type TEXT NOT NULL)");
+            stmt.execute("INSERT INTO users VALUES ('alice', 'user'), ('bob', 'user'), ('staff', '館員')");
+        }
+        NotificationRepository repository = new NotificationRepository(pool);
+        List<String> broadcasts = Collections.synchronizedList(new ArrayList<>());
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        repository.addNotificationListener(new NotificationListener() {
+            @Override
+            public void onNotificationChanged(ChangeType type, String userId, Notification notification, int unreadDelta) {
+                events.add(type + " " + userId + " " + unreadDelta);
+            }
+
+            @Override
+            public void onBroadcast(String targetRole, Notification notification) {
+                broadcasts.add(targetRole + " " + notification.getId());
+            }
+        });
+
+        System.out.println("\n[Test 1] 公告只寫入一筆");
+        repository.createNotification(new Notification("alice", "borrow", "借閱成功", "《紅樓夢》", "/history"));
+        Notification all = repository.createBroadcast("all", "system", "系統公告", "週一閉館", null);
+        Notification staffOnly = repository.createBroadcast("館員", "system", "館員公告", "盤點", null);
+        check("公告 ID 為負數", all.getId() < 0 && staffOnly.getId() < 0 && all.getUserId() == null);
+        check("推送公告事件", broadcasts.equals(List.of("all " + all.getId(), "館員 " + staffOnly.getId())));
+        check("通知表沒有逐人寫入", count(pool, "notifications") == 1 && count(pool, "broadcast_receipts") == 0);
+
+        System.out.println("\n[Test 2] 讀取時合併公告");
+        List<Notification> alice = repository.getUserNotifications("alice", false, null, 10, 0);
+        check("一般使用者看到全體公告", alice.size() == 2 && containsId(alice, all.getId()) && !containsId(alice, staffOnly.getId()));
+        check("館員看到兩則公告", repository.getUserNotifications("staff", false, null, 10, 0).size() == 2);
+        check("未讀數包含公告", repository.getUnreadCount("alice") == 2 && repository.getUnreadCount("bob") == 1
+            && repository.getUnreadCount("staff") == 2);
+        check("依類型篩選與總數", repository.getTotalCount("alice", false, "system") == 1
+            && repository.getUserNotifications("alice", false, "borrow", 10, 0).size() == 1);
+        check("分頁", repository.getUserNotifications("alice", false, null, 1, 1).size() == 1);
+
+        System.out.println("\n[Test 3] 已讀與清除只影響該使用者");
+        check("標記公告已讀", repository.markAsRead(all.getId(), "alice"));
+        check("重複標記仍成功", repository.markAsRead(all.getId(), "alice") && events.equals(List.of(
+            "CREATED alice 1", "READ alice -1")));
+        check("看不到的公告不可標記", !repository.markAsRead(staffOnly.getId(), "bob"));
+        check("他人未讀不受影響", repository.getUnreadCount("alice") == 1 && repository.getUnreadCount("bob") == 1);
+        check("未讀篩選", repository.getUserNotifications("alice", true, null, 10, 0).size() == 1
+            && repository.getTotalCount("alice", true, null) == 1);
+
+        check("全部已讀包含公告", repository.markAllAsRead("staff") == 2 && repository.getUnreadCount("staff") == 0);
+        check("已讀公告仍在列表", repository.getUserNotifications("staff", false, null, 10, 0).get(0).isRead());
+
+        repository.clearNotifications("bob");
+        check("清除後公告隱藏", repository.getUserNotifications("bob", false, null, 10, 0).isEmpty()
+            && repository.getUnreadCount("bob") == 0 && repository.getUnreadCount("alice") == 1);
+
+        Notification later = repository.createBroadcast("all", "system", "新公告", "延長開放", null);
+        check("清除後的新公告仍可見", containsId(repository.getUserNotifications("bob", false, null, 10, 0), later.getId()));
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static int count(DatabaseConnectionPool pool, String table) throws SQLException {
+        try (Connection conn = pool.read(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getInt(1) : -1;
+        }
+    }
+
+    static boolean containsId(List<Notification> notifications, int id) {
+        return notifications.stream().anyMatch(n -> n.getId() == id);
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test for ChatAiClient (bounded in-flight calls, circuit breaker, token streaming)
+ * Runs against a local stub of the AI service's /chat endpoint
+ */
+public class TestChatAiClient {
+
+    private static volatile int stubStatus = 200;
+    private static volatile long stubDelayMs = 0;
+    private static volatile boolean stubStreamError = false;
+
+    private static final String[] STREAM_TOKENS = { "你好", "，", "歡迎", "光臨", "！" };
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing ChatAiClient");
+        System.out.println("=".repeat(60));
+
+        HttpServer stub = startStub();
+        String baseUrl = "http://localhost:" + stub.getAddress().getPort();
+
+        try {
+            testSuccess(baseUrl);
+            testInFlightLimit(baseUrl);
+            testCircuitBreaker(baseUrl);
+            testStreaming(baseUrl);
+            testStreamCancellation(baseUrl);
+        } finally {
+            stub.stop(0);
+        }
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testSuccess(String baseUrl) throws Exception {
+        System.out.println("\n[Test 1] 正常回應");
+        reset();
+        ChatAiClient client = new ChatAiClient(baseUrl, 4, 3, 60_000);
+
+        String reply = client.chatAsync("你好", new ArrayList<>(), "{\"hasData\":false}").get(5, TimeUnit.SECONDS);
+        check("回應內容", "stub reply".equals(reply));
+        check("記錄 upstream 延遲", client.getStats().stages.get(ChatAiClient.STAGE_UPSTREAM).count == 1);
+        check("熔斷器關閉", "CLOSED".equals(client.getStats().circuit));
+        client.shutdown();
+    }
+
+    static void testInFlightLimit(String baseUrl) throws Exception {
+        System.out.println("\n[Test 2] 同時請求上限");
+        reset();
+        stubDelayMs = 500;
+        ChatAiClient client = new ChatAiClient(baseUrl, 2, 100, 60_000);
+
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            calls.add(client.chatAsync("slow " + i, new ArrayList<>(), null));
+        }
+        int rejected = 0;
+        int answered = 0;
+        for (CompletableFuture<String> call : calls) {
+            try {
+                call.get(5, TimeUnit.SECONDS);
+                answered++;
+            } catch (ExecutionException e) {
+                if (ChatAiClient.unwrap(e) instanceof ChatAiClient.UnavailableException) {
+                    rejected++;
+                }
+            }
+        }
+        check("最多 2 個同時呼叫", answered == 2 && rejected == 3);
+        check("呼叫結束後釋放名額", client.getStats().inFlight == 0);
+        client.shutdown();
+    }
+
+    static void testCircuitBreaker(String baseUrl) throws Exception {
+        System.out.println("\n[Test 3] 熔斷器");
+        reset();
+        stubStatus = 500;
+        ChatAiClient client = new ChatAiClient(baseUrl, 4, 3, 300);
+
+        for (int i = 0; i < 3; i++) {
+            expectFailure(client.chatAsync("fail " + i, new ArrayList<>(), null), Exception.class);
+        }
+        check("連續失敗後開啟", "OPEN".equals(client.getStats().circuit));
+
+        long start = System.nanoTime();
+        expectFailure(client.chatAsync("skipped", new ArrayList<>(), null), ChatAiClient.UnavailableException.class);
+        check("開啟時立即失敗", (System.nanoTime() - start) / 1_000_000 < 50);
+
+        Thread.sleep(350);
+        stubStatus = 200;
+        String reply = client.chatAsync("probe", new ArrayList<>(), null).get(5, TimeUnit.SECONDS);
+        check("探測成功後關閉", "stub reply".equals(reply) && "CLOSED".equals(client.getStats().circuit));
+        client.shutdown();
+    }
+
+    static void testStreaming(String baseUrl) throws Exception {
+        System.out.println("\n[Test 4] 串流回應");
+        reset();
+        stubDelayMs = 100;  // Between tokens
+        ChatAiClient client = new ChatAiClient(baseUrl, 4, 3, 60_000);
+
+        List<Long> arrivals = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        String reply = client.streamAsync("你好", new ArrayList<>(), null,
+                token -> arrivals.add((System.nanoTime() - start) / 1_000_000))
+            .get(5, TimeUnit.SECONDS);
+        long totalMs = (System.nanoTime() - start) / 1_000_000;
+
+        check("完整內容", "你好，歡迎光臨！".equals(reply));
+        check("逐段收到 " + arrivals.size() + " 個片段", arrivals.size() == STREAM_TOKENS.length);
+        check("首字早於完成 (" + arrivals.get(0) + " ms / " + totalMs + " ms)", arrivals.get(0) < totalMs / 2);
+        check("記錄首字延遲", client.getStats().stages.get(ChatAiClient.STAGE_FIRST_TOKEN).count == 1);
+
+        stubStreamError = true;
+        expectFailure(client.streamAsync("error", new ArrayList<>(), null, token -> { }), Exception.class);
+        check("串流錯誤計入失敗", client.getStats().failures == 1);
+        client.shutdown();
+    }
+
+    static void testStreamCancellation(String baseUrl) throws Exception {
+        System.out.println("\n[Test 5] 用戶端中斷串流");
+        reset();
+        stubDelayMs = 200;
+        ChatAiClient client = new ChatAiClient(baseUrl, 4, 1, 60_000);
+
+        CompletableFuture<String> call = client.streamAsync("bye", new ArrayList<>(), null, token -> {
+            throw new java.io.IOException("Broken pipe");
+        });
+        expectFailure(call, CancellationException.class);
+        check("釋放名額", client.getStats().inFlight == 0);
+        check("不觸發熔斷", "CLOSED".equals(client.getStats().circuit) && client.getStats().cancelled == 1);
+        client.shutdown();
+    }
+
+    // ===== Helpers =====
+
+    static HttpServer startStub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/chat", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(stubDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"message\":\"stub reply\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(stubStatus, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.createContext("/chat/stream", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                if (stubStreamError) {
+                    os.write("{\"token\":\"partial\"}\n{\"error\":\"model crashed\"}\n".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                for (String token : STREAM_TOKENS) {
+                    os.write(("{\"token\":\"" + token + "\"}\n").getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                    Thread.sleep(stubDelayMs);
+                }
+                os.write("{\"done\":true}\n".getBytes(StandardCharsets.UTF_8));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (java.io.IOException e) {
+                // Client cancelled the stream
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    static void reset() {
+        stubStatus = 200;
+        stubDelayMs = 0;
+        stubStreamError = false;
+    }
+
+    static void expectFailure(CompletableFuture<String> call, Class<? extends Throwable> type) throws Exception {
+        try {
+            call.get(5, TimeUnit.SECONDS);
+            throw new AssertionError("Expected failure: " + type.getSimpleName());
+        } catch (ExecutionException | CancellationException e) {
+            if (!type.isInstance(ChatAiClient.unwrap(e))) {
+                throw new AssertionError("Expected " + type.getSimpleName() + " but got " + ChatAiClient.unwrap(e));
+            }
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import java.util.*;
+
+/**
+ * Test for ChatAnswerCache (key scoping, invalidation by version, TTL and LRU bounds)
+ */
+public class TestChatAnswerCache {
+
+    private static final Set<QuestionClassifier.QuestionType> RULES =
+        EnumSet.of(QuestionClassifier.QuestionType.LIBRARY_RULES);
+    private static final Set<QuestionClassifier.QuestionType> HISTORY =
+        EnumSet.of(QuestionClassifier.QuestionType.BORROW_HISTORY);
+    private static final Set<QuestionClassifier.QuestionType> SEARCH =
+        EnumSet.of(QuestionClassifier.QuestionType.BOOK_SEARCH);
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing ChatAnswerCache");
+        System.out.println("=".repeat(60));
+
+        testFaqSharedAcrossUsers();
+        testUserSpecificInvalidation();
+        testCatalogInvalidation();
+        testBounds();
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testFaqSharedAcrossUsers() {
+        System.out.println("\n[Test 1] 常見問題跨使用者共用");
+        ChatAnswerCache cache = new ChatAnswerCache(new LibraryRulesRepository(), 60_000, 100);
+
+        String key = cache.keyFor("alice", "借書期限是多久？", RULES, "[]");
+        check("首次查詢未命中", cache.get(key) == null);
+        cache.put(key, "14 天");
+
+        check("標點與空白不影響", "14 天".equals(cache.get(cache.keyFor("bob", "借書期限 是多久?", RULES, "[]"))));
+        check("不同對話歷史不共用", cache.get(cache.keyFor("bob", "借書期限是多久？", RULES, "[{\"role\":\"user\"}]")) == null);
+        check("命中率統計", cache.getStats().hits == 1 && cache.getStats().misses == 2);
+    }
+
+    static void testUserSpecificInvalidation() {
+        System.out.println("\n[Test 2] 借閱歷史問題依使用者失效");
+        ChatAnswerCache cache = new ChatAnswerCache(new LibraryRulesRepository(), 60_000, 100);
+
+        String alice = cache.keyFor("alice", "我借過哪些書", HISTORY, "[]");
+        cache.put(alice, "你借過《紅樓夢》");
+        check("其他使用者不共用", cache.get(cache.keyFor("bob", "我借過哪些書", HISTORY, "[]")) == null);
+        check("同一使用者命中", cache.get(cache.keyFor("alice", "我借過哪些書", HISTORY, "[]")) != null);
+
+        cache.onBookChanged(BookChangeListener.ChangeType.BORROWED, "013", "bob");
+        check("他人借書不影響", cache.get(cache.keyFor("alice", "我借過哪些書", HISTORY, "[]")) != null);
+
+        cache.onBookChanged(BookChangeListener.ChangeType.BORROWED, "001", "alice");
+        check("本人借書後失效", cache.get(cache.keyFor("alice", "我借過哪些書", HISTORY, "[]")) == null);
+
+        cache.put(alice, "你正在借《紅樓夢》");
+        cache.onBookChanged(BookChangeListener.ChangeType.OVERDUE, "001", "alice");
+        check("本人借閱逾期後失效", cache.get(cache.keyFor("alice", "我借過哪些書", HISTORY, "[]")) == null);
+    }
+
+    static void testCatalogInvalidation() {
+        System.out.println("\n[Test 3] 書籍問題依館藏版本失效");
+        ChatAnswerCache cache = new ChatAnswerCache(new LibraryRulesRepository(), 60_000, 100);
+
+        cache.put(cache.keyFor("alice", "有什麼 Python 的書", SEARCH, "[]"), "Python 資料科學入門");
+        cache.put(cache.keyFor("alice", "借書期限是多久？", RULES, "[]"), "14 天");
+
+        cache.onBookChanged(BookChangeListener.ChangeType.OVERDUE, "002", "bob");
+        check("逾期不影響書籍問題", cache.get(cache.keyFor("alice", "有什麼 Python 的書", SEARCH, "[]")) != null);
+
+        cache.onBookChanged(BookChangeListener.ChangeType.AVAILABILITY, "002", null);
+        check("館藏變動後書籍問題失效", cache.get(cache.keyFor("alice", "有什麼 Python 的書", SEARCH, "[]")) == null);
+        check("規則問題不受影響", cache.get(cache.keyFor("alice", "借書期限是多久？", RULES, "[]")) != null);
+    }
+
+    static void testBounds() throws Exception {
+        System.out.println("\n[Test 4] TTL 與容量上限");
+        ChatAnswerCache cache = new ChatAnswerCache(new LibraryRulesRepository(), 100, 2);
+
+        String a = cache.keyFor("u", "問題一", RULES, "[]");
+        String b = cache.keyFor("u", "問題二", RULES, "[]");
+        String c = cache.keyFor("u", "問題三", RULES, "[]");
+        cache.put(a, "A");
+        cache.put(b, "B");
+        cache.get(a);        // a is now most recently used
+        cache.put(c, "C");   // evicts b
+        check("淘汰最久未使用", cache.get(b) == null && cache.get(a) != null && cache.getStats().evictions == 1);
+
+        Thread.sleep(150);
+        check("過期後未命中", cache.get(a) == null && cache.getStats().expirations >= 1);
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
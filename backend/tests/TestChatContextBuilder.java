@@ -0,0 +1,114 @@
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.*;
+
+/**
+ * Test for ChatContextBuilder (relevance ranking and per-section budgets)
+ */
+public class TestChatContextBuilder {
+
+    public static void main(String[] args) {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing ChatContextBuilder");
+        System.out.println("=".repeat(60));
+
+        testRelevantBooksFirst();
+        testSizeIndependentOfCatalog();
+        testRulesAndHistory();
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testRelevantBooksFirst() {
+        System.out.println("\n[Test 1] 相關書籍優先");
+        List<BookInfo> books = catalog(500);
+        books.add(new BookInfo("py1", "Python 資料科學入門", "王小明", "碁峰", "用 Python 做資料分析"));
+        ChatContextBuilder builder = new ChatContextBuilder(index(books), 1500, 1000, 1000, 120);
+
+        JsonObject json = parse(builder.toJson(context(books), "有什麼 Python 的書？"));
+        JsonArray listed = json.getAsJsonArray("availableBooks");
+        check("Python 書排第一", "py1".equals(listed.get(0).getAsJsonObject().get("id").getAsString()));
+        check("只列出部分書籍 (" + listed.size() + ")", listed.size() < books.size());
+        check("回報書籍總數", json.get("availableBooksTotal").getAsInt() == books.size());
+    }
+
+    static void testSizeIndependentOfCatalog() {
+        System.out.println("\n[Test 2] 上下文長度不隨館藏成長");
+        int small = sizeFor(100);
+        int large = sizeFor(50_000);
+        System.out.println("    100 books: " + small + " chars, 50000 books: " + large + " chars");
+        check("長度固定", Math.abs(large - small) < 200);
+        check("不超過預算", large < 2000 + 200);
+    }
+
+    static void testRulesAndHistory() {
+        System.out.println("\n[Test 3] 規則與借閱記錄排序");
+        ChatContext context = new ChatContext();
+        context.setLibraryRules(Arrays.asList(
+            new LibraryRulesRepository.LibraryRule("開館時間", "圖書館幾點開門？", "週一至週五 8:00 開館。"),
+            new LibraryRulesRepository.LibraryRule("借閱規則", "逾期罰款多少？", "每本每天 5 元。"),
+            new LibraryRulesRepository.LibraryRule("借閱規則", "借書期限是多久？", "一般書籍借期為 14 天。")));
+        List<BorrowHistory> history = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            history.add(new BorrowHistory("u1", "b" + i, "小說 " + i, "2024-01-01", "2024-01-15"));
+        }
+        history.add(new BorrowHistory("u1", "b999", "紅樓夢", "2023-05-01", "2023-05-15"));
+        context.setBorrowHistory(history);
+
+        ChatContextBuilder builder = new ChatContextBuilder(null, 1000, 120, 600, 120);
+        JsonObject json = parse(builder.toJson(context, "我借過紅樓夢嗎？逾期罰款怎麼算"));
+
+        JsonArray rules = json.getAsJsonArray("libraryRules");
+        check("相關規則優先", rules.get(0).getAsJsonObject().get("question").getAsString().contains("罰款"));
+        JsonArray records = json.getAsJsonArray("borrowHistory");
+        check("相關記錄優先", "b999".equals(records.get(0).getAsJsonObject().get("bookId").getAsString()));
+        check("記錄受預算限制 (" + records.size() + ")", records.size() < history.size());
+    }
+
+    // ===== Helpers =====
+
+    static int sizeFor(int bookCount) {
+        List<BookInfo> books = catalog(bookCount);
+        ChatContextBuilder builder = new ChatContextBuilder(index(books), 2000, 1000, 1000, 120);
+        return builder.toJson(context(books), "推薦一些程式設計的書").length();
+    }
+
+    static List<BookInfo> catalog(int count) {
+        List<BookInfo> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            books.add(new BookInfo(String.format("%05d", i), "程式設計 第 " + i + " 冊", "作者 " + (i % 50),
+                "出版社 " + (i % 7), "第 " + i + " 冊的內容簡介，介紹程式設計的基本觀念與實作。"));
+        }
+        return books;
+    }
+
+    static BookSearchIndex index(List<BookInfo> books) {
+        Map<String, BookInfo> byId = new HashMap<>();
+        for (BookInfo book : books) {
+            byId.put(book.getId(), book);
+        }
+        return new BookSearchIndex(() -> books, byId::get);
+    }
+
+    static ChatContext context(List<BookInfo> books) {
+        ChatContext context = new ChatContext();
+        context.setAvailableBooks(books);
+        context.setStats(new BookDatabaseRepository.LibraryStats(books.size(), books.size(), 0));
+        return context;
+    }
+
+    static JsonObject parse(String json) {
+        return JsonParser.parseString(json).getAsJsonObject();
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
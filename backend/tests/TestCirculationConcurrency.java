@@ -0,0 +1,213 @@
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency stress test for CirculationService (no double loans, loan limit holds under contention)
+ */
+public class TestCirculationConcurrency {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing CirculationService under contention");
+        System.out.println("=".repeat(60));
+
+        File db = File.createTempFile("circulation", ".db");
+        db.delete();
+        db.deleteOnExit();
+        BookDatabaseRepository books = new BookDatabaseRepository(db.getAbsolutePath());
+        books.initialize();
+        DatabaseConnectionPool pool = books.getPool();
+        new BookRatingRepository(pool);
+        new BookReviewRepository(pool);
+        BorrowHistoryRepository history = new BorrowHistoryRepository(pool);
+        OutboxRepository outbox = new OutboxRepository(pool);
+        CirculationService circulation = new CirculationService(books, history, new LibraryRulesRepository(), outbox, null);
+
+        AtomicInteger loanEvents = new AtomicInteger();
+        history.addBookChangeListener((type, bookId, userId) -> {
+            if (type == BookChangeListener.ChangeType.BORROWED) {
+                loanEvents.incrementAndGet();
+            } else if (type == BookChangeListener.ChangeType.RETURNED) {
+                loanEvents.decrementAndGet();
+            }
+        });
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            testSameBook(circulation, executor, pool);
+            testLoanLimit(circulation, executor, pool);
+            testDoubleReturn(circulation, executor, pool);
+            testChurn(circulation, executor, books, pool, outbox, loanEvents);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testSameBook(CirculationService circulation, ExecutorService executor,
+                             DatabaseConnectionPool pool) throws Exception {
+        System.out.println("\n[Test 1] 64 位使用者同時借同一本書");
+        Map<CirculationService.Outcome, Integer> outcomes = race(executor, 64,
+            i -> circulation.borrow("reader" + i, "001").outcome);
+        System.out.println("    " + outcomes);
+        check("只有一人成功", outcomes.getOrDefault(CirculationService.Outcome.SUCCESS, 0) == 1
+            && outcomes.getOrDefault(CirculationService.Outcome.NOT_AVAILABLE, 0) == 63);
+        check("只有一筆借閱紀錄", activeLoans(pool, "001") == 1 && !isAvailable(pool, "001"));
+    }
+
+    static void testLoanLimit(CirculationService circulation, ExecutorService executor,
+                              DatabaseConnectionPool pool) throws Exception {
+        System.out.println("\n[Test 2] 同一使用者同時借 10 本書（上限 3 本）");
+        String[] bookIds = { "002", "003", "004", "005", "006", "007", "008", "009", "010", "011" };
+        Map<CirculationService.Outcome, Integer> outcomes = race(executor, bookIds.length,
+            i -> circulation.borrow("greedy", bookIds[i]).outcome);
+        System.out.println("    " + outcomes);
+        check("只成功 3 本", outcomes.getOrDefault(CirculationService.Outcome.SUCCESS, 0) == 3
+            && outcomes.getOrDefault(CirculationService.Outcome.LIMIT_REACHED, 0) == 7);
+        int stillAvailable = 0;
+        for (String bookId : bookIds) {
+            if (isAvailable(pool, bookId)) {
+                stillAvailable++;
+            }
+        }
+        check("被拒絕的書已回滾為可借", stillAvailable == 7 && userLoans(pool, "greedy") == 3);
+    }
+
+    static void testDoubleReturn(CirculationService circulation, ExecutorService executor,
+                                 DatabaseConnectionPool pool) throws Exception {
+        System.out.println("\n[Test 3] 同一筆借閱同時歸還 16 次");
+        check("借閱", circulation.borrow("returner", "012").isSuccess());
+        Map<CirculationService.Outcome, Integer> outcomes = race(executor, 16,
+            i -> circulation.returnBook(i % 4 == 0 ? "someone-else" : "returner", "012").outcome);
+        System.out.println("    " + outcomes);
+        check("只歸還一次", outcomes.getOrDefault(CirculationService.Outcome.SUCCESS, 0) == 1
+            && outcomes.getOrDefault(CirculationService.Outcome.NOT_BORROWER, 0)
+               + outcomes.getOrDefault(CirculationService.Outcome.NOT_BORROWED, 0) == 15);
+        check("書已可借", isAvailable(pool, "012") && activeLoans(pool, "012") == 0);
+    }
+
+    static void testChurn(CirculationService circulation, ExecutorService executor, BookDatabaseRepository books,
+                          DatabaseConnectionPool pool, OutboxRepository outbox, AtomicInteger loanEvents) throws Exception {
+        System.out.println("\n[Test 4] 24 位使用者對 6 本書隨機借還");
+        String[] bookIds = { "013", "014", "015", "016", "017", "018" };
+        int opsPerUser = 300;
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger returned = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int eventsBefore = outbox.getBacklog(System.currentTimeMillis()).pending;
+
+        long start = System.nanoTime();
+        race(executor, 24, user -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int op = 0; op < opsPerUser; op++) {
+                String bookId = bookIds[random.nextInt(bookIds.length)];
+                boolean borrow = random.nextBoolean();
+                CirculationService.Result result = borrow
+                    ? circulation.borrow("churn" + user, bookId)
+                    : circulation.returnBook("churn" + user, bookId);
+                if (result.outcome == CirculationService.Outcome.FAILED) {
+                    failed.incrementAndGet();
+                } else if (result.isSuccess()) {
+                    (borrow ? borrowed : returned).incrementAndGet();
+                }
+            }
+            return CirculationService.Outcome.SUCCESS;
+        });
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("    " + (24 * opsPerUser) + " ops in " + elapsedMs + " ms: "
+            + borrowed.get() + " borrows, " + returned.get() + " returns");
+
+        check("沒有資料庫錯誤", failed.get() == 0);
+        boolean consistent = true;
+        int active = 0;
+        for (String bookId : bookIds) {
+            int loans = activeLoans(pool, bookId);
+            active += loans;
+            consistent &= loans <= 1 && isAvailable(pool, bookId) == (loans == 0)
+                && books.findById(bookId).isAvailable() == (loans == 0);
+        }
+        check("每本書最多一筆借閱，且與可借狀態、快取一致", consistent);
+        check("借出減歸還等於借閱中", borrowed.get() - returned.get() == active);
+        boolean withinLimit = true;
+        for (int user = 0; user < 24; user++) {
+            withinLimit &= userLoans(pool, "churn" + user) <= LibraryRulesRepository.MAX_ACTIVE_LOANS;
+        }
+        check("沒有人超過借閱上限", withinLimit);
+        check("每次成功都有一筆事件", outbox.getBacklog(System.currentTimeMillis()).pending - eventsBefore
+            == borrowed.get() + returned.get());
+        check("變更通知只在提交後發出", loanEvents.get() == activeLoansTotal(pool));
+    }
+
+    // ===== Helpers =====
+
+    interface Attempt {
+        CirculationService.Outcome run(int index) throws Exception;
+    }
+
+    /**
+     * Run n attempts released at the same moment, tally their outcomes
+     */
+    static Map<CirculationService.Outcome, Integer> race(ExecutorService executor, int n, Attempt attempt)
+            throws Exception {
+        CountDownLatch ready = new CountDownLatch(n);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<CirculationService.Outcome>> futures = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                ready.countDown();
+                go.await();
+                return attempt.run(index);
+            }));
+        }
+        ready.await();
+        go.countDown();
+
+        Map<CirculationService.Outcome, Integer> outcomes = new EnumMap<>(CirculationService.Outcome.class);
+        for (Future<CirculationService.Outcome> future : futures) {
+            outcomes.merge(future.get(60, TimeUnit.SECONDS), 1, Integer::sum);
+        }
+        return outcomes;
+    }
+
+    static int activeLoans(DatabaseConnectionPool pool, String bookId) throws SQLException {
+        return count(pool, "SELECT COUNT(*) FROM borrow_history WHERE book_id = ? AND status IN ('borrowing', 'overdue')", bookId);
+    }
+
+    static int userLoans(DatabaseConnectionPool pool, String userId) throws SQLException {
+        return count(pool, "SELECT COUNT(*) FROM borrow_history WHERE user_id = ? AND status IN ('borrowing', 'overdue')", userId);
+    }
+
+    static int activeLoansTotal(DatabaseConnectionPool pool) throws SQLException {
+        return count(pool, "SELECT COUNT(*) FROM borrow_history WHERE status IN ('borrowing', 'overdue') AND ? = ?", "1");
+    }
+
+    static boolean isAvailable(DatabaseConnectionPool pool, String bookId) throws SQLException {
+        return count(pool, "SELECT is_available FROM books WHERE id = ?", bookId) == 1;
+    }
+
+    static int count(DatabaseConnectionPool pool, String sql, String param) throws SQLException {
+        try (Connection conn = pool.read(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, param);
+            if (pstmt.getParameterMetaData().getParameterCount() > 1) {
+                pstmt.setString(2, param);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
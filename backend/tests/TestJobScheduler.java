@@ -0,0 +1,175 @@
+import java.io.File;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for CronSchedule and JobScheduler (catch-up after downtime, no overlap, failure retry)
+ */
+public class TestJobScheduler {
+
+    private static final ZoneId TAIPEI = ZoneId.of("Asia/Taipei");
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing JobScheduler");
+        System.out.println("=".repeat(60));
+
+        testCron();
+        testCatchUp();
+        testNoOverlap();
+        testFailureRetry();
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testCron() {
+        System.out.println("\n[Test 1] Cron 下次執行時間");
+        ZonedDateTime mondayMorning = ZonedDateTime.of(2026, 3, 2, 8, 30, 15, 0, TAIPEI);
+
+        check("每天 9:00", new CronSchedule("0 9 * * *").next(mondayMorning)
+            .equals(ZonedDateTime.of(2026, 3, 2, 9, 0, 0, 0, TAIPEI)));
+        check("9:00 已過則明天", new CronSchedule("0 9 * * *").next(mondayMorning.withHour(9))
+            .equals(ZonedDateTime.of(2026, 3, 3, 9, 0, 0, 0, TAIPEI)));
+        check("每 10 分鐘", new CronSchedule("*/10 * * * *").next(mondayMorning)
+            .equals(ZonedDateTime.of(2026, 3, 2, 8, 40, 0, 0, TAIPEI)));
+        check("週末", new CronSchedule("0 10 * * 6,0").next(mondayMorning)
+            .equals(ZonedDateTime.of(2026, 3, 7, 10, 0, 0, 0, TAIPEI)));
+        check("每月 1 號或週三", new CronSchedule("0 0 1 * 3").next(mondayMorning)
+            .equals(ZonedDateTime.of(2026, 3, 4, 0, 0, 0, 0, TAIPEI)));
+
+        // Spring forward (2026-03-08 02:00 -> 03:00 in New York): 9:00 local stays 9:00
+        ZonedDateTime beforeDst = ZonedDateTime.of(2026, 3, 7, 9, 0, 0, 0, NEW_YORK);
+        ZonedDateTime afterDst = new CronSchedule("0 9 * * *").next(beforeDst);
+        check("日光節約時間後仍是 9:00", afterDst.getHour() == 9
+            && Duration.between(beforeDst, afterDst).toHours() == 23);
+
+        check("格式錯誤", invalid("0 9 * *") && invalid("61 * * * *") && invalid("a b c d e"));
+    }
+
+    static void testCatchUp() throws Exception {
+        System.out.println("\n[Test 2] 停機期間錯過的工作於啟動時補跑");
+        JobRunRepository repository = newRepository();
+        Clock clock = Clock.fixed(Instant.parse("2026-03-05T02:00:00Z"), TAIPEI);  // 10:00 Taipei
+
+        // Last successful 9:00 run was three days ago
+        long threeDaysAgo = ZonedDateTime.of(2026, 3, 2, 9, 0, 0, 0, TAIPEI).toInstant().toEpochMilli();
+        repository.recordRun("daily", threeDaysAgo, threeDaysAgo, threeDaysAgo + 5, true, "ok");
+        long today = ZonedDateTime.of(2026, 3, 5, 9, 0, 0, 0, TAIPEI).toInstant().toEpochMilli();
+        repository.recordRun("up-to-date", today, today, today + 5, true, "ok");
+
+        CountDownLatch ran = new CountDownLatch(1);
+        AtomicInteger upToDateRuns = new AtomicInteger();
+        JobScheduler scheduler = new JobScheduler(repository, 2, 60_000, clock);
+        scheduler.register("daily", "0 9 * * *", 0, () -> { ran.countDown(); return "caught up"; });
+        scheduler.register("up-to-date", "0 9 * * *", 0, upToDateRuns::incrementAndGet);
+        scheduler.start();
+        try {
+            check("錯過的工作立即補跑一次", ran.await(5, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            check("已執行的工作不補跑", upToDateRuns.get() == 0);
+
+            JobScheduler.JobStats daily = stats(scheduler, "daily");
+            check("補跑計數與持久化的執行次數", daily.caughtUp == 1 && daily.runs == 2 && "success".equals(daily.lastStatus));
+            check("下次執行為明天 9:00", daily.nextRunAt.startsWith("2026-03-06T09:00"));
+            check("執行紀錄已寫入",
+                repository.loadAll().get("daily").lastScheduledAt
+                    == ZonedDateTime.of(2026, 3, 3, 9, 0, 0, 0, TAIPEI).toInstant().toEpochMilli());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    static void testNoOverlap() throws Exception {
+        System.out.println("\n[Test 3] 同一工作不重疊執行");
+        JobScheduler scheduler = new JobScheduler(newRepository(), 2, 60_000, Clock.system(TAIPEI));
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        scheduler.register("slow", "0 0 1 1 *", 0, () -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            release.await(5, TimeUnit.SECONDS);
+            concurrent.decrementAndGet();
+            return null;
+        });
+        scheduler.start();
+        try {
+            check("手動執行", scheduler.runNow("slow"));
+            Thread.sleep(100);
+            check("執行中再次觸發被略過", !scheduler.runNow("slow") && stats(scheduler, "slow").skipped == 1);
+            check("未知工作", !scheduler.runNow("nope") && !scheduler.hasJob("nope"));
+            release.countDown();
+            Thread.sleep(200);
+            check("最多同時一個", maxConcurrent.get() == 1 && !stats(scheduler, "slow").running);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    static void testFailureRetry() throws Exception {
+        System.out.println("\n[Test 4] 失敗的工作記錄錯誤並重試");
+        JobRunRepository repository = newRepository();
+        Clock clock = Clock.fixed(Instant.parse("2026-03-05T02:00:00Z"), TAIPEI);
+        long yesterday = ZonedDateTime.of(2026, 3, 4, 9, 0, 0, 0, TAIPEI).toInstant().toEpochMilli();
+        repository.recordRun("flaky", yesterday, yesterday, yesterday, true, "ok");
+
+        AtomicInteger attempts = new AtomicInteger();
+        JobScheduler scheduler = new JobScheduler(repository, 1, 100, clock);
+        scheduler.register("flaky", "0 9 * * *", 0, () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("database locked");
+            }
+            return "ok";
+        });
+        scheduler.start();
+        try {
+            Thread.sleep(1000);
+            JobScheduler.JobStats flaky = stats(scheduler, "flaky");
+            check("失敗後重試成功", attempts.get() == 2 && "success".equals(flaky.lastStatus));
+            check("失敗次數", flaky.failures == 1);
+            JobRunRepository.JobRun run = repository.loadAll().get("flaky");
+            check("失敗不推進已完成的排程時間",
+                run.failureCount == 1 && run.lastScheduledAt
+                    == ZonedDateTime.of(2026, 3, 5, 9, 0, 0, 0, TAIPEI).toInstant().toEpochMilli());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    // ===== Helpers =====
+
+    static JobRunRepository newRepository() throws Exception {
+        File db = File.createTempFile("jobs", ".db");
+        db.deleteOnExit();
+        return new JobRunRepository(DatabaseConnectionPool.forPath(db.getAbsolutePath()));
+    }
+
+    static JobScheduler.JobStats stats(JobScheduler scheduler, String name) {
+        for (JobScheduler.JobStats stats : scheduler.getStats()) {
+            if (stats.name.equals(name)) {
+                return stats;
+            }
+        }
+        throw new AssertionError("No job " + name);
+    }
+
+    static boolean invalid(String expression) {
+        try {
+            new CronSchedule(expression);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
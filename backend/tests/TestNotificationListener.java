@@ -0,0 +1,66 @@
+import java.io.File;
+import java.util.*;
+
+/**
+ * Test for NotificationRepository change events (what the WebSocket channel pushes)
+ */
+public class TestNotificationListener {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing NotificationRepository listeners");
+        System.out.println("=".repeat(60));
+
+        File db = File.createTempFile("notifications", ".db");
+        db.deleteOnExit();
+        NotificationRepository repository = new NotificationRepository("jdbc:sqlite:" + db.getAbsolutePath());
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        List<Notification> created = Collections.synchronizedList(new ArrayList<>());
+        repository.addNotificationListener((type, userId, notification, unreadDelta) -> {
+            events.add(type + " " + userId + " " + unreadDelta);
+            if (notification != null) {
+                created.add(notification);
+            }
+        });
+
+        System.out.println("\n[Test 1] 新通知推送並帶有 ID");
+        repository.createNotification(new Notification("alice", "borrow", "借閱成功", "《紅樓夢》", "/history"));
+        check("單筆建立", events.equals(List.of("CREATED alice 1")));
+        Notification single = created.get(0);
+        check("帶有 ID 與建立時間", single.getId() > 0 && single.getCreatedAt() != null);
+
+        repository.batchCreateNotifications(Arrays.asList(
+            new Notification("alice", "system", "公告", "閉館", null),
+            new Notification("bob", "system", "公告", "閉館", null)));
+        check("批次建立逐筆推送", events.size() == 3 && events.get(2).equals("CREATED bob 1"));
+        check("批次 ID 與資料庫一致",
+            created.get(1).getId() == single.getId() + 1 && created.get(2).getId() == single.getId() + 2
+                && repository.getUserNotifications("bob", false, null, 10, 0).get(0).getId() == created.get(2).getId());
+
+        System.out.println("\n[Test 2] 已讀與清除推送未讀變化");
+        events.clear();
+        check("標記已讀", repository.markAsRead(single.getId(), "alice"));
+        check("重複標記仍成功但不推送", repository.markAsRead(single.getId(), "alice")
+            && events.equals(List.of("READ alice -1")));
+        check("他人通知不可標記", !repository.markAsRead(single.getId(), "bob"));
+
+        repository.markAllAsRead("alice");
+        repository.markAllAsRead("alice");
+        check("全部已讀只推送一次", events.equals(List.of("READ alice -1", "READ alice -1")));
+
+        repository.clearNotifications("bob");
+        check("清除推送", events.get(events.size() - 1).equals("CLEARED bob 0"));
+        check("未讀數一致", repository.getUnreadCount("alice") == 0 && repository.getUnreadCount("bob") == 0);
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
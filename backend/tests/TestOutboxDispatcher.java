@@ -0,0 +1,113 @@
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test for the transactional outbox (OutboxRepository + OutboxDispatcher)
+ */
+public class TestOutboxDispatcher {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing OutboxDispatcher");
+        System.out.println("=".repeat(60));
+
+        File db = File.createTempFile("outbox", ".db");
+        db.deleteOnExit();
+        DatabaseConnectionPool pool = DatabaseConnectionPool.forPath(db.getAbsolutePath());
+        OutboxRepository outbox = new OutboxRepository(pool);
+
+        System.out.println("\n[Test 1] 事件與寫入同一交易");
+        pool.inTransaction(conn -> outbox.append("test", "rolled back") && false);
+        check("回滾後沒有事件", outbox.getBacklog(System.currentTimeMillis()).pending == 0);
+        pool.inTransaction(conn -> outbox.append("test", "committed"));
+        check("提交後有事件", outbox.getBacklog(System.currentTimeMillis()).pending == 1);
+
+        System.out.println("\n[Test 2] 批次投遞");
+        OutboxDispatcher dispatcher = new OutboxDispatcher(outbox, 100, 10_000, 100, 3);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.register("test", events -> batchSizes.add(events.size()));
+        for (int i = 0; i < 4; i++) {
+            outbox.append("test", "event " + i);
+        }
+        check("一次取出全部", dispatcher.dispatchOnce() == 5);
+        check("同類型一次呼叫", batchSizes.equals(List.of(5)));
+        OutboxDispatcher.DispatcherStats stats = dispatcher.getStats();
+        check("已投遞且無積壓", stats.delivered == 5 && stats.pending == 0 && stats.batches == 1);
+        check("沒有待處理事件", dispatcher.dispatchOnce() == 0);
+
+        System.out.println("\n[Test 3] 失敗重試，不影響同批其他事件");
+        List<String> deliveredPayloads = Collections.synchronizedList(new ArrayList<>());
+        dispatcher.register("flaky", events -> {
+            for (OutboxRepository.OutboxEvent event : events) {
+                if (event.payload.equals("bad")) {
+                    throw new IllegalStateException("cannot deliver");
+                }
+            }
+            for (OutboxRepository.OutboxEvent event : events) {
+                deliveredPayloads.add(event.payload);
+            }
+        });
+        outbox.append("flaky", "good 1");
+        outbox.append("flaky", "bad");
+        outbox.append("flaky", "good 2");
+        outbox.append("unknown", "no handler");
+        dispatcher.dispatchOnce();
+        check("正常事件逐筆投遞", deliveredPayloads.equals(List.of("good 1", "good 2")));
+        check("失敗事件延後重試", outbox.getBacklog(System.currentTimeMillis()).pending == 2
+            && dispatcher.dispatchOnce() == 0);
+
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(450);
+            dispatcher.dispatchOnce();
+        }
+        stats = dispatcher.getStats();
+        check("達到上限後放棄", stats.pending == 0 && stats.dead == 2 && stats.deadLettered == 2);
+        check("失敗次數", stats.failures == 6);
+
+        System.out.println("\n[Test 4] 背景執行緒在提交後立即投遞");
+        CountDownLatch latch = new CountDownLatch(1);
+        dispatcher.register("wake", events -> latch.countDown());
+        dispatcher.start();
+        Thread.sleep(100);
+        long start = System.nanoTime();
+        pool.inTransaction(conn -> outbox.append("wake", "now"));
+        dispatcher.wakeUp();
+        check("不需等待輪詢", latch.await(2, TimeUnit.SECONDS));
+        System.out.println("    delivered in " + (System.nanoTime() - start) / 1_000_000 + " ms (poll 10000 ms)");
+        dispatcher.shutdown();
+
+        System.out.println("\n[Test 5] 借閱通知事件");
+        NotificationRepository notifications = new NotificationRepository(pool);
+        NotificationService service = new NotificationService(notifications, null, null, null);
+        OutboxDispatcher notifier = new OutboxDispatcher(outbox, 100, 10_000, 10, 3);
+        service.registerOutboxHandlers(notifier);
+        AtomicInteger created = new AtomicInteger();
+        notifications.addNotificationListener((type, userId, notification, unreadDelta) -> created.incrementAndGet());
+        pool.inTransaction(conn ->
+            outbox.append(NotificationService.EVENT_BOOK_BORROWED,
+                NotificationService.bookBorrowedPayload("alice", "紅樓夢", "2026-03-01", "2026-03-15"))
+            && outbox.append(NotificationService.EVENT_BOOK_RETURNED,
+                NotificationService.bookReturnedPayload("bob", "水滸傳", 20, true)));
+        notifier.dispatchOnce();
+        List<Notification> alice = notifications.getUserNotifications("alice", false, null, 10, 0);
+        List<Notification> bob = notifications.getUserNotifications("bob", false, null, 10, 0);
+        check("借閱通知", alice.size() == 1 && alice.get(0).getMessage().contains("紅樓夢")
+            && alice.get(0).getMessage().contains("2026-03-15"));
+        check("歸還通知", bob.size() == 1 && bob.get(0).getMessage().contains("已逾期"));
+        check("推送事件", created.get() == 2);
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
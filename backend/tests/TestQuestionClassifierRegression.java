@@ -0,0 +1,89 @@
+import java.util.*;
+
+/**
+ * Regression test for QuestionClassifier
+ * The compiled keyword automaton must classify exactly like the previous
+ * String.contains implementation (LegacyQuestionClassifier), on a corpus of
+ * real questions plus random messages built from keyword fragments.
+ */
+public class TestQuestionClassifierRegression {
+
+    private static final String[] CORPUS = {
+        "", "你好", "謝謝你", "Hello", "今天天氣如何？",
+        "我借過哪些書？", "我借了什麼", "查看借閱記錄", "我的借阅历史", "我之前借過《三體》嗎",
+        "有什麼書推薦？", "有哪些 Python 的書", "推荐几本小说", "我想找關於 AI 的書", "館藏有多少書籍",
+        "《紅樓夢》可以借嗎？", "這本書還有嗎", "有沒有《哈利波特》", "能借《百年孤寂》嗎", "》反過來《",
+        "借書期限是多久？", "怎麼借書", "如何續借", "逾期罰款多少", "可以借幾本？",
+        "什麼時候要還書", "還書流程", "圖書館的規則有哪些", "借多少天", "什么时候还",
+        "我借了《三體》，什麼時候要還？還可以續借嗎？", "推薦一本書，然後告訴我借閱規則",
+        "PYTHON 書籍", "Java 有关的书", "可不可以借兩本", "能否延期歸還", "辦法", "方法論的書",
+        "在哪裡借書", "哪裡可以還书", "借", "書", "《", "》", "何時"
+    };
+
+    private static final String[] FILLER = {
+        "我", "的", "嗎", "？", "，", " ", "a", "B", "Python", "天", "本", "了", "有", "在", "能", "可",
+        "看", "找", "時", "么", "這", "那", "想", "查", "閱", "阅", "借", "書", "书", "還", "还", "過"
+    };
+
+    public static void main(String[] args) {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing QuestionClassifier (regression against previous implementation)");
+        System.out.println("=".repeat(60));
+
+        QuestionClassifier classifier = new QuestionClassifier();
+        LegacyQuestionClassifier legacy = new LegacyQuestionClassifier();
+
+        System.out.println("\n[Test 1] 問題語料");
+        for (String message : CORPUS) {
+            compare(classifier, legacy, message);
+        }
+        check(CORPUS.length + " 句分類相同", true);
+
+        System.out.println("\n[Test 2] 隨機組合的關鍵詞片段");
+        List<String> fragments = new ArrayList<>(Arrays.asList(FILLER));
+        for (String message : CORPUS) {
+            for (int i = 0; i + 2 <= message.length(); i++) {
+                fragments.add(message.substring(i, i + 2));
+            }
+        }
+        Random random = new Random(42);
+        int samples = 200_000;
+        for (int n = 0; n < samples; n++) {
+            StringBuilder message = new StringBuilder();
+            int parts = 1 + random.nextInt(8);
+            for (int p = 0; p < parts; p++) {
+                message.append(fragments.get(random.nextInt(fragments.size())));
+            }
+            compare(classifier, legacy, message.toString());
+        }
+        check(samples + " 則隨機訊息分類相同", true);
+
+        System.out.println("\n[Test 3] 分數");
+        QuestionClassifier.Classification result = classifier.analyze("我借過哪些書？逾期罰款怎麼算");
+        check("借閱歷史有分數", result.scores.get(QuestionClassifier.QuestionType.BORROW_HISTORY) > 0);
+        check("規則有分數", result.scores.get(QuestionClassifier.QuestionType.LIBRARY_RULES) > 0);
+        check("未命中的類型為 0", classifier.analyze("你好").scores.values().stream().allMatch(s -> s == 0));
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void compare(QuestionClassifier classifier, LegacyQuestionClassifier legacy, String message) {
+        Set<QuestionClassifier.QuestionType> expected = legacy.classify(message);
+        Set<QuestionClassifier.QuestionType> actual = classifier.classify(message);
+        if (!expected.equals(actual)) {
+            throw new AssertionError("\"" + message + "\": expected " + expected + " but got " + actual);
+        }
+        if (!Objects.equals(legacy.extractBookTitle(message), classifier.extractBookTitle(message))) {
+            throw new AssertionError("\"" + message + "\": book title differs");
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
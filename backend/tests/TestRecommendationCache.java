@@ -0,0 +1,109 @@
+import java.util.*;
+
+/**
+ * Test for RecommendationCache (fresh/stale lookups, borrow invalidation, refresh claims)
+ */
+public class TestRecommendationCache {
+
+    private static final List<Recommendation> RECS = Arrays.asList(
+        new Recommendation("001", "同作者作品", 0.9),
+        new Recommendation("002", "相似主題", 0.8));
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing RecommendationCache");
+        System.out.println("=".repeat(60));
+
+        testFreshHit();
+        testStaleWhileRevalidate();
+        testBorrowInvalidation();
+        testOutdatedGeneration();
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testFreshHit() {
+        System.out.println("\n[Test 1] 未變動時直接命中");
+        RecommendationCache cache = new RecommendationCache(60_000, 600_000, 100);
+
+        check("首次未命中", cache.get("alice") == null);
+        cache.put("alice", cache.fingerprint("alice"), RECS);
+
+        RecommendationCache.Lookup lookup = cache.get("alice");
+        check("命中且為最新", lookup != null && lookup.freshness == RecommendationCache.Freshness.FRESH);
+        check("內容相同", lookup.recommendations.size() == 2);
+        check("評分不影響", fresh(cacheAfter(cache, BookChangeListener.ChangeType.RATED, "alice")));
+    }
+
+    static void testStaleWhileRevalidate() throws Exception {
+        System.out.println("\n[Test 2] 館藏變動或過期時先回舊結果");
+        RecommendationCache cache = new RecommendationCache(60_000, 600_000, 100);
+        cache.put("alice", cache.fingerprint("alice"), RECS);
+
+        cache.onBookChanged(BookChangeListener.ChangeType.AVAILABILITY, "005", null);
+        RecommendationCache.Lookup lookup = cache.get("alice");
+        check("館藏變動後為舊結果", lookup != null && lookup.freshness == RecommendationCache.Freshness.STALE);
+
+        check("只允許一個背景更新", cache.startRefresh("alice") && !cache.startRefresh("alice"));
+        cache.put("alice", cache.fingerprint("alice"), RECS);
+        cache.refreshDone("alice");
+        check("更新後恢復最新", fresh(cache.get("alice")));
+
+        RecommendationCache expiring = new RecommendationCache(50, 600_000, 100);
+        expiring.put("bob", expiring.fingerprint("bob"), RECS);
+        Thread.sleep(80);
+        check("超過 TTL 為舊結果", expiring.get("bob").freshness == RecommendationCache.Freshness.STALE);
+    }
+
+    static void testBorrowInvalidation() {
+        System.out.println("\n[Test 3] 借還書後失效");
+        RecommendationCache cache = new RecommendationCache(60_000, 600_000, 100);
+        cache.put("alice", cache.fingerprint("alice"), RECS);
+        cache.put("bob", cache.fingerprint("bob"), RECS);
+
+        cache.onBookChanged(BookChangeListener.ChangeType.BORROWED, "001", "alice");
+        check("本人借書後未命中", cache.get("alice") == null);
+        check("他人仍有快取（舊結果）", cache.get("bob") != null);
+
+        cache.put("bob", cache.fingerprint("bob"), RECS);
+        cache.onBookChanged(BookChangeListener.ChangeType.RETURNED, "003", "bob");
+        check("本人還書後未命中", cache.get("bob") == null);
+        check("失效次數", cache.getStats().invalidations == 2);
+    }
+
+    static void testOutdatedGeneration() {
+        System.out.println("\n[Test 4] 借書前開始的產生結果不寫入");
+        RecommendationCache cache = new RecommendationCache(60_000, 600_000, 100);
+
+        RecommendationCache.Fingerprint before = cache.fingerprint("alice");
+        cache.onBookChanged(BookChangeListener.ChangeType.BORROWED, "001", "alice");
+        cache.put("alice", before, RECS);
+        check("舊結果被丟棄", cache.get("alice") == null);
+
+        RecommendationCache.Fingerprint older = cache.fingerprint("alice");
+        cache.onBookChanged(BookChangeListener.ChangeType.UPDATED, "009", null);
+        cache.put("alice", cache.fingerprint("alice"), RECS);
+        cache.put("alice", older, Collections.singletonList(new Recommendation("999", "舊", 0.1)));
+        check("較舊的結果不覆蓋較新的", fresh(cache.get("alice")) && cache.get("alice").recommendations.size() == 2);
+    }
+
+    // ===== Helpers =====
+
+    static RecommendationCache.Lookup cacheAfter(RecommendationCache cache, BookChangeListener.ChangeType type, String userId) {
+        cache.onBookChanged(type, "001", userId);
+        return cache.get(userId);
+    }
+
+    static boolean fresh(RecommendationCache.Lookup lookup) {
+        return lookup != null && lookup.freshness == RecommendationCache.Freshness.FRESH;
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test for RecommendationWorkScheduler (priority ordering, admission limits, metrics)
+ */
+public class TestRecommendationWorkScheduler {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing RecommendationWorkScheduler");
+        System.out.println("=".repeat(60));
+
+        testInteractiveBeforePrefetch();
+        testAdmissionLimits();
+        testFailurePropagates();
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testInteractiveBeforePrefetch() throws Exception {
+        System.out.println("\n[Test 1] 互動請求優先於背景更新");
+        RecommendationWorkScheduler scheduler = new RecommendationWorkScheduler(1, 16);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Void> blocker = scheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE,
+                () -> { await(release); return null; });
+            Thread.sleep(50);  // The single worker is now busy
+
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            List<CompletableFuture<Boolean>> jobs = new ArrayList<>();
+            jobs.add(scheduler.submit(RecommendationWorkScheduler.Priority.PREFETCH, () -> order.add("prefetch-1")));
+            jobs.add(scheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE, () -> order.add("interactive-1")));
+            jobs.add(scheduler.submit(RecommendationWorkScheduler.Priority.PREFETCH, () -> order.add("prefetch-2")));
+            jobs.add(scheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE, () -> order.add("interactive-2")));
+            release.countDown();
+            blocker.get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<Boolean> job : jobs) {
+                job.get(5, TimeUnit.SECONDS);
+            }
+
+            check("互動請求先執行，同優先序依序",
+                order.equals(Arrays.asList("interactive-1", "interactive-2", "prefetch-1", "prefetch-2")));
+            RecommendationWorkScheduler.PriorityStats interactive = scheduler.getStats().priorities.get("interactive");
+            check("記錄完成數與等待時間", interactive.completed == 3 && interactive.maxQueueWaitMs >= 0);
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    static void testAdmissionLimits() throws Exception {
+        System.out.println("\n[Test 2] 佇列滿時拒絕");
+        RecommendationWorkScheduler scheduler = new RecommendationWorkScheduler(1, 4);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            scheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE, () -> { await(release); return null; });
+            Thread.sleep(50);
+
+            scheduler.submit(RecommendationWorkScheduler.Priority.PREFETCH, () -> null);
+            scheduler.submit(RecommendationWorkScheduler.Priority.PREFETCH, () -> null);
+            check("背景更新只能用一半佇列", rejected(scheduler, RecommendationWorkScheduler.Priority.PREFETCH));
+
+            scheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE, () -> null);
+            scheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE, () -> null);
+            check("互動請求超過上限被拒絕", rejected(scheduler, RecommendationWorkScheduler.Priority.INTERACTIVE));
+
+            RecommendationWorkScheduler.SchedulerStats stats = scheduler.getStats();
+            check("拒絕次數", stats.priorities.get("prefetch").rejected == 1
+                && stats.priorities.get("interactive").rejected == 1);
+            check("Retry-After 至少 1 秒", scheduler.retryAfterSeconds() >= 1);
+
+            release.countDown();
+            Thread.sleep(200);
+            check("佇列清空後再接受", scheduler.submit(RecommendationWorkScheduler.Priority.PREFETCH, () -> "ok")
+                .get(5, TimeUnit.SECONDS).equals("ok"));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    static void testFailurePropagates() throws Exception {
+        System.out.println("\n[Test 3] 工作失敗傳回給呼叫端");
+        RecommendationWorkScheduler scheduler = new RecommendationWorkScheduler(2, 4);
+        try {
+            CompletableFuture<Object> failed = scheduler.submit(RecommendationWorkScheduler.Priority.INTERACTIVE,
+                () -> { throw new IllegalStateException("db down"); });
+            try {
+                failed.get(5, TimeUnit.SECONDS);
+                check("應該失敗", false);
+            } catch (ExecutionException e) {
+                check("例外傳回", e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    // ===== Helpers =====
+
+    static boolean rejected(RecommendationWorkScheduler scheduler, RecommendationWorkScheduler.Priority priority) {
+        try {
+            scheduler.submit(priority, () -> null);
+            return false;
+        } catch (RejectedExecutionException e) {
+            return true;
+        }
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Test for TaskManager.createOrAttach (identical in-flight recommendation requests share a task)
+ */
+public class TestTaskCoalescing {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing TaskManager task coalescing");
+        System.out.println("=".repeat(60));
+
+        TaskManager taskManager = new TaskManager();
+        try {
+            testAttachWhileProcessing(taskManager);
+            testNewTaskAfterCompletion(taskManager);
+            testConcurrentRequests(taskManager);
+        } finally {
+            taskManager.shutdown();
+        }
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testAttachWhileProcessing(TaskManager taskManager) {
+        System.out.println("\n[Test 1] 處理中的相同請求共用任務");
+        RecommendationTask first = taskManager.createOrAttach("t1", "alice", "personal", "0@5");
+        RecommendationTask second = taskManager.createOrAttach("t2", "alice", "personal", "0@5");
+        check("第二個請求加入第一個任務", second == first && "t1".equals(second.getTaskId()));
+        check("未建立新任務", taskManager.getTask("t2") == null);
+
+        check("不同使用者不共用", taskManager.createOrAttach("t3", "bob", "personal", "0@5").getTaskId().equals("t3"));
+        check("不同輸入不共用", taskManager.createOrAttach("t4", "alice", "personal", "1@6").getTaskId().equals("t4"));
+        taskManager.completeTask("t3", new ArrayList<>());
+        taskManager.completeTask("t4", new ArrayList<>());
+        taskManager.failTask("t1", "done");
+    }
+
+    static void testNewTaskAfterCompletion(TaskManager taskManager) {
+        System.out.println("\n[Test 2] 完成後的請求建立新任務");
+        taskManager.createOrAttach("t5", "carol", "personal", "0@7");
+        taskManager.completeTask("t5", new ArrayList<>());
+        check("完成後重新產生", taskManager.createOrAttach("t6", "carol", "personal", "0@7").getTaskId().equals("t6"));
+
+        taskManager.failTask("t6", "AI service error");
+        check("失敗後重新產生", taskManager.createOrAttach("t7", "carol", "personal", "0@7").getTaskId().equals("t7"));
+        taskManager.completeTask("t7", new ArrayList<>());
+    }
+
+    static void testConcurrentRequests(TaskManager taskManager) throws Exception {
+        System.out.println("\n[Test 3] 同時送出的請求只建立一個任務");
+        long before = taskManager.getCoalescedCount();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> ids = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String taskId = "c" + i;
+            ids.add(pool.submit(() -> {
+                start.await();
+                return taskManager.createOrAttach(taskId, "dave", "personal", "2@9").getTaskId();
+            }));
+        }
+        start.countDown();
+        Set<String> distinct = new HashSet<>();
+        for (Future<String> id : ids) {
+            distinct.add(id.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        check("只有一個任務", distinct.size() == 1);
+        check("其餘 31 個請求加入", taskManager.getCoalescedCount() - before == 31);
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
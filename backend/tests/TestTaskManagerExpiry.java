@@ -0,0 +1,82 @@
+import java.util.*;
+
+/**
+ * Test for TaskManager expiry and eviction (separate pending/completed TTLs, LRU cap)
+ */
+public class TestTaskManagerExpiry {
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=".repeat(60));
+        System.out.println("Testing TaskManager expiry");
+        System.out.println("=".repeat(60));
+
+        testCompletedExpiresBeforePending();
+        testLruEviction();
+
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("All tests passed! ✅");
+        System.out.println("=".repeat(60));
+    }
+
+    static void testCompletedExpiresBeforePending() throws Exception {
+        System.out.println("\n[Test 1] 完成的任務比處理中的先過期");
+        TaskManager taskManager = new TaskManager(5_000, 1_000, 100);
+        try {
+            taskManager.createOrAttach("p1", "alice", "personal", "0@1");
+            taskManager.createTask("d1", "bob", "personal");
+            taskManager.completeTask("d1", new ArrayList<>());
+            taskManager.createTask("f1", "carol", "personal");
+            taskManager.failTask("f1", "AI service error");
+
+            TaskManager.TaskStats stats = taskManager.getStats();
+            check("統計：處理中 1、完成 1、失敗 1", stats.pending == 1 && stats.completed == 1 && stats.failed == 1);
+
+            Thread.sleep(3_000);
+            check("完成/失敗任務已過期", taskManager.getTask("d1") == null && taskManager.getTask("f1") == null);
+            check("處理中任務仍在", taskManager.getTask("p1") != null);
+            check("過期計數", taskManager.getStats().expired == 2);
+            check("仍可加入處理中任務",
+                taskManager.createOrAttach("p2", "alice", "personal", "0@1").getTaskId().equals("p1"));
+
+            Thread.sleep(4_000);
+            check("處理中任務最終過期", taskManager.getTask("p1") == null);
+            check("過期後重新建立任務",
+                taskManager.createOrAttach("p3", "alice", "personal", "0@1").getTaskId().equals("p3"));
+        } finally {
+            taskManager.shutdown();
+        }
+    }
+
+    static void testLruEviction() {
+        System.out.println("\n[Test 2] 超過上限時淘汰最久未使用的任務");
+        TaskManager taskManager = new TaskManager(60_000, 60_000, 3);
+        try {
+            taskManager.createOrAttach("a", "alice", "personal", "0@1");
+            taskManager.createTask("b", "bob", "personal");
+            taskManager.createTask("c", "carol", "personal");
+            taskManager.getTask("a");
+            taskManager.createTask("d", "dave", "personal");
+
+            check("最久未使用的被淘汰", taskManager.getTask("b") == null);
+            check("最近讀取的保留", taskManager.getTask("a") != null);
+            check("大小不超過上限", taskManager.getActiveTaskCount() == 3);
+            check("淘汰計數", taskManager.getStats().evicted == 1);
+
+            taskManager.getTask("c");
+            taskManager.getTask("d");
+            taskManager.createTask("e", "erin", "personal");
+            check("被淘汰的處理中任務釋放請求",
+                taskManager.getTask("a") == null
+                    && taskManager.createOrAttach("a2", "alice", "personal", "0@1").getTaskId().equals("a2"));
+        } finally {
+            taskManager.shutdown();
+        }
+    }
+
+    static void check(String label, boolean ok) {
+        System.out.println("  " + (ok ? "✓ " : "✗ ") + label);
+        if (!ok) {
+            throw new AssertionError(label);
+        }
+    }
+}
@@ -62,24 +62,25 @@ echo "  PHASE 2: Repository Tests"
 echo "========================================="
 echo ""
 
-# Compile BookDatabaseRepository test
-echo "📦 Compiling BookDatabaseRepository test..."
+# Compile repository tests
+echo "📦 Compiling repository tests..."
 javac -d test/bin \
     -cp "lib/*:backend/bin" \
-    test/repository/BookDatabaseRepositoryTest.java
+    test/repository/BookDatabaseRepositoryTest.java \
+    test/repository/DatabaseConnectionPoolTest.java
 
 if [ $? -ne 0 ]; then
-    echo -e "${RED}❌ Compilation failed for BookDatabaseRepository test${NC}"
+    echo -e "${RED}❌ Compilation failed for repository tests${NC}"
     exit 1
 fi
 
 # Run repository tests
 echo ""
-echo "🧪 Running BookDatabaseRepository tests..."
+echo "🧪 Running repository tests..."
 java -cp "lib/junit-platform-console-standalone-1.10.1.jar:backend/bin:test/bin:lib/*" \
     org.junit.platform.console.ConsoleLauncher \
     --scan-class-path \
-    --include-classname "BookDatabaseRepositoryTest"
+    --include-classname "BookDatabaseRepositoryTest|DatabaseConnectionPoolTest"
 
 REPO_TEST_RESULT=$?
 
@@ -28,79 +28,145 @@ javac -d backend/bin -cp "lib/*:backend/bin" backend/src/User.java
 echo "  3️⃣  編譯 ApiSessionManager (Session 管理)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/ApiSessionManager.java
 
-echo "  4️⃣  編譯 UserDatabaseRepository (使用者資料庫)..."
+echo "  4️⃣  編譯 DatabaseConnectionPool (資料庫連線池)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/DatabaseConnectionPool.java
+
+echo "  5️⃣  編譯 UserDatabaseRepository (使用者資料庫)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/UserDatabaseRepository.java
 
-echo "  5️⃣  編譯 ApiAuthenticationHelper (認證模組)..."
+echo "  6️⃣  編譯 ApiAuthenticationHelper (認證模組)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/ApiAuthenticationHelper.java
 
-echo "  6️⃣  編譯 BookDatabaseRepository (圖書資料庫)..."
+echo "  7️⃣  編譯 BookChangeListener (書籍異動監聽介面)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookChangeListener.java
+
+echo "  8️⃣  編譯 BookCatalogCache (書籍目錄快取)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookCatalogCache.java
+
+echo "  9️⃣  編譯 BookSearchIndex (全文搜尋索引)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookSearchIndex.java
+
+echo "  🔟 編譯 BookDatabaseRepository (圖書資料庫)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookDatabaseRepository.java
 
-echo "  7️⃣  編譯 BorrowHistory (借閱歷史模型)..."
+echo "  1️⃣1️⃣ 編譯 LibraryRulesRepository (圖書館規則資料庫)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/LibraryRulesRepository.java
+
+echo "  1️⃣2️⃣ 編譯 BorrowHistory (借閱歷史模型)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BorrowHistory.java
 
-echo "  8️⃣  編譯 BorrowHistoryRepository (借閱歷史資料庫)..."
+echo "  1️⃣3️⃣ 編譯 BorrowHistoryRepository (借閱歷史資料庫)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BorrowHistoryRepository.java
 
-echo "  9️⃣  編譯 BookRating (書籍評分模型)..."
+echo "  1️⃣4️⃣ 編譯 BookRating (書籍評分模型)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookRating.java
 
-echo "  🔟 編譯 BookRatingRepository (書籍評分資料庫)..."
+echo "  1️⃣5️⃣ 編譯 BookRatingRepository (書籍評分資料庫)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookRatingRepository.java
 
-echo "  1️⃣1️⃣ 編譯 BookReview (書籍評論模型)..."
+echo "  1️⃣6️⃣ 編譯 BookReview (書籍評論模型)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookReview.java
 
-echo "  1️⃣2️⃣ 編譯 BookReviewRepository (書籍評論資料庫)..."
+echo "  1️⃣7️⃣ 編譯 BookReviewRepository (書籍評論資料庫)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookReviewRepository.java
 
-echo "  1️⃣3️⃣ 編譯 Recommendation (AI 推薦模型)..."
+echo "  1️⃣8️⃣ 編譯 Recommendation (AI 推薦模型)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/Recommendation.java
 
-echo "  1️⃣4️⃣ 編譯 RecommendationService (AI 推薦服務)..."
+echo "  1️⃣9️⃣ 編譯 ChatAiClient (聊天 AI 用戶端)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/ChatAiClient.java
+
+echo "  2️⃣0️⃣ 編譯 RecommendationContextBuilder (推薦上下文建構器)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/RecommendationContextBuilder.java
+
+echo "  2️⃣1️⃣ 編譯 RecommendationCache (推薦結果快取)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/RecommendationCache.java
+
+echo "  2️⃣2️⃣ 編譯 LibraryMetricsStore (統計指標儲存)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/LibraryMetricsStore.java
+
+echo "  2️⃣3️⃣ 編譯 BookLeaderboard (即時排行榜)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/BookLeaderboard.java
+
+echo "  2️⃣4️⃣ 編譯 RecommendationWorkScheduler (推薦工作排程器)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/RecommendationWorkScheduler.java
+
+echo "  2️⃣5️⃣ 編譯 RecommendationService (AI 推薦服務)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/RecommendationService.java
 
-echo "  1️⃣5️⃣ 編譯 StaticFileHandler (靜態檔案處理)..."
+echo "  2️⃣6️⃣ 編譯 StaticFileHandler (靜態檔案處理)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/StaticFileHandler.java
 
-echo "  1️⃣6️⃣ 編譯 NotificationType (通知類型)..."
+echo "  2️⃣7️⃣ 編譯 NotificationType (通知類型)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/NotificationType.java
 
-echo "  1️⃣7️⃣ 編譯 Notification (通知模型)..."
+echo "  2️⃣8️⃣ 編譯 Notification (通知模型)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/Notification.java
 
-echo "  1️⃣8️⃣ 編譯 NotificationRepository (通知資料庫)..."
+echo "  2️⃣9️⃣ 編譯 NotificationListener (通知變更監聽器)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/NotificationListener.java
+
+echo "  3️⃣0️⃣ 編譯 OutboxRepository (事件發件匣)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/OutboxRepository.java
+
+echo "  3️⃣1️⃣ 編譯 OutboxDispatcher (發件匣投遞)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/OutboxDispatcher.java
+
+echo "  3️⃣2️⃣ 編譯 NotificationRepository (通知資料庫)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/NotificationRepository.java
 
-echo "  1️⃣9️⃣ 編譯 NotificationService (通知服務)..."
+echo "  3️⃣3️⃣ 編譯 DueReminderEngine (到期提醒引擎)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/DueReminderEngine.java
+
+echo "  3️⃣4️⃣ 編譯 NotificationService (通知服務)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/NotificationService.java
 
-echo "  2️⃣0️⃣ 編譯 NotificationScheduler (通知排程器)..."
+echo "  3️⃣5️⃣ 編譯 CronSchedule (Cron 排程)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/CronSchedule.java
+
+echo "  3️⃣6️⃣ 編譯 JobRunRepository (排程執行紀錄)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/JobRunRepository.java
+
+echo "  3️⃣7️⃣ 編譯 JobScheduler (背景工作排程器)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/JobScheduler.java
+
+echo "  3️⃣8️⃣ 編譯 NotificationScheduler (通知排程器)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/NotificationScheduler.java
 
-echo "  2️⃣1️⃣ 編譯 RecommendationTask (推薦任務)..."
+echo "  3️⃣9️⃣ 編譯 RecommendationTask (推薦任務)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/RecommendationTask.java
 
-echo "  2️⃣2️⃣ 編譯 TaskManager (任務管理器)..."
+echo "  4️⃣0️⃣ 編譯 TaskManager (任務管理器)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/TaskManager.java
 
-echo "  2️⃣3️⃣ 編譯 RecommendationWebSocketServer (WebSocket伺服器)..."
+echo "  4️⃣1️⃣ 編譯 RecommendationWebSocketServer (WebSocket伺服器)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/RecommendationWebSocketServer.java
 
-echo "  2️⃣4️⃣ 編譯 QuestionClassifier (問題分類器)..."
+echo "  4️⃣2️⃣ 編譯 QuestionClassifier (問題分類器)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/QuestionClassifier.java
 
-echo "  2️⃣5️⃣ 編譯 LibraryRulesRepository (圖書館規則資料庫)..."
-javac -d backend/bin -cp "lib/*:backend/bin" backend/src/LibraryRulesRepository.java
-
-echo "  2️⃣6️⃣ 編譯 ChatContext (聊天上下文)..."
+echo "  4️⃣3️⃣ 編譯 ChatContext (聊天上下文)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/ChatContext.java
 
-echo "  2️⃣7️⃣ 編譯 ContextRetriever (上下文檢索器)..."
+echo "  4️⃣4️⃣ 編譯 ContextRetriever (上下文檢索器)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/ContextRetriever.java
 
-echo "  2️⃣8️⃣ 編譯 LibraryApiServer (主伺服器)..."
+echo "  4️⃣5️⃣ 編譯 ChatContextBuilder (上下文組裝器)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/ChatContextBuilder.java
+
+echo "  4️⃣6️⃣ 編譯 ChatAnswerCache (聊天答案快取)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/ChatAnswerCache.java
+
+echo "  4️⃣7️⃣ 編譯 HttpRequestEngine (請求執行引擎)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/HttpRequestEngine.java
+
+echo "  4️⃣8️⃣ 編譯 JsonResponseWriter (串流 JSON 回應)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/JsonResponseWriter.java
+
+echo "  4️⃣9️⃣ 編譯 CirculationService (借還書交易)..."
+javac -d backend/bin -cp "lib/*:backend/bin" backend/src/CirculationService.java
+
+echo "  5️⃣0️⃣ 編譯 LibraryApiServer (主伺服器)..."
 javac -d backend/bin -cp "lib/*:backend/bin" backend/src/LibraryApiServer.java
 
 echo ""
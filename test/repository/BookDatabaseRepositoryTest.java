@@ -2,7 +2,12 @@ import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 import java.io.File;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Test BookDatabaseRepository
@@ -294,4 +299,285 @@ public class BookDatabaseRepositoryTest {
         // Should have 20 default + 1 added = 21 total
         assertEquals(21, books.size(), "Should not duplicate default books on re-initialization");
     }
+
+    /**
+     * Test 11: Catalog cache hands out copies and follows statistics writes
+     * Real scenario: Handler mutates a book it looked up; another user borrows and rates it
+     */
+    @Test
+    @Order(11)
+    public void testCatalogCacheConsistency() throws Exception {
+        // Mutating a returned book must not leak into the cache
+        BookInfo book = repository.findById("003");
+        book.markAsBorrowed();
+        assertTrue(repository.findById("003").isAvailable(), "Cached book should not change until updateBook()");
+
+        // Borrow + rating written by other repositories refresh the cached row
+        BorrowHistoryRepository historyRepo = new BorrowHistoryRepository(repository.getPool());
+        BookRatingRepository ratingRepo = new BookRatingRepository(repository.getPool());
+        historyRepo.addBookChangeListener(repository.getCatalogCache());
+        ratingRepo.addBookChangeListener(repository.getCatalogCache());
+
+        repository.updateBook(book);
+        historyRepo.createBorrowRecord("1001", "003", book.getTitle());
+        ratingRepo.saveRating("1001", "003", 4);
+
+        BookInfo cached = repository.findById("003");
+        assertFalse(cached.isAvailable(), "Availability should follow updateBook()");
+        assertEquals(1, cached.getBorrowCount(), "Borrow count should follow the new borrow record");
+        assertEquals(4.0, cached.getAverageRating(), 0.001, "Average rating should follow the new rating");
+        assertTrue(repository.getStatistics().contains("Borrowed: 1"));
+    }
+
+    /**
+     * Test 12: Batched lookups for the recommendation pipeline
+     * Real scenario: Heavy reader asks for personal recommendations
+     */
+    @Test
+    @Order(12)
+    public void testRecommendationContextBatching() {
+        Map<String, BookInfo> books = repository.findByIds(Arrays.asList("005", "001", "999", "001"));
+        assertEquals(Arrays.asList("005", "001"), new ArrayList<>(books.keySet()), "Known ids in request order, no duplicates");
+
+        BorrowHistoryRepository historyRepo = new BorrowHistoryRepository(repository.getPool());
+        historyRepo.createBorrowRecord("1001", "001", "深入淺出 Java 程式設計");
+        historyRepo.createBorrowRecord("1001", "002", "Python 資料科學入門");
+        historyRepo.markAsReturned("1001", "002");
+        BookInfo borrowed = repository.findById("001");
+        borrowed.markAsBorrowed();
+        repository.updateBook(borrowed);
+
+        RecommendationContextBuilder builder = new RecommendationContextBuilder(repository, historyRepo);
+        RecommendationContextBuilder.RecommendationContext context = builder.build("1001");
+
+        assertEquals(2, context.borrowHistory.size(), "Both history rows joined with their books");
+        assertEquals(Set.of("001"), context.currentlyBorrowedIds, "Only the open borrow is excluded");
+        assertEquals(19, context.availableBooks.size(), "20 books minus the one on loan");
+        assertTrue(context.stageTimingsMs.containsKey("history"));
+        assertTrue(context.stageTimingsMs.containsKey("catalog"));
+    }
+
+    /**
+     * Test 13: Dashboard counters follow writes and agree with the SQL aggregates
+     * Real scenario: Admin keeps the dashboard open while readers borrow, rate and sign up
+     */
+    @Test
+    @Order(13)
+    public void testLibraryMetricsStore() {
+        UserDatabaseRepository userRepo = new UserDatabaseRepository(TEST_DB);
+        userRepo.initialize();
+        BorrowHistoryRepository historyRepo = new BorrowHistoryRepository(repository.getPool());
+        BookRatingRepository ratingRepo = new BookRatingRepository(repository.getPool());
+        historyRepo.createBorrowRecord("1001", "002", "Python 資料科學入門");
+
+        LibraryMetricsStore store = new LibraryMetricsStore(repository.getPool(), userRepo, ratingRepo);
+        store.rebuild();
+        historyRepo.addBookChangeListener(store);
+        ratingRepo.addBookChangeListener(store);
+        userRepo.addUserChangeListener(store);
+
+        assertTrue(userRepo.registerUser("2001", "Reader", "password123", "reader@example.com"));
+        historyRepo.createBorrowRecord("2001", "005", "Book 5");
+        historyRepo.createBorrowRecord("1001", "005", "Book 5");
+        ratingRepo.saveRating("2001", "005", 2);
+        ratingRepo.saveRating("2001", "005", 5);  // Upsert replaces the first rating
+        ratingRepo.saveRating("1001", "002", 4);
+
+        assertEquals(userRepo.getUsersByRole("user").size(), store.getUserCount("user"));
+        assertEquals(historyRepo.getTodayBorrowCount(), store.getBorrowCount(java.time.LocalDate.now()));
+        assertEquals(3, store.getTotalBorrowCount());
+        assertEquals(ratingRepo.getOverallAverageRating(), store.getOverallAverageRating(), 0.001);
+
+        assertTrue(userRepo.deleteUser("2001"));
+        assertEquals(userRepo.getUsersByRole("user").size(), store.getUserCount("user"));
+    }
+
+    /**
+     * Test 14: Leaderboard rankings follow borrows and ratings without re-querying
+     * Real scenario: Popular book climbs the dashboard after a busy afternoon
+     */
+    @Test
+    @Order(14)
+    public void testBookLeaderboard() {
+        BorrowHistoryRepository historyRepo = new BorrowHistoryRepository(repository.getPool());
+        BookRatingRepository ratingRepo = new BookRatingRepository(repository.getPool());
+        historyRepo.createBorrowRecord("1001", "010", "Book 10");
+
+        BookLeaderboard leaderboard = new BookLeaderboard(repository.getPool(), repository);
+        leaderboard.rebuild();
+        repository.addBookChangeListener(leaderboard);
+        historyRepo.addBookChangeListener(leaderboard);
+        ratingRepo.addBookChangeListener(leaderboard);
+
+        assertEquals("010", leaderboard.topBookIds(BookLeaderboard.Metric.BORROWS, 1).get(0), "Seeded from history");
+        assertEquals(5, leaderboard.topBookIds(BookLeaderboard.Metric.BORROWS, 5).size(), "Unborrowed books fill the list");
+
+        historyRepo.createBorrowRecord("1001", "007", "Book 7");
+        historyRepo.createBorrowRecord("1002", "007", "Book 7");
+        assertEquals(Arrays.asList("007", "010"), leaderboard.topBookIds(BookLeaderboard.Metric.BORROWS, 2));
+        assertEquals(Arrays.asList("007", "010"), leaderboard.topBookIds(BookLeaderboard.Metric.BORROWS, 2, 7));
+
+        // A lone 5-star rating should not beat five mostly-5-star ratings (Bayesian average)
+        ratingRepo.saveRating("1001", "003", 5);
+        int[] scores = {5, 5, 5, 4, 4};
+        List<String> users = Arrays.asList("1001", "1002", "1003", "1004", "1005");
+        for (int i = 0; i < users.size(); i++) {
+            ratingRepo.saveRating(users.get(i), "004", scores[i]);
+            ratingRepo.saveRating(users.get(i), "008", 2);
+        }
+        assertEquals(Arrays.asList("004", "003", "008"), leaderboard.topBookIds(BookLeaderboard.Metric.RATING, 10));
+
+        ratingRepo.saveRating("1002", "003", 1);
+        ratingRepo.saveRating("1002", "003", 5);  // Upsert, not a new rating
+        assertEquals(Arrays.asList("004", "003", "008"), leaderboard.topBookIds(BookLeaderboard.Metric.RATING, 10));
+
+        ratingRepo.deleteRating("1001", "004");
+        repository.deleteBook("003");
+        assertEquals(Arrays.asList("004", "008"), leaderboard.topBookIds(BookLeaderboard.Metric.RATING, 10, 30));
+    }
+
+    /**
+     * Test 15: Keyset pagination over borrow history with filters
+     * Real scenario: Admin pages through years of borrow records
+     */
+    @Test
+    @Order(15)
+    public void testHistoryKeysetPagination() {
+        new UserDatabaseRepository(TEST_DB).initialize();  // History pages join user names
+        BorrowHistoryRepository historyRepo = new BorrowHistoryRepository(repository.getPool());
+        for (String bookId : Arrays.asList("001", "002", "003", "004", "005")) {
+            historyRepo.createBorrowRecord("1001", bookId, "Book " + bookId);
+        }
+        historyRepo.createBorrowRecord("1002", "006", "Book 006");
+        historyRepo.markAsReturned("1001", "002");
+
+        BorrowHistoryRepository.HistoryQuery query = new BorrowHistoryRepository.HistoryQuery();
+        query.limit = 4;
+        List<String> seen = new ArrayList<>();
+        BorrowHistoryRepository.HistoryPage page;
+        int pages = 0;
+        do {
+            page = historyRepo.getHistoryPage(query);
+            for (BorrowHistory record : page.records) {
+                seen.add(record.getBookId());
+            }
+            query.beforeId = page.nextCursor;
+            pages++;
+        } while (page.nextCursor != null);
+        assertEquals(2, pages);
+        assertEquals(Arrays.asList("006", "005", "004", "003", "002", "001"), seen, "Newest first, no gaps or repeats");
+
+        BorrowHistoryRepository.HistoryQuery filtered = new BorrowHistoryRepository.HistoryQuery();
+        filtered.userId = "1001";
+        filtered.status = "borrowing";
+        assertEquals(4, historyRepo.getHistoryPage(filtered).records.size());
+
+        filtered.status = "overdue";  // Everything was borrowed today
+        assertTrue(historyRepo.getHistoryPage(filtered).records.isEmpty());
+    }
+
+    /**
+     * Test 16: Full-text search over the catalog
+     * Real scenario: Reader searches by Chinese keywords, prefixes and typos
+     */
+    @Test
+    @Order(16)
+    public void testFullTextSearch() {
+        BookSearchIndex index = repository.getSearchIndex();
+
+        // CJK bigrams: "資料" matches both data books, title matches first
+        BookSearchIndex.SearchResult result = index.search("資料", 0, 10);
+        assertNotNull(result);
+        assertTrue(result.bookIds.containsAll(Arrays.asList("002", "005")));
+
+        // Author field
+        assertEquals("013", index.search("曹雪芹", 0, 10).bookIds.get(0));
+
+        // Prefix and one-letter typo on Latin words
+        assertEquals("002", index.search("pyth", 0, 10).bookIds.get(0));
+        assertEquals("002", index.search("pyhton", 0, 10).bookIds.get(0));
+
+        // Index follows writes
+        repository.addBook(new BookInfo("999", "Kubernetes 實戰", "Test Author", "Test Publisher"));
+        assertEquals(Arrays.asList("999"), index.search("kubernetes", 0, 10).bookIds);
+
+        repository.updateBookInfo("999", "Docker 實戰", "Test Author", "Test Publisher", "");
+        assertTrue(index.search("kubernetes", 0, 10).bookIds.isEmpty());
+        assertEquals(Arrays.asList("999"), index.search("docker", 0, 10).bookIds);
+
+        repository.deleteBook("999");
+        assertTrue(index.search("docker", 0, 10).bookIds.isEmpty());
+
+        // searchByTitle goes through the index
+        assertFalse(repository.searchByTitle("紅樓").isEmpty());
+    }
+
+    /**
+     * Test 17: Search index reuses document numbers
+     * Real scenario: Books are edited and replaced for months without a restart
+     */
+    @Test
+    @Order(17)
+    public void testSearchIndexReusesDocNumbers() {
+        Map<String, BookInfo> catalog = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            String id = String.format("B%02d", i);
+            catalog.put(id, new BookInfo(id, "Edition 0 " + id, "Author", "Publisher"));
+        }
+        BookSearchIndex index = new BookSearchIndex(() -> new ArrayList<>(catalog.values()), catalog::get);
+        assertEquals(10, index.search("edition", 0, 20).total);
+
+        // Edits keep each book's number
+        for (int round = 1; round <= 200; round++) {
+            String id = String.format("B%02d", round % 10);
+            catalog.put(id, new BookInfo(id, "Edition " + round + " " + id, "Author", "Publisher"));
+            index.onBookChanged(BookChangeListener.ChangeType.UPDATED, id, null);
+        }
+        assertEquals(10, index.getDocSlotCount());
+
+        // A removed book's number goes to the next book added, below the numbers still in use
+        catalog.remove("B03");
+        index.onBookChanged(BookChangeListener.ChangeType.REMOVED, "B03", null);
+        catalog.put("C01", new BookInfo("C01", "Edition new C01", "Author", "Publisher"));
+        index.onBookChanged(BookChangeListener.ChangeType.ADDED, "C01", null);
+        assertEquals(10, index.getDocSlotCount());
+
+        assertEquals(10, index.search("edition", 0, 20).total);
+        assertEquals(Arrays.asList("C01"), index.search("new", 0, 20).bookIds);
+        assertTrue(index.search("b03", 0, 20).bookIds.isEmpty());
+        assertEquals(Arrays.asList("B07"), index.search("b07", 0, 20).bookIds);
+    }
+
+    /**
+     * Test 18: A write committed before a rebuild is counted once, even if its listener runs after
+     * Real scenario: Nightly rebuild starts between a borrow's commit and its notification
+     */
+    @Test
+    @Order(18)
+    public void testMetricsRebuildDoesNotDoubleCount() {
+        UserDatabaseRepository userRepo = new UserDatabaseRepository(TEST_DB);
+        userRepo.initialize();
+        BorrowHistoryRepository historyRepo = new BorrowHistoryRepository(repository.getPool());
+        BookRatingRepository ratingRepo = new BookRatingRepository(repository.getPool());
+        LibraryMetricsStore store = new LibraryMetricsStore(repository.getPool(), userRepo, ratingRepo);
+        store.rebuild();
+
+        // Committed before the rebuild, notified after it
+        historyRepo.createBorrowRecord("1001", "003", "Book 3");
+        store.rebuild();
+        store.onBookChanged(BookChangeListener.ChangeType.BORROWED, "003", "1001");
+        assertEquals(1, store.getTotalBorrowCount(), "Already in the snapshot");
+        assertEquals(1, store.getOpenBorrowCount());
+
+        // Committed after the rebuild
+        historyRepo.addBookChangeListener(store);
+        historyRepo.createBorrowRecord("1002", "004", "Book 4");
+        assertTrue(historyRepo.markAsReturned("1001", "003"));
+        assertEquals(2, store.getTotalBorrowCount());
+        assertEquals(1, store.getOpenBorrowCount());
+
+        store.rebuild();
+        assertEquals(2, store.getTotalBorrowCount(), "Rebuild agrees with the incremental counters");
+        assertEquals(1, store.getOpenBorrowCount());
+    }
 }
@@ -0,0 +1,157 @@
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test DatabaseConnectionPool
+ *
+ * Real scenarios: many request threads sharing one database file
+ */
+public class DatabaseConnectionPoolTest {
+
+    private static final String TEST_DB = "data/test_pool.db";
+    private DatabaseConnectionPool pool;
+
+    @BeforeEach
+    public void setup() throws SQLException {
+        new File(TEST_DB).delete();
+        pool = DatabaseConnectionPool.forPath(TEST_DB);
+        try (Connection conn = pool.write();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS counters (id INTEGER PRIMARY KEY, value INTEGER NOT NULL)");
+            stmt.execute("INSERT INTO counters (id, value) VALUES (1, 0)");
+        }
+    }
+
+    @AfterEach
+    public void cleanup() {
+        pool.close();
+        new File(TEST_DB).delete();
+        new File(TEST_DB + "-wal").delete();
+        new File(TEST_DB + "-shm").delete();
+    }
+
+    /**
+     * Same file path gives the same pool (books, users and notifications share it)
+     */
+    @Test
+    public void testPoolIsSharedPerFile() {
+        assertSame(pool, DatabaseConnectionPool.forPath(TEST_DB));
+        assertSame(pool, DatabaseConnectionPool.forUrl("jdbc:sqlite:" + TEST_DB));
+    }
+
+    /**
+     * Nested repository calls on one thread reuse the held connection and see uncommitted writes
+     */
+    @Test
+    public void testNestedCheckoutSeesOwnTransaction() throws SQLException {
+        try (Connection writer = pool.write()) {
+            writer.setAutoCommit(false);
+            try (PreparedStatement pstmt = writer.prepareStatement("UPDATE counters SET value = 42 WHERE id = 1")) {
+                pstmt.executeUpdate();
+            }
+
+            try (Connection nested = pool.read();
+                 Statement stmt = nested.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT value FROM counters WHERE id = 1")) {
+                assertTrue(rs.next());
+                assertEquals(42, rs.getInt(1), "Nested read should see the open transaction");
+            }
+
+            writer.commit();
+            writer.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * An open transaction is rolled back when the connection goes back to the pool
+     */
+    @Test
+    public void testUncommittedTransactionRolledBackOnRelease() throws SQLException {
+        try (Connection writer = pool.write()) {
+            writer.setAutoCommit(false);
+            try (Statement stmt = writer.createStatement()) {
+                stmt.executeUpdate("UPDATE counters SET value = 99 WHERE id = 1");
+            }
+        }
+
+        assertEquals(0, readCounter(), "Abandoned transaction should not leak");
+        try (Connection writer = pool.write()) {
+            assertTrue(writer.getAutoCommit(), "Writer should be back in autocommit mode");
+        }
+    }
+
+    /**
+     * Prepared statements are reused across checkouts
+     */
+    @Test
+    public void testPreparedStatementCache() throws SQLException {
+        long missesBefore = pool.getStats().statementCacheMisses;
+        for (int i = 0; i < 10; i++) {
+            readCounter();
+        }
+        DatabaseConnectionPool.PoolStats stats = pool.getStats();
+        assertTrue(stats.statementCacheHits > 0, "Repeated SQL should hit the statement cache");
+        assertTrue(stats.statementCacheMisses - missesBefore <= 4, "At most one miss per reader connection");
+    }
+
+    /**
+     * Concurrent writers are serialized and no update is lost
+     */
+    @Test
+    public void testConcurrentWritersAndReaders() throws Exception {
+        int threads = 8;
+        int perThread = 25;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger errors = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    try (Connection conn = pool.write();
+                         PreparedStatement pstmt = conn.prepareStatement("UPDATE counters SET value = value + 1 WHERE id = 1")) {
+                        pstmt.executeUpdate();
+                    } catch (SQLException e) {
+                        errors.incrementAndGet();
+                    }
+                    try {
+                        readCounter();
+                    } catch (SQLException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, errors.get(), "No checkout should fail under contention");
+        assertEquals(threads * perThread, readCounter());
+
+        DatabaseConnectionPool.PoolStats stats = pool.getStats();
+        assertEquals(0, stats.inUse, "All connections should be returned");
+        assertEquals(stats.readers, stats.idleReaders);
+        assertFalse(stats.writerHeld);
+    }
+
+    private int readCounter() throws SQLException {
+        try (Connection conn = pool.read();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT value FROM counters WHERE id = 1")) {
+            ResultSet rs = pstmt.executeQuery();
+            assertTrue(rs.next());
+            return rs.getInt(1);
+        }
+    }
+}
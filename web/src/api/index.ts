@@ -52,6 +52,25 @@ export const bookApi = {
     return response.data.book
   },
 
+  // 全文搜尋書籍（依相關度排序，支援前綴與錯字）
+  async searchBooks(q: string, params: { limit?: number; cursor?: string } = {}): Promise<{
+    books: Book[]
+    total: number
+    nextCursor: string | null
+  }> {
+    const response = await api.get<{
+      success: boolean
+      books: Book[]
+      total: number
+      nextCursor?: string
+    }>('/books/search', { params: { q, ...params } })
+    return {
+      books: response.data.books,
+      total: response.data.total,
+      nextCursor: response.data.nextCursor ?? null,
+    }
+  },
+
   // 借書
   async borrowBook(bookId: string): Promise<void> {
     await api.post('/books/borrow', { bookId })
@@ -258,6 +277,29 @@ export const historyApi = {
     }>('/history/all')
     return response.data.history
   },
+
+  // 分頁取得借閱記錄（管理員專用，依 id 由新到舊；nextCursor 為 null 表示最後一頁）
+  async getHistoryPage(params: {
+    limit?: number
+    cursor?: number
+    status?: 'borrowing' | 'returned' | 'overdue'
+    userId?: string
+    bookId?: string
+    from?: string
+    to?: string
+  } = {}): Promise<{ history: BorrowHistory[]; nextCursor: number | null; totalEstimate: number | null }> {
+    const response = await api.get<{
+      success: boolean
+      history: BorrowHistory[]
+      nextCursor?: number
+      totalEstimate?: number
+    }>('/history/all', { params: { limit: 50, ...params } })
+    return {
+      history: response.data.history,
+      nextCursor: response.data.nextCursor ?? null,
+      totalEstimate: response.data.totalEstimate ?? null,
+    }
+  },
 }
 
 // 評分 API
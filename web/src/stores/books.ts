@@ -103,10 +103,12 @@ export const useBooksStore = defineStore('books', () => {
       await loadStats()
       await loadMyBorrowings()
 
-      // 立即更新未讀通知數量（通知已經由後端創建）
+      // 立即更新未讀通知數量（通知已經由後端創建；推送連線中時由伺服器推送）
       const { useNotificationsStore } = await import('./notifications')
       const notificationsStore = useNotificationsStore()
-      await notificationsStore.fetchUnreadCount()
+      if (!notificationsStore.pushConnected) {
+        await notificationsStore.fetchUnreadCount()
+      }
 
       return { success: true, message: '借書成功' }
     } catch (error: any) {
@@ -126,10 +128,12 @@ export const useBooksStore = defineStore('books', () => {
       await loadStats()
       await loadMyBorrowings()
 
-      // 立即更新未讀通知數量（通知已經由後端創建）
+      // 立即更新未讀通知數量（通知已經由後端創建；推送連線中時由伺服器推送）
       const { useNotificationsStore } = await import('./notifications')
       const notificationsStore = useNotificationsStore()
-      await notificationsStore.fetchUnreadCount()
+      if (!notificationsStore.pushConnected) {
+        await notificationsStore.fetchUnreadCount()
+      }
 
       return { success: true, message: '還書成功' }
     } catch (error: any) {
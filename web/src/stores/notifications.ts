@@ -10,6 +10,8 @@ export const useNotificationsStore = defineStore('notifications', () => {
   const unreadCount = ref(0)
   const loading = ref(false)
   const error = ref<string | null>(null)
+  // 即時推送連線中 (未讀數由伺服器推送，不需輪詢)
+  const pushConnected = ref(false)
 
   // 計算屬性
   const hasUnread = computed(() => unreadCount.value > 0)
@@ -69,11 +71,13 @@ export const useNotificationsStore = defineStore('notifications', () => {
     try {
       await notificationApi.markAsRead(notificationId)
 
-      // 更新本地狀態
+      // 更新本地狀態 (推送連線中時，未讀數的變化由伺服器推送)
       const notification = notifications.value.find(n => n.id === notificationId)
       if (notification && !notification.read) {
         notification.read = true
-        unreadCount.value = Math.max(0, unreadCount.value - 1)
+        if (!pushConnected.value) {
+          unreadCount.value = Math.max(0, unreadCount.value - 1)
+        }
       }
 
       return { success: true }
@@ -123,21 +127,86 @@ export const useNotificationsStore = defineStore('notifications', () => {
     }
   }
 
-  // 輪詢未讀數量 (每 30 秒)
+  // 即時推送：伺服器在新通知與已讀變化時推送 (WebSocket)
+  // 推送斷線時退回輪詢未讀數量 (每 30 秒)，並以指數退避重新連線
+  let socket: WebSocket | null = null
+  let reconnectTimer: number | null = null
+  let reconnectDelay = 1000
   let pollingInterval: number | null = null
 
-  function startPolling() {
-    // 清除現有的輪詢
-    if (pollingInterval) {
-      clearInterval(pollingInterval)
+  function handlePush(event: MessageEvent) {
+    try {
+      const data = JSON.parse(event.data)
+
+      if (data.type === 'unread') {
+        if (typeof data.unreadCount === 'number') {
+          unreadCount.value = data.unreadCount
+        } else {
+          unreadCount.value = Math.max(0, unreadCount.value + data.unreadDelta)
+        }
+      } else if (data.type === 'notification') {
+        unreadCount.value = Math.max(0, unreadCount.value + data.unreadDelta)
+        // 已載入列表時直接加到最前面
+        const notification = data.notification as Notification
+        if (notifications.value.length > 0 && !notifications.value.some(n => n.id === notification.id)) {
+          notifications.value.unshift(notification)
+        }
+      } else if (data.status === 'error') {
+        // 未登入或 Session 過期：改用輪詢
+        socket?.close()
+      }
+    } catch (err) {
+      console.error('解析通知推送失敗:', err)
     }
+  }
+
+  function connectPush() {
+    const authStore = useAuthStore()
+    if (!authStore.isLoggedIn || socket) {
+      return
+    }
+
+    const ws = new WebSocket('ws://localhost:7071')
+    socket = ws
+
+    ws.onopen = () => {
+      ws.send(JSON.stringify({ action: 'subscribeNotifications' }))
+      pushConnected.value = true
+      reconnectDelay = 1000
+    }
+
+    ws.onmessage = handlePush
+
+    ws.onclose = () => {
+      if (socket !== ws) return  // 已停止或已重新連線
+      socket = null
+      pushConnected.value = false
+      // 斷線期間由輪詢接手，稍後重新連線
+      reconnectTimer = setTimeout(() => {
+        reconnectTimer = null
+        connectPush()
+      }, reconnectDelay)
+      reconnectDelay = Math.min(reconnectDelay * 2, 60000)
+    }
+
+    ws.onerror = () => {
+      ws.close()
+    }
+  }
+
+  function startPolling() {
+    // 清除現有的連線與輪詢
+    stopPolling()
 
     // 立即執行一次
     fetchUnreadCount()
+    connectPush()
 
-    // 設置輪詢 (30 秒)
+    // 輪詢只在推送斷線時執行 (30 秒)
     pollingInterval = setInterval(() => {
-      fetchUnreadCount()
+      if (!pushConnected.value) {
+        fetchUnreadCount()
+      }
     }, 30000)
   }
 
@@ -146,6 +215,17 @@ export const useNotificationsStore = defineStore('notifications', () => {
       clearInterval(pollingInterval)
       pollingInterval = null
     }
+    if (reconnectTimer) {
+      clearTimeout(reconnectTimer)
+      reconnectTimer = null
+    }
+    if (socket) {
+      const ws = socket
+      socket = null
+      ws.close()
+    }
+    pushConnected.value = false
+    reconnectDelay = 1000
   }
 
   return {
@@ -154,6 +234,7 @@ export const useNotificationsStore = defineStore('notifications', () => {
     unreadCount,
     loading,
     error,
+    pushConnected,
 
     // 計算屬性
     hasUnread,